@@ -0,0 +1,55 @@
+package com.experimentation.filestorage.benchmark;
+
+import com.experimentation.filestorage.config.BucketStorageConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.contrib.nio.testing.LocalStorageHelper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
+
+/**
+ * Wires the application's storage beans the way the application does, with the AWS and GCP clients replaced by
+ * in-process fakes. The application's properties apply, and can be overridden with system properties.
+ */
+@Configuration
+@ComponentScan("com.experimentation.filestorage.bucket")
+@Import(BucketStorageConfig.class)
+@PropertySource("classpath:application.properties")
+class BucketStorageBenchmarkConfig {
+
+    /**
+     * Resolves the properties of the bean post processors too, which are created before any other bean
+     * @return
+     */
+    @Bean
+    public static PropertySourcesPlaceholderConfigurer propertySourcesPlaceholderConfigurer() {
+        return new PropertySourcesPlaceholderConfigurer();
+    }
+
+    @Bean
+    public FakeAmazonS3 amazonS3() {
+        return new FakeAmazonS3();
+    }
+
+    @Bean
+    public Storage storage() {
+        // Options the fake does not know, such as the fields to fetch, are ignored instead of rejected
+        return LocalStorageHelper.customOptions(false).getService();
+    }
+
+    @Bean
+    public MeterRegistry meterRegistry() {
+        return new SimpleMeterRegistry();
+    }
+
+    @Bean
+    public ObjectMapper objectMapper() {
+        return new ObjectMapper();
+    }
+}
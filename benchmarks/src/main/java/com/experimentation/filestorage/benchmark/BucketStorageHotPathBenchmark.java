@@ -0,0 +1,146 @@
+package com.experimentation.filestorage.benchmark;
+
+import com.experimentation.filestorage.bucket.BucketStorageController;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a request from the controller, through the service and the provider lookup, to the provider and back,
+ * for each provider and a range of object sizes. The providers talk to in-memory fakes, so the numbers show the
+ * application's own cost per request, including the fakes' copying of the content: they are for comparing runs
+ * with each other, not with the real providers. Run with -prof gc for the allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class BucketStorageHotPathBenchmark {
+
+    private static final String BUCKET_NAME = "benchmark-bucket";
+    private static final String FILE_NAME = "benchmark-file";
+    private static final String UPLOADED_FILE_NAME = "benchmark-upload";
+    private static final String DELETED_FILE_NAME = "benchmark-delete";
+    private static final String CONTENT_TYPE = "application/octet-stream";
+
+    @Param({"AWS_S3", "GCP"})
+    public String storageProvider;
+
+    @Param({"1024", "65536", "1048576", "16777216"})
+    public int objectSize;
+
+    private AnnotationConfigWebApplicationContext context;
+    private BucketStorageController bucketStorageController;
+    private FakeAmazonS3 amazonS3;
+    private Storage storage;
+    private byte[] content;
+    private MockMultipartFile uploadedFile;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // A servlet application context, as the controller is only created in one
+        context = new AnnotationConfigWebApplicationContext();
+        context.setServletContext(new MockServletContext());
+        context.register(BucketStorageBenchmarkConfig.class);
+        context.refresh();
+
+        bucketStorageController = context.getBean(BucketStorageController.class);
+        amazonS3 = context.getBean(FakeAmazonS3.class);
+        storage = context.getBean(Storage.class);
+
+        content = new byte[objectSize];
+        new Random(objectSize).nextBytes(content);
+        uploadedFile = new MockMultipartFile("file", UPLOADED_FILE_NAME, CONTENT_TYPE, content);
+        putFile(FILE_NAME);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Downloads the file and writes its content out as the response would.
+     *
+     * @return bytes written
+     */
+    @Benchmark
+    public long getFile() throws IOException {
+        ResponseEntity<StreamingResponseBody> responseEntity = bucketStorageController.getFile(
+                storageProvider, BUCKET_NAME, FILE_NAME, null, new MockHttpServletRequest());
+        checkSucceeded(responseEntity);
+
+        CountingOutputStream outputStream = new CountingOutputStream(ByteStreams.nullOutputStream());
+        responseEntity.getBody().writeTo(outputStream);
+        return outputStream.getCount();
+    }
+
+    @Benchmark
+    public ResponseEntity<?> uploadFile() {
+        return checkSucceeded(bucketStorageController.uploadFile(storageProvider, BUCKET_NAME, uploadedFile, false));
+    }
+
+    /**
+     * Deletes a file that was put in place before the call, without going through the application.
+     */
+    @Benchmark
+    public ResponseEntity<?> deleteFile(DeletedFile deletedFile) {
+        return checkSucceeded(bucketStorageController.deleteFile(storageProvider, BUCKET_NAME, DELETED_FILE_NAME));
+    }
+
+    void putFile(String fileName) {
+        if (BucketStorageType.valueOf(storageProvider) == BucketStorageType.AWS_S3) {
+            amazonS3.putContent(BUCKET_NAME, fileName, content, CONTENT_TYPE);
+        }
+        else {
+            storage.create(BlobInfo.newBuilder(BUCKET_NAME, fileName).setContentType(CONTENT_TYPE).build(), content);
+        }
+    }
+
+    /**
+     * A failed request would be measured as a fast one, so it ends the run instead.
+     */
+    private <T extends ResponseEntity<?>> T checkSucceeded(T responseEntity) {
+        if (!responseEntity.getStatusCode().is2xxSuccessful()) {
+            throw new IllegalStateException("Request failed with " + responseEntity.getStatusCode() + ": "
+                    + responseEntity.getBody());
+        }
+        return responseEntity;
+    }
+
+    @State(Scope.Thread)
+    public static class DeletedFile {
+
+        @Setup(Level.Invocation)
+        public void putFile(BucketStorageHotPathBenchmark benchmark) {
+            benchmark.putFile(DELETED_FILE_NAME);
+        }
+    }
+}
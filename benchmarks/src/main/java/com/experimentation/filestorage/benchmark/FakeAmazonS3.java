@@ -0,0 +1,215 @@
+package com.experimentation.filestorage.benchmark;
+
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
+import com.amazonaws.services.s3.model.DeleteObjectRequest;
+import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+import com.google.common.io.ByteStreams;
+import org.apache.http.client.methods.HttpGet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Date;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps S3 objects in memory, answering the calls the S3 provider makes: plain and ranged gets with ETag
+ * preconditions, metadata lookups, plain and multipart puts, and deletes. Every other call is unsupported.
+ */
+class FakeAmazonS3 extends AbstractAmazonS3 {
+
+    private final Map<String, StoredObject> objects = new ConcurrentHashMap<>();
+    private final Map<String, SortedMap<Integer, byte[]>> multipartUploads = new ConcurrentHashMap<>();
+    private final AtomicLong versions = new AtomicLong();
+
+    /**
+     * Stores an object directly, without going through the provider.
+     *
+     * @param bucketName
+     * @param key
+     * @param content
+     * @param contentType
+     */
+    void putContent(String bucketName, String key, byte[] content, String contentType) {
+        objects.put(bucketName + "/" + key, new StoredObject(content, contentType, newETag()));
+    }
+
+    @Override
+    public S3Object getObject(GetObjectRequest getObjectRequest) {
+        StoredObject storedObject = find(getObjectRequest.getBucketName(), getObjectRequest.getKey());
+
+        // A failed precondition is answered with a null object, as the SDK does
+        if (getObjectRequest.getNonmatchingETagConstraints().contains(storedObject.eTag)
+                || (!getObjectRequest.getMatchingETagConstraints().isEmpty()
+                && !getObjectRequest.getMatchingETagConstraints().contains(storedObject.eTag))) {
+            return null;
+        }
+
+        int length = storedObject.content.length;
+        int start = 0;
+        int end = length - 1;
+        ObjectMetadata objectMetadata = storedObject.newObjectMetadata();
+
+        long[] range = getObjectRequest.getRange();
+        if (range != null) {
+            start = (int) Math.min(range[0], length);
+            end = (int) Math.min(range[1], length - 1L);
+            objectMetadata.setHeader(Headers.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+        objectMetadata.setContentLength(Math.max(0, end - start + 1));
+
+        S3Object s3Object = new S3Object();
+        s3Object.setBucketName(getObjectRequest.getBucketName());
+        s3Object.setKey(getObjectRequest.getKey());
+        s3Object.setObjectMetadata(objectMetadata);
+        s3Object.setObjectContent(new S3ObjectInputStream(
+                new ByteArrayInputStream(storedObject.content, start, Math.max(0, end - start + 1)), new HttpGet()));
+        return s3Object;
+    }
+
+    @Override
+    public ObjectMetadata getObjectMetadata(String bucketName, String key) {
+        return find(bucketName, key).newObjectMetadata();
+    }
+
+    @Override
+    public ObjectMetadata getObjectMetadata(GetObjectMetadataRequest getObjectMetadataRequest) {
+        return getObjectMetadata(getObjectMetadataRequest.getBucketName(), getObjectMetadataRequest.getKey());
+    }
+
+    @Override
+    public PutObjectResult putObject(PutObjectRequest putObjectRequest) {
+        StoredObject storedObject = new StoredObject(readFully(putObjectRequest.getInputStream()),
+                putObjectRequest.getMetadata().getContentType(), newETag());
+        objects.put(putObjectRequest.getBucketName() + "/" + putObjectRequest.getKey(), storedObject);
+
+        PutObjectResult putObjectResult = new PutObjectResult();
+        putObjectResult.setETag(storedObject.eTag);
+        return putObjectResult;
+    }
+
+    @Override
+    public InitiateMultipartUploadResult initiateMultipartUpload(InitiateMultipartUploadRequest request) {
+        String uploadId = UUID.randomUUID().toString();
+        multipartUploads.put(uploadId, new ConcurrentSkipListMap<>());
+
+        InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+        result.setBucketName(request.getBucketName());
+        result.setKey(request.getKey());
+        result.setUploadId(uploadId);
+        return result;
+    }
+
+    @Override
+    public UploadPartResult uploadPart(UploadPartRequest uploadPartRequest) {
+        multipartUploads.get(uploadPartRequest.getUploadId())
+                .put(uploadPartRequest.getPartNumber(), readFully(uploadPartRequest.getInputStream()));
+
+        UploadPartResult uploadPartResult = new UploadPartResult();
+        uploadPartResult.setPartNumber(uploadPartRequest.getPartNumber());
+        uploadPartResult.setETag(newETag());
+        return uploadPartResult;
+    }
+
+    @Override
+    public CompleteMultipartUploadResult completeMultipartUpload(CompleteMultipartUploadRequest request) {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (byte[] part : multipartUploads.remove(request.getUploadId()).values()) {
+            content.write(part, 0, part.length);
+        }
+        StoredObject storedObject = new StoredObject(content.toByteArray(), null, newETag());
+        objects.put(request.getBucketName() + "/" + request.getKey(), storedObject);
+
+        CompleteMultipartUploadResult result = new CompleteMultipartUploadResult();
+        result.setBucketName(request.getBucketName());
+        result.setKey(request.getKey());
+        result.setETag(storedObject.eTag);
+        return result;
+    }
+
+    @Override
+    public void abortMultipartUpload(AbortMultipartUploadRequest request) {
+        multipartUploads.remove(request.getUploadId());
+    }
+
+    @Override
+    public void deleteObject(DeleteObjectRequest deleteObjectRequest) {
+        objects.remove(deleteObjectRequest.getBucketName() + "/" + deleteObjectRequest.getKey());
+    }
+
+    @Override
+    public void shutdown() {
+        // Nothing is held outside the heap
+    }
+
+    private StoredObject find(String bucketName, String key) {
+        StoredObject storedObject = objects.get(bucketName + "/" + key);
+        if (storedObject == null) {
+            AmazonS3Exception e = new AmazonS3Exception("The specified key does not exist.");
+            e.setStatusCode(404);
+            e.setErrorCode("NoSuchKey");
+            throw e;
+        }
+        return storedObject;
+    }
+
+    private String newETag() {
+        return Long.toHexString(versions.incrementAndGet());
+    }
+
+    private byte[] readFully(InputStream inputStream) {
+        try {
+            return ByteStreams.toByteArray(inputStream);
+        }
+
+        // The content is always held in memory, so it can be read
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static class StoredObject {
+
+        private final byte[] content;
+        private final String contentType;
+        private final String eTag;
+        private final Date lastModified = new Date();
+
+        StoredObject(byte[] content, String contentType, String eTag) {
+            this.content = content;
+            this.contentType = contentType;
+            this.eTag = eTag;
+        }
+
+        ObjectMetadata newObjectMetadata() {
+            ObjectMetadata objectMetadata = new ObjectMetadata();
+            objectMetadata.setContentLength(content.length);
+            objectMetadata.setContentType(contentType);
+            objectMetadata.setHeader(Headers.ETAG, eTag);
+            objectMetadata.setLastModified(lastModified);
+            return objectMetadata;
+        }
+    }
+}
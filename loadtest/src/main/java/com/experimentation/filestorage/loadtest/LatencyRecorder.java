@@ -0,0 +1,111 @@
+package com.experimentation.filestorage.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the latencies of one kind of request: one operation, against one provider, for one size of file.
+ * Response time runs from when the request was due to start to when its response was read, so time spent waiting
+ * behind slow requests counts against the application; service time runs from when the request was actually sent.
+ * Latencies are kept for successful requests only, in microseconds, with three significant digits.
+ */
+class LatencyRecorder {
+
+    static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.HOURS.toMicros(1);
+    static final int SIGNIFICANT_DIGITS = 3;
+
+    private final Operation operation;
+    private final String provider;
+    private final long size;
+
+    private final Recorder responseTimeRecorder = new Recorder(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+    private final Recorder serviceTimeRecorder = new Recorder(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+    private final Histogram responseTime = new Histogram(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+    private final Histogram serviceTime = new Histogram(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+
+    LatencyRecorder(Operation operation, String provider, long size) {
+        this.operation = operation;
+        this.provider = provider;
+        this.size = size;
+    }
+
+    Operation getOperation() {
+        return operation;
+    }
+
+    String getProvider() {
+        return provider;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    /**
+     * @return name of the kind of request in reports, e.g. get/AWS_S3/64KB
+     */
+    String getTag() {
+        return operation.label() + "/" + provider + "/" + LoadTestSettings.formatSize(size);
+    }
+
+    void recordSuccess(long responseTimeNanos, long serviceTimeNanos, long transferredBytes) {
+        requests.increment();
+        bytes.add(transferredBytes);
+        responseTimeRecorder.recordValue(toMicros(responseTimeNanos));
+        serviceTimeRecorder.recordValue(toMicros(serviceTimeNanos));
+    }
+
+    void recordError() {
+        requests.increment();
+        errors.increment();
+    }
+
+    /**
+     * Takes the response times recorded since the previous interval and adds them to the totals. Only the
+     * reporting thread calls this.
+     *
+     * @return response times of the interval, stamped with its start and end
+     */
+    Histogram nextInterval() {
+        Histogram interval = responseTimeRecorder.getIntervalHistogram();
+        responseTime.add(interval);
+        serviceTime.add(serviceTimeRecorder.getIntervalHistogram());
+        return interval;
+    }
+
+    /**
+     * @return response times of the intervals taken so far
+     */
+    Histogram getResponseTime() {
+        return responseTime;
+    }
+
+    /**
+     * @return service times of the intervals taken so far
+     */
+    Histogram getServiceTime() {
+        return serviceTime;
+    }
+
+    long getRequests() {
+        return requests.sum();
+    }
+
+    long getErrors() {
+        return errors.sum();
+    }
+
+    long getBytes() {
+        return bytes.sum();
+    }
+
+    private static long toMicros(long nanos) {
+        return Math.max(0, Math.min(HIGHEST_TRACKABLE_MICROS, TimeUnit.NANOSECONDS.toMicros(nanos)));
+    }
+}
@@ -0,0 +1,138 @@
+package com.experimentation.filestorage.loadtest;
+
+import com.experimentation.filestorage.FilestorageApplication;
+import com.experimentation.filestorage.loadtest.standin.GCSStandInServer;
+import com.experimentation.filestorage.loadtest.standin.S3StandInServer;
+import com.experimentation.filestorage.loadtest.standin.StandInBehavior;
+import com.experimentation.filestorage.loadtest.standin.StandInServer;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Runs a load test of the whole application: starts the S3 and GCS stand-ins, stores the objects that gets read,
+ * starts the application on a free port with its AWS and GCP clients pointed at the stand-ins, drives it with the
+ * configured workload, and writes the report. Settings are read by {@link LoadTestSettings}; every argument that is
+ * not a --loadtest.* setting is passed on to the application, e.g. --filestorage.cache.enabled=false.
+ */
+public class LoadTestApplication {
+
+    // Providers the stand-ins answer for
+    private static final String AWS_S3 = "AWS_S3";
+    private static final String GCP = "GCP";
+
+    // Content of uploads and of the stored objects is this block, repeated
+    private static final int BLOCK_SIZE = 1024 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        LoadTestSettings settings = LoadTestSettings.load(args);
+        Path reportDirectory = Paths.get(settings.getString("report-directory"));
+        String seed = settings.getOptionalString("seed");
+        byte[] block = new byte[BLOCK_SIZE];
+        (seed != null ? new Random(Long.parseLong(seed)) : new Random()).nextBytes(block);
+
+        try (S3StandInServer s3 = new S3StandInServer(newBehavior(settings, "s3"));
+             GCSStandInServer gcs = new GCSStandInServer(newBehavior(settings, "gcs"))) {
+
+            preload(settings, block, s3, gcs);
+
+            try (ConfigurableApplicationContext context = startApplication(settings, s3, gcs);
+                 LoadTestClient client = new LoadTestClient(
+                         "http://localhost:" + context.getEnvironment().getProperty("local.server.port"),
+                         settings.getInt("concurrency"), settings.getInt("request-timeout"), block);
+                 LoadTestReport report = new LoadTestReport(reportDirectory, System.out)) {
+
+                System.out.println("Load test of " + settings.getString("rate") + " requests per second for "
+                        + settings.getString("duration") + " seconds after a warm-up of "
+                        + settings.getString("warmup") + " seconds; report in " + reportDirectory.toAbsolutePath());
+
+                new WorkloadDriver(settings, client, report).run();
+
+                Map<String, Long> standInCounts = new LinkedHashMap<>();
+                standInCounts.put("s3_requests", s3.getRequestCount());
+                standInCounts.put("s3_injected_errors", s3.getInjectedErrorCount());
+                standInCounts.put("gcs_requests", gcs.getRequestCount());
+                standInCounts.put("gcs_injected_errors", gcs.getInjectedErrorCount());
+
+                report.writeSummary(settings.getLong("duration"));
+                report.writeCounters(standInCounts);
+                settings.store(reportDirectory.resolve("settings.properties"));
+            }
+        }
+
+        String compareWith = settings.getOptionalString("compare-with");
+        if (compareWith != null) {
+            LoadTestComparison.compare(Paths.get(compareWith), reportDirectory, System.out);
+        }
+    }
+
+    private static StandInBehavior newBehavior(LoadTestSettings settings, String standIn) {
+        return new StandInBehavior(settings.getLong(standIn + ".latency"),
+                settings.getLong(standIn + ".latency-jitter"), settings.getSize(standIn + ".bandwidth"),
+                settings.getDouble(standIn + ".error-rate"));
+    }
+
+    /**
+     * Stores the objects that gets read, for every provider and size of the workload, straight into the
+     * stand-ins. Objects of a size share their content.
+     */
+    private static void preload(LoadTestSettings settings, byte[] block, StandInServer s3, StandInServer gcs) {
+        String bucketName = settings.getString("bucket");
+        int objectsPerSize = settings.getInt("objects-per-size");
+
+        for (long size : WorkloadDriver.getSizes(settings).getValues()) {
+            byte[] content = new byte[(int) size];
+            for (int position = 0; position < content.length; position += block.length) {
+                System.arraycopy(block, 0, content, position, Math.min(block.length, content.length - position));
+            }
+
+            for (String provider : WorkloadDriver.getProviders(settings).getValues()) {
+                StandInServer standIn = toStandIn(provider, s3, gcs);
+                for (int i = 0; i < objectsPerSize; i++) {
+                    standIn.putObject(bucketName, WorkloadDriver.getPreloadedFileName(size, i), content,
+                            "application/octet-stream");
+                }
+            }
+        }
+    }
+
+    private static StandInServer toStandIn(String provider, StandInServer s3, StandInServer gcs) {
+        switch (provider) {
+            case AWS_S3:
+                return s3;
+            case GCP:
+                return gcs;
+            default:
+                throw new IllegalArgumentException("No stand-in for provider " + provider
+                        + "; the load test supports " + AWS_S3 + " and " + GCP);
+        }
+    }
+
+    /**
+     * Starts the application with its own properties, but with the provider clients of
+     * {@link LoadTestProviderConfig}, placeholder credentials, and no limit on the size of uploads.
+     */
+    private static ConfigurableApplicationContext startApplication(LoadTestSettings settings, StandInServer s3,
+                                                                   StandInServer gcs) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("server.port", 0);
+        properties.put("loadtest.s3.endpoint", s3.getEndpoint());
+        properties.put("loadtest.gcs.endpoint", gcs.getEndpoint());
+        properties.put("AWS_ACCESS_KEY", "loadtest");
+        properties.put("AWS_SECRET_KEY", "loadtest");
+        properties.put("GCP_PROJECT_ID", "loadtest");
+        properties.put("GCP_CREDENTIALS_LOCATION", "file:/dev/null");
+        properties.put("spring.servlet.multipart.max-file-size", -1);
+        properties.put("spring.servlet.multipart.max-request-size", -1);
+
+        return new SpringApplicationBuilder(FilestorageApplication.class, LoadTestProviderConfig.class)
+                .properties(properties)
+                .run(settings.getApplicationArgs().toArray(new String[0]));
+    }
+}
@@ -0,0 +1,124 @@
+package com.experimentation.filestorage.loadtest;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the workload's requests to the application over a pool of kept-alive connections, one for each request
+ * that can be in flight. A request is never retried, so each failure the application returns is counted.
+ */
+class LoadTestClient implements AutoCloseable {
+
+    private static final String API_PATH = "/api/fileStorage/storageProvider/";
+
+    private final String baseUrl;
+    private final CloseableHttpClient httpClient;
+    private final byte[] uploadBlock;
+
+    /**
+     * @param baseUrl URL of the application, without a trailing slash
+     * @param concurrency largest number of requests in flight
+     * @param timeoutSeconds time to connect, and to wait for each read, before a request fails
+     * @param uploadBlock content repeated to make up uploaded files
+     */
+    LoadTestClient(String baseUrl, int concurrency, int timeoutSeconds, byte[] uploadBlock) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(concurrency);
+        connectionManager.setDefaultMaxPerRoute(concurrency);
+
+        int timeoutMillis = (int) TimeUnit.SECONDS.toMillis(timeoutSeconds);
+        this.baseUrl = baseUrl;
+        this.uploadBlock = uploadBlock;
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(timeoutMillis)
+                        .setConnectionRequestTimeout(timeoutMillis)
+                        .setSocketTimeout(timeoutMillis)
+                        .build())
+                .disableAutomaticRetries()
+                .disableContentCompression()
+                .disableRedirectHandling()
+                .build();
+    }
+
+    /**
+     * Downloads a file and reads its content to the end.
+     *
+     * @return bytes of content received
+     * @throws IOException if the request failed or was not answered with 200 OK
+     */
+    long get(String provider, String bucketName, String fileName) throws IOException {
+        return execute(new HttpGet(fileUrl(provider, bucketName, fileName)));
+    }
+
+    /**
+     * Uploads a file of the given size.
+     *
+     * @return bytes of content sent
+     * @throws IOException if the request failed or was not answered with 200 OK
+     */
+    long upload(String provider, String bucketName, String fileName, long size) throws IOException {
+        HttpPost post = new HttpPost(baseUrl + API_PATH + provider + "/storageLocation/" + bucketName);
+        post.setEntity(new MultipartBodyEntity("file", fileName, uploadBlock, size));
+        execute(post);
+        return size;
+    }
+
+    /**
+     * @throws IOException if the request failed or was not answered with 200 OK
+     */
+    void delete(String provider, String bucketName, String fileName) throws IOException {
+        execute(new HttpDelete(fileUrl(provider, bucketName, fileName)));
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+    }
+
+    private String fileUrl(String provider, String bucketName, String fileName) {
+        return baseUrl + API_PATH + provider + "/storageLocation/" + bucketName + "/fileName/" + fileName;
+    }
+
+    /**
+     * @return bytes of the response body, which is always read to the end so the connection can be reused
+     */
+    private long execute(HttpUriRequest request) throws IOException {
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            int status = response.getStatusLine().getStatusCode();
+            HttpEntity entity = response.getEntity();
+            if (status != 200) {
+                String message = entity != null ? EntityUtils.toString(entity) : "";
+                throw new IOException(request.getMethod() + " " + request.getURI().getPath() + " returned "
+                        + status + (message.isEmpty() ? "" : ": " + message));
+            }
+            if (entity == null) {
+                return 0;
+            }
+
+            long length = 0;
+            byte[] buffer = new byte[64 * 1024];
+            try (InputStream inputStream = entity.getContent()) {
+                int count;
+                while ((count = inputStream.read(buffer)) >= 0) {
+                    length += count;
+                }
+            }
+            return length;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.experimentation.filestorage.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Compares the summary of a run with the summary of a baseline run, such as the same workload against the
+ * previous build. Every metric of every line both summaries have is written to comparison.csv with its change in
+ * percent; the throughput and the main percentiles are printed as well. Settings that differ between the runs are
+ * printed first, as they make the comparison meaningless.
+ */
+class LoadTestComparison {
+
+    private static final String COMPARISON_FILE = "comparison.csv";
+    private static final String SETTINGS_FILE = "settings.properties";
+    private static final int KEY_COLUMNS = 3;
+    private static final List<String> PRINTED_METRICS =
+            Arrays.asList("throughput_rps", "errors", "p50_ms", "p99_ms", "p99_9_ms");
+
+    // Settings that decide where and how often a run reports rather than what it measures
+    private static final List<String> IGNORED_SETTINGS =
+            Arrays.asList("loadtest.report-directory", "loadtest.report-interval", "loadtest.compare-with",
+                    "loadtest.config");
+
+    private LoadTestComparison() {
+    }
+
+    /**
+     * @param baselineDirectory report directory of the baseline run
+     * @param directory report directory of this run, which the comparison is written to
+     * @param out stream to print the comparison to
+     */
+    static void compare(Path baselineDirectory, Path directory, PrintStream out) throws IOException {
+        printSettingDifferences(baselineDirectory.resolve(SETTINGS_FILE), directory.resolve(SETTINGS_FILE), out);
+
+        Map<String, Map<String, String>> baseline = readSummary(baselineDirectory.resolve(LoadTestReport.SUMMARY_FILE));
+        Map<String, Map<String, String>> current = readSummary(directory.resolve(LoadTestReport.SUMMARY_FILE));
+
+        out.printf(Locale.ROOT, "%-28s %-16s %14s %14s %9s%n", "request", "metric", "baseline", "current", "change");
+        try (PrintWriter comparison = new PrintWriter(
+                Files.newBufferedWriter(directory.resolve(COMPARISON_FILE), StandardCharsets.UTF_8))) {
+            comparison.println("operation,provider,size,metric,baseline,current,change_percent");
+
+            for (Map.Entry<String, Map<String, String>> line : current.entrySet()) {
+                Map<String, String> baselineLine = baseline.get(line.getKey());
+                if (baselineLine == null) {
+                    continue;
+                }
+
+                for (int i = KEY_COLUMNS; i < LoadTestReport.SUMMARY_COLUMNS.length; i++) {
+                    String metric = LoadTestReport.SUMMARY_COLUMNS[i];
+                    String baselineValue = baselineLine.get(metric);
+                    String currentValue = line.getValue().get(metric);
+                    if (baselineValue == null || currentValue == null) {
+                        continue;
+                    }
+
+                    String change = formatChange(Double.parseDouble(baselineValue), Double.parseDouble(currentValue));
+                    comparison.println(line.getKey() + "," + metric + "," + baselineValue + "," + currentValue + ","
+                            + change);
+                    if (PRINTED_METRICS.contains(metric)) {
+                        out.printf(Locale.ROOT, "%-28s %-16s %14s %14s %9s%n", line.getKey().replace(',', '/'),
+                                metric, baselineValue, currentValue, change.isEmpty() ? "-" : change + "%");
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return lines of the summary by their operation, provider and size, each with its values by column
+     */
+    private static Map<String, Map<String, String>> readSummary(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        String[] columns = lines.get(0).split(",");
+
+        Map<String, Map<String, String>> summary = new LinkedHashMap<>();
+        for (String line : lines.subList(1, lines.size())) {
+            String[] values = line.split(",");
+            Map<String, String> valuesByColumn = new LinkedHashMap<>();
+            for (int i = 0; i < Math.min(columns.length, values.length); i++) {
+                valuesByColumn.put(columns[i], values[i]);
+            }
+            summary.put(String.join(",", Arrays.copyOf(values, KEY_COLUMNS)), valuesByColumn);
+        }
+        return summary;
+    }
+
+    private static void printSettingDifferences(Path baselineFile, Path file, PrintStream out) throws IOException {
+        if (!Files.exists(baselineFile)) {
+            return;
+        }
+
+        Properties baseline = readProperties(baselineFile);
+        Properties current = readProperties(file);
+        Set<String> names = new TreeSet<>(baseline.stringPropertyNames());
+        names.addAll(current.stringPropertyNames());
+        names.removeAll(IGNORED_SETTINGS);
+
+        for (String name : names) {
+            if (!Objects.equals(baseline.getProperty(name), current.getProperty(name))) {
+                out.println("Setting " + name + " differs from the baseline: " + baseline.getProperty(name) + " -> "
+                        + current.getProperty(name));
+            }
+        }
+    }
+
+    private static Properties readProperties(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            properties.load(inputStream);
+        }
+        return properties;
+    }
+
+    /**
+     * @return change in percent, or empty if there is no baseline to compare against
+     */
+    private static String formatChange(double baseline, double current) {
+        if (baseline == 0) {
+            return current == 0 ? "0.0" : "";
+        }
+        return String.format(Locale.ROOT, "%+.1f", (current - baseline) / baseline * 100);
+    }
+}
@@ -0,0 +1,62 @@
+package com.experimentation.filestorage.loadtest;
+
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.google.api.gax.core.CredentialsProvider;
+import com.google.api.gax.core.NoCredentialsProvider;
+import com.google.cloud.NoCredentials;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gcp.core.GcpProjectIdProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Points the application's AWS and GCP clients at the stand-in servers instead of the real providers. The clients
+ * are otherwise configured as the application configures them, so requests take the same path through the client
+ * libraries, connection pools and retries.
+ */
+@Configuration
+class LoadTestProviderConfig {
+
+    private static final String PROJECT_ID = "loadtest";
+
+    @Bean(name = "amazonS3")
+    public AmazonS3 amazonS3(@Value("${loadtest.s3.endpoint}") String endpoint,
+                             @Value("${cloud.aws.region.static:us-east-1}") String region) {
+        return AmazonS3ClientBuilder.standard()
+                .withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(endpoint, region))
+                .withCredentials(new AWSStaticCredentialsProvider(new BasicAWSCredentials("loadtest", "loadtest")))
+                .withPathStyleAccessEnabled(true)
+                .withChunkedEncodingDisabled(true)
+                .build();
+    }
+
+    @Bean
+    public Storage storage(@Value("${loadtest.gcs.endpoint}") String endpoint) {
+        return StorageOptions.newBuilder()
+                .setHost(endpoint)
+                .setProjectId(PROJECT_ID)
+                .setCredentials(NoCredentials.getInstance())
+                .build()
+                .getService();
+    }
+
+    /**
+     * Keeps the GCP auto-configuration from looking for credentials that the stand-in does not need
+     * @return
+     */
+    @Bean
+    public CredentialsProvider googleCredentials() {
+        return NoCredentialsProvider.create();
+    }
+
+    @Bean
+    public GcpProjectIdProvider gcpProjectIdProvider() {
+        return () -> PROJECT_ID;
+    }
+}
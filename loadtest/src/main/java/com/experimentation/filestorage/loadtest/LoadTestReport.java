@@ -0,0 +1,244 @@
+package com.experimentation.filestorage.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Collects the results of a load test run and writes them to the report directory:
+ * <ul>
+ *     <li>summary.csv, with the requests, errors, throughput and latency percentiles of each kind of request, of
+ *     each operation and of the whole run, which {@link LoadTestComparison} compares between runs</li>
+ *     <li>one .hgrm file for each line of the summary, with the full percentile distribution of its response
+ *     times in milliseconds, as plotted by HdrHistogram's tools</li>
+ *     <li>latency.hlog, with the response times of each report interval, tagged by kind of request</li>
+ *     <li>counters.csv, with the requests the load generator could not send and the stand-ins' own counts</li>
+ * </ul>
+ * Requests that were due during the warm-up are counted for the progress lines only.
+ */
+class LoadTestReport implements AutoCloseable {
+
+    static final String SUMMARY_FILE = "summary.csv";
+    static final String[] SUMMARY_COLUMNS = {"operation", "provider", "size", "requests", "errors",
+            "throughput_rps", "throughput_mb_s", "p50_ms", "p90_ms", "p99_ms", "p99_9_ms", "max_ms",
+            "service_p50_ms", "service_p99_ms"};
+
+    private static final String ALL = "all";
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    private final Path directory;
+    private final PrintStream progress;
+    private final ConcurrentMap<String, LatencyRecorder> recorders = new ConcurrentHashMap<>();
+    private final LongAdder warmupRequests = new LongAdder();
+    private final LongAdder warmupErrors = new LongAdder();
+    private final LongAdder droppedRequests = new LongAdder();
+    private final LongAdder skippedRequests = new LongAdder();
+    private final PrintStream logStream;
+    private final HistogramLogWriter logWriter;
+    private volatile long measurementStartMillis = -1;
+
+    /**
+     * @param directory directory to write the report files to, created if missing
+     * @param progress stream to print a line of progress to at each interval
+     */
+    LoadTestReport(Path directory, PrintStream progress) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.progress = progress;
+        this.logStream = new PrintStream(Files.newOutputStream(directory.resolve("latency.hlog")), false, "UTF-8");
+        this.logWriter = new HistogramLogWriter(logStream);
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    LatencyRecorder getRecorder(Operation operation, String provider, long size) {
+        return recorders.computeIfAbsent(operation.label() + "/" + provider + "/" + size,
+                key -> new LatencyRecorder(operation, provider, size));
+    }
+
+    void recordWarmup(boolean success) {
+        warmupRequests.increment();
+        if (!success) {
+            warmupErrors.increment();
+        }
+    }
+
+    /**
+     * Counts a request that was due while the backlog was full, so it was never sent.
+     */
+    void recordDropped() {
+        droppedRequests.increment();
+    }
+
+    /**
+     * Counts a request that had no object to work on, such as a delete while no upload had finished.
+     */
+    void recordSkipped() {
+        skippedRequests.increment();
+    }
+
+    /**
+     * Ends the warm-up. Response times are logged in intervals from here on.
+     */
+    void startMeasurement() {
+        measurementStartMillis = System.currentTimeMillis();
+        logWriter.outputLogFormatVersion();
+        logWriter.outputStartTime(measurementStartMillis);
+        logWriter.setBaseTime(measurementStartMillis);
+        logWriter.outputBaseTime(measurementStartMillis);
+        logWriter.outputLegend();
+    }
+
+    /**
+     * Takes the interval's response times, logs them and prints a line of progress. Only the reporting thread
+     * calls this, once per interval and once when the run is over.
+     *
+     * @param elapsedSeconds time since the run started
+     */
+    synchronized void reportInterval(long elapsedSeconds) {
+        if (measurementStartMillis < 0) {
+            progress.printf(Locale.ROOT, "[%5ds] warm-up: %d requests, %d errors%n",
+                    elapsedSeconds, warmupRequests.sum(), warmupErrors.sum());
+            return;
+        }
+
+        Histogram combined = newHistogram();
+        for (LatencyRecorder recorder : sortedRecorders()) {
+            Histogram interval = recorder.nextInterval();
+            if (interval.getTotalCount() > 0) {
+                interval.setTag(recorder.getTag());
+                logWriter.outputIntervalHistogram(interval);
+                combined.add(interval);
+            }
+        }
+
+        long requests = recorders.values().stream().mapToLong(LatencyRecorder::getRequests).sum();
+        long errors = recorders.values().stream().mapToLong(LatencyRecorder::getErrors).sum();
+        progress.printf(Locale.ROOT, "[%5ds] %d requests, %d errors, %d dropped, %d skipped; interval p50 %.1f ms, "
+                        + "p99 %.1f ms, max %.1f ms%n",
+                elapsedSeconds, requests, errors, droppedRequests.sum(), skippedRequests.sum(),
+                toMillis(combined.getValueAtPercentile(50)), toMillis(combined.getValueAtPercentile(99)),
+                toMillis(combined.getMaxValue()));
+    }
+
+    /**
+     * Writes the summary and the percentile distributions of the measured requests.
+     *
+     * @param durationSeconds length of the measurement, which throughput is computed over
+     */
+    void writeSummary(long durationSeconds) throws IOException {
+        Map<String, List<LatencyRecorder>> lines = new LinkedHashMap<>();
+        List<LatencyRecorder> sortedRecorders = sortedRecorders();
+        for (LatencyRecorder recorder : sortedRecorders) {
+            lines.put(recorder.getTag(), Collections.singletonList(recorder));
+        }
+        for (Operation operation : Operation.values()) {
+            List<LatencyRecorder> operationRecorders = sortedRecorders.stream()
+                    .filter(recorder -> recorder.getOperation() == operation)
+                    .collect(Collectors.toList());
+            if (!operationRecorders.isEmpty()) {
+                lines.put(operation.label() + "/" + ALL + "/" + ALL, operationRecorders);
+            }
+        }
+        lines.put(ALL + "/" + ALL + "/" + ALL, sortedRecorders);
+
+        try (PrintWriter summary = newWriter(SUMMARY_FILE)) {
+            summary.println(String.join(",", SUMMARY_COLUMNS));
+
+            for (Map.Entry<String, List<LatencyRecorder>> line : lines.entrySet()) {
+                Histogram responseTime = newHistogram();
+                Histogram serviceTime = newHistogram();
+                long requests = 0;
+                long errors = 0;
+                long bytes = 0;
+                for (LatencyRecorder recorder : line.getValue()) {
+                    responseTime.add(recorder.getResponseTime());
+                    serviceTime.add(recorder.getServiceTime());
+                    requests += recorder.getRequests();
+                    errors += recorder.getErrors();
+                    bytes += recorder.getBytes();
+                }
+
+                summary.println(String.join(",", line.getKey().split("/"))
+                        + "," + requests
+                        + "," + errors
+                        + "," + format((double) requests / durationSeconds)
+                        + "," + format(bytes / (1024.0 * 1024.0) / durationSeconds)
+                        + "," + format(toMillis(responseTime.getValueAtPercentile(50)))
+                        + "," + format(toMillis(responseTime.getValueAtPercentile(90)))
+                        + "," + format(toMillis(responseTime.getValueAtPercentile(99)))
+                        + "," + format(toMillis(responseTime.getValueAtPercentile(99.9)))
+                        + "," + format(toMillis(responseTime.getMaxValue()))
+                        + "," + format(toMillis(serviceTime.getValueAtPercentile(50)))
+                        + "," + format(toMillis(serviceTime.getValueAtPercentile(99))));
+
+                try (PrintStream distribution = new PrintStream(Files.newOutputStream(
+                        directory.resolve(line.getKey().replace('/', '-') + ".hgrm")), false, "UTF-8")) {
+                    responseTime.outputPercentileDistribution(distribution, MICROS_PER_MILLI);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the counts that are not latencies: requests not sent by the load generator, and the stand-ins'
+     * requests and injected errors.
+     *
+     * @param standInCounts counts of the stand-ins by name
+     */
+    void writeCounters(Map<String, Long> standInCounts) throws IOException {
+        try (PrintWriter counters = newWriter("counters.csv")) {
+            counters.println("counter,value");
+            counters.println("dropped_requests," + droppedRequests.sum());
+            counters.println("skipped_requests," + skippedRequests.sum());
+            standInCounts.forEach((name, count) -> counters.println(name + "," + count));
+        }
+    }
+
+    @Override
+    public void close() {
+        logStream.close();
+    }
+
+    private List<LatencyRecorder> sortedRecorders() {
+        List<LatencyRecorder> sortedRecorders = new ArrayList<>(recorders.values());
+        sortedRecorders.sort(Comparator.comparing(LatencyRecorder::getOperation)
+                .thenComparing(LatencyRecorder::getProvider)
+                .thenComparingLong(LatencyRecorder::getSize));
+        return sortedRecorders;
+    }
+
+    private PrintWriter newWriter(String fileName) throws IOException {
+        return new PrintWriter(Files.newBufferedWriter(directory.resolve(fileName), StandardCharsets.UTF_8));
+    }
+
+    private static Histogram newHistogram() {
+        return new Histogram(LatencyRecorder.HIGHEST_TRACKABLE_MICROS, LatencyRecorder.SIGNIFICANT_DIGITS);
+    }
+
+    private static double toMillis(long micros) {
+        return micros / MICROS_PER_MILLI;
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+}
@@ -0,0 +1,157 @@
+package com.experimentation.filestorage.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Settings of a load test run: the defaults in loadtest.properties, overridden by a file named with
+ * loadtest.config, then by loadtest.* system properties, then by --loadtest.* arguments. Every other argument is
+ * passed on to the application.
+ */
+class LoadTestSettings {
+
+    private static final String PREFIX = "loadtest.";
+    private static final String ARGUMENT_PREFIX = "--" + PREFIX;
+    private static final String CONFIG_FILE = PREFIX + "config";
+
+    private final Properties properties;
+    private final List<String> applicationArgs;
+
+    private LoadTestSettings(Properties properties, List<String> applicationArgs) {
+        this.properties = properties;
+        this.applicationArgs = applicationArgs;
+    }
+
+    static LoadTestSettings load(String[] args) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream inputStream = LoadTestSettings.class.getResourceAsStream("/loadtest.properties")) {
+            properties.load(inputStream);
+        }
+
+        Properties overrides = new Properties();
+        List<String> applicationArgs = new ArrayList<>();
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith(PREFIX))
+                .forEach(name -> overrides.setProperty(name, System.getProperty(name)));
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (arg.startsWith(ARGUMENT_PREFIX) && separator > 0) {
+                overrides.setProperty(arg.substring(2, separator), arg.substring(separator + 1));
+            }
+            else {
+                applicationArgs.add(arg);
+            }
+        }
+
+        // The workload file sits between the defaults and the overrides of a single run
+        String configFile = overrides.getProperty(CONFIG_FILE);
+        if (configFile != null) {
+            try (InputStream inputStream = Files.newInputStream(Paths.get(configFile))) {
+                properties.load(inputStream);
+            }
+        }
+        properties.putAll(overrides);
+
+        return new LoadTestSettings(properties, applicationArgs);
+    }
+
+    String getString(String name) {
+        String value = properties.getProperty(PREFIX + name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing load test setting " + PREFIX + name);
+        }
+        return value.trim();
+    }
+
+    /**
+     * @return value, or null if the setting is empty
+     */
+    String getOptionalString(String name) {
+        String value = properties.getProperty(PREFIX + name, "").trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    long getLong(String name) {
+        return Long.parseLong(getString(name));
+    }
+
+    int getInt(String name) {
+        return Integer.parseInt(getString(name));
+    }
+
+    double getDouble(String name) {
+        return Double.parseDouble(getString(name));
+    }
+
+    /**
+     * Reads a size in bytes, written as a number with an optional KB, MB or GB suffix in powers of 1024.
+     */
+    long getSize(String name) {
+        return parseSize(getString(name));
+    }
+
+    List<String> getApplicationArgs() {
+        return applicationArgs;
+    }
+
+    /**
+     * Writes the effective settings next to a report, so that two reports can be checked for measuring the same
+     * workload before they are compared.
+     */
+    void store(Path file) throws IOException {
+        Properties loadTestProperties = new Properties();
+        properties.stringPropertyNames().stream()
+                .filter(name -> name.startsWith(PREFIX))
+                .forEach(name -> loadTestProperties.setProperty(name, properties.getProperty(name)));
+
+        try (OutputStream outputStream = Files.newOutputStream(file)) {
+            loadTestProperties.store(outputStream, "Load test settings, with application arguments "
+                    + applicationArgs);
+        }
+    }
+
+    static long parseSize(String size) {
+        String value = size.trim().toUpperCase(Locale.ROOT);
+        long multiplier = 1;
+        if (value.endsWith("GB")) {
+            multiplier = 1024L * 1024 * 1024;
+        }
+        else if (value.endsWith("MB")) {
+            multiplier = 1024L * 1024;
+        }
+        else if (value.endsWith("KB")) {
+            multiplier = 1024L;
+        }
+        if (multiplier > 1) {
+            value = value.substring(0, value.length() - 2).trim();
+        }
+        else if (value.endsWith("B")) {
+            value = value.substring(0, value.length() - 1).trim();
+        }
+        return Long.parseLong(value) * multiplier;
+    }
+
+    /**
+     * Writes a size the way it is usually configured, e.g. 64KB, for labelling reports.
+     */
+    static String formatSize(long size) {
+        if (size >= 1024L * 1024 * 1024 && size % (1024L * 1024 * 1024) == 0) {
+            return size / (1024L * 1024 * 1024) + "GB";
+        }
+        if (size >= 1024L * 1024 && size % (1024L * 1024) == 0) {
+            return size / (1024L * 1024) + "MB";
+        }
+        if (size >= 1024 && size % 1024 == 0) {
+            return size / 1024 + "KB";
+        }
+        return size + "B";
+    }
+}
@@ -0,0 +1,71 @@
+package com.experimentation.filestorage.loadtest;
+
+import org.apache.http.entity.AbstractHttpEntity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * A multipart/form-data body with a single file part, as a browser sends it to the upload endpoint. The file's
+ * content is written out from a shared block of generated bytes as the body is sent, so an upload of any size
+ * takes no memory of its own on the load generator.
+ */
+class MultipartBodyEntity extends AbstractHttpEntity {
+
+    private final byte[] block;
+    private final long size;
+    private final byte[] head;
+    private final byte[] tail;
+
+    /**
+     * @param partName name of the form field
+     * @param fileName original file name, which the application uploads the file as
+     * @param block content repeated to make up the file
+     * @param size length of the file in bytes
+     */
+    MultipartBodyEntity(String partName, String fileName, byte[] block, long size) {
+        String boundary = UUID.randomUUID().toString();
+        this.block = block;
+        this.size = size;
+        this.head = ("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"" + partName + "\"; filename=\"" + fileName + "\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+        this.tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        setContentType("multipart/form-data; boundary=" + boundary);
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return head.length + size + tail.length;
+    }
+
+    @Override
+    public InputStream getContent() {
+        throw new UnsupportedOperationException("The body is only written out as it is sent");
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        outputStream.write(head);
+        for (long written = 0; written < size; ) {
+            int count = (int) Math.min(block.length, size - written);
+            outputStream.write(block, 0, count);
+            written += count;
+        }
+        outputStream.write(tail);
+        outputStream.flush();
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+}
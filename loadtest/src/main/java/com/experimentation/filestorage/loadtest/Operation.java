@@ -0,0 +1,32 @@
+package com.experimentation.filestorage.loadtest;
+
+import java.util.Locale;
+
+/**
+ * Request the workload sends to the application's /api/fileStorage endpoints.
+ */
+enum Operation {
+
+    /**
+     * Downloads one of the objects stored before the load test started
+     */
+    GET,
+
+    /**
+     * Uploads an object of a generated content, replacing a previous upload of the same name
+     */
+    UPLOAD,
+
+    /**
+     * Deletes an object uploaded during the load test
+     */
+    DELETE;
+
+    static Operation parse(String operation) {
+        return valueOf(operation.trim().toUpperCase(Locale.ROOT));
+    }
+
+    String label() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,64 @@
+package com.experimentation.filestorage.loadtest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Picks one of several values at random, each in proportion to its weight. Parsed from a list such as
+ * get:80,upload:15,delete:5, where a value without a weight has weight 1.
+ */
+class WeightedChoice<T> {
+
+    private final List<T> values;
+    private final double[] cumulativeWeights;
+
+    private WeightedChoice(List<T> values, double[] cumulativeWeights) {
+        this.values = values;
+        this.cumulativeWeights = cumulativeWeights;
+    }
+
+    static <T> WeightedChoice<T> parse(String choices, Function<String, T> valueParser) {
+        List<T> values = new ArrayList<>();
+        List<Double> weights = new ArrayList<>();
+
+        for (String choice : choices.split(",")) {
+            if (choice.trim().isEmpty()) {
+                continue;
+            }
+            int separator = choice.lastIndexOf(':');
+            double weight = separator > 0 ? Double.parseDouble(choice.substring(separator + 1).trim()) : 1;
+            if (weight > 0) {
+                values.add(valueParser.apply((separator > 0 ? choice.substring(0, separator) : choice).trim()));
+                weights.add(weight);
+            }
+        }
+        if (values.isEmpty()) {
+            throw new IllegalArgumentException("No choice with a positive weight in " + choices);
+        }
+
+        double[] cumulativeWeights = new double[weights.size()];
+        double total = 0;
+        for (int i = 0; i < weights.size(); i++) {
+            total += weights.get(i);
+            cumulativeWeights[i] = total;
+        }
+        return new WeightedChoice<>(Collections.unmodifiableList(values), cumulativeWeights);
+    }
+
+    T next(Random random) {
+        double point = random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+        for (int i = 0; i < cumulativeWeights.length - 1; i++) {
+            if (point < cumulativeWeights[i]) {
+                return values.get(i);
+            }
+        }
+        return values.get(values.size() - 1);
+    }
+
+    List<T> getValues() {
+        return values;
+    }
+}
@@ -0,0 +1,264 @@
+package com.experimentation.filestorage.loadtest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives the application with an open workload: requests arrive at the configured rate whether or not earlier
+ * requests have been answered, as requests from independent clients do. Each arrival is given a start time from
+ * the arrival process, and its response time is measured from that time, so a request that waits in the backlog
+ * behind slow ones counts the wait against the application instead of silently lowering the rate.
+ * <p>
+ * Gets read the objects stored before the run. Uploads write to a fixed set of file names for each provider and
+ * size, so the stand-ins' memory stays bounded, and deletes remove files that uploads have finished writing. A
+ * file name is used by one request at a time.
+ */
+class WorkloadDriver {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkloadDriver.class);
+
+    // Failures are logged up to this number, so a run against a failing stand-in still shows why requests fail
+    private static final int MAX_LOGGED_ERRORS = 10;
+
+    private final LoadTestSettings settings;
+    private final LoadTestClient client;
+    private final LoadTestReport report;
+    private final WeightedChoice<Operation> operations;
+    private final WeightedChoice<String> providers;
+    private final WeightedChoice<Long> sizes;
+    private final String bucketName;
+    private final int objectsPerSize;
+    private final ConcurrentMap<String, UploadSlots> uploadSlots = new ConcurrentHashMap<>();
+    private final AtomicInteger loggedErrors = new AtomicInteger();
+
+    WorkloadDriver(LoadTestSettings settings, LoadTestClient client, LoadTestReport report) {
+        this.settings = settings;
+        this.client = client;
+        this.report = report;
+        this.operations = WeightedChoice.parse(settings.getString("operations"), Operation::parse);
+        this.providers = getProviders(settings);
+        this.sizes = getSizes(settings);
+        this.bucketName = settings.getString("bucket");
+        this.objectsPerSize = settings.getInt("objects-per-size");
+    }
+
+    static WeightedChoice<String> getProviders(LoadTestSettings settings) {
+        return WeightedChoice.parse(settings.getString("providers"), provider -> provider);
+    }
+
+    static WeightedChoice<Long> getSizes(LoadTestSettings settings) {
+        return WeightedChoice.parse(settings.getString("sizes"), LoadTestSettings::parseSize);
+    }
+
+    /**
+     * @return name of one of the objects stored before the run, which gets read
+     */
+    static String getPreloadedFileName(long size, int index) {
+        return "loadtest-" + LoadTestSettings.formatSize(size) + "-" + index;
+    }
+
+    /**
+     * Sends requests for the warm-up and the measurement, then waits for the requests in flight to finish.
+     */
+    void run() throws InterruptedException {
+        double rate = settings.getDouble("rate");
+        boolean poisson = "poisson".equalsIgnoreCase(settings.getString("arrival"));
+        int concurrency = settings.getInt("concurrency");
+        long reportInterval = settings.getLong("report-interval");
+        String seed = settings.getOptionalString("seed");
+        Random random = seed != null ? new Random(Long.parseLong(seed)) : new Random();
+
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(concurrency, concurrency, 0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(settings.getInt("max-backlog")),
+                new CustomizableThreadFactory("loadtest-worker-"), new ThreadPoolExecutor.AbortPolicy());
+        ScheduledExecutorService reporter =
+                Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("loadtest-report-"));
+
+        long runStart = System.nanoTime();
+        long measurementStart = runStart + TimeUnit.SECONDS.toNanos(settings.getLong("warmup"));
+        long end = measurementStart + TimeUnit.SECONDS.toNanos(settings.getLong("duration"));
+
+        reporter.schedule(report::startMeasurement, measurementStart - runStart, TimeUnit.NANOSECONDS);
+        reporter.scheduleAtFixedRate(() -> report.reportInterval(elapsedSeconds(runStart)),
+                reportInterval, reportInterval, TimeUnit.SECONDS);
+
+        try {
+            for (long intendedStart = runStart; intendedStart < end; ) {
+                parkUntil(intendedStart);
+
+                // Everything the request does is drawn here, so a seeded run sends the same sequence of requests
+                Operation operation = operations.next(random);
+                String provider = providers.next(random);
+                long size = sizes.next(random);
+                int index = random.nextInt(objectsPerSize);
+                boolean measured = intendedStart >= measurementStart;
+                long requestStart = intendedStart;
+
+                try {
+                    workers.execute(() -> send(operation, provider, size, index, requestStart, measured));
+                }
+
+                // The backlog is full; the request is counted instead of being allowed to slow the arrivals down
+                catch (RejectedExecutionException e) {
+                    if (measured) {
+                        report.recordDropped();
+                    }
+                }
+                intendedStart += interArrival(random, rate, poisson);
+            }
+        }
+        finally {
+            workers.shutdown();
+            if (!workers.awaitTermination(settings.getLong("request-timeout"), TimeUnit.SECONDS)) {
+                logger.warn("Requests still in flight after the request timeout are left unanswered");
+                workers.shutdownNow();
+            }
+            reporter.shutdown();
+            reporter.awaitTermination(1, TimeUnit.MINUTES);
+            report.reportInterval(elapsedSeconds(runStart));
+        }
+    }
+
+    private void send(Operation operation, String provider, long size, int index, long intendedStart,
+                      boolean measured) {
+        UploadSlots slots = uploadSlots.computeIfAbsent(provider + "/" + size, key -> new UploadSlots(size));
+        String fileName;
+        switch (operation) {
+            case UPLOAD:
+                fileName = slots.acquireForUpload();
+                break;
+            case DELETE:
+                fileName = slots.stored.poll();
+                break;
+            default:
+                fileName = getPreloadedFileName(size, index);
+        }
+
+        // Every upload slot is in use, or no upload has finished yet for a delete to remove
+        if (fileName == null) {
+            if (measured) {
+                report.recordSkipped();
+            }
+            return;
+        }
+
+        long serviceStart = System.nanoTime();
+        boolean success = false;
+        long transferredBytes = 0;
+
+        try {
+            switch (operation) {
+                case UPLOAD:
+                    transferredBytes = client.upload(provider, bucketName, fileName, size);
+                    break;
+                case DELETE:
+                    client.delete(provider, bucketName, fileName);
+                    break;
+                default:
+                    transferredBytes = client.get(provider, bucketName, fileName);
+                    if (transferredBytes != size) {
+                        throw new IOException("GET " + fileName + " returned " + transferredBytes + " of " + size
+                                + " bytes");
+                    }
+            }
+            success = true;
+        }
+
+        // The application answered with an error, or the request failed or timed out
+        catch (IOException e) {
+            if (loggedErrors.incrementAndGet() <= MAX_LOGGED_ERRORS) {
+                logger.warn(operation.label() + " of " + provider + " file " + fileName + " failed: " + e);
+            }
+        }
+        finally {
+            slots.release(operation, fileName, success);
+        }
+
+        long completed = System.nanoTime();
+        if (!measured) {
+            report.recordWarmup(success);
+        }
+        else if (success) {
+            report.getRecorder(operation, provider, size)
+                    .recordSuccess(completed - intendedStart, completed - serviceStart, transferredBytes);
+        }
+        else {
+            report.getRecorder(operation, provider, size).recordError();
+        }
+    }
+
+    /**
+     * @return time to the next arrival in nanoseconds: exponentially distributed for a Poisson process, or fixed
+     */
+    private static long interArrival(Random random, double rate, boolean poisson) {
+        double seconds = poisson ? -Math.log(1 - random.nextDouble()) / rate : 1 / rate;
+        return Math.max(1, (long) (seconds * TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    /**
+     * Waits until the given time, or returns at once if it has passed, so arrivals that fell behind catch up.
+     */
+    private static void parkUntil(long nanoTime) throws InterruptedException {
+        long remaining;
+        while ((remaining = nanoTime - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    private static long elapsedSeconds(long runStart) {
+        return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - runStart);
+    }
+
+    /**
+     * File names that uploads write and deletes remove, for one provider and size. A name is taken from a queue
+     * for the time of a request and returned to the queue of its object's state afterwards.
+     */
+    private class UploadSlots {
+
+        private final Queue<String> free = new ConcurrentLinkedQueue<>();
+        private final Queue<String> stored = new ConcurrentLinkedQueue<>();
+
+        UploadSlots(long size) {
+            for (int i = 0; i < objectsPerSize; i++) {
+                free.add("upload-" + LoadTestSettings.formatSize(size) + "-" + i);
+            }
+        }
+
+        /**
+         * @return name of a file that is not stored, or else of one that is to be replaced, or null if all are in
+         *         use
+         */
+        String acquireForUpload() {
+            String fileName = free.poll();
+            return fileName != null ? fileName : stored.poll();
+        }
+
+        void release(Operation operation, String fileName, boolean success) {
+            if (operation == Operation.UPLOAD) {
+                (success ? stored : free).add(fileName);
+            }
+            else if (operation == Operation.DELETE) {
+                (success ? free : stored).add(fileName);
+            }
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package com.experimentation.filestorage.loadtest.standin;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Answers the GCS JSON API as the Google Cloud client library calls it for the GCP provider: metadata lookups,
+ * plain and ranged media downloads, resumable uploads and deletes. Listings, batches and composition are not
+ * supported.
+ */
+public class GCSStandInServer extends StandInServer {
+
+    private static final String JSON_CONTENT_TYPE = "application/json; charset=UTF-8";
+    private static final String DOWNLOAD_PATH = "/download";
+    private static final String OBJECTS_PATH = "/storage/v1/b/";
+    private static final String UPLOAD_PATH = "/upload/storage/v1/b/";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, ResumableUpload> resumableUploads = new ConcurrentHashMap<>();
+
+    public GCSStandInServer(StandInBehavior behavior) throws IOException {
+        super("gcs-stand-in-", behavior);
+    }
+
+    @Override
+    public void putObject(String bucketName, String fileName, byte[] content, String contentType) {
+        store(bucketName, fileName, content, contentType, null);
+    }
+
+    @Override
+    protected void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        String method = exchange.getRequestMethod();
+
+        if (path.startsWith(UPLOAD_PATH)) {
+            if ("POST".equals(method) && "resumable".equals(query.get("uploadType"))) {
+                startResumableUpload(exchange, bucketNameOf(path.substring(UPLOAD_PATH.length())));
+            }
+            else if ("PUT".equals(method) && query.containsKey("upload_id")) {
+                writeResumableUpload(exchange, query.get("upload_id"));
+            }
+            else {
+                sendError(exchange, 501, "notImplemented", "Only resumable uploads are supported by the stand-in.");
+            }
+            return;
+        }
+
+        if (path.startsWith(DOWNLOAD_PATH + OBJECTS_PATH)) {
+            path = path.substring(DOWNLOAD_PATH.length());
+        }
+        String objectPath = path.startsWith(OBJECTS_PATH) ? path.substring(OBJECTS_PATH.length()) : "";
+        int separator = objectPath.indexOf("/o/");
+        if (separator <= 0 || separator + "/o/".length() == objectPath.length()) {
+            sendError(exchange, 501, "notImplemented", "Bucket operations are not supported by the stand-in.");
+            return;
+        }
+
+        String bucketName = objectPath.substring(0, separator);
+        String fileName = objectPath.substring(separator + "/o/".length());
+
+        switch (method) {
+            case "GET":
+                getObject(exchange, bucketName, fileName, query);
+                break;
+            case "DELETE":
+                deleteObject(exchange, bucketName, fileName, query);
+                break;
+            default:
+                sendError(exchange, 405, "methodNotAllowed", "The method is not allowed against this resource.");
+        }
+    }
+
+    @Override
+    protected void sendUnavailable(HttpExchange exchange) throws IOException {
+        sendError(exchange, 503, "backendError", "We encountered an internal error. Please try again.");
+    }
+
+    private void getObject(HttpExchange exchange, String bucketName, String fileName, Map<String, String> query)
+            throws IOException {
+        StoredObject storedObject = getObject(bucketName, fileName);
+        if (storedObject == null || !matchesGeneration(query.get("generation"), storedObject)) {
+            sendError(exchange, 404, "notFound", "No such object: " + bucketName + "/" + fileName);
+            return;
+        }
+        if (!matchesGeneration(query.get("ifGenerationMatch"), storedObject)) {
+            sendError(exchange, 412, "conditionNotMet", "Precondition Failed");
+            return;
+        }
+
+        if (!"media".equals(query.get("alt"))) {
+            sendText(exchange, 200, JSON_CONTENT_TYPE,
+                    objectMapper.writeValueAsString(toResource(bucketName, fileName, storedObject)));
+            return;
+        }
+
+        // The client checks that every chunk it reads comes from the same object by its ETag
+        byte[] content = storedObject.getContent();
+        exchange.getResponseHeaders().set("ETag", "\"" + storedObject.getETag() + "\"");
+        exchange.getResponseHeaders().set("x-goog-generation", String.valueOf(storedObject.getGeneration()));
+
+        long[] range = parseRange(exchange.getRequestHeaders().getFirst("Range"), content.length);
+        if (range == null) {
+            exchange.getResponseHeaders().set("Content-Type", storedObject.getContentType());
+            sendContent(exchange, 200, content, 0, content.length);
+        }
+        else if (range.length == 0) {
+            sendError(exchange, 416, "requestedRangeNotSatisfiable", "The requested range cannot be satisfied.");
+        }
+        else {
+            exchange.getResponseHeaders().set("Content-Type", storedObject.getContentType());
+            exchange.getResponseHeaders().set("Content-Range",
+                    "bytes " + range[0] + "-" + range[1] + "/" + content.length);
+            sendContent(exchange, 206, content, (int) range[0], (int) (range[1] - range[0] + 1));
+        }
+    }
+
+    private void deleteObject(HttpExchange exchange, String bucketName, String fileName, Map<String, String> query)
+            throws IOException {
+        StoredObject storedObject = getObject(bucketName, fileName);
+        if (storedObject == null || !matchesGeneration(query.get("generation"), storedObject)) {
+            sendError(exchange, 404, "notFound", "No such object: " + bucketName + "/" + fileName);
+            return;
+        }
+
+        removeObject(bucketName, fileName);
+        sendHeaders(exchange, 204, -1);
+    }
+
+    private void startResumableUpload(HttpExchange exchange, String bucketName) throws IOException {
+        JsonNode resource = objectMapper.readTree(readBody(exchange));
+        String fileName = resource.path("name").asText(null);
+        if (bucketName == null || fileName == null) {
+            sendError(exchange, 400, "required", "Required object name and bucket.");
+            return;
+        }
+
+        String uploadId = UUID.randomUUID().toString();
+        resumableUploads.put(uploadId,
+                new ResumableUpload(bucketName, fileName, resource.path("contentType").asText(null)));
+
+        exchange.getResponseHeaders().set("Location", getEndpoint() + UPLOAD_PATH + bucketName
+                + "/o?uploadType=resumable&upload_id=" + uploadId);
+        sendHeaders(exchange, 200, -1);
+    }
+
+    /**
+     * Appends a chunk to the upload session. A chunk that starts before the end of the content received so far
+     * replaces it from that position, as when the client resumes a session. The object is stored once the
+     * content reaches the total length, which the client announces with the last chunk.
+     */
+    private void writeResumableUpload(HttpExchange exchange, String uploadId) throws IOException {
+        byte[] chunk = readBody(exchange);
+        ResumableUpload resumableUpload = resumableUploads.get(uploadId);
+        if (resumableUpload == null) {
+            sendError(exchange, 404, "notFound", "No such upload session.");
+            return;
+        }
+
+        long[] contentRange = parseContentRange(exchange.getRequestHeaders().getFirst("Content-Range"));
+        if (contentRange == null) {
+            sendError(exchange, 400, "invalid", "Invalid Content-Range header.");
+            return;
+        }
+
+        StoredObject storedObject = null;
+        synchronized (resumableUpload) {
+            long first = contentRange[0];
+            if (first > resumableUpload.length) {
+                sendError(exchange, 400, "invalid", "The chunk does not continue the content uploaded so far.");
+                return;
+            }
+            if (first >= 0) {
+                resumableUpload.write((int) first, chunk);
+            }
+
+            long total = contentRange[1];
+            if (total >= 0 && resumableUpload.length >= total) {
+                resumableUploads.remove(uploadId);
+                storedObject = store(resumableUpload.bucketName, resumableUpload.fileName,
+                        Arrays.copyOf(resumableUpload.content, (int) total), resumableUpload.contentType, null);
+            }
+            else if (resumableUpload.length > 0) {
+                exchange.getResponseHeaders().set("Range", "bytes=0-" + (resumableUpload.length - 1));
+            }
+        }
+
+        if (storedObject == null) {
+            sendHeaders(exchange, 308, -1);
+            return;
+        }
+        sendText(exchange, 200, JSON_CONTENT_TYPE, objectMapper.writeValueAsString(
+                toResource(resumableUpload.bucketName, resumableUpload.fileName, storedObject)));
+    }
+
+    private ObjectNode toResource(String bucketName, String fileName, StoredObject storedObject) {
+        String updated = Instant.ofEpochMilli(storedObject.getLastModified()).toString();
+
+        ObjectNode resource = objectMapper.createObjectNode();
+        resource.put("kind", "storage#object");
+        resource.put("id", bucketName + "/" + fileName + "/" + storedObject.getGeneration());
+        resource.put("name", fileName);
+        resource.put("bucket", bucketName);
+        resource.put("generation", String.valueOf(storedObject.getGeneration()));
+        resource.put("metageneration", "1");
+        resource.put("contentType", storedObject.getContentType());
+        resource.put("size", String.valueOf(storedObject.getContent().length));
+        resource.put("etag", storedObject.getETag());
+        resource.put("timeCreated", updated);
+        resource.put("updated", updated);
+        return resource;
+    }
+
+    private void sendError(HttpExchange exchange, int status, String reason, String message) throws IOException {
+        ObjectNode error = objectMapper.createObjectNode();
+        error.put("code", status);
+        error.put("message", message);
+        ArrayNode errors = error.putArray("errors");
+        errors.addObject().put("domain", "global").put("reason", reason).put("message", message);
+
+        ObjectNode response = objectMapper.createObjectNode();
+        response.set("error", error);
+        sendText(exchange, status, JSON_CONTENT_TYPE, objectMapper.writeValueAsString(response));
+    }
+
+    private static boolean matchesGeneration(String generation, StoredObject storedObject) {
+        return generation == null || generation.equals(String.valueOf(storedObject.getGeneration()));
+    }
+
+    /**
+     * @return bucket name from an upload path of the form {bucket}/o, or null if there is none
+     */
+    private static String bucketNameOf(String uploadPath) {
+        int separator = uploadPath.indexOf('/');
+        String bucketName = separator >= 0 ? uploadPath.substring(0, separator) : uploadPath;
+        return bucketName.isEmpty() ? null : bucketName;
+    }
+
+    /**
+     * Reads the Content-Range header of an upload chunk: bytes first-last/total, with * for a total that is not
+     * known yet or in place of the positions of an empty chunk.
+     *
+     * @return first byte position, or -1 for an empty chunk, and total length, or -1 if unknown; or null if the
+     *         header cannot be read
+     */
+    private static long[] parseContentRange(String contentRange) {
+        if (contentRange == null || !contentRange.startsWith("bytes ")) {
+            return null;
+        }
+
+        String value = contentRange.substring("bytes ".length()).trim();
+        int separator = value.indexOf('/');
+        if (separator < 0) {
+            return null;
+        }
+
+        try {
+            String positions = value.substring(0, separator);
+            String total = value.substring(separator + 1);
+            long first = positions.equals("*") ? -1 : Long.parseLong(positions.substring(0, positions.indexOf('-')));
+            return new long[] {first, total.equals("*") ? -1 : Long.parseLong(total)};
+        }
+
+        // Not a range the client library sends
+        catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    private static class ResumableUpload {
+
+        private final String bucketName;
+        private final String fileName;
+        private final String contentType;
+        private byte[] content = new byte[0];
+        private int length;
+
+        ResumableUpload(String bucketName, String fileName, String contentType) {
+            this.bucketName = bucketName;
+            this.fileName = fileName;
+            this.contentType = contentType;
+        }
+
+        void write(int position, byte[] chunk) {
+            int end = position + chunk.length;
+            if (end > content.length) {
+                content = Arrays.copyOf(content, Math.max(end, content.length * 2));
+            }
+            System.arraycopy(chunk, 0, content, position, chunk.length);
+            length = end;
+        }
+    }
+}
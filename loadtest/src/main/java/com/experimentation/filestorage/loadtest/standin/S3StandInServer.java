@@ -0,0 +1,279 @@
+package com.experimentation.filestorage.loadtest.standin;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.util.HtmlUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Answers the S3 REST API with path-style addressing, as the AWS SDK calls it for the S3 provider: plain and
+ * ranged gets with preconditions, metadata lookups, plain and multipart puts, and deletes. ETags are the MD5
+ * digests the SDK checks uploads and downloads against. Bucket operations such as listings are not supported.
+ */
+public class S3StandInServer extends StandInServer {
+
+    private static final String XML_CONTENT_TYPE = "application/xml";
+    private static final Pattern PART_NUMBER = Pattern.compile("<PartNumber>\\s*(\\d+)\\s*</PartNumber>");
+
+    private final Map<String, MultipartUpload> multipartUploads = new ConcurrentHashMap<>();
+
+    public S3StandInServer(StandInBehavior behavior) throws IOException {
+        super("s3-stand-in-", behavior);
+    }
+
+    @Override
+    public void putObject(String bucketName, String fileName, byte[] content, String contentType) {
+        store(bucketName, fileName, content, contentType, DigestUtils.md5DigestAsHex(content));
+    }
+
+    @Override
+    protected void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        int separator = path.indexOf('/', 1);
+        if (separator < 0 || separator == path.length() - 1) {
+            sendError(exchange, 501, "NotImplemented", "Bucket operations are not supported by the stand-in.");
+            return;
+        }
+
+        String bucketName = path.substring(1, separator);
+        String key = path.substring(separator + 1);
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        String uploadId = query.get("uploadId");
+
+        switch (exchange.getRequestMethod()) {
+            case "GET":
+                getObject(exchange, bucketName, key, true);
+                break;
+            case "HEAD":
+                getObject(exchange, bucketName, key, false);
+                break;
+            case "PUT":
+                if (uploadId != null) {
+                    uploadPart(exchange, uploadId, Integer.parseInt(query.get("partNumber")));
+                }
+                else {
+                    putObject(exchange, bucketName, key);
+                }
+                break;
+            case "POST":
+                if (query.containsKey("uploads")) {
+                    initiateMultipartUpload(exchange, bucketName, key);
+                }
+                else if (uploadId != null) {
+                    completeMultipartUpload(exchange, bucketName, key, uploadId);
+                }
+                else {
+                    sendError(exchange, 501, "NotImplemented", "The operation is not supported by the stand-in.");
+                }
+                break;
+            case "DELETE":
+                if (uploadId != null) {
+                    multipartUploads.remove(uploadId);
+                }
+                else {
+                    removeObject(bucketName, key);
+                }
+                sendHeaders(exchange, 204, -1);
+                break;
+            default:
+                sendError(exchange, 405, "MethodNotAllowed", "The method is not allowed against this resource.");
+        }
+    }
+
+    @Override
+    protected void sendUnavailable(HttpExchange exchange) throws IOException {
+        sendError(exchange, 503, "SlowDown", "Please reduce your request rate.");
+    }
+
+    private void getObject(HttpExchange exchange, String bucketName, String key, boolean withContent)
+            throws IOException {
+        StoredObject storedObject = getObject(bucketName, key);
+        if (storedObject == null) {
+            if (withContent) {
+                sendError(exchange, 404, "NoSuchKey", "The specified key does not exist.");
+            }
+            else {
+                sendHeaders(exchange, 404, -1);
+            }
+            return;
+        }
+
+        Headers responseHeaders = exchange.getResponseHeaders();
+        responseHeaders.set("ETag", "\"" + storedObject.getETag() + "\"");
+        responseHeaders.set("Last-Modified", formatHttpDate(storedObject.getLastModified()));
+        responseHeaders.set("Accept-Ranges", "bytes");
+
+        int preconditionStatus = getPreconditionStatus(exchange.getRequestHeaders(), storedObject);
+        if (preconditionStatus != 0) {
+            sendHeaders(exchange, preconditionStatus, -1);
+            return;
+        }
+
+        byte[] content = storedObject.getContent();
+        responseHeaders.set("Content-Type", storedObject.getContentType());
+        if (!withContent) {
+            sendHeaders(exchange, 200, content.length);
+            return;
+        }
+
+        long[] range = parseRange(exchange.getRequestHeaders().getFirst("Range"), content.length);
+        if (range == null) {
+            sendContent(exchange, 200, content, 0, content.length);
+        }
+        else if (range.length == 0) {
+            responseHeaders.remove("Content-Type");
+            sendError(exchange, 416, "InvalidRange", "The requested range is not satisfiable");
+        }
+        else {
+            responseHeaders.set("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + content.length);
+            sendContent(exchange, 206, content, (int) range[0], (int) (range[1] - range[0] + 1));
+        }
+    }
+
+    /**
+     * Checks the request's preconditions the way S3 does.
+     *
+     * @return 412 or 304 if the content is not to be sent, or 0 if it is
+     */
+    private int getPreconditionStatus(Headers requestHeaders, StoredObject storedObject) {
+        String ifMatch = requestHeaders.getFirst("If-Match");
+        if (ifMatch != null && !matchesETag(ifMatch, storedObject.getETag())) {
+            return 412;
+        }
+        long ifUnmodifiedSince = parseHttpDate(requestHeaders.getFirst("If-Unmodified-Since"));
+        if (ifMatch == null && ifUnmodifiedSince >= 0 && storedObject.getLastModified() > ifUnmodifiedSince) {
+            return 412;
+        }
+
+        String ifNoneMatch = requestHeaders.getFirst("If-None-Match");
+        if (ifNoneMatch != null) {
+            return matchesETag(ifNoneMatch, storedObject.getETag()) ? 304 : 0;
+        }
+        long ifModifiedSince = parseHttpDate(requestHeaders.getFirst("If-Modified-Since"));
+        return ifModifiedSince >= 0 && storedObject.getLastModified() <= ifModifiedSince ? 304 : 0;
+    }
+
+    private boolean matchesETag(String entityTags, String eTag) {
+        for (String entityTag : entityTags.split(",")) {
+            String opaqueTag = entityTag.trim().replace("\"", "");
+            if (opaqueTag.equals("*") || opaqueTag.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void putObject(HttpExchange exchange, String bucketName, String key) throws IOException {
+        byte[] content = readBody(exchange);
+        StoredObject storedObject = store(bucketName, key, content,
+                exchange.getRequestHeaders().getFirst("Content-Type"), DigestUtils.md5DigestAsHex(content));
+
+        exchange.getResponseHeaders().set("ETag", "\"" + storedObject.getETag() + "\"");
+        sendHeaders(exchange, 200, -1);
+    }
+
+    private void initiateMultipartUpload(HttpExchange exchange, String bucketName, String key) throws IOException {
+        readBody(exchange);
+        String uploadId = UUID.randomUUID().toString();
+        multipartUploads.put(uploadId, new MultipartUpload(exchange.getRequestHeaders().getFirst("Content-Type")));
+
+        sendText(exchange, 200, XML_CONTENT_TYPE, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<InitiateMultipartUploadResult>"
+                + "<Bucket>" + HtmlUtils.htmlEscape(bucketName) + "</Bucket>"
+                + "<Key>" + HtmlUtils.htmlEscape(key) + "</Key>"
+                + "<UploadId>" + uploadId + "</UploadId>"
+                + "</InitiateMultipartUploadResult>");
+    }
+
+    private void uploadPart(HttpExchange exchange, String uploadId, int partNumber) throws IOException {
+        byte[] content = readBody(exchange);
+        MultipartUpload multipartUpload = multipartUploads.get(uploadId);
+        if (multipartUpload == null) {
+            sendError(exchange, 404, "NoSuchUpload", "The specified upload does not exist.");
+            return;
+        }
+
+        multipartUpload.parts.put(partNumber, content);
+        exchange.getResponseHeaders().set("ETag", "\"" + DigestUtils.md5DigestAsHex(content) + "\"");
+        sendHeaders(exchange, 200, -1);
+    }
+
+    /**
+     * Joins the listed parts into the object. Its ETag is the MD5 digest of the parts' digests followed by the
+     * number of parts, as S3 makes it.
+     */
+    private void completeMultipartUpload(HttpExchange exchange, String bucketName, String key, String uploadId)
+            throws IOException {
+        String request = new String(readBody(exchange), StandardCharsets.UTF_8);
+        MultipartUpload multipartUpload = multipartUploads.remove(uploadId);
+        if (multipartUpload == null) {
+            sendError(exchange, 404, "NoSuchUpload", "The specified upload does not exist.");
+            return;
+        }
+
+        List<byte[]> parts = new ArrayList<>();
+        Matcher matcher = PART_NUMBER.matcher(request);
+        while (matcher.find()) {
+            byte[] part = multipartUpload.parts.get(Integer.parseInt(matcher.group(1)));
+            if (part == null) {
+                sendError(exchange, 400, "InvalidPart", "One or more of the specified parts could not be found.");
+                return;
+            }
+            parts.add(part);
+        }
+
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        ByteArrayOutputStream digests = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            content.write(part);
+            digests.write(DigestUtils.md5Digest(part));
+        }
+        String eTag = DigestUtils.md5DigestAsHex(digests.toByteArray()) + "-" + parts.size();
+        store(bucketName, key, content.toByteArray(), multipartUpload.contentType, eTag);
+
+        sendText(exchange, 200, XML_CONTENT_TYPE, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<CompleteMultipartUploadResult>"
+                + "<Location>" + HtmlUtils.htmlEscape(getEndpoint() + "/" + bucketName + "/" + key) + "</Location>"
+                + "<Bucket>" + HtmlUtils.htmlEscape(bucketName) + "</Bucket>"
+                + "<Key>" + HtmlUtils.htmlEscape(key) + "</Key>"
+                + "<ETag>&quot;" + eTag + "&quot;</ETag>"
+                + "</CompleteMultipartUploadResult>");
+    }
+
+    private void sendError(HttpExchange exchange, int status, String code, String message) throws IOException {
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            sendHeaders(exchange, status, -1);
+            return;
+        }
+
+        sendText(exchange, status, XML_CONTENT_TYPE, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<Error>"
+                + "<Code>" + code + "</Code>"
+                + "<Message>" + HtmlUtils.htmlEscape(message) + "</Message>"
+                + "<RequestId>stand-in</RequestId>"
+                + "</Error>");
+    }
+
+    private static class MultipartUpload {
+
+        private final String contentType;
+        private final SortedMap<Integer, byte[]> parts = new ConcurrentSkipListMap<>();
+
+        MultipartUpload(String contentType) {
+            this.contentType = contentType;
+        }
+    }
+}
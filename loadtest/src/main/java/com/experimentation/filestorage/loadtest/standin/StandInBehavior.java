@@ -0,0 +1,91 @@
+package com.experimentation.filestorage.loadtest.standin;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How a stand-in server imitates a remote provider: each request waits for the latency plus a random share of the
+ * jitter before it is answered, a share of the requests fail with 503 Service Unavailable, and each transfer's
+ * content moves at no more than the bandwidth.
+ */
+public class StandInBehavior {
+
+    private final long latencyMillis;
+    private final long latencyJitterMillis;
+    private final long bandwidth;
+    private final double errorRate;
+
+    /**
+     * @param latencyMillis time before every response
+     * @param latencyJitterMillis largest random time added to the latency
+     * @param bandwidth bytes per second of each transfer, or 0 for no limit
+     * @param errorRate share of the requests that fail, from 0 to 1
+     */
+    public StandInBehavior(long latencyMillis, long latencyJitterMillis, long bandwidth, double errorRate) {
+        this.latencyMillis = latencyMillis;
+        this.latencyJitterMillis = latencyJitterMillis;
+        this.bandwidth = bandwidth;
+        this.errorRate = errorRate;
+    }
+
+    void awaitLatency() throws InterruptedIOException {
+        long delayMillis = latencyMillis
+                + (latencyJitterMillis > 0 ? ThreadLocalRandom.current().nextLong(latencyJitterMillis + 1) : 0);
+        if (delayMillis > 0) {
+            sleep(TimeUnit.MILLISECONDS.toNanos(delayMillis));
+        }
+    }
+
+    boolean shouldFail() {
+        return errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate;
+    }
+
+    /**
+     * Starts pacing one transfer.
+     * @return throttle
+     */
+    Throttle newThrottle() {
+        return new Throttle(bandwidth);
+    }
+
+    private static void sleep(long nanos) throws InterruptedIOException {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        }
+
+        // The server is shutting down
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        }
+    }
+
+    /**
+     * Keeps a transfer at the bandwidth, by sleeping whenever it has moved more bytes than the bandwidth allows
+     * for the time since it started.
+     */
+    static class Throttle {
+
+        private final long bandwidth;
+        private final long startedAt = System.nanoTime();
+        private long transferred;
+
+        private Throttle(long bandwidth) {
+            this.bandwidth = bandwidth;
+        }
+
+        void acquire(int count) throws InterruptedIOException {
+            if (bandwidth <= 0) {
+                return;
+            }
+
+            transferred += count;
+            long dueAt = startedAt + (long) (transferred * (1_000_000_000d / bandwidth));
+            long waitNanos = dueAt - System.nanoTime();
+            if (waitNanos > 0) {
+                sleep(waitNanos);
+            }
+        }
+    }
+}
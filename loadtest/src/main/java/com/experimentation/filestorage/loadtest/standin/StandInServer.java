@@ -0,0 +1,301 @@
+package com.experimentation.filestorage.loadtest.standin;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-process HTTP server that answers a storage provider's API the way the provider's client library calls it,
+ * from objects held in memory. Each request is answered on a thread of its own, as a remote provider answers
+ * requests concurrently, after the latency of its behavior; errors are injected before a request is processed, so
+ * a failed request never changes an object.
+ */
+public abstract class StandInServer implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(StandInServer.class);
+
+    // Content is sent and received in chunks of this size, each paced by the bandwidth
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    private static final int BACKLOG = 1024;
+
+    private final StandInBehavior behavior;
+    private final HttpServer httpServer;
+    private final ExecutorService executorService;
+    private final Map<String, StoredObject> objects = new ConcurrentHashMap<>();
+    private final AtomicLong generations = new AtomicLong();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong injectedErrorCount = new AtomicLong();
+
+    protected StandInServer(String threadNamePrefix, StandInBehavior behavior) throws IOException {
+        this.behavior = behavior;
+        this.executorService = Executors.newCachedThreadPool(new CustomizableThreadFactory(threadNamePrefix));
+        this.httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), BACKLOG);
+        httpServer.setExecutor(executorService);
+        httpServer.createContext("/", this::handleExchange);
+        httpServer.start();
+    }
+
+    /**
+     * @return base URL of the server, without a trailing slash
+     */
+    public String getEndpoint() {
+        return "http://" + httpServer.getAddress().getAddress().getHostAddress() + ":"
+                + httpServer.getAddress().getPort();
+    }
+
+    /**
+     * Stores an object directly, as if it had been uploaded before the load test started.
+     *
+     * @param bucketName
+     * @param fileName
+     * @param content
+     * @param contentType
+     */
+    public abstract void putObject(String bucketName, String fileName, byte[] content, String contentType);
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public long getInjectedErrorCount() {
+        return injectedErrorCount.get();
+    }
+
+    @Override
+    public void close() {
+        httpServer.stop(0);
+        executorService.shutdownNow();
+    }
+
+    /**
+     * Answers a request that the behavior did not fail.
+     */
+    protected abstract void handle(HttpExchange exchange) throws IOException;
+
+    /**
+     * Answers a request with the provider's 503 Service Unavailable error.
+     */
+    protected abstract void sendUnavailable(HttpExchange exchange) throws IOException;
+
+    protected StoredObject store(String bucketName, String fileName, byte[] content, String contentType,
+                                 String eTag) {
+        long generation = generations.incrementAndGet();
+        long lastModified = System.currentTimeMillis() / 1000 * 1000;
+        StoredObject storedObject = new StoredObject(content, contentType,
+                eTag != null ? eTag : Long.toHexString(generation), generation, lastModified);
+        objects.put(bucketName + "/" + fileName, storedObject);
+        return storedObject;
+    }
+
+    /**
+     * @return object, or null if there is none
+     */
+    protected StoredObject getObject(String bucketName, String fileName) {
+        return objects.get(bucketName + "/" + fileName);
+    }
+
+    /**
+     * @return object that was removed, or null if there was none
+     */
+    protected StoredObject removeObject(String bucketName, String fileName) {
+        return objects.remove(bucketName + "/" + fileName);
+    }
+
+    /**
+     * Reads the whole request body at the pace of the bandwidth.
+     */
+    protected byte[] readBody(HttpExchange exchange) throws IOException {
+        StandInBehavior.Throttle throttle = behavior.newThrottle();
+        String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+        byte[] body = new byte[contentLength != null ? Integer.parseInt(contentLength) : CHUNK_SIZE];
+        int length = 0;
+
+        try (InputStream inputStream = exchange.getRequestBody()) {
+            while (true) {
+                // A body longer than announced, or of unknown length, grows the buffer only if there is more to read
+                if (length == body.length) {
+                    int next = inputStream.read();
+                    if (next < 0) {
+                        break;
+                    }
+                    body = Arrays.copyOf(body, Math.max(CHUNK_SIZE, body.length * 2));
+                    body[length++] = (byte) next;
+                }
+
+                int count = inputStream.read(body, length, Math.min(CHUNK_SIZE, body.length - length));
+                if (count < 0) {
+                    break;
+                }
+                throttle.acquire(count);
+                length += count;
+            }
+        }
+        return length == body.length ? body : Arrays.copyOf(body, length);
+    }
+
+    /**
+     * Sends part of the content as the response body, at the pace of the bandwidth.
+     */
+    protected void sendContent(HttpExchange exchange, int status, byte[] content, int offset, int length)
+            throws IOException {
+        exchange.sendResponseHeaders(status, length > 0 ? length : -1);
+        StandInBehavior.Throttle throttle = behavior.newThrottle();
+
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            for (int position = 0; position < length; position += CHUNK_SIZE) {
+                int count = Math.min(CHUNK_SIZE, length - position);
+                throttle.acquire(count);
+                outputStream.write(content, offset + position, count);
+            }
+        }
+    }
+
+    protected void sendText(HttpExchange exchange, int status, String contentType, String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        sendContent(exchange, status, body, 0, body.length);
+    }
+
+    /**
+     * Answers without a body. A HEAD response still announces the length of the body a GET would have.
+     */
+    protected void sendHeaders(HttpExchange exchange, int status, long contentLength) throws IOException {
+        if (contentLength >= 0) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(contentLength));
+        }
+        exchange.sendResponseHeaders(status, -1);
+    }
+
+    /**
+     * Resolves a single byte range against the content's length.
+     *
+     * @param range value of the Range header, or null
+     * @param length
+     * @return first and last byte position, null to send the whole content, or an empty array if the range lies
+     *         beyond the content
+     */
+    protected static long[] parseRange(String range, long length) {
+        if (range == null || !range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+            return null;
+        }
+
+        String[] positions = range.substring("bytes=".length()).trim().split("-", -1);
+        try {
+            long first;
+            long last;
+            if (positions[0].isEmpty()) {
+                first = Math.max(0, length - Long.parseLong(positions[1]));
+                last = length - 1;
+            }
+            else {
+                first = Long.parseLong(positions[0]);
+                last = positions[1].isEmpty() ? length - 1 : Math.min(Long.parseLong(positions[1]), length - 1);
+            }
+            return first < length && first <= last ? new long[] {first, last} : new long[0];
+        }
+
+        // Not a byte range the client libraries send
+        catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    protected static Map<String, String> parseQuery(String rawQuery) throws UnsupportedEncodingException {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+
+        for (String parameter : rawQuery.split("&")) {
+            int separator = parameter.indexOf('=');
+            String name = separator >= 0 ? parameter.substring(0, separator) : parameter;
+            String value = separator >= 0 ? parameter.substring(separator + 1) : "";
+            query.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+        }
+        return query;
+    }
+
+    protected static String formatHttpDate(long epochMillis) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                ZonedDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC));
+    }
+
+    /**
+     * @return time in epoch milliseconds, or -1 if the date is missing or cannot be read
+     */
+    protected static long parseHttpDate(String date) {
+        if (date == null) {
+            return -1;
+        }
+
+        try {
+            return ZonedDateTime.parse(date, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        }
+
+        // A date the client libraries do not send is ignored, as HTTP requires
+        catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    private void handleExchange(HttpExchange exchange) {
+        requestCount.incrementAndGet();
+
+        try {
+            behavior.awaitLatency();
+            if (behavior.shouldFail()) {
+                injectedErrorCount.incrementAndGet();
+                readBody(exchange);
+                sendUnavailable(exchange);
+            }
+            else {
+                handle(exchange);
+            }
+        }
+
+        // The client closed the connection, or the server is shutting down
+        catch (IOException e) {
+            logger.debug("Request " + exchange.getRequestURI() + " was not answered: " + e.getMessage());
+        }
+
+        // A request the stand-in does not understand; the client sees a server error
+        catch (RuntimeException e) {
+            logger.warn("Request " + exchange.getRequestURI() + " failed", e);
+            try {
+                sendText(exchange, 500, "text/plain", String.valueOf(e.getMessage()));
+            }
+
+            // The response was already started
+            catch (IOException | RuntimeException sendFailure) {
+                logger.debug("Unable to send error response: " + sendFailure.getMessage());
+            }
+        }
+        finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.experimentation.filestorage.loadtest.standin;
+
+/**
+ * An object held by a stand-in server. The content is never modified once stored, so objects of the same size can
+ * share it.
+ */
+class StoredObject {
+
+    private final byte[] content;
+    private final String contentType;
+    private final String eTag;
+    private final long generation;
+    private final long lastModified;
+
+    StoredObject(byte[] content, String contentType, String eTag, long generation, long lastModified) {
+        this.content = content;
+        this.contentType = contentType;
+        this.eTag = eTag;
+        this.generation = generation;
+        this.lastModified = lastModified;
+    }
+
+    byte[] getContent() {
+        return content;
+    }
+
+    String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Entity tag, without quotes.
+     * @return eTag
+     */
+    String getETag() {
+        return eTag;
+    }
+
+    long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Time in epoch milliseconds the object was stored, truncated to seconds as HTTP dates are.
+     * @return lastModified
+     */
+    long getLastModified() {
+        return lastModified;
+    }
+}
@@ -3,11 +3,73 @@ package com.experimentation.filestorage.bucket;
 import com.experimentation.filestorage.bucket.util.BucketStorageServiceException;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.Iterator;
+import java.util.List;
+
 public interface BucketStorage {
 
-    BucketStorageDTO getFile(String bucketName, String fileName) throws BucketStorageServiceException;
+    default BucketStorageDTO getFile(String bucketName, String fileName) throws BucketStorageServiceException {
+        return getFile(bucketName, fileName, BucketStorageReadOptions.none());
+    }
+
+    BucketStorageDTO getFile(String bucketName, String fileName, BucketStorageReadOptions readOptions)
+            throws BucketStorageServiceException;
+
+    /**
+     * Looks up a file's metadata without reading its content.
+     *
+     * @param bucketName
+     * @param fileName
+     * @return metadata
+     * @throws BucketStorageServiceException, as a BucketStorageFileNotFoundException if there is no such file
+     */
+    BucketStorageMetadata getFileMetadata(String bucketName, String fileName) throws BucketStorageServiceException;
+
+    /**
+     * Lists the names of the files whose name starts with the prefix. Further pages are fetched from the provider
+     * as the iterator is advanced, so the listing is never held in memory as a whole.
+     *
+     * @param bucketName
+     * @param prefix
+     * @return fileNames, in the provider's lexicographic order
+     * @throws BucketStorageServiceException if a page could not be listed, also while iterating
+     */
+    Iterator<String> listFileNames(String bucketName, String prefix) throws BucketStorageServiceException;
+
+    /**
+     * Lists one page of files, with the names sharing a prefix up to the delimiter rolled up into directories.
+     *
+     * @param bucketName
+     * @param listOptions
+     * @return listing, in the provider's lexicographic order
+     * @throws BucketStorageServiceException if the page could not be listed
+     */
+    BucketStorageListing listFiles(String bucketName, BucketStorageListOptions listOptions)
+            throws BucketStorageServiceException;
 
     void uploadMultipartFile(String bucketName, String fileName, MultipartFile file) throws BucketStorageServiceException;
 
     void deleteFile(String bucketName, String fileName) throws BucketStorageServiceException;
+
+    /**
+     * Deletes the files in groups, several of which are sent to the provider at the same time.
+     *
+     * @param bucketName
+     * @param fileNames
+     * @return result for each file, in the given order
+     * @throws BucketStorageServiceException
+     */
+    List<BucketStorageDeleteResult> deleteFiles(String bucketName, List<String> fileNames)
+            throws BucketStorageServiceException;
+
+    /**
+     * Deletes every file whose name starts with the prefix. The files are deleted in groups as they are listed.
+     *
+     * @param bucketName
+     * @param prefix
+     * @return result for each file that was found
+     * @throws BucketStorageServiceException if the files could not be listed
+     */
+    List<BucketStorageDeleteResult> deleteFilesWithPrefix(String bucketName, String prefix)
+            throws BucketStorageServiceException;
 }
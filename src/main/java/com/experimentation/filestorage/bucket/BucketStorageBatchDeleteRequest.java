@@ -0,0 +1,36 @@
+package com.experimentation.filestorage.bucket;
+
+import java.util.List;
+
+/**
+ * Body of a batch delete. Either the file names to delete or the prefix of the files to delete is given.
+ */
+public class BucketStorageBatchDeleteRequest {
+
+    private List<String> fileNames;
+    private String prefix;
+
+    public BucketStorageBatchDeleteRequest() {
+    }
+
+    public BucketStorageBatchDeleteRequest(List<String> fileNames, String prefix) {
+        this.fileNames = fileNames;
+        this.prefix = prefix;
+    }
+
+    public List<String> getFileNames() {
+        return fileNames;
+    }
+
+    public void setFileNames(List<String> fileNames) {
+        this.fileNames = fileNames;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public void setPrefix(String prefix) {
+        this.prefix = prefix;
+    }
+}
@@ -1,47 +1,417 @@
 package com.experimentation.filestorage.bucket;
 
+import com.experimentation.filestorage.bucket.archive.BucketStorageZipWriter;
+import com.experimentation.filestorage.bucket.index.BucketStorageMetadataIndex;
+import com.experimentation.filestorage.bucket.index.BucketStorageMetadataIndexQuery;
+import com.experimentation.filestorage.bucket.upload.BucketStorageBulkUploader;
+import com.experimentation.filestorage.bucket.upload.BucketStorageUploadJob;
+import com.experimentation.filestorage.bucket.upload.BucketStorageUploadManager;
+import com.experimentation.filestorage.bucket.util.BucketStorageExceptionUtil;
+import com.experimentation.filestorage.bucket.util.BucketStorageFileNotFoundException;
+import com.experimentation.filestorage.bucket.util.BucketStorageHeaderUtil;
+import com.experimentation.filestorage.bucket.util.BucketStorageIndexNotFoundException;
+import com.experimentation.filestorage.bucket.util.BucketStorageIndexUnavailableException;
+import com.experimentation.filestorage.bucket.util.BucketStorageRangeNotSatisfiableException;
 import com.experimentation.filestorage.bucket.util.BucketStorageServiceException;
+import com.experimentation.filestorage.bucket.util.BucketStorageStreamUtil;
+import com.experimentation.filestorage.bucket.util.BucketStorageUnavailableException;
+import com.experimentation.filestorage.bucket.util.BucketStorageUploadRejectedException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/fileStorage")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class BucketStorageController {
 
     private final BucketStorageService bucketStorageService;
+    private final BucketStorageUploadManager bucketStorageUploadManager;
+    private final BucketStorageBulkUploader bucketStorageBulkUploader;
+    private final BucketStorageZipWriter bucketStorageZipWriter;
+    private final BucketStorageMetadataIndex bucketStorageMetadataIndex;
+    private final ObjectMapper objectMapper;
+    private final int streamingBufferSize;
+    private final int maxRanges;
 
     private static final Logger logger = LoggerFactory.getLogger(BucketStorageController.class);
 
+    private static final String BYTES_RANGE_UNIT = "bytes";
+    private static final String UPLOADS_PATH = "/api/fileStorage/uploads";
+    private static final String WEAK_ENTITY_TAG_PREFIX = "W/";
+    private static final MediaType ZIP_MEDIA_TYPE = MediaType.parseMediaType("application/zip");
+    private static final MediaType NDJSON_MEDIA_TYPE = MediaType.parseMediaType("application/x-ndjson");
+
+    // Request attributes through which Tomcat's NIO connector offers and performs sendfile
+    private static final String SENDFILE_SUPPORTED_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+
     @Autowired
-    public BucketStorageController(BucketStorageService bucketStorageService) {
+    public BucketStorageController(BucketStorageService bucketStorageService,
+                                   BucketStorageUploadManager bucketStorageUploadManager,
+                                   BucketStorageBulkUploader bucketStorageBulkUploader,
+                                   BucketStorageZipWriter bucketStorageZipWriter,
+                                   BucketStorageMetadataIndex bucketStorageMetadataIndex,
+                                   ObjectMapper objectMapper,
+                                   @Value("${filestorage.streaming.buffer-size:8192}") int streamingBufferSize,
+                                   @Value("${filestorage.streaming.max-ranges:16}") int maxRanges) {
         this.bucketStorageService = bucketStorageService;
+        this.bucketStorageUploadManager = bucketStorageUploadManager;
+        this.bucketStorageBulkUploader = bucketStorageBulkUploader;
+        this.bucketStorageZipWriter = bucketStorageZipWriter;
+        this.bucketStorageMetadataIndex = bucketStorageMetadataIndex;
+        this.objectMapper = objectMapper;
+        this.streamingBufferSize = streamingBufferSize;
+        this.maxRanges = maxRanges;
     }
 
     @GetMapping("storageProvider/{storageProvider}/storageLocation/{storageLocation}/fileName/{fileName}")
-    public ResponseEntity<?> getFile(@PathVariable("storageProvider") String storageProvider,
-                                     @PathVariable("storageLocation") String bucketName,
-                                     @PathVariable String fileName) {
-        ResponseEntity responseEntity;
+    public ResponseEntity<StreamingResponseBody> getFile(
+            @PathVariable("storageProvider") String storageProvider,
+            @PathVariable("storageLocation") String bucketName,
+            @PathVariable String fileName,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String rangeHeader,
+            HttpServletRequest request) {
+        ResponseEntity<StreamingResponseBody> responseEntity;
 
         try {
             BucketStorageType bucketStorageType = BucketStorageType.valueOf(storageProvider);
-            BucketStorageDTO bucketStorageDTO = bucketStorageService.doGetFile(bucketName, fileName, bucketStorageType);
+            List<BucketStorageRange> ranges = BucketStorageRange.parseRanges(rangeHeader);
+            String ifMatch = null;
 
-            // Setup response to have the object/file as an attachment
-            responseEntity = ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(bucketStorageDTO.getContentType()))
-                    .header(HttpHeaders.CONTENT_DISPOSITION,
-                            "attachment; filename=\"" + bucketStorageDTO.getFileName() + "\"")
-                    .body(bucketStorageDTO.getData());
+            // Several ranges are resolved against the file's current length up front, and every part is then read
+            // from the version the length was looked up for
+            if (ranges.size() > 1) {
+                BucketStorageMetadata metadata =
+                        bucketStorageService.doGetFileMetadata(bucketName, fileName, bucketStorageType);
+                ranges = resolveRanges(ranges, rangeHeader, metadata.getContentLength());
+                ifMatch = metadata.getETag();
+            }
+
+            // Only the first range is read up front; any others are read while the response is being written
+            BucketStorageReadOptions readOptions =
+                    newReadOptions(ranges.isEmpty() ? null : ranges.get(0), ifMatch, request);
+            BucketStorageDTO bucketStorageDTO =
+                    bucketStorageService.doGetFile(bucketName, fileName, readOptions, bucketStorageType);
+
+            if (bucketStorageDTO.isNotModified()) {
+                responseEntity = buildNotModifiedResponse(bucketStorageDTO);
+            }
+            else if (ranges.size() > 1) {
+                responseEntity = buildMultipleRangesResponse(
+                        bucketStorageDTO, ranges, bucketName, fileName, bucketStorageType);
+            }
+            else {
+                responseEntity = buildFileResponse(bucketStorageDTO, request);
+            }
+        }
+
+        // Requested range does not overlap the file
+        catch (BucketStorageRangeNotSatisfiableException e) {
+            logger.error(e.getMessage());
+            responseEntity = buildRangeNotSatisfiableResponse(e);
+        }
+
+        // The storage provider is too busy, or failing, to take the request
+        catch (BucketStorageUnavailableException e) {
+            logger.error(e.getMessage());
+            responseEntity = buildMessageResponse(newUnavailableResponse(e), e.getMessage());
         }
 
         // Unable to retrieve file
+        catch (BucketStorageServiceException e) {
+            logger.error(e.getMessage());
+            responseEntity = buildMessageResponse(ResponseEntity.status(500), e.getMessage());
+        }
+
+        // BucketStorageType could not be identified from the storageProvider value
+        catch (IllegalArgumentException e) {
+            logger.error(e.getMessage());
+            responseEntity = buildMessageResponse(
+                    ResponseEntity.status(500), "Invalid storage provider identifier provided.");
+        }
+
+        return responseEntity;
+    }
+
+    @GetMapping("storageProvider/{storageProvider}/storageLocation/{storageLocation}/zip")
+    public ResponseEntity<StreamingResponseBody> getFilesAsZip(
+            @PathVariable("storageProvider") String storageProvider,
+            @PathVariable("storageLocation") String bucketName,
+            @RequestParam(value = "fileName", required = false) List<String> fileNames,
+            @RequestParam(value = "prefix", required = false) String prefix) {
+
+        // Exactly one of the two is given, and an empty prefix would archive the whole bucket
+        if ((fileNames == null) == (prefix == null) || (prefix != null && prefix.isEmpty())) {
+            return buildMessageResponse(
+                    ResponseEntity.badRequest(), "Either fileName or a non-empty prefix must be provided.");
+        }
+
+        ResponseEntity<StreamingResponseBody> responseEntity;
+
+        try {
+            BucketStorageType bucketStorageType = BucketStorageType.valueOf(storageProvider);
+
+            // Names under the prefix are listed page by page while the archive is written
+            Iterator<String> archivedFileNames = fileNames != null
+                    ? new LinkedHashSet<>(fileNames).iterator()
+                    : bucketStorageService.doListFileNames(bucketName, prefix, bucketStorageType);
+
+            responseEntity = ResponseEntity.ok()
+                    .contentType(ZIP_MEDIA_TYPE)
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + bucketName + ".zip\"")
+                    .body(outputStream -> bucketStorageZipWriter.write(
+                            bucketName, archivedFileNames, bucketStorageType, outputStream));
+        }
+
+        // The storage provider is too busy, or failing, to take the request
+        catch (BucketStorageUnavailableException e) {
+            logger.error(e.getMessage());
+            responseEntity = buildMessageResponse(newUnavailableResponse(e), e.getMessage());
+        }
+
+        // Unable to list files
+        catch (BucketStorageServiceException e) {
+            logger.error(e.getMessage());
+            responseEntity = buildMessageResponse(ResponseEntity.status(500), e.getMessage());
+        }
+
+        // BucketStorageType could not be identified from the storageProvider value
+        catch (IllegalArgumentException e) {
+            logger.error(e.getMessage());
+            responseEntity = buildMessageResponse(
+                    ResponseEntity.status(500), "Invalid storage provider identifier provided.");
+        }
+
+        return responseEntity;
+    }
+
+    @GetMapping("storageProvider/{storageProvider}/storageLocation/{storageLocation}/files")
+    public ResponseEntity<StreamingResponseBody> listFiles(
+            @PathVariable("storageProvider") String storageProvider,
+            @PathVariable("storageLocation") String bucketName,
+            @RequestParam(value = "prefix", required = false) String prefix,
+            @RequestParam(value = "delimiter", required = false) String delimiter,
+            @RequestParam(value = "pageSize", defaultValue = "1000") int pageSize,
+            @RequestParam(value = "pageToken", required = false) String pageToken,
+            @RequestParam(value = "maxPages", required = false) Integer maxPages) {
+
+        // GCS can only roll names up into directories at slashes, so neither provider accepts another delimiter
+        if (delimiter != null && !delimiter.equals(BucketStorageListOptions.DIRECTORY_DELIMITER)) {
+            return buildMessageResponse(ResponseEntity.badRequest(), "Only / is supported as the delimiter.");
+        }
+        if (pageSize < 1 || pageSize > BucketStorageListOptions.MAX_PAGE_SIZE
+                || (maxPages != null && maxPages < 1)) {
+            return buildMessageResponse(ResponseEntity.badRequest(),
+                    "pageSize must be between 1 and " + BucketStorageListOptions.MAX_PAGE_SIZE
+                            + " and maxPages must be positive.");
+        }
+
+        ResponseEntity<StreamingResponseBody> responseEntity;
+
+        try {
+            BucketStorageType bucketStorageType = BucketStorageType.valueOf(storageProvider);
+            BucketStorageListOptions listOptions = new BucketStorageListOptions(prefix, delimiter, pageSize, pageToken);
+
+            // The first page is listed up front, so that a failure can still be answered with an error status
+            BucketStorageListing firstPage =
+                    bucketStorageService.doListFiles(bucketName, listOptions, bucketStorageType);
+
+            responseEntity = ResponseEntity.ok()
+                    .contentType(NDJSON_MEDIA_TYPE)
+                    .body(outputStream -> streamListing(
+                            outputStream, firstPage, bucketName, listOptions, maxPages, bucketStorageType));
+        }
+
+        // The storage provider is too busy, or failing, to take the request
+        catch (BucketStorageUnavailableException e) {
+            logger.error(e.getMessage());
+            responseEntity = buildMessageResponse(newUnavailableResponse(e), e.getMessage());
+        }
+
+        // Unable to list files
+        catch (BucketStorageServiceException e) {
+            logger.error(e.getMessage());
+            responseEntity = buildMessageResponse(ResponseEntity.status(500), e.getMessage());
+        }
+
+        // BucketStorageType could not be identified from the storageProvider value
+        catch (IllegalArgumentException e) {
+            logger.error(e.getMessage());
+            responseEntity = buildMessageResponse(
+                    ResponseEntity.status(500), "Invalid storage provider identifier provided.");
+        }
+
+        return responseEntity;
+    }
+
+    @GetMapping("storageProvider/{storageProvider}/storageLocation/{storageLocation}/index")
+    public ResponseEntity<StreamingResponseBody> queryIndex(
+            @PathVariable("storageProvider") String storageProvider,
+            @PathVariable("storageLocation") String bucketName,
+            @RequestParam(value = "prefix", required = false) String prefix,
+            @RequestParam(value = "startAfter", required = false) String startAfter,
+            @RequestParam(value = "minSize", defaultValue = "0") long minSize,
+            @RequestParam(value = "maxSize", defaultValue = "9223372036854775807") long maxSize,
+            @RequestParam(value = "modifiedSince", required = false) Instant modifiedSince,
+            @RequestParam(value = "modifiedBefore", required = false) Instant modifiedBefore,
+            @RequestParam(value = "limit", defaultValue = "1000") int limit) {
+
+        if (limit < 1 || minSize < 0 || maxSize < minSize) {
+            return buildMessageResponse(ResponseEntity.badRequest(),
+                    "limit must be positive and minSize must be between 0 and maxSize.");
+        }
+
+        ResponseEntity<StreamingResponseBody> responseEntity;
+
+        try {
+            BucketStorageType bucketStorageType = BucketStorageType.valueOf(storageProvider);
+            BucketStorageMetadataIndexQuery query = new BucketStorageMetadataIndexQuery(prefix, startAfter,
+                    minSize, maxSize,
+                    modifiedSince != null ? modifiedSince.toEpochMilli() : Long.MIN_VALUE,
+                    modifiedBefore != null ? modifiedBefore.toEpochMilli() : Long.MAX_VALUE,
+                    limit);
+            Iterator<BucketStorageListingEntry> entries =
+                    bucketStorageMetadataIndex.query(bucketStorageType, bucketName, query);
+
+            responseEntity = ResponseEntity.ok()
+                    .contentType(NDJSON_MEDIA_TYPE)
+                    .body(outputStream -> {
+                        while (entries.hasNext()) {
+                            writeJsonLine(outputStream, entries.next());
+                        }
+                        outputStream.flush();
+                    });
+        }
+
+        // The bucket is neither configured to be indexed nor has had a file uploaded through this service
+        catch (BucketStorageIndexNotFoundException e) {
+            logger.info(e.getMessage());
+            responseEntity = buildMessageResponse(ResponseEntity.status(HttpStatus.NOT_FOUND), e.getMessage());
+        }
+
+        // The index is disabled or the bucket has not been scanned yet
+        catch (BucketStorageIndexUnavailableException e) {
+            logger.info(e.getMessage());
+            responseEntity = buildMessageResponse(
+                    ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE), e.getMessage());
+        }
+
+        // Unable to open the index
+        catch (BucketStorageServiceException e) {
+            logger.error(e.getMessage());
+            responseEntity = buildMessageResponse(ResponseEntity.status(500), e.getMessage());
+        }
+
+        // BucketStorageType could not be identified from the storageProvider value
+        catch (IllegalArgumentException e) {
+            logger.error(e.getMessage());
+            responseEntity = buildMessageResponse(
+                    ResponseEntity.status(500), "Invalid storage provider identifier provided.");
+        }
+
+        return responseEntity;
+    }
+
+    @RequestMapping(method = RequestMethod.HEAD,
+            value = "storageProvider/{storageProvider}/storageLocation/{storageLocation}/fileName/{fileName}")
+    public ResponseEntity<?> headFile(@PathVariable("storageProvider") String storageProvider,
+                                      @PathVariable("storageLocation") String bucketName,
+                                      @PathVariable String fileName) {
+
+        ResponseEntity responseEntity;
+
+        try {
+            BucketStorageType bucketStorageType = BucketStorageType.valueOf(storageProvider);
+            BucketStorageMetadata metadata =
+                    bucketStorageService.doGetFileMetadata(bucketName, fileName, bucketStorageType);
+            responseEntity = buildMetadataHeadersResponse(metadata);
+        }
+
+        // File does not exist
+        catch (BucketStorageFileNotFoundException e) {
+            logger.info(e.getMessage());
+            responseEntity = ResponseEntity.notFound().build();
+        }
+
+        // The storage provider is too busy, or failing, to take the request
+        catch (BucketStorageUnavailableException e) {
+            logger.error(e.getMessage());
+            responseEntity = newUnavailableResponse(e).build();
+        }
+
+        // Unable to retrieve file metadata
+        catch (BucketStorageServiceException e) {
+            logger.error(e.getMessage());
+            responseEntity = ResponseEntity.status(500).build();
+        }
+
+        // BucketStorageType could not be identified from the storageProvider value
+        catch (IllegalArgumentException e) {
+            logger.error(e.getMessage());
+            responseEntity = ResponseEntity.status(500).build();
+        }
+
+        return responseEntity;
+    }
+
+    @GetMapping("storageProvider/{storageProvider}/storageLocation/{storageLocation}/fileName/{fileName}/metadata")
+    public ResponseEntity<?> getFileMetadata(@PathVariable("storageProvider") String storageProvider,
+                                             @PathVariable("storageLocation") String bucketName,
+                                             @PathVariable String fileName) {
+
+        ResponseEntity responseEntity;
+
+        try {
+            BucketStorageType bucketStorageType = BucketStorageType.valueOf(storageProvider);
+            responseEntity = ResponseEntity.ok(
+                    bucketStorageService.doGetFileMetadata(bucketName, fileName, bucketStorageType));
+        }
+
+        // File does not exist
+        catch (BucketStorageFileNotFoundException e) {
+            logger.info(e.getMessage());
+            responseEntity = ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        }
+
+        // The storage provider is too busy, or failing, to take the request
+        catch (BucketStorageUnavailableException e) {
+            logger.error(e.getMessage());
+            responseEntity = newUnavailableResponse(e).body(e.getMessage());
+        }
+
+        // Unable to retrieve file metadata
         catch (BucketStorageServiceException e) {
             logger.error(e.getMessage());
             responseEntity = ResponseEntity.status(500).body(e.getMessage());
@@ -59,14 +429,38 @@ public class BucketStorageController {
     @PostMapping("storageProvider/{storageProvider}/storageLocation/{storageLocation}")
     public ResponseEntity<?> uploadFile(@PathVariable("storageProvider") String storageProvider,
                                         @PathVariable("storageLocation") String bucketName,
-                                        @RequestPart(value = "file") MultipartFile multipartFile) {
+                                        @RequestPart(value = "file") MultipartFile multipartFile,
+                                        @RequestParam(value = "async", defaultValue = "false") boolean async) {
 
         ResponseEntity responseEntity;
         try {
             String fileName = multipartFile.getOriginalFilename();
             BucketStorageType bucketStorageType = BucketStorageType.valueOf(storageProvider);
-            bucketStorageService.doUploadMultipartFile(bucketName, fileName, multipartFile, bucketStorageType);
-            responseEntity = ResponseEntity.ok().build();
+
+            // The transfer to the provider continues in the background; the client polls the job for the result
+            if (async) {
+                BucketStorageUploadJob job =
+                        bucketStorageUploadManager.submit(bucketName, fileName, multipartFile, bucketStorageType);
+                responseEntity = ResponseEntity.accepted()
+                        .location(URI.create(UPLOADS_PATH + "/" + job.getUploadId()))
+                        .body(job);
+            }
+            else {
+                bucketStorageService.doUploadMultipartFile(bucketName, fileName, multipartFile, bucketStorageType);
+                responseEntity = ResponseEntity.ok().build();
+            }
+        }
+
+        // Too many uploads are already waiting to be transferred
+        catch (BucketStorageUploadRejectedException e) {
+            logger.error(e.getMessage());
+            responseEntity = ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        }
+
+        // The storage provider is too busy, or failing, to take the request
+        catch (BucketStorageUnavailableException e) {
+            logger.error(e.getMessage());
+            responseEntity = newUnavailableResponse(e).body(e.getMessage());
         }
 
         // Unable to upload file
@@ -84,6 +478,47 @@ public class BucketStorageController {
         return responseEntity;
     }
 
+    @PostMapping("storageProvider/{storageProvider}/storageLocation/{storageLocation}/bulk")
+    public ResponseEntity<?> uploadFiles(@PathVariable("storageProvider") String storageProvider,
+                                         @PathVariable("storageLocation") String bucketName,
+                                         @RequestPart(value = "file") List<MultipartFile> multipartFiles) {
+
+        ResponseEntity responseEntity;
+
+        try {
+            BucketStorageType bucketStorageType = BucketStorageType.valueOf(storageProvider);
+            List<BucketStorageUploadResult> results =
+                    bucketStorageBulkUploader.upload(bucketName, multipartFiles, bucketStorageType);
+            responseEntity = ResponseEntity.ok(results);
+        }
+
+        // Unable to wait for the uploads
+        catch (BucketStorageServiceException e) {
+            logger.error(e.getMessage());
+            responseEntity = ResponseEntity.status(500).body(e.getMessage());
+        }
+
+        // BucketStorageType could not be identified from the storageProvider value
+        catch (IllegalArgumentException e) {
+            logger.error(e.getMessage());
+            responseEntity = ResponseEntity.status(500).body("Invalid storage provider identifier provided.");
+        }
+
+        return responseEntity;
+    }
+
+    @GetMapping("uploads/{uploadId}")
+    public ResponseEntity<?> getUploadStatus(@PathVariable String uploadId) {
+        BucketStorageUploadJob job = bucketStorageUploadManager.getJob(uploadId);
+
+        // Upload ID is unknown or its job has expired
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("No upload found with ID " + uploadId);
+        }
+
+        return ResponseEntity.ok(job);
+    }
+
     @DeleteMapping("storageProvider/{storageProvider}/storageLocation/{storageLocation}/fileName/{fileName}")
     public ResponseEntity<?> deleteFile(@PathVariable("storageProvider") String storageProvider,
                                         @PathVariable("storageLocation") String bucketName,
@@ -97,6 +532,12 @@ public class BucketStorageController {
             responseEntity = ResponseEntity.ok().build();
         }
 
+        // The storage provider is too busy, or failing, to take the request
+        catch (BucketStorageUnavailableException e) {
+            logger.error(e.getMessage());
+            responseEntity = newUnavailableResponse(e).body(e.getMessage());
+        }
+
         // Unable to delete file
         catch (BucketStorageServiceException e) {
             logger.error(e.getMessage());
@@ -111,4 +552,419 @@ public class BucketStorageController {
 
         return responseEntity;
     }
+
+    @PostMapping("storageProvider/{storageProvider}/storageLocation/{storageLocation}/batchDelete")
+    public ResponseEntity<?> deleteFiles(@PathVariable("storageProvider") String storageProvider,
+                                         @PathVariable("storageLocation") String bucketName,
+                                         @RequestBody BucketStorageBatchDeleteRequest batchDeleteRequest) {
+
+        boolean hasFileNames = batchDeleteRequest.getFileNames() != null;
+        boolean hasPrefix = batchDeleteRequest.getPrefix() != null;
+
+        // Exactly one of the two is given, and an empty prefix would delete the whole bucket
+        if (hasFileNames == hasPrefix || (hasPrefix && batchDeleteRequest.getPrefix().isEmpty())) {
+            return ResponseEntity.badRequest().body("Either fileNames or a non-empty prefix must be provided.");
+        }
+
+        ResponseEntity responseEntity;
+
+        try {
+            BucketStorageType bucketStorageType = BucketStorageType.valueOf(storageProvider);
+            List<BucketStorageDeleteResult> results = hasFileNames
+                    ? bucketStorageService.doDeleteFiles(
+                            bucketName, batchDeleteRequest.getFileNames(), bucketStorageType)
+                    : bucketStorageService.doDeleteFilesWithPrefix(
+                            bucketName, batchDeleteRequest.getPrefix(), bucketStorageType);
+            responseEntity = ResponseEntity.ok(results);
+        }
+
+        // The storage provider is too busy, or failing, to take the request
+        catch (BucketStorageUnavailableException e) {
+            logger.error(e.getMessage());
+            responseEntity = newUnavailableResponse(e).body(e.getMessage());
+        }
+
+        // Unable to list or delete files
+        catch (BucketStorageServiceException e) {
+            logger.error(e.getMessage());
+            responseEntity = ResponseEntity.status(500).body(e.getMessage());
+        }
+
+        // BucketStorageType could not be identified from the storageProvider value
+        catch (IllegalArgumentException e) {
+            logger.error(e.getMessage());
+            responseEntity = ResponseEntity.status(500).body("Invalid storage provider identifier provided.");
+        }
+
+        return responseEntity;
+    }
+
+    /**
+     * Resolves several requested ranges against the file's length, leaving out the unsatisfiable ones and merging
+     * those that overlap or are adjacent. Beyond maxRanges ranges the Range header is ignored, as HTTP allows, and
+     * the whole file is served.
+     *
+     * @param ranges
+     * @param rangeHeader
+     * @param instanceLength
+     * @return resolved ranges, or an empty list to serve the whole file
+     * @throws BucketStorageRangeNotSatisfiableException if none of the ranges overlap the file
+     */
+    private List<BucketStorageRange> resolveRanges(List<BucketStorageRange> ranges, String rangeHeader,
+                                                   long instanceLength)
+            throws BucketStorageRangeNotSatisfiableException {
+        List<BucketStorageRange> resolvedRanges = BucketStorageRange.resolveAndMerge(ranges, instanceLength);
+
+        if (resolvedRanges.isEmpty()) {
+            throw new BucketStorageRangeNotSatisfiableException(
+                    BucketStorageExceptionUtil.setMessageRangeNotSatisfiable(rangeHeader, instanceLength),
+                    instanceLength
+            );
+        }
+
+        return resolvedRanges.size() <= maxRanges ? resolvedRanges : Collections.emptyList();
+    }
+
+    /**
+     * Creates the read options for a download, carrying the client's If-None-Match and If-Modified-Since
+     * preconditions. Entity tags are compared weakly, so their weak prefix and quotes are removed.
+     *
+     * @param range
+     * @param ifMatch entity tag of the version to read, or null for whichever version is there
+     * @param request
+     * @return readOptions
+     */
+    private BucketStorageReadOptions newReadOptions(BucketStorageRange range, String ifMatch,
+                                                    HttpServletRequest request) {
+        HttpHeaders headers = new ServletServerHttpRequest(request).getHeaders();
+        List<String> ifNoneMatch = new ArrayList<>();
+
+        for (String entityTag : headers.getIfNoneMatch()) {
+            String opaqueTag = entityTag.startsWith(WEAK_ENTITY_TAG_PREFIX)
+                    ? entityTag.substring(WEAK_ENTITY_TAG_PREFIX.length())
+                    : entityTag;
+            ifNoneMatch.add(StringUtils.trimTrailingCharacter(StringUtils.trimLeadingCharacter(opaqueTag, '"'), '"'));
+        }
+
+        return new BucketStorageReadOptions(range, ifNoneMatch, headers.getIfModifiedSince(), ifMatch);
+    }
+
+    /**
+     * Sets up a response with the headers a get file request would have had, but no content.
+     *
+     * @param metadata
+     * @return responseEntity
+     */
+    private ResponseEntity<?> buildMetadataHeadersResponse(BucketStorageMetadata metadata) {
+        ResponseEntity.BodyBuilder bodyBuilder = ResponseEntity.ok()
+                .contentType(getMediaType(metadata.getContentType()))
+                .header(HttpHeaders.ACCEPT_RANGES, BYTES_RANGE_UNIT);
+        addValidators(bodyBuilder, metadata.getETag(), metadata.getLastModified());
+        if (metadata.getContentLength() >= 0) {
+            bodyBuilder.contentLength(metadata.getContentLength());
+        }
+        return bodyBuilder.build();
+    }
+
+    /**
+     * Sets up a 304 Not Modified response, which carries the validators but no content.
+     *
+     * @param bucketStorageDTO
+     * @return responseEntity
+     */
+    private ResponseEntity<StreamingResponseBody> buildNotModifiedResponse(BucketStorageDTO bucketStorageDTO) {
+        ResponseEntity.BodyBuilder bodyBuilder = ResponseEntity.status(HttpStatus.NOT_MODIFIED);
+        addValidators(bodyBuilder, bucketStorageDTO.getETag(), bucketStorageDTO.getLastModified());
+        return bodyBuilder.build();
+    }
+
+    /**
+     * Adds the ETag and Last-Modified headers the client needs to revalidate its copy later.
+     *
+     * @param bodyBuilder
+     * @param eTag entity tag without quotes, or null
+     * @param lastModified time in epoch milliseconds, or -1
+     */
+    private void addValidators(ResponseEntity.BodyBuilder bodyBuilder, String eTag, long lastModified) {
+        if (eTag != null) {
+            bodyBuilder.eTag(eTag);
+        }
+        if (lastModified >= 0) {
+            bodyBuilder.lastModified(lastModified);
+        }
+    }
+
+    /**
+     * Sets up the response to have the object/file as an attachment, streamed straight from the provider.
+     * Ranged content is answered with 206 Partial Content.
+     *
+     * @param bucketStorageDTO
+     * @return responseEntity
+     */
+    private ResponseEntity<StreamingResponseBody> buildFileResponse(BucketStorageDTO bucketStorageDTO,
+                                                                    HttpServletRequest request) {
+        ResponseEntity.BodyBuilder bodyBuilder;
+
+        if (bucketStorageDTO.getRange() != null) {
+            bodyBuilder = ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                    .header(HttpHeaders.CONTENT_RANGE,
+                            bucketStorageDTO.getRange().toContentRange(bucketStorageDTO.getInstanceLength()));
+        }
+        else {
+            bodyBuilder = ResponseEntity.ok();
+        }
+
+        bodyBuilder.contentType(getMediaType(bucketStorageDTO.getContentType()))
+                .header(HttpHeaders.ACCEPT_RANGES, BYTES_RANGE_UNIT)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        BucketStorageHeaderUtil.attachmentContentDisposition(bucketStorageDTO.getFileName()));
+        addValidators(bodyBuilder, bucketStorageDTO.getETag(), bucketStorageDTO.getLastModified());
+        if (bucketStorageDTO.getContentLength() >= 0) {
+            bodyBuilder.contentLength(bucketStorageDTO.getContentLength());
+        }
+
+        // Content held in a local file that is kept in place is handed to the container to send, so it never passes
+        // through the heap
+        if (bucketStorageDTO.getLocalFile() != null && bucketStorageDTO.getContentLength() >= 0
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTRIBUTE))) {
+            return sendLocalFile(bodyBuilder, bucketStorageDTO, request);
+        }
+
+        // Local files that are not kept in place, or that the container cannot send, are copied from the channel
+        // already open on them
+        if (bucketStorageDTO.getLocalFileChannel() != null && bucketStorageDTO.getContentLength() >= 0) {
+            return bodyBuilder.body(transferLocalFile(bucketStorageDTO));
+        }
+
+        return bodyBuilder.body(streamFile(bucketStorageDTO));
+    }
+
+    /**
+     * Asks Tomcat to write the local file with sendfile once the response headers are sent. The DTO is not needed
+     * for that and is closed right away; the file stays in place long enough for the container to open it. The
+     * content is reported as sent once it is handed over, as the container does not tell how much it wrote.
+     *
+     * @param bodyBuilder
+     * @param bucketStorageDTO
+     * @param request
+     * @return responseEntity without a body
+     */
+    private ResponseEntity<StreamingResponseBody> sendLocalFile(ResponseEntity.BodyBuilder bodyBuilder,
+                                                                BucketStorageDTO bucketStorageDTO,
+                                                                HttpServletRequest request) {
+        long start = bucketStorageDTO.getRange() != null ? bucketStorageDTO.getRange().getFirstBytePosition() : 0;
+
+        request.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, bucketStorageDTO.getLocalFile().toAbsolutePath().toString());
+        request.setAttribute(SENDFILE_START_ATTRIBUTE, start);
+        request.setAttribute(SENDFILE_END_ATTRIBUTE, start + bucketStorageDTO.getContentLength());
+        bucketStorageDTO.localFileTransferred(bucketStorageDTO.getContentLength());
+
+        // Closing the local file's channel does not affect the container's own read of the file
+        try {
+            bucketStorageDTO.close();
+        }
+        catch (IOException e) {
+            logger.warn(e.getMessage());
+        }
+
+        return bodyBuilder.build();
+    }
+
+    /**
+     * Creates a response body that copies the content from the local file's open channel to the response, through
+     * the container's output buffer. A file replaced or deleted in the meantime is still read in full, as the channel
+     * stays on the file that was opened.
+     *
+     * @param bucketStorageDTO
+     * @return streamingResponseBody
+     */
+    private StreamingResponseBody transferLocalFile(BucketStorageDTO bucketStorageDTO) {
+        long start = bucketStorageDTO.getRange() != null ? bucketStorageDTO.getRange().getFirstBytePosition() : 0;
+        long end = start + bucketStorageDTO.getContentLength();
+
+        return outputStream -> {
+            long position = start;
+            try (BucketStorageDTO source = bucketStorageDTO) {
+                FileChannel fileChannel = source.getLocalFileChannel();
+                WritableByteChannel target = Channels.newChannel(outputStream);
+                while (position < end) {
+                    long count = fileChannel.transferTo(position, end - position, target);
+                    if (count <= 0) {
+                        throw new EOFException("Local file of " + source.getFileName() + " ended at byte " + position);
+                    }
+                    position += count;
+                }
+            }
+            finally {
+                bucketStorageDTO.localFileTransferred(position - start);
+            }
+        };
+    }
+
+    /**
+     * Sets up a multipart/byteranges response from resolved ranges. The first range has already been read; each
+     * following range is read from the provider only once the previous one has been written, so one connection is
+     * open at a time. Every part is read from the version of the file the first one came from.
+     *
+     * @param firstRangeDTO
+     * @param ranges
+     * @param bucketName
+     * @param fileName
+     * @param bucketStorageType
+     * @return responseEntity
+     */
+    private ResponseEntity<StreamingResponseBody> buildMultipleRangesResponse(BucketStorageDTO firstRangeDTO,
+                                                                              List<BucketStorageRange> ranges,
+                                                                              String bucketName,
+                                                                              String fileName,
+                                                                              BucketStorageType bucketStorageType) {
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        MediaType partMediaType = getMediaType(firstRangeDTO.getContentType());
+        long instanceLength = firstRangeDTO.getInstanceLength();
+
+        StreamingResponseBody streamingResponseBody = outputStream -> {
+            writeRangePart(outputStream, boundary, partMediaType, firstRangeDTO, instanceLength);
+
+            for (BucketStorageRange range : ranges.subList(1, ranges.size())) {
+                try {
+                    BucketStorageReadOptions readOptions =
+                            BucketStorageReadOptions.withRange(range, firstRangeDTO.getETag());
+                    writeRangePart(outputStream, boundary, partMediaType,
+                            bucketStorageService.doGetFile(bucketName, fileName, readOptions, bucketStorageType),
+                            instanceLength);
+                }
+
+                // The file changed or could not be read, and the response is already committed, so the only
+                // option left is to abort it
+                catch (BucketStorageServiceException e) {
+                    throw new IOException(e.getMessage(), e);
+                }
+            }
+
+            writeAscii(outputStream, "\r\n--" + boundary + "--\r\n");
+        };
+
+        ResponseEntity.BodyBuilder bodyBuilder = ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                .contentType(MediaType.parseMediaType("multipart/byteranges; boundary=" + boundary))
+                .header(HttpHeaders.ACCEPT_RANGES, BYTES_RANGE_UNIT);
+        addValidators(bodyBuilder, firstRangeDTO.getETag(), firstRangeDTO.getLastModified());
+        return bodyBuilder.body(streamingResponseBody);
+    }
+
+    private ResponseEntity<StreamingResponseBody> buildRangeNotSatisfiableResponse(
+            BucketStorageRangeNotSatisfiableException e) {
+        ResponseEntity.BodyBuilder bodyBuilder = ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+        if (e.getInstanceLength() >= 0) {
+            bodyBuilder.header(HttpHeaders.CONTENT_RANGE, "bytes */" + e.getInstanceLength());
+        }
+        return buildMessageResponse(bodyBuilder, e.getMessage());
+    }
+
+    /**
+     * Starts a 503 response, telling the client when to try again if that is known.
+     *
+     * @param e
+     * @return bodyBuilder
+     */
+    private ResponseEntity.BodyBuilder newUnavailableResponse(BucketStorageUnavailableException e) {
+        ResponseEntity.BodyBuilder bodyBuilder = ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE);
+        if (e.getRetryAfterSeconds() >= 0) {
+            bodyBuilder.header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+        }
+        return bodyBuilder;
+    }
+
+    /**
+     * Sets up a plain text response for an endpoint that otherwise streams its body. Spring only writes a
+     * StreamingResponseBody when the declared return type says so, so messages are streamed as well.
+     *
+     * @param bodyBuilder
+     * @param message
+     * @return responseEntity
+     */
+    private ResponseEntity<StreamingResponseBody> buildMessageResponse(ResponseEntity.BodyBuilder bodyBuilder,
+                                                                       String message) {
+        byte[] body = String.valueOf(message).getBytes(StandardCharsets.UTF_8);
+        return bodyBuilder.contentType(MediaType.TEXT_PLAIN)
+                .contentLength(body.length)
+                .body(outputStream -> outputStream.write(body));
+    }
+
+    /**
+     * Writes the listing as one JSON object per line, a page at a time, so only one page is held in memory. If the
+     * listing stops after maxPages while more pages remain, a last line holds the token to continue from.
+     *
+     * @param outputStream
+     * @param firstPage
+     * @param bucketName
+     * @param listOptions
+     * @param maxPages most pages to write, or null for all of them
+     * @param bucketStorageType
+     * @throws IOException
+     */
+    private void streamListing(OutputStream outputStream, BucketStorageListing firstPage, String bucketName,
+                               BucketStorageListOptions listOptions, Integer maxPages,
+                               BucketStorageType bucketStorageType) throws IOException {
+        BucketStorageListing page = firstPage;
+        int pagesWritten = 0;
+
+        while (true) {
+            for (BucketStorageListingEntry entry : page.getEntries()) {
+                writeJsonLine(outputStream, entry);
+            }
+            outputStream.flush();
+            pagesWritten++;
+
+            if (page.getNextPageToken() == null) {
+                return;
+            }
+            if (maxPages != null && pagesWritten >= maxPages) {
+                writeJsonLine(outputStream, Collections.singletonMap("nextPageToken", page.getNextPageToken()));
+                return;
+            }
+
+            page = bucketStorageService.doListFiles(
+                    bucketName, listOptions.withPageToken(page.getNextPageToken()), bucketStorageType);
+        }
+    }
+
+    private void writeJsonLine(OutputStream outputStream, Object value) throws IOException {
+        outputStream.write(objectMapper.writeValueAsBytes(value));
+        outputStream.write('\n');
+    }
+
+    private void writeRangePart(OutputStream outputStream, String boundary, MediaType mediaType,
+                                BucketStorageDTO bucketStorageDTO, long instanceLength) throws IOException {
+        writeAscii(outputStream, "\r\n--" + boundary + "\r\n");
+        writeAscii(outputStream, HttpHeaders.CONTENT_TYPE + ": " + mediaType + "\r\n");
+        writeAscii(outputStream, HttpHeaders.CONTENT_RANGE + ": "
+                + bucketStorageDTO.getRange().toContentRange(instanceLength) + "\r\n\r\n");
+
+        try (BucketStorageDTO source = bucketStorageDTO) {
+            BucketStorageStreamUtil.copy(source.getInputStream(), outputStream, streamingBufferSize);
+        }
+    }
+
+    private void writeAscii(OutputStream outputStream, String value) throws IOException {
+        outputStream.write(value.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Creates a response body that copies the file's content to the client through a bounded buffer, closing the
+     * provider stream once the copy finishes or fails.
+     *
+     * @param bucketStorageDTO
+     * @return streamingResponseBody
+     */
+    private StreamingResponseBody streamFile(BucketStorageDTO bucketStorageDTO) {
+        return outputStream -> {
+            try (BucketStorageDTO source = bucketStorageDTO) {
+                BucketStorageStreamUtil.copy(source.getInputStream(), outputStream, streamingBufferSize);
+            }
+        };
+    }
+
+    private MediaType getMediaType(String contentType) {
+        return contentType != null ? MediaType.parseMediaType(contentType) : MediaType.APPLICATION_OCTET_STREAM;
+    }
 }
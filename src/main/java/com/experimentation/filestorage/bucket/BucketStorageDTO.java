@@ -1,17 +1,61 @@
 package com.experimentation.filestorage.bucket;
 
-public class BucketStorageDTO {
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.function.LongConsumer;
+
+public class BucketStorageDTO implements Closeable {
 
     private String fileName;
 
     private String contentType;
 
-    private byte[] data;
+    private long contentLength;
+
+    private InputStream inputStream;
+
+    private BucketStorageRange range;
+
+    private long instanceLength = -1;
+
+    private FileChannel localFileChannel;
+
+    private Path localFile;
+
+    private String eTag;
 
-    public BucketStorageDTO(String fileName, String contentType, byte[] data) {
+    private long lastModified = -1;
+
+    private boolean notModified;
+
+    private Runnable abortAction;
+
+    private LongConsumer localTransferListener;
+
+    public BucketStorageDTO(String fileName, String contentType, long contentLength, InputStream inputStream) {
         this.fileName = fileName;
         this.contentType = contentType;
-        this.data = data;
+        this.contentLength = contentLength;
+        this.inputStream = inputStream;
+    }
+
+    /**
+     * Creates a DTO without content, for a read whose preconditions showed the client's copy is current.
+     *
+     * @param fileName
+     * @param eTag
+     * @param lastModified
+     * @return bucketStorageDTO
+     */
+    public static BucketStorageDTO notModified(String fileName, String eTag, long lastModified) {
+        BucketStorageDTO bucketStorageDTO = new BucketStorageDTO(fileName, null, -1, null);
+        bucketStorageDTO.setETag(eTag);
+        bucketStorageDTO.setLastModified(lastModified);
+        bucketStorageDTO.setNotModified(true);
+        return bucketStorageDTO;
     }
 
     public String getFileName() {
@@ -22,7 +66,173 @@ public class BucketStorageDTO {
         return contentType;
     }
 
-    public byte[] getData() {
-        return data;
+    /**
+     * Length of the content in bytes, or -1 if the provider did not report it.
+     * @return contentLength
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * Stream of the object's content, read directly from the storage provider.
+     * The caller is responsible for closing the DTO once the content has been consumed.
+     * @return inputStream
+     */
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    /**
+     * Replaces the content stream with one that wraps it, so that closing the DTO also releases what the wrapper
+     * holds.
+     * @param inputStream
+     */
+    public void setInputStream(InputStream inputStream) {
+        this.inputStream = inputStream;
+    }
+
+    /**
+     * Resolved byte range the content covers, or null if the content is the whole file.
+     * @return range
+     */
+    public BucketStorageRange getRange() {
+        return range;
+    }
+
+    public void setRange(BucketStorageRange range) {
+        this.range = range;
+    }
+
+    /**
+     * Length of the whole file in bytes, or -1 if not known. Differs from the content length for ranged reads.
+     * @return instanceLength
+     */
+    public long getInstanceLength() {
+        return instanceLength;
+    }
+
+    public void setInstanceLength(long instanceLength) {
+        this.instanceLength = instanceLength;
+    }
+
+    /**
+     * Open channel of the local file holding the whole file's content, when it is served from a local cache or the
+     * local file system. The content starts at the range's first byte position within this file, or at 0 if there is
+     * no range. Reading the channel keeps serving the file that was opened even if it is replaced or deleted since.
+     * @return localFileChannel, or null
+     */
+    public FileChannel getLocalFileChannel() {
+        return localFileChannel;
+    }
+
+    public void setLocalFileChannel(FileChannel localFileChannel) {
+        this.localFileChannel = localFileChannel;
+    }
+
+    /**
+     * Path of the file the local file channel is open on, when that file is never replaced and is kept in place for
+     * a while after the DTO is closed, so that the container may open it again by its path to send it.
+     * @return localFile, or null
+     */
+    public Path getLocalFile() {
+        return localFile;
+    }
+
+    public void setLocalFile(Path localFile) {
+        this.localFile = localFile;
+    }
+
+    /**
+     * Entity tag of the file's content as reported by the provider, without quotes, or null if unknown.
+     * @return eTag
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    public void setETag(String eTag) {
+        this.eTag = eTag;
+    }
+
+    /**
+     * Time in epoch milliseconds the file was last modified, or -1 if unknown.
+     * @return lastModified
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(long lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Whether the read's preconditions showed the client's copy is current, in which case there is no content.
+     * @return notModified
+     */
+    public boolean isNotModified() {
+        return notModified;
+    }
+
+    public void setNotModified(boolean notModified) {
+        this.notModified = notModified;
+    }
+
+    /**
+     * Sets what is told of the content sent straight from the local file, which never passes through the content
+     * stream.
+     * @param localTransferListener
+     */
+    public void setLocalTransferListener(LongConsumer localTransferListener) {
+        this.localTransferListener = localTransferListener;
+    }
+
+    /**
+     * Reports bytes of the content sent straight from the local file instead of read from the content stream.
+     * @param bytes
+     */
+    public void localFileTransferred(long bytes) {
+        if (localTransferListener != null && bytes > 0) {
+            localTransferListener.accept(bytes);
+        }
+    }
+
+    /**
+     * Sets how to drop the provider connection behind the content stream without reading what is left of it.
+     * @param abortAction
+     */
+    public void setAbortAction(Runnable abortAction) {
+        this.abortAction = abortAction;
+    }
+
+    /**
+     * Closes the DTO when its content will not be read, dropping the provider connection instead of draining it where
+     * the provider supports that.
+     * @throws IOException
+     */
+    public void abort() throws IOException {
+        if (abortAction != null) {
+            abortAction.run();
+        }
+        close();
+    }
+
+    /**
+     * Closes the content stream and local file channel, releasing the provider connection or file backing them.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (inputStream != null) {
+                inputStream.close();
+            }
+        }
+        finally {
+            if (localFileChannel != null) {
+                localFileChannel.close();
+            }
+        }
     }
 }
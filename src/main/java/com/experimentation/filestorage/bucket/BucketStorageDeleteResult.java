@@ -0,0 +1,41 @@
+package com.experimentation.filestorage.bucket;
+
+/**
+ * Outcome of deleting one file as part of a batch delete.
+ */
+public class BucketStorageDeleteResult {
+
+    private final String fileName;
+    private final boolean deleted;
+    private final String error;
+
+    private BucketStorageDeleteResult(String fileName, boolean deleted, String error) {
+        this.fileName = fileName;
+        this.deleted = deleted;
+        this.error = error;
+    }
+
+    public static BucketStorageDeleteResult deleted(String fileName) {
+        return new BucketStorageDeleteResult(fileName, true, null);
+    }
+
+    public static BucketStorageDeleteResult failed(String fileName, String error) {
+        return new BucketStorageDeleteResult(fileName, false, error);
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    /**
+     * Why the file could not be deleted, or null if it was.
+     * @return error
+     */
+    public String getError() {
+        return error;
+    }
+}
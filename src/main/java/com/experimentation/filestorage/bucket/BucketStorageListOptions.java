@@ -0,0 +1,58 @@
+package com.experimentation.filestorage.bucket;
+
+/**
+ * Options for listing one page of a bucket's files.
+ */
+public class BucketStorageListOptions {
+
+    // Largest page either provider returns
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    // Only delimiter that both providers support
+    public static final String DIRECTORY_DELIMITER = "/";
+
+    private final String prefix;
+    private final String delimiter;
+    private final int pageSize;
+    private final String pageToken;
+
+    /**
+     * @param prefix only files whose name starts with the prefix are listed, or null for all files
+     * @param delimiter names that contain the delimiter after the prefix are rolled up into one directory entry,
+     *                  or null to list every file
+     * @param pageSize most entries in a page, at most 1000
+     * @param pageToken token of the page to list, as returned with the previous page, or null for the first page
+     */
+    public BucketStorageListOptions(String prefix, String delimiter, int pageSize, String pageToken) {
+        this.prefix = prefix;
+        this.delimiter = delimiter;
+        this.pageSize = pageSize;
+        this.pageToken = pageToken;
+    }
+
+    /**
+     * Options for the page that follows the one listed with these options.
+     *
+     * @param nextPageToken
+     * @return listOptions
+     */
+    public BucketStorageListOptions withPageToken(String nextPageToken) {
+        return new BucketStorageListOptions(prefix, delimiter, pageSize, nextPageToken);
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public String getDelimiter() {
+        return delimiter;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public String getPageToken() {
+        return pageToken;
+    }
+}
@@ -0,0 +1,29 @@
+package com.experimentation.filestorage.bucket;
+
+import java.util.List;
+
+/**
+ * One page of a bucket's files, along with the token of the page that follows it.
+ */
+public class BucketStorageListing {
+
+    private final List<BucketStorageListingEntry> entries;
+    private final String nextPageToken;
+
+    public BucketStorageListing(List<BucketStorageListingEntry> entries, String nextPageToken) {
+        this.entries = entries;
+        this.nextPageToken = nextPageToken;
+    }
+
+    public List<BucketStorageListingEntry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Token of the next page, or null if this is the last page.
+     * @return nextPageToken
+     */
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+}
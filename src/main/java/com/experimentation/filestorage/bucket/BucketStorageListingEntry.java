@@ -0,0 +1,66 @@
+package com.experimentation.filestorage.bucket;
+
+/**
+ * A file in a listing, or a directory that stands for every file sharing its name up to the delimiter.
+ */
+public class BucketStorageListingEntry {
+
+    private final String fileName;
+    private final boolean directory;
+    private final long size;
+    private final String eTag;
+    private final long lastModified;
+
+    private BucketStorageListingEntry(String fileName, boolean directory, long size, String eTag,
+                                      long lastModified) {
+        this.fileName = fileName;
+        this.directory = directory;
+        this.size = size;
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+    }
+
+    public static BucketStorageListingEntry file(String fileName, long size, String eTag, long lastModified) {
+        return new BucketStorageListingEntry(fileName, false, size, eTag, lastModified);
+    }
+
+    public static BucketStorageListingEntry directory(String prefix) {
+        return new BucketStorageListingEntry(prefix, true, -1, null, -1);
+    }
+
+    /**
+     * Name of the file, or for a directory the shared name up to and including the delimiter.
+     * @return fileName
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    public boolean isDirectory() {
+        return directory;
+    }
+
+    /**
+     * Size of the file in bytes, or -1 for a directory or if the provider did not report it.
+     * @return size
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Entity tag of the file's content, without quotes, or null for a directory.
+     * @return eTag
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * Time in epoch milliseconds the file was last modified, or -1 for a directory or if unknown.
+     * @return lastModified
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+}
@@ -0,0 +1,54 @@
+package com.experimentation.filestorage.bucket;
+
+/**
+ * What a storage provider reports about a file, without its content.
+ */
+public class BucketStorageMetadata {
+
+    private final String fileName;
+    private final String contentType;
+    private final long contentLength;
+    private final String eTag;
+    private final long lastModified;
+
+    public BucketStorageMetadata(String fileName, String contentType, long contentLength, String eTag,
+                                 long lastModified) {
+        this.fileName = fileName;
+        this.contentType = contentType;
+        this.contentLength = contentLength;
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Length of the file in bytes, or -1 if the provider did not report it.
+     * @return contentLength
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * Entity tag of the file's content, without quotes, or null if unknown.
+     * @return eTag
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * Time in epoch milliseconds the file was last modified, or -1 if unknown.
+     * @return lastModified
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+}
@@ -0,0 +1,210 @@
+package com.experimentation.filestorage.bucket;
+
+import com.experimentation.filestorage.bucket.util.BucketStorageExceptionUtil;
+import com.experimentation.filestorage.bucket.util.BucketStorageRangeNotSatisfiableException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A single byte range of an object, as requested through an HTTP Range header.
+ * A range is either first-last (last may be open-ended) or a suffix of the last N bytes.
+ */
+public final class BucketStorageRange {
+
+    private static final String BYTES_UNIT = "bytes=";
+
+    private final Long firstBytePosition;
+    private final Long lastBytePosition;
+    private final Long suffixLength;
+
+    private BucketStorageRange(Long firstBytePosition, Long lastBytePosition, Long suffixLength) {
+        this.firstBytePosition = firstBytePosition;
+        this.lastBytePosition = lastBytePosition;
+        this.suffixLength = suffixLength;
+    }
+
+    public static BucketStorageRange ofBytes(long firstBytePosition, long lastBytePosition) {
+        if (firstBytePosition < 0 || lastBytePosition < firstBytePosition) {
+            throw new IllegalArgumentException("Invalid byte range " + firstBytePosition + "-" + lastBytePosition);
+        }
+        return new BucketStorageRange(firstBytePosition, lastBytePosition, null);
+    }
+
+    public static BucketStorageRange fromByte(long firstBytePosition) {
+        if (firstBytePosition < 0) {
+            throw new IllegalArgumentException("Invalid byte range " + firstBytePosition + "-");
+        }
+        return new BucketStorageRange(firstBytePosition, null, null);
+    }
+
+    public static BucketStorageRange lastBytes(long suffixLength) {
+        if (suffixLength < 0) {
+            throw new IllegalArgumentException("Invalid suffix byte range -" + suffixLength);
+        }
+        return new BucketStorageRange(null, null, suffixLength);
+    }
+
+    /**
+     * Parses the value of an HTTP Range header. A missing or malformed header yields an empty list, in which case
+     * the whole object should be served.
+     *
+     * @param rangeHeader
+     * @return ranges in the order they were requested
+     */
+    public static List<BucketStorageRange> parseRanges(String rangeHeader) {
+        if (rangeHeader == null || !rangeHeader.startsWith(BYTES_UNIT)) {
+            return Collections.emptyList();
+        }
+
+        List<BucketStorageRange> ranges = new ArrayList<>();
+
+        try {
+            for (String rangeSpec : rangeHeader.substring(BYTES_UNIT.length()).split(",")) {
+                String trimmedRangeSpec = rangeSpec.trim();
+                int dashIndex = trimmedRangeSpec.indexOf('-');
+
+                if (dashIndex < 0) {
+                    return Collections.emptyList();
+                }
+                else if (dashIndex == 0) {
+                    ranges.add(lastBytes(Long.parseLong(trimmedRangeSpec.substring(1))));
+                }
+                else if (dashIndex == trimmedRangeSpec.length() - 1) {
+                    ranges.add(fromByte(Long.parseLong(trimmedRangeSpec.substring(0, dashIndex))));
+                }
+                else {
+                    ranges.add(ofBytes(Long.parseLong(trimmedRangeSpec.substring(0, dashIndex)),
+                            Long.parseLong(trimmedRangeSpec.substring(dashIndex + 1))));
+                }
+            }
+        }
+
+        // Syntactically invalid ranges are ignored, as if no Range header was sent
+        catch (IllegalArgumentException e) {
+            return Collections.emptyList();
+        }
+
+        return ranges;
+    }
+
+    /**
+     * Resolves the ranges against the full length of an object, leaving out the ones no byte of the object falls
+     * inside, and coalesces ranges that overlap or are adjacent, so that no byte is served twice.
+     *
+     * @param ranges
+     * @param instanceLength
+     * @return resolved ranges in ascending order, or an empty list if none of them can be satisfied
+     */
+    public static List<BucketStorageRange> resolveAndMerge(List<BucketStorageRange> ranges, long instanceLength) {
+        List<BucketStorageRange> resolvedRanges = new ArrayList<>();
+
+        for (BucketStorageRange range : ranges) {
+            try {
+                resolvedRanges.add(range.resolve(instanceLength));
+            }
+
+            // Ranges that do not overlap the object are left out
+            catch (BucketStorageRangeNotSatisfiableException e) {
+                continue;
+            }
+        }
+
+        resolvedRanges.sort(Comparator.comparing(BucketStorageRange::getFirstBytePosition));
+        List<BucketStorageRange> mergedRanges = new ArrayList<>();
+
+        for (BucketStorageRange range : resolvedRanges) {
+            int lastIndex = mergedRanges.size() - 1;
+            BucketStorageRange previous = lastIndex >= 0 ? mergedRanges.get(lastIndex) : null;
+
+            if (previous != null && range.getFirstBytePosition() <= previous.getLastBytePosition() + 1) {
+                mergedRanges.set(lastIndex, ofBytes(previous.getFirstBytePosition(),
+                        Math.max(previous.getLastBytePosition(), range.getLastBytePosition())));
+            }
+            else {
+                mergedRanges.add(range);
+            }
+        }
+
+        return mergedRanges;
+    }
+
+    /**
+     * Resolves this range against the full length of an object, clamping the last byte to the end of the object.
+     *
+     * @param instanceLength
+     * @return a range with a concrete first and last byte position
+     * @throws BucketStorageRangeNotSatisfiableException if no byte of the object falls inside the range
+     */
+    public BucketStorageRange resolve(long instanceLength) throws BucketStorageRangeNotSatisfiableException {
+        long first;
+        long last;
+
+        if (isSuffix()) {
+            // An empty suffix selects no bytes at all
+            first = suffixLength == 0 ? instanceLength : Math.max(0, instanceLength - suffixLength);
+            last = instanceLength - 1;
+        }
+        else {
+            first = firstBytePosition;
+            last = lastBytePosition != null ? Math.min(lastBytePosition, instanceLength - 1) : instanceLength - 1;
+        }
+
+        if (first >= instanceLength) {
+            throw new BucketStorageRangeNotSatisfiableException(
+                    BucketStorageExceptionUtil.setMessageRangeNotSatisfiable(toString(), instanceLength),
+                    instanceLength
+            );
+        }
+
+        return ofBytes(first, last);
+    }
+
+    public boolean isSuffix() {
+        return suffixLength != null;
+    }
+
+    public boolean isOpenEnded() {
+        return firstBytePosition != null && lastBytePosition == null;
+    }
+
+    public Long getFirstBytePosition() {
+        return firstBytePosition;
+    }
+
+    public Long getLastBytePosition() {
+        return lastBytePosition;
+    }
+
+    public Long getSuffixLength() {
+        return suffixLength;
+    }
+
+    /**
+     * Number of bytes covered by a resolved range.
+     * @return length
+     */
+    public long getLength() {
+        return lastBytePosition - firstBytePosition + 1;
+    }
+
+    /**
+     * Formats a resolved range as the value of an HTTP Content-Range header.
+     *
+     * @param instanceLength
+     * @return contentRange
+     */
+    public String toContentRange(long instanceLength) {
+        return "bytes " + firstBytePosition + "-" + lastBytePosition + "/" + instanceLength;
+    }
+
+    @Override
+    public String toString() {
+        if (isSuffix()) {
+            return "-" + suffixLength;
+        }
+        return firstBytePosition + "-" + (lastBytePosition != null ? lastBytePosition : "");
+    }
+}
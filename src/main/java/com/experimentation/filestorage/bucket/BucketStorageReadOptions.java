@@ -0,0 +1,112 @@
+package com.experimentation.filestorage.bucket;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Options that narrow down what part of a file is read from a storage provider, and under which conditions the
+ * content does not need to be read at all.
+ */
+public class BucketStorageReadOptions {
+
+    private static final BucketStorageReadOptions NONE = new BucketStorageReadOptions(null);
+
+    private static final String ANY_ENTITY_TAG = "*";
+
+    private final BucketStorageRange range;
+    private final List<String> ifNoneMatch;
+    private final long ifModifiedSince;
+    private final String ifMatch;
+
+    public BucketStorageReadOptions(BucketStorageRange range) {
+        this(range, Collections.emptyList(), -1);
+    }
+
+    public BucketStorageReadOptions(BucketStorageRange range, List<String> ifNoneMatch, long ifModifiedSince) {
+        this(range, ifNoneMatch, ifModifiedSince, null);
+    }
+
+    /**
+     * @param range byte range to read, or null to read the whole file
+     * @param ifNoneMatch entity tags the client already holds, without quotes
+     * @param ifModifiedSince time in epoch milliseconds of the copy the client already holds, or -1
+     * @param ifMatch entity tag the file must still have, without quotes, or null to read whichever version is there
+     */
+    public BucketStorageReadOptions(BucketStorageRange range, List<String> ifNoneMatch, long ifModifiedSince,
+                                    String ifMatch) {
+        this.range = range;
+        this.ifNoneMatch = ifNoneMatch;
+        this.ifModifiedSince = ifModifiedSince;
+        this.ifMatch = ifMatch;
+    }
+
+    public static BucketStorageReadOptions none() {
+        return NONE;
+    }
+
+    public static BucketStorageReadOptions withRange(BucketStorageRange range) {
+        return new BucketStorageReadOptions(range);
+    }
+
+    /**
+     * Reads the range only from the version of the file with the given entity tag, so that several reads of one
+     * file cannot be mixed from two versions of it.
+     *
+     * @param range
+     * @param ifMatch entity tag without quotes, or null
+     * @return readOptions
+     */
+    public static BucketStorageReadOptions withRange(BucketStorageRange range, String ifMatch) {
+        return new BucketStorageReadOptions(range, Collections.emptyList(), -1, ifMatch);
+    }
+
+    /**
+     * Byte range to read, or null to read the whole file.
+     * @return range
+     */
+    public BucketStorageRange getRange() {
+        return range;
+    }
+
+    public List<String> getIfNoneMatch() {
+        return ifNoneMatch;
+    }
+
+    public long getIfModifiedSince() {
+        return ifModifiedSince;
+    }
+
+    public String getIfMatch() {
+        return ifMatch;
+    }
+
+    public boolean hasPreconditions() {
+        return !ifNoneMatch.isEmpty() || ifModifiedSince >= 0 || ifMatch != null;
+    }
+
+    /**
+     * Whether the file is no longer the version the read was pinned to with ifMatch.
+     *
+     * @param eTag entity tag of the file, without quotes, or null if unknown
+     * @return true if the content must not be read
+     */
+    public boolean isChanged(String eTag) {
+        return ifMatch != null && !ifMatch.equals(eTag);
+    }
+
+    /**
+     * Whether the client's copy is still current, given the file's entity tag and last modification time.
+     * As in HTTP, If-Modified-Since is only considered when no entity tags were given, and at a precision of
+     * seconds.
+     *
+     * @param eTag entity tag of the file, without quotes, or null if unknown
+     * @param lastModified time in epoch milliseconds the file was last modified, or -1 if unknown
+     * @return true if the content does not need to be sent
+     */
+    public boolean isNotModified(String eTag, long lastModified) {
+        if (!ifNoneMatch.isEmpty()) {
+            return ifNoneMatch.contains(ANY_ENTITY_TAG) || (eTag != null && ifNoneMatch.contains(eTag));
+        }
+        return ifModifiedSince >= 0 && lastModified >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+}
@@ -1,5 +1,9 @@
 package com.experimentation.filestorage.bucket;
 
+import com.experimentation.filestorage.bucket.coalesce.BucketStorageReadCoalescer;
+import com.experimentation.filestorage.bucket.metrics.BucketStorageMetrics;
+import com.experimentation.filestorage.bucket.retry.BucketStorageRetrier;
+import com.experimentation.filestorage.bucket.util.BucketStorageFileNotFoundException;
 import com.experimentation.filestorage.bucket.util.BucketStorageServiceException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -7,6 +11,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
 @Service
 public class BucketStorageService {
 
@@ -15,11 +24,65 @@ public class BucketStorageService {
     @Autowired
     private BucketStorageFactory bucketStorageFactory;
 
+    @Autowired
+    private BucketStorageRetrier bucketStorageRetrier;
+
+    @Autowired
+    private BucketStorageReadCoalescer bucketStorageReadCoalescer;
+
+    @Autowired
+    private BucketStorageMetrics bucketStorageMetrics;
+
     public BucketStorageDTO doGetFile(String bucketName, String fileName, BucketStorageType bucketStorageType)
             throws BucketStorageServiceException {
+        return doGetFile(bucketName, fileName, BucketStorageReadOptions.none(), bucketStorageType);
+    }
+
+    public BucketStorageDTO doGetFile(String bucketName, String fileName, BucketStorageReadOptions readOptions,
+                                      BucketStorageType bucketStorageType)
+            throws BucketStorageServiceException {
         BucketStorage bucketStorage = bucketStorageFactory.getBucketStorageService(bucketStorageType);
         logger.info("BucketStorageService.doGetFile " + bucketStorage);
-        return bucketStorage.getFile(bucketName, fileName);
+        Supplier<BucketStorageDTO> getFile = () -> bucketStorageRetrier.call(bucketStorageType,
+                () -> bucketStorage.getFile(bucketName, fileName, readOptions));
+
+        BucketStorageDTO bucketStorageDTO = bucketStorageMetrics.recordRequest(bucketStorageType, "getFile", () -> {
+            // Ranged and conditional reads are answered differently for each client, so only whole files are shared
+            if (readOptions.getRange() != null || readOptions.hasPreconditions()) {
+                return getFile.get();
+            }
+            return bucketStorageReadCoalescer.getFile(bucketStorageType, bucketName, fileName, getFile);
+        });
+        return bucketStorageMetrics.recordDownload(bucketStorageType, bucketStorageDTO);
+    }
+
+    public BucketStorageMetadata doGetFileMetadata(String bucketName, String fileName,
+                                                   BucketStorageType bucketStorageType)
+            throws BucketStorageServiceException {
+        BucketStorage bucketStorage = bucketStorageFactory.getBucketStorageService(bucketStorageType);
+        logger.info("BucketStorageService.doGetFileMetadata " + bucketStorage);
+        return bucketStorageMetrics.recordRequest(bucketStorageType, "getFileMetadata",
+                () -> bucketStorageRetrier.call(bucketStorageType,
+                        () -> bucketStorage.getFileMetadata(bucketName, fileName)));
+    }
+
+    public Iterator<String> doListFileNames(String bucketName, String prefix, BucketStorageType bucketStorageType)
+            throws BucketStorageServiceException {
+        BucketStorage bucketStorage = bucketStorageFactory.getBucketStorageService(bucketStorageType);
+        logger.info("BucketStorageService.doListFileNames " + bucketStorage);
+        return bucketStorageMetrics.recordRequest(bucketStorageType, "listFileNames",
+                () -> bucketStorageRetrier.call(bucketStorageType,
+                        () -> bucketStorage.listFileNames(bucketName, prefix)));
+    }
+
+    public BucketStorageListing doListFiles(String bucketName, BucketStorageListOptions listOptions,
+                                            BucketStorageType bucketStorageType)
+            throws BucketStorageServiceException {
+        BucketStorage bucketStorage = bucketStorageFactory.getBucketStorageService(bucketStorageType);
+        logger.info("BucketStorageService.doListFiles " + bucketStorage);
+        return bucketStorageMetrics.recordRequest(bucketStorageType, "listFiles",
+                () -> bucketStorageRetrier.call(bucketStorageType,
+                        () -> bucketStorage.listFiles(bucketName, listOptions)));
     }
 
     public void doUploadMultipartFile(String bucketName, String fileName, MultipartFile multipartFile,
@@ -27,13 +90,67 @@ public class BucketStorageService {
             throws BucketStorageServiceException {
         BucketStorage bucketStorage = bucketStorageFactory.getBucketStorageService(bucketStorageType);
         logger.info("BucketStorageService.doUploadMultipartFile " + bucketStorage);
-        bucketStorage.uploadMultipartFile(bucketName, fileName, multipartFile);
+        // Not retried, as the file's content may only be readable once
+        bucketStorageMetrics.recordUpload(bucketStorageType, "uploadFile", multipartFile,
+                countedFile -> bucketStorage.uploadMultipartFile(bucketName, fileName, countedFile));
+        bucketStorageReadCoalescer.invalidate(bucketStorageType, bucketName, fileName);
     }
 
     public void doDeleteFile(String bucketName, String fileName, BucketStorageType bucketStorageType)
             throws BucketStorageServiceException {
         BucketStorage bucketStorage = bucketStorageFactory.getBucketStorageService(bucketStorageType);
         logger.info("BucketStorageService.doDeleteFile " + bucketStorage);
-        bucketStorage.deleteFile(bucketName, fileName);
+        AtomicInteger attempts = new AtomicInteger();
+        bucketStorageMetrics.recordRequest(bucketStorageType, "deleteFile",
+                () -> bucketStorageRetrier.call(bucketStorageType, () -> {
+                    boolean retried = attempts.getAndIncrement() > 0;
+                    try {
+                        bucketStorage.deleteFile(bucketName, fileName);
+                    }
+
+                    // An earlier attempt may have deleted the file before its answer was lost
+                    catch (BucketStorageFileNotFoundException e) {
+                        if (!retried) {
+                            throw e;
+                        }
+                        logger.info("File " + fileName + " was deleted by an earlier attempt");
+                    }
+                    return null;
+                }));
+        bucketStorageReadCoalescer.invalidate(bucketStorageType, bucketName, fileName);
+    }
+
+    public List<BucketStorageDeleteResult> doDeleteFiles(String bucketName, List<String> fileNames,
+                                                         BucketStorageType bucketStorageType)
+            throws BucketStorageServiceException {
+        BucketStorage bucketStorage = bucketStorageFactory.getBucketStorageService(bucketStorageType);
+        logger.info("BucketStorageService.doDeleteFiles " + bucketStorage);
+        List<BucketStorageDeleteResult> results = bucketStorageMetrics.recordRequest(bucketStorageType, "deleteFiles",
+                () -> bucketStorageRetrier.call(bucketStorageType,
+                        () -> bucketStorage.deleteFiles(bucketName, fileNames)));
+        invalidateDeleted(bucketName, results, bucketStorageType);
+        return results;
+    }
+
+    public List<BucketStorageDeleteResult> doDeleteFilesWithPrefix(String bucketName, String prefix,
+                                                                   BucketStorageType bucketStorageType)
+            throws BucketStorageServiceException {
+        BucketStorage bucketStorage = bucketStorageFactory.getBucketStorageService(bucketStorageType);
+        logger.info("BucketStorageService.doDeleteFilesWithPrefix " + bucketStorage);
+        List<BucketStorageDeleteResult> results = bucketStorageMetrics.recordRequest(
+                bucketStorageType, "deleteFilesWithPrefix",
+                () -> bucketStorageRetrier.call(bucketStorageType,
+                        () -> bucketStorage.deleteFilesWithPrefix(bucketName, prefix)));
+        invalidateDeleted(bucketName, results, bucketStorageType);
+        return results;
+    }
+
+    private void invalidateDeleted(String bucketName, List<BucketStorageDeleteResult> results,
+                                   BucketStorageType bucketStorageType) {
+        for (BucketStorageDeleteResult result : results) {
+            if (result.isDeleted()) {
+                bucketStorageReadCoalescer.invalidate(bucketStorageType, bucketName, result.getFileName());
+            }
+        }
     }
 }
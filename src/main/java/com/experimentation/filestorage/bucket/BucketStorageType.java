@@ -3,7 +3,8 @@ package com.experimentation.filestorage.bucket;
 public enum BucketStorageType {
 
     AWS_S3(BucketStorageTypeConstants.AWS_S3),
-    GCP(BucketStorageTypeConstants.GCP);
+    GCP(BucketStorageTypeConstants.GCP),
+    LOCAL_FS(BucketStorageTypeConstants.LOCAL_FS);
 
     private final String storageName;
 
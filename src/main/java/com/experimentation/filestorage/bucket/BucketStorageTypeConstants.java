@@ -8,4 +8,5 @@ public final class BucketStorageTypeConstants {
 
     public static final String AWS_S3 = "AWS_S3";
     public static final String GCP = "GCP";
+    public static final String LOCAL_FS = "LOCAL_FS";
 }
@@ -0,0 +1,47 @@
+package com.experimentation.filestorage.bucket;
+
+/**
+ * Outcome of uploading one file as part of a bulk upload.
+ */
+public class BucketStorageUploadResult {
+
+    private final String fileName;
+    private final long size;
+    private final boolean uploaded;
+    private final String error;
+
+    private BucketStorageUploadResult(String fileName, long size, boolean uploaded, String error) {
+        this.fileName = fileName;
+        this.size = size;
+        this.uploaded = uploaded;
+        this.error = error;
+    }
+
+    public static BucketStorageUploadResult uploaded(String fileName, long size) {
+        return new BucketStorageUploadResult(fileName, size, true, null);
+    }
+
+    public static BucketStorageUploadResult failed(String fileName, long size, String error) {
+        return new BucketStorageUploadResult(fileName, size, false, error);
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public boolean isUploaded() {
+        return uploaded;
+    }
+
+    /**
+     * Why the file could not be uploaded, or null if it was.
+     * @return error
+     */
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,235 @@
+package com.experimentation.filestorage.bucket.archive;
+
+import com.experimentation.filestorage.bucket.BucketStorageDTO;
+import com.experimentation.filestorage.bucket.BucketStorageService;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.experimentation.filestorage.bucket.util.BucketStorageStreamUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams several files as one ZIP archive. While one file is written to the archive, the next few are already
+ * being fetched from the provider, so the archive is written without waiting on each file's first byte. Small
+ * prefetched files are read into memory in the background; larger ones are only opened and are read as their
+ * entry is written. Neither the archive nor a large file is ever held as a whole, in memory or on disk.
+ */
+@Component
+public class BucketStorageZipWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(BucketStorageZipWriter.class);
+
+    // Content that deflating would not make any smaller, so it is stored as is
+    private static final Set<String> COMPRESSED_CONTENT_TYPES = new HashSet<>(Arrays.asList(
+            "image/jpeg", "image/png", "image/gif", "image/webp",
+            "application/zip", "application/gzip", "application/x-gzip", "application/x-bzip2",
+            "application/x-7z-compressed", "application/x-rar-compressed"));
+
+    private final BucketStorageService bucketStorageService;
+    private final ExecutorService executorService;
+    private final int prefetchCount;
+    private final int prefetchBufferSize;
+    private final int compressionLevel;
+    private final int streamingBufferSize;
+
+    @Autowired
+    public BucketStorageZipWriter(BucketStorageService bucketStorageService,
+                                  @Value("${filestorage.zip.pool-size:16}") int poolSize,
+                                  @Value("${filestorage.zip.prefetch:4}") int prefetchCount,
+                                  @Value("${filestorage.zip.prefetch-buffer-size:1048576}") int prefetchBufferSize,
+                                  @Value("${filestorage.zip.compression-level:6}") int compressionLevel,
+                                  @Value("${filestorage.streaming.buffer-size:8192}") int streamingBufferSize) {
+        this.bucketStorageService = bucketStorageService;
+        this.executorService =
+                Executors.newFixedThreadPool(poolSize, new CustomizableThreadFactory("bucket-storage-zip-"));
+        this.prefetchCount = Math.max(1, prefetchCount);
+        this.prefetchBufferSize = prefetchBufferSize;
+        this.compressionLevel = compressionLevel;
+        this.streamingBufferSize = streamingBufferSize;
+    }
+
+    /**
+     * Writes the files to the output stream as a ZIP archive, one entry per file in the given order. The entries
+     * are named after the requested file names, whatever name the provider reports, so a prefix that contains
+     * slashes becomes folders in the archive.
+     * A file that cannot be read ends the archive early; the output stream is not closed.
+     *
+     * @param bucketName
+     * @param fileNames
+     * @param bucketStorageType
+     * @param outputStream
+     * @throws IOException if the archive could not be written
+     * @throws com.experimentation.filestorage.bucket.util.BucketStorageServiceException if a file could not be read
+     */
+    public void write(String bucketName, Iterator<String> fileNames, BucketStorageType bucketStorageType,
+                      OutputStream outputStream) throws IOException {
+
+        Deque<PrefetchedFile> prefetched = new ArrayDeque<>();
+        AtomicBoolean aborted = new AtomicBoolean();
+        ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream);
+
+        try {
+            prefetch(prefetched, aborted, bucketName, fileNames, bucketStorageType);
+
+            while (!prefetched.isEmpty()) {
+                PrefetchedFile prefetchedFile = prefetched.poll();
+                BucketStorageDTO bucketStorageDTO = await(prefetchedFile.future);
+
+                // The next file is fetched while this one is written
+                prefetch(prefetched, aborted, bucketName, fileNames, bucketStorageType);
+                writeEntry(zipOutputStream, prefetchedFile.fileName, bucketStorageDTO);
+            }
+
+            zipOutputStream.finish();
+            zipOutputStream.flush();
+        }
+
+        // Files that were fetched for entries that will never be written still hold a provider connection
+        finally {
+            aborted.set(true);
+            prefetched.forEach(prefetchedFile -> discard(prefetchedFile.future));
+        }
+    }
+
+    private void prefetch(Deque<PrefetchedFile> prefetched, AtomicBoolean aborted, String bucketName,
+                          Iterator<String> fileNames, BucketStorageType bucketStorageType) {
+        while (prefetched.size() < prefetchCount && fileNames.hasNext()) {
+            String fileName = fileNames.next();
+            prefetched.add(new PrefetchedFile(fileName,
+                    executorService.submit(() -> fetch(bucketName, fileName, bucketStorageType, aborted))));
+        }
+    }
+
+    /**
+     * Gets the file from the provider, reading its content into memory if it is small enough.
+     */
+    private BucketStorageDTO fetch(String bucketName, String fileName, BucketStorageType bucketStorageType,
+                                   AtomicBoolean aborted) throws IOException {
+        BucketStorageDTO bucketStorageDTO = bucketStorageService.doGetFile(bucketName, fileName, bucketStorageType);
+        long contentLength = bucketStorageDTO.getContentLength();
+
+        if (aborted.get() || contentLength < 0 || contentLength > prefetchBufferSize) {
+            return bucketStorageDTO;
+        }
+
+        byte[] content = new byte[(int) contentLength];
+        int length;
+        try (BucketStorageDTO source = bucketStorageDTO) {
+            length = BucketStorageStreamUtil.readFully(source.getInputStream(), content);
+        }
+
+        BucketStorageDTO bufferedDTO = new BucketStorageDTO(bucketStorageDTO.getFileName(),
+                bucketStorageDTO.getContentType(), length, new ByteArrayInputStream(content, 0, length));
+        bufferedDTO.setLastModified(bucketStorageDTO.getLastModified());
+        return bufferedDTO;
+    }
+
+    private BucketStorageDTO await(Future<BucketStorageDTO> future) throws IOException {
+        try {
+            return future.get();
+        }
+
+        // Unable to get the file from the provider
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+
+        // While waiting for the file, the thread is interrupted
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        }
+    }
+
+    private void writeEntry(ZipOutputStream zipOutputStream, String fileName, BucketStorageDTO bucketStorageDTO)
+            throws IOException {
+        ZipEntry zipEntry = new ZipEntry(fileName);
+        if (bucketStorageDTO.getLastModified() >= 0) {
+            zipEntry.setTime(bucketStorageDTO.getLastModified());
+        }
+
+        zipOutputStream.setLevel(isCompressed(bucketStorageDTO.getContentType())
+                ? Deflater.NO_COMPRESSION
+                : compressionLevel);
+        zipOutputStream.putNextEntry(zipEntry);
+
+        try (BucketStorageDTO source = bucketStorageDTO) {
+            BucketStorageStreamUtil.copy(source.getInputStream(), zipOutputStream, streamingBufferSize);
+        }
+
+        zipOutputStream.closeEntry();
+    }
+
+    /**
+     * Waits for a prefetched file that will not be written and closes it. As the archive has been aborted,
+     * a fetch that is still running only opens the file, so this does not wait for its content.
+     */
+    private void discard(Future<BucketStorageDTO> future) {
+        try {
+            future.get().close();
+        }
+
+        // The file could not be fetched either, or closing it failed; nothing is left to release
+        catch (ExecutionException | IOException e) {
+            logger.warn("Unable to release prefetched file: " + e.getMessage());
+        }
+
+        // Stop waiting, the fetch will still finish on its own
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static boolean isCompressed(String contentType) {
+        return contentType != null && (COMPRESSED_CONTENT_TYPES.contains(contentType)
+                || contentType.startsWith("video/") || contentType.startsWith("audio/"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executorService.shutdownNow();
+    }
+
+    /**
+     * A file being fetched ahead, along with the name it was requested by, which names its entry.
+     */
+    private static class PrefetchedFile {
+
+        private final String fileName;
+        private final Future<BucketStorageDTO> future;
+
+        PrefetchedFile(String fileName, Future<BucketStorageDTO> future) {
+            this.fileName = fileName;
+            this.future = future;
+        }
+    }
+}
@@ -1,57 +1,121 @@
 package com.experimentation.filestorage.bucket.aws;
 
-import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.DeleteObjectRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
 import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3ObjectInputStream;
-import com.amazonaws.services.s3.transfer.TransferManager;
-import com.amazonaws.services.s3.transfer.TransferManagerBuilder;
-import com.amazonaws.util.IOUtils;
+import com.experimentation.filestorage.bucket.BucketStorageListOptions;
+import com.experimentation.filestorage.bucket.BucketStorageRange;
+import com.experimentation.filestorage.bucket.BucketStorageReadOptions;
 import org.springframework.stereotype.Component;
-import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
+import java.io.FilterInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
 
 @Component
 public class AWSBucketStorageHelper {
 
-    protected GetObjectRequest newGetObjectRequest(String bucketName, String fileName) {
-        return new GetObjectRequest(bucketName, fileName);
-    }
+    /**
+     * Creates a request for the object, limited to the given range if one is provided.
+     * Suffix ranges must be resolved before calling this, as S3 ranged gets need a first byte position.
+     *
+     * @param bucketName
+     * @param fileName
+     * @param range
+     * @return getObjectRequest
+     */
+    protected GetObjectRequest newGetObjectRequest(String bucketName, String fileName, BucketStorageRange range) {
+        GetObjectRequest getObjectRequest = new GetObjectRequest(bucketName, fileName);
 
-    protected DeleteObjectRequest newDeleteObjectRequest(String bucketName, String fileName) {
-        return new DeleteObjectRequest(bucketName, fileName);
+        if (range != null && range.isOpenEnded()) {
+            getObjectRequest.setRange(range.getFirstBytePosition());
+        }
+        else if (range != null) {
+            getObjectRequest.setRange(range.getFirstBytePosition(), range.getLastBytePosition());
+        }
+
+        return getObjectRequest;
     }
 
-    protected byte[] convertS3ObjectInputStreamToByteArray(S3ObjectInputStream s3ObjectInputStream) throws IOException {
-        return IOUtils.toByteArray(s3ObjectInputStream);
+    /**
+     * Adds the read's preconditions to the request as S3 constraints, so that S3 answers without the content
+     * when the client's copy is current, or when the object is no longer the version the read was pinned to.
+     * If-Modified-Since is left out when entity tags are given, as in HTTP.
+     *
+     * @param getObjectRequest
+     * @param readOptions
+     */
+    protected void applyPreconditions(GetObjectRequest getObjectRequest, BucketStorageReadOptions readOptions) {
+        if (readOptions.getIfMatch() != null) {
+            getObjectRequest.setMatchingETagConstraints(Collections.singletonList(readOptions.getIfMatch()));
+        }
+        if (!readOptions.getIfNoneMatch().isEmpty()) {
+            getObjectRequest.setNonmatchingETagConstraints(new ArrayList<>(readOptions.getIfNoneMatch()));
+        }
+        else if (readOptions.getIfModifiedSince() >= 0) {
+            getObjectRequest.setModifiedSinceConstraint(new Date(readOptions.getIfModifiedSince()));
+        }
     }
 
-    protected TransferManager buildTransferManager(AmazonS3 amazonS3) {
-        return TransferManagerBuilder.standard()
-                .withS3Client(amazonS3)
-                .build();
+    /**
+     * Returns the time in epoch milliseconds the object was last modified, or -1 if S3 did not report one.
+     *
+     * @param objectMetadata
+     * @return lastModified
+     */
+    protected long getLastModified(ObjectMetadata objectMetadata) {
+        return objectMetadata.getLastModified() != null ? objectMetadata.getLastModified().getTime() : -1;
     }
 
     /**
-     * Converts a MultipartFile object into a temporary File object.
+     * Creates a request for one page of a listing, continuing from the page token if there is one.
      *
-     * @param multipartFile
-     * @return convertedFile
-     * @throws IOException
+     * @param bucketName
+     * @param listOptions
+     * @return listObjectsV2Request
      */
-    protected File convertMultipartFileToTemporaryFile(MultipartFile multipartFile) throws IOException {
+    protected ListObjectsV2Request newListObjectsV2Request(String bucketName, BucketStorageListOptions listOptions) {
+        return new ListObjectsV2Request()
+                .withBucketName(bucketName)
+                .withPrefix(listOptions.getPrefix())
+                .withDelimiter(listOptions.getDelimiter())
+                .withMaxKeys(listOptions.getPageSize())
+                .withContinuationToken(listOptions.getPageToken());
+    }
 
-        // Create a temp file
-        File convertedFile = File.createTempFile("temp-", null);
+    protected DeleteObjectRequest newDeleteObjectRequest(String bucketName, String fileName) {
+        return new DeleteObjectRequest(bucketName, fileName);
+    }
 
-        // Write the bytes of the multipart
-        FileOutputStream fos = new FileOutputStream(convertedFile);
-        fos.write(multipartFile.getBytes());
-        fos.close();
+    /**
+     * Creates a quiet DeleteObjects request, to which S3 only responds with the keys it could not delete.
+     *
+     * @param bucketName
+     * @param keys at most 1000
+     * @return deleteObjectsRequest
+     */
+    protected DeleteObjectsRequest newDeleteObjectsRequest(String bucketName, List<String> keys) {
+        return new DeleteObjectsRequest(bucketName).withKeys(keys.toArray(new String[0])).withQuiet(true);
+    }
 
-        return convertedFile;
+    /**
+     * Wraps the content of an S3Object so that closing it aborts the connection instead of draining what is left.
+     *
+     * @param s3ObjectInputStream
+     * @return inputStream
+     */
+    protected InputStream newAbortOnCloseInputStream(S3ObjectInputStream s3ObjectInputStream) {
+        return new FilterInputStream(s3ObjectInputStream) {
+            @Override
+            public void close() {
+                s3ObjectInputStream.abort();
+            }
+        };
     }
 }
@@ -2,105 +2,297 @@ package com.experimentation.filestorage.bucket.aws;
 
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.SdkClientException;
+import com.amazonaws.retry.RetryUtils;
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.iterable.S3Objects;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException;
+import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3Object;
-import com.amazonaws.services.s3.model.S3ObjectInputStream;
-import com.amazonaws.services.s3.transfer.TransferManager;
-import com.amazonaws.services.s3.transfer.Upload;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.experimentation.filestorage.bucket.*;
+import com.experimentation.filestorage.bucket.batch.BucketStorageBatchExecutor;
+import com.experimentation.filestorage.bucket.download.BucketStorageParallelDownloader;
+import com.experimentation.filestorage.bucket.download.BucketStorageRangeReader;
 import com.experimentation.filestorage.bucket.util.BucketStorageExceptionUtil;
+import com.experimentation.filestorage.bucket.util.BucketStorageFileNotFoundException;
 import com.experimentation.filestorage.bucket.util.BucketStorageHelper;
+import com.experimentation.filestorage.bucket.util.BucketStorageListingIterator;
 import com.experimentation.filestorage.bucket.util.BucketStorageLoggerUtil;
+import com.experimentation.filestorage.bucket.util.BucketStorageRangeNotSatisfiableException;
 import com.experimentation.filestorage.bucket.util.BucketStorageServiceException;
+import com.experimentation.filestorage.bucket.util.BucketStorageTransientException;
+import com.google.common.collect.Iterators;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
-import java.net.URLEncoder;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 @Component(BucketStorageTypeConstants.AWS_S3)
 public class AWSBucketStorageImpl implements BucketStorage {
 
     private static final Logger logger = LoggerFactory.getLogger(AWSBucketStorageImpl.class);
 
+    // Most keys S3 returns in one listing page or accepts in one DeleteObjects request
+    private static final int MAX_KEYS_PER_LIST = 1000;
+    private static final int MAX_KEYS_PER_DELETE = 1000;
+
     private final AmazonS3 amazonS3;
     private final AWSBucketStorageHelper awsBucketStorageHelper;
     private final BucketStorageHelper bucketStorageHelper;
+    private final BucketStorageParallelDownloader bucketStorageParallelDownloader;
+    private final AWSMultipartUploader awsMultipartUploader;
+    private final BucketStorageBatchExecutor bucketStorageBatchExecutor;
 
     @Autowired
     public AWSBucketStorageImpl(AmazonS3 amazonS3,
                                 AWSBucketStorageHelper awsBucketStorageHelper,
-                                BucketStorageHelper bucketStorageHelper) {
+                                BucketStorageHelper bucketStorageHelper,
+                                BucketStorageParallelDownloader bucketStorageParallelDownloader,
+                                AWSMultipartUploader awsMultipartUploader,
+                                BucketStorageBatchExecutor bucketStorageBatchExecutor) {
         this.amazonS3 = amazonS3;
         this.awsBucketStorageHelper = awsBucketStorageHelper;
         this.bucketStorageHelper = bucketStorageHelper;
+        this.bucketStorageParallelDownloader = bucketStorageParallelDownloader;
+        this.awsMultipartUploader = awsMultipartUploader;
+        this.bucketStorageBatchExecutor = bucketStorageBatchExecutor;
     }
 
     @Override
-    public BucketStorageDTO getFile(String bucketName, String fileName) throws BucketStorageServiceException {
+    public BucketStorageDTO getFile(String bucketName, String fileName, BucketStorageReadOptions readOptions)
+            throws BucketStorageServiceException {
 
         BucketStorageLoggerUtil.infoStartGettingFile(logger, bucketName, fileName);
 
-        // Try-with-resources for the S3Object
-        try (S3Object s3Object = amazonS3.getObject(awsBucketStorageHelper.newGetObjectRequest(bucketName, fileName))){
+        try {
+            BucketStorageRange range = readOptions.getRange();
+
+            // S3 ranged gets take a first byte position, so suffix ranges are resolved against the object length
+            if (range != null && range.isSuffix()) {
+                range = range.resolve(amazonS3.getObjectMetadata(bucketName, fileName).getContentLength());
+            }
 
-            String contentType = s3Object.getObjectMetadata().getContentType();
-            S3ObjectInputStream objectInputStream = s3Object.getObjectContent();
+            GetObjectRequest getObjectRequest = awsBucketStorageHelper.newGetObjectRequest(bucketName, fileName, range);
+            awsBucketStorageHelper.applyPreconditions(getObjectRequest, readOptions);
+            S3Object s3Object = amazonS3.getObject(getObjectRequest);
+
+            // A null object means a constraint failed: either the client's copy is current, or the object is no
+            // longer the version the read was pinned to. Only the validators are looked up to tell which.
+            if (s3Object == null) {
+                ObjectMetadata objectMetadata = amazonS3.getObjectMetadata(bucketName, fileName);
+                if (readOptions.isChanged(objectMetadata.getETag())) {
+                    throw new BucketStorageServiceException(
+                            BucketStorageExceptionUtil.setMessageFileChangedDuringRead(bucketName, fileName));
+                }
+                BucketStorageLoggerUtil.infoFinishGettingFile(logger, bucketName, fileName);
+                return bucketStorageHelper.createNotModifiedBucketStorageDTO(fileName, objectMetadata.getETag(),
+                        awsBucketStorageHelper.getLastModified(objectMetadata));
+            }
 
-            byte[] bytes = awsBucketStorageHelper.convertS3ObjectInputStreamToByteArray(objectInputStream);
+            ObjectMetadata objectMetadata = s3Object.getObjectMetadata();
+            InputStream objectInputStream = s3Object.getObjectContent();
+
+            // Large objects are read as parallel ranged parts, the open stream serving as the first part
+            if (range == null && bucketStorageParallelDownloader.shouldDownloadInParallel(
+                    BucketStorageType.AWS_S3, objectMetadata.getContentLength())) {
+                objectInputStream = bucketStorageParallelDownloader.newInputStream(
+                        BucketStorageType.AWS_S3,
+                        awsBucketStorageHelper.newAbortOnCloseInputStream(s3Object.getObjectContent()),
+                        objectMetadata.getContentLength(),
+                        newRangeReader(bucketName, fileName, objectMetadata.getETag()));
+            }
 
-            // Note: encoder converts a space to a plus, so we replace the pluses with %20 for content disposition
-            fileName = URLEncoder.encode(fileName, "UTF-8").replaceAll("\\+", "%20");
+            // The content is left open and streamed to the caller, who closes it once it has been written out
+            BucketStorageDTO bucketStorageDTO = bucketStorageHelper.createBucketStorageDTO(
+                    fileName, objectMetadata.getContentType(), objectMetadata.getContentLength(), objectInputStream);
+            bucketStorageDTO.setETag(objectMetadata.getETag());
+            bucketStorageDTO.setLastModified(awsBucketStorageHelper.getLastModified(objectMetadata));
+            bucketStorageDTO.setAbortAction(s3Object.getObjectContent()::abort);
+
+            if (range != null) {
+                long instanceLength = objectMetadata.getInstanceLength();
+                bucketStorageDTO.setRange(range.resolve(instanceLength));
+                bucketStorageDTO.setInstanceLength(instanceLength);
+            }
 
             BucketStorageLoggerUtil.infoFinishGettingFile(logger, bucketName, fileName);
-            return bucketStorageHelper.createBucketStorageDTO(fileName, contentType, bytes);
+            return bucketStorageDTO;
         }
 
         // Upload call was transmitted successfully, but Amazon S3 couldn't process it
         catch (AmazonServiceException e) {
             logger.error(e.getMessage());
-            throw new BucketStorageServiceException(
-                    BucketStorageExceptionUtil.setMessageUnableToGetFile(bucketName, fileName)
+            if (e.getStatusCode() == HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value()) {
+                throw new BucketStorageRangeNotSatisfiableException(
+                        BucketStorageExceptionUtil.setMessageRangeNotSatisfiable(bucketName, fileName),
+                        getInstanceLength(bucketName, fileName)
+                );
+            }
+            throw newServiceException(
+                    BucketStorageExceptionUtil.setMessageUnableToGetFile(bucketName, fileName), e
             );
         }
 
         // Amazon S3 couldn't be contacted for a response, or the client couldn't parse the response
         catch (SdkClientException e) {
             logger.error(e.getMessage());
-            throw new BucketStorageServiceException(
-                    BucketStorageExceptionUtil.setMessageUnableToGetFile(bucketName, fileName)
+            throw newServiceException(
+                    BucketStorageExceptionUtil.setMessageUnableToGetFile(bucketName, fileName), e
             );
         }
+    }
 
-        // Could not convert S3ObjectInputStream to byte array
-        catch(IOException e) {
+    /**
+     * Looks up the object's length for a 416 response, which S3 does not report with the error.
+     *
+     * @param bucketName
+     * @param fileName
+     * @return instanceLength, or -1 if it could not be looked up
+     */
+    private long getInstanceLength(String bucketName, String fileName) {
+        try {
+            return amazonS3.getObjectMetadata(bucketName, fileName).getContentLength();
+        }
+
+        // The response is an error either way, only without the length
+        catch (SdkClientException e) {
+            logger.warn(e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Creates a reader for the parts of a parallel download. Each part is only read while the object still has the
+     * ETag of the first response, so the parts cannot be mixed from two versions of the object.
+     *
+     * @param bucketName
+     * @param fileName
+     * @param eTag
+     * @return rangeReader
+     */
+    private BucketStorageRangeReader newRangeReader(String bucketName, String fileName, String eTag) {
+        return range -> {
+            try {
+                S3Object s3Object = amazonS3.getObject(
+                        awsBucketStorageHelper.newGetObjectRequest(bucketName, fileName, range)
+                                .withMatchingETagConstraint(eTag));
+
+                // A null object means the ETag constraint failed
+                if (s3Object == null) {
+                    throw new IOException(
+                            BucketStorageExceptionUtil.setMessageFileChangedDuringRead(bucketName, fileName));
+                }
+                return s3Object.getObjectContent();
+            }
+
+            // Part could not be fetched from Amazon S3
+            catch (SdkClientException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        };
+    }
+
+    @Override
+    public BucketStorageMetadata getFileMetadata(String bucketName, String fileName)
+            throws BucketStorageServiceException {
+
+        BucketStorageLoggerUtil.infoStartGettingFileMetadata(logger, bucketName, fileName);
+
+        // A HEAD request, so no content is transferred
+        try {
+            ObjectMetadata objectMetadata = amazonS3.getObjectMetadata(bucketName, fileName);
+            BucketStorageLoggerUtil.infoFinishGettingFileMetadata(logger, bucketName, fileName);
+            return new BucketStorageMetadata(fileName, objectMetadata.getContentType(),
+                    objectMetadata.getContentLength(), objectMetadata.getETag(),
+                    awsBucketStorageHelper.getLastModified(objectMetadata));
+        }
+
+        // Metadata call was transmitted successfully, but Amazon S3 couldn't process it
+        catch (AmazonServiceException e) {
             logger.error(e.getMessage());
-            throw new BucketStorageServiceException(
-                    BucketStorageExceptionUtil.setMessageUnableToConvertInputStream(fileName)
+            if (e.getStatusCode() == HttpStatus.NOT_FOUND.value()) {
+                throw new BucketStorageFileNotFoundException(
+                        BucketStorageExceptionUtil.setMessageFileNotFound(bucketName, fileName)
+                );
+            }
+            throw newServiceException(
+                    BucketStorageExceptionUtil.setMessageUnableToGetFileMetadata(bucketName, fileName), e
+            );
+        }
+
+        // Amazon S3 couldn't be contacted for a response, or the client couldn't parse the response
+        catch (SdkClientException e) {
+            logger.error(e.getMessage());
+            throw newServiceException(
+                    BucketStorageExceptionUtil.setMessageUnableToGetFileMetadata(bucketName, fileName), e
             );
         }
     }
 
     @Override
-    public void uploadMultipartFile(String bucketName, String fileName, MultipartFile file) throws BucketStorageServiceException {
+    public Iterator<String> listFileNames(String bucketName, String prefix) throws BucketStorageServiceException {
+        Iterator<String> keys = Iterators.transform(
+                S3Objects.withPrefix(amazonS3, bucketName, prefix).withBatchSize(MAX_KEYS_PER_LIST).iterator(),
+                S3ObjectSummary::getKey);
+        return new BucketStorageListingIterator<>(keys, SdkClientException.class, bucketName, prefix);
+    }
 
-        BucketStorageLoggerUtil.infoStartUploadingFile(logger, bucketName, fileName);
+    @Override
+    public BucketStorageListing listFiles(String bucketName, BucketStorageListOptions listOptions)
+            throws BucketStorageServiceException {
 
-        File tempFile = null;
+        BucketStorageLoggerUtil.infoStartListingFiles(logger, bucketName, listOptions.getPrefix());
 
         try {
-            TransferManager transferManager = awsBucketStorageHelper.buildTransferManager(amazonS3);
-            tempFile = awsBucketStorageHelper.convertMultipartFileToTemporaryFile(file);
+            ListObjectsV2Result result =
+                    amazonS3.listObjectsV2(awsBucketStorageHelper.newListObjectsV2Request(bucketName, listOptions));
+
+            // S3 returns directories apart from the files, so they are merged back into name order
+            List<BucketStorageListingEntry> entries = new ArrayList<>();
+            for (S3ObjectSummary objectSummary : result.getObjectSummaries()) {
+                entries.add(BucketStorageListingEntry.file(objectSummary.getKey(), objectSummary.getSize(),
+                        objectSummary.getETag(), objectSummary.getLastModified().getTime()));
+            }
+            for (String commonPrefix : result.getCommonPrefixes()) {
+                entries.add(BucketStorageListingEntry.directory(commonPrefix));
+            }
+            entries.sort(Comparator.comparing(BucketStorageListingEntry::getFileName));
 
-            // TransferManager processes all transfers asynchronously, so the upload call returns immediately
-            Upload upload = transferManager.upload(bucketName, fileName, tempFile);
+            BucketStorageLoggerUtil.infoFinishListingFiles(logger, bucketName, entries.size());
+            return new BucketStorageListing(entries, result.isTruncated() ? result.getNextContinuationToken() : null);
+        }
 
-            // We wait for the upload to finish before continuing.
-            upload.waitForCompletion();
+        // Amazon S3 couldn't process the listing, or S3 couldn't be contacted
+        catch (SdkClientException e) {
+            logger.error(e.getMessage());
+            throw newServiceException(
+                    BucketStorageExceptionUtil.setMessageUnableToListFiles(bucketName, listOptions.getPrefix()), e
+            );
+        }
+    }
+
+    @Override
+    public void uploadMultipartFile(String bucketName, String fileName, MultipartFile file) throws BucketStorageServiceException {
+
+        BucketStorageLoggerUtil.infoStartUploadingFile(logger, bucketName, fileName);
+
+        // The request content is streamed into multipart upload parts, without a copy on the heap or on disk
+        try (InputStream inputStream = file.getInputStream()) {
+            awsMultipartUploader.upload(bucketName, fileName, inputStream, file.getContentType());
             BucketStorageLoggerUtil.infoFinishUploadingFile(logger, bucketName, fileName);
         }
 
@@ -120,28 +312,22 @@ public class AWSBucketStorageImpl implements BucketStorage {
             );
         }
 
-        // While upload waitForCompletion, the thread is interrupted
+        // While waiting for a buffer or an upload part, the thread is interrupted
         catch(InterruptedException e) {
             logger.error(e.getMessage());
+            Thread.currentThread().interrupt();
             throw new BucketStorageServiceException(
                     BucketStorageExceptionUtil.setMessageUploadThreadInterrupted(fileName)
             );
         }
 
-        // Unable to create a temporary file for upload
+        // Unable to read multipart file for upload
         catch(IOException e) {
             logger.error(e.getMessage());
             throw new BucketStorageServiceException(
-                    BucketStorageExceptionUtil.setMessageUnableToCreateTempFileOrReadContent(fileName)
+                    BucketStorageExceptionUtil.setMessageUnableToReadFileForUpload(fileName)
             );
         }
-
-        // Clean up by removing temp file
-        finally {
-            if (tempFile != null) {
-                tempFile.delete();
-            }
-        }
     }
 
     @Override
@@ -157,17 +343,108 @@ public class AWSBucketStorageImpl implements BucketStorage {
         // Delete call was transmitted successfully, but Amazon S3 couldn't process it
         catch(AmazonServiceException e) {
             logger.error(e.getMessage());
-            throw new BucketStorageServiceException(
-                    BucketStorageExceptionUtil.setMessageUnableToDeleteFile(bucketName, fileName)
+            throw newServiceException(
+                    BucketStorageExceptionUtil.setMessageUnableToDeleteFile(bucketName, fileName), e
             );
         }
 
         // Amazon S3 couldn't be contacted for a response, or the client couldn't parse the response
         catch(SdkClientException e) {
             logger.error(e.getMessage());
+            throw newServiceException(
+                    BucketStorageExceptionUtil.setMessageUnableToDeleteFile(bucketName, fileName), e
+            );
+        }
+    }
+
+    @Override
+    public List<BucketStorageDeleteResult> deleteFiles(String bucketName, List<String> fileNames)
+            throws BucketStorageServiceException {
+
+        BucketStorageLoggerUtil.infoStartDeletingFiles(logger, bucketName, fileNames.size());
+        List<BucketStorageDeleteResult> results =
+                deleteInGroups(bucketName, Iterators.partition(fileNames.iterator(), MAX_KEYS_PER_DELETE));
+        BucketStorageLoggerUtil.infoFinishDeletingFiles(logger, bucketName, results.size());
+        return results;
+    }
+
+    @Override
+    public List<BucketStorageDeleteResult> deleteFilesWithPrefix(String bucketName, String prefix)
+            throws BucketStorageServiceException {
+
+        BucketStorageLoggerUtil.infoStartDeletingFilesWithPrefix(logger, bucketName, prefix);
+
+        // Keys are listed a page at a time, as the groups before them are deleted
+        List<BucketStorageDeleteResult> results = deleteInGroups(
+                bucketName, Iterators.partition(listFileNames(bucketName, prefix), MAX_KEYS_PER_DELETE));
+        BucketStorageLoggerUtil.infoFinishDeletingFiles(logger, bucketName, results.size());
+        return results;
+    }
+
+    private List<BucketStorageDeleteResult> deleteInGroups(String bucketName, Iterator<List<String>> groups) {
+        try {
+            return bucketStorageBatchExecutor.invokeAll(Iterators.transform(groups,
+                    keys -> (Callable<List<BucketStorageDeleteResult>>) () -> deleteGroup(bucketName, keys)));
+        }
+
+        // While waiting for the groups to be deleted, the thread is interrupted
+        catch (InterruptedException e) {
+            logger.error(e.getMessage());
+            Thread.currentThread().interrupt();
             throw new BucketStorageServiceException(
-                    BucketStorageExceptionUtil.setMessageUnableToDeleteFile(bucketName, fileName)
+                    BucketStorageExceptionUtil.setMessageBatchThreadInterrupted(bucketName)
             );
         }
     }
+
+    /**
+     * Deletes up to 1000 keys with a single DeleteObjects request. S3 only reports the keys it could not delete.
+     *
+     * @param bucketName
+     * @param keys
+     * @return result for each key
+     */
+    private List<BucketStorageDeleteResult> deleteGroup(String bucketName, List<String> keys) {
+        Map<String, String> errors = new HashMap<>();
+
+        try {
+            amazonS3.deleteObjects(awsBucketStorageHelper.newDeleteObjectsRequest(bucketName, keys));
+        }
+
+        // Some of the keys could not be deleted
+        catch (MultiObjectDeleteException e) {
+            logger.error(e.getMessage());
+            e.getErrors().forEach(error -> errors.put(error.getKey(), error.getCode() + ": " + error.getMessage()));
+        }
+
+        // Delete call was transmitted successfully, but Amazon S3 couldn't process it, or S3 couldn't be contacted
+        catch (SdkClientException e) {
+            logger.error(e.getMessage());
+            keys.forEach(key ->
+                    errors.put(key, BucketStorageExceptionUtil.setMessageUnableToDeleteFile(bucketName, key)));
+        }
+
+        List<BucketStorageDeleteResult> results = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            results.add(errors.containsKey(key)
+                    ? BucketStorageDeleteResult.failed(key, errors.get(key))
+                    : BucketStorageDeleteResult.deleted(key));
+        }
+        return results;
+    }
+
+    /**
+     * Creates the exception for a failed S3 call, as a BucketStorageTransientException if sending the call again may
+     * succeed: S3 could not be reached, throttled the call or failed with a server error.
+     *
+     * @param message
+     * @param e
+     * @return bucketStorageServiceException
+     */
+    private BucketStorageServiceException newServiceException(String message, SdkClientException e) {
+        boolean isTransient = e instanceof AmazonServiceException
+                ? RetryUtils.isRetryableServiceException(e) || RetryUtils.isThrottlingException(e)
+                : e.isRetryable();
+        return isTransient ? new BucketStorageTransientException(message) : new BucketStorageServiceException(message);
+    }
 }
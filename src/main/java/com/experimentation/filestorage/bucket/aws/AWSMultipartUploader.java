@@ -0,0 +1,288 @@
+package com.experimentation.filestorage.bucket.aws;
+
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.*;
+import com.experimentation.filestorage.bucket.util.BucketStorageBufferPool;
+import com.experimentation.filestorage.bucket.util.BucketStorageStreamUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Uploads a stream to S3 without knowing its length up front and without staging it on disk.
+ * The stream is read into parts held in a pool of reusable buffers, and each full part is sent as a part of an S3
+ * multipart upload while the next one is being read. Content below the multipart threshold is sent as one PUT.
+ * A single instance is shared by every upload, so its thread pool and buffers bound the work of all transfers.
+ */
+@Component
+public class AWSMultipartUploader {
+
+    // S3 rejects multipart upload parts smaller than 5 MB, other than the last one
+    private static final int MINIMUM_PART_SIZE = 5 * 1024 * 1024;
+
+    private static final Logger logger = LoggerFactory.getLogger(AWSMultipartUploader.class);
+
+    private final AmazonS3 amazonS3;
+    private final BucketStorageBufferPool bufferPool;
+    private final ThreadPoolExecutor executorService;
+    private final int bufferCount;
+    private final int multipartThreshold;
+    private final int maxPartsInFlight;
+    private final long shutdownTimeoutSeconds;
+    private final AtomicInteger activeUploads = new AtomicInteger();
+
+    @Autowired
+    public AWSMultipartUploader(AmazonS3 amazonS3,
+                                @Value("${filestorage.aws.upload.part-size:8388608}") int partSize,
+                                @Value("${filestorage.aws.upload.multipart-threshold:8388608}") int multipartThreshold,
+                                @Value("${filestorage.aws.upload.buffer-count:16}") int bufferCount,
+                                @Value("${filestorage.aws.upload.max-parts-in-flight:4}") int maxPartsInFlight,
+                                @Value("${filestorage.aws.upload.pool-size:16}") int poolSize,
+                                @Value("${filestorage.aws.upload.shutdown-timeout:30}") long shutdownTimeoutSeconds) {
+        this.amazonS3 = amazonS3;
+        this.bufferPool = new BucketStorageBufferPool(Math.max(partSize, MINIMUM_PART_SIZE), bufferCount);
+        this.executorService = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new CustomizableThreadFactory("aws-multipart-upload-"));
+        this.bufferCount = bufferCount;
+        this.multipartThreshold = Math.max(1, Math.min(multipartThreshold, bufferPool.getBufferSize()));
+        this.maxPartsInFlight = maxPartsInFlight;
+        this.shutdownTimeoutSeconds = shutdownTimeoutSeconds;
+    }
+
+    /**
+     * Uploads the stream's content to the bucket under the given file name. If any part fails, the multipart upload
+     * is aborted so that S3 does not keep the parts that were already uploaded.
+     *
+     * @param bucketName
+     * @param fileName
+     * @param inputStream
+     * @param contentType
+     * @throws IOException if the stream could not be read
+     * @throws InterruptedException if the thread was interrupted while waiting for a buffer or a part
+     */
+    public void upload(String bucketName, String fileName, InputStream inputStream, String contentType)
+            throws IOException, InterruptedException {
+
+        activeUploads.incrementAndGet();
+        byte[] firstBuffer = null;
+        boolean firstBufferHandedOff = false;
+
+        try {
+            firstBuffer = bufferPool.acquire();
+            int length = BucketStorageStreamUtil.readFully(inputStream, firstBuffer, 0, multipartThreshold);
+
+            // Content is below the multipart threshold, so a plain PUT is enough
+            if (length < multipartThreshold) {
+                amazonS3.putObject(new PutObjectRequest(bucketName, fileName,
+                        new ByteArrayInputStream(firstBuffer, 0, length), newObjectMetadata(contentType, length)));
+                return;
+            }
+
+            length += BucketStorageStreamUtil.readFully(inputStream, firstBuffer, length, firstBuffer.length - length);
+
+            String uploadId = amazonS3.initiateMultipartUpload(
+                    new InitiateMultipartUploadRequest(bucketName, fileName, newObjectMetadata(contentType, -1))
+            ).getUploadId();
+
+            firstBufferHandedOff = true;
+            uploadParts(bucketName, fileName, uploadId, inputStream, firstBuffer, length);
+        }
+        finally {
+            if (firstBuffer != null && !firstBufferHandedOff) {
+                bufferPool.release(firstBuffer);
+            }
+            activeUploads.decrementAndGet();
+        }
+    }
+
+    /**
+     * Current load on the shared thread pool and buffers, for sizing them against the traffic they serve.
+     *
+     * @return statistics
+     */
+    public AWSTransferStatistics getStatistics() {
+        return new AWSTransferStatistics(
+                activeUploads.get(),
+                executorService.getActiveCount(),
+                executorService.getQueue().size(),
+                executorService.getMaximumPoolSize(),
+                bufferPool.getAvailableBufferCount(),
+                bufferCount,
+                bufferPool.getBufferSize(),
+                multipartThreshold
+        );
+    }
+
+    /**
+     * Sends the first, already read part and then keeps reading and sending parts until the stream ends.
+     * The first buffer is owned by this method from here on and is released once its part has been sent.
+     */
+    private void uploadParts(String bucketName, String fileName, String uploadId, InputStream inputStream,
+                             byte[] firstBuffer, int firstLength) throws IOException, InterruptedException {
+
+        List<Future<PartETag>> parts = new ArrayList<>();
+        int firstPendingPart = 0;
+        byte[] buffer = firstBuffer;
+        int length = firstLength;
+
+        try {
+            while (true) {
+                parts.add(submitPart(bucketName, fileName, uploadId, parts.size() + 1, buffer, length));
+                buffer = null;
+
+                // A short part means the stream has ended
+                if (length < bufferPool.getBufferSize()) {
+                    break;
+                }
+
+                // Wait for the oldest parts so that a single upload cannot take every buffer in the pool
+                while (parts.size() - firstPendingPart >= maxPartsInFlight) {
+                    awaitPart(parts.get(firstPendingPart++));
+                }
+
+                buffer = bufferPool.acquire();
+                length = BucketStorageStreamUtil.readFully(inputStream, buffer);
+                if (length == 0) {
+                    break;
+                }
+            }
+
+            List<PartETag> partETags = new ArrayList<>();
+            for (Future<PartETag> part : parts) {
+                partETags.add(awaitPart(part));
+            }
+
+            amazonS3.completeMultipartUpload(
+                    new CompleteMultipartUploadRequest(bucketName, fileName, uploadId, partETags));
+        }
+
+        // Remove the parts that were uploaded so far, once no part is still being sent
+        catch (IOException | InterruptedException | RuntimeException e) {
+            awaitPartsQuietly(parts);
+            abortQuietly(bucketName, fileName, uploadId);
+            throw e;
+        }
+
+        finally {
+            if (buffer != null) {
+                bufferPool.release(buffer);
+            }
+        }
+    }
+
+    private Future<PartETag> submitPart(String bucketName, String fileName, String uploadId, int partNumber,
+                                        byte[] buffer, int length) {
+        return executorService.submit(() -> {
+            try {
+                UploadPartRequest uploadPartRequest = new UploadPartRequest()
+                        .withBucketName(bucketName)
+                        .withKey(fileName)
+                        .withUploadId(uploadId)
+                        .withPartNumber(partNumber)
+                        .withInputStream(new ByteArrayInputStream(buffer, 0, length))
+                        .withPartSize(length);
+                return amazonS3.uploadPart(uploadPartRequest).getPartETag();
+            }
+            finally {
+                bufferPool.release(buffer);
+            }
+        });
+    }
+
+    private PartETag awaitPart(Future<PartETag> part) throws IOException, InterruptedException {
+        try {
+            return part.get();
+        }
+
+        // Surface S3 failures as they were thrown by the SDK
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Waits for every part to finish, successfully or not, so that each part's buffer is back in the pool.
+     */
+    private void awaitPartsQuietly(List<Future<PartETag>> parts) {
+        boolean interrupted = false;
+
+        for (Future<PartETag> part : parts) {
+            while (true) {
+                try {
+                    part.get();
+                    break;
+                }
+                catch (InterruptedException e) {
+                    interrupted = true;
+                }
+                catch (ExecutionException e) {
+                    break;
+                }
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void abortQuietly(String bucketName, String fileName, String uploadId) {
+        try {
+            amazonS3.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, fileName, uploadId));
+        }
+        catch (SdkClientException e) {
+            logger.error("Unable to abort multipart upload " + uploadId + " of file " + fileName + ": "
+                    + e.getMessage());
+        }
+    }
+
+    private ObjectMetadata newObjectMetadata(String contentType, long contentLength) {
+        ObjectMetadata objectMetadata = new ObjectMetadata();
+        objectMetadata.setContentType(contentType);
+        if (contentLength >= 0) {
+            objectMetadata.setContentLength(contentLength);
+        }
+        return objectMetadata;
+    }
+
+    /**
+     * Lets parts that are already queued finish before the application stops, up to the shutdown timeout.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executorService.shutdown();
+
+        try {
+            if (!executorService.awaitTermination(shutdownTimeoutSeconds, TimeUnit.SECONDS)) {
+                logger.warn("Upload parts did not finish within " + shutdownTimeoutSeconds + " seconds of shutdown");
+                executorService.shutdownNow();
+            }
+        }
+
+        // Interrupted while waiting for parts, so stop them right away
+        catch (InterruptedException e) {
+            executorService.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
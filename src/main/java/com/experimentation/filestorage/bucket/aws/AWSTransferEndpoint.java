@@ -0,0 +1,26 @@
+package com.experimentation.filestorage.bucket.aws;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes the S3 upload statistics at /actuator/awstransfers.
+ */
+@Component
+@Endpoint(id = "awstransfers")
+public class AWSTransferEndpoint {
+
+    private final AWSMultipartUploader awsMultipartUploader;
+
+    @Autowired
+    public AWSTransferEndpoint(AWSMultipartUploader awsMultipartUploader) {
+        this.awsMultipartUploader = awsMultipartUploader;
+    }
+
+    @ReadOperation
+    public AWSTransferStatistics transfers() {
+        return awsMultipartUploader.getStatistics();
+    }
+}
@@ -0,0 +1,60 @@
+package com.experimentation.filestorage.bucket.aws;
+
+/**
+ * Snapshot of the load on the shared S3 upload thread pool and buffer pool.
+ */
+public class AWSTransferStatistics {
+
+    private final int activeUploads;
+    private final int activeParts;
+    private final int queuedParts;
+    private final int poolSize;
+    private final int availableBuffers;
+    private final int bufferCount;
+    private final int partSize;
+    private final int multipartThreshold;
+
+    public AWSTransferStatistics(int activeUploads, int activeParts, int queuedParts, int poolSize,
+                                 int availableBuffers, int bufferCount, int partSize, int multipartThreshold) {
+        this.activeUploads = activeUploads;
+        this.activeParts = activeParts;
+        this.queuedParts = queuedParts;
+        this.poolSize = poolSize;
+        this.availableBuffers = availableBuffers;
+        this.bufferCount = bufferCount;
+        this.partSize = partSize;
+        this.multipartThreshold = multipartThreshold;
+    }
+
+    public int getActiveUploads() {
+        return activeUploads;
+    }
+
+    public int getActiveParts() {
+        return activeParts;
+    }
+
+    public int getQueuedParts() {
+        return queuedParts;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public int getAvailableBuffers() {
+        return availableBuffers;
+    }
+
+    public int getBufferCount() {
+        return bufferCount;
+    }
+
+    public int getPartSize() {
+        return partSize;
+    }
+
+    public int getMultipartThreshold() {
+        return multipartThreshold;
+    }
+}
@@ -0,0 +1,106 @@
+package com.experimentation.filestorage.bucket.batch;
+
+import com.experimentation.filestorage.bucket.util.BucketStorageServiceException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs the groups of a batch operation, such as the delete requests of a batch delete, on a shared pool. Each batch
+ * has a bounded number of groups in flight, and the next group is only taken from its iterator once one of them
+ * finishes, so a batch whose groups come from a listing does not list far ahead of its deletes. The bulk uploader
+ * runs its files on an instance of its own.
+ */
+@Component
+public class BucketStorageBatchExecutor {
+
+    private final ExecutorService executorService;
+    private final int maxGroupsInFlight;
+
+    @Autowired
+    public BucketStorageBatchExecutor(@Value("${filestorage.batch.pool-size:16}") int poolSize,
+                                      @Value("${filestorage.batch.max-groups-in-flight:4}") int maxGroupsInFlight) {
+        this.executorService =
+                Executors.newFixedThreadPool(poolSize, new CustomizableThreadFactory("bucket-storage-batch-"));
+        this.maxGroupsInFlight = maxGroupsInFlight;
+    }
+
+    /**
+     * Runs every group and returns their results, in the order of the groups.
+     * Groups are expected to report failures in their results rather than throw.
+     *
+     * @param groups
+     * @return results of all groups
+     * @throws InterruptedException if the thread was interrupted while waiting for the groups
+     * @throws BucketStorageServiceException if a group threw
+     */
+    public <T> List<T> invokeAll(Iterator<? extends Callable<List<T>>> groups) throws InterruptedException {
+        return invokeAll(groups, maxGroupsInFlight);
+    }
+
+    /**
+     * Runs every group, with at most the given number of them in flight, and returns their results in the order
+     * of the groups.
+     *
+     * @param groups
+     * @param maxGroupsInFlight
+     * @return results of all groups
+     * @throws InterruptedException if the thread was interrupted while waiting for the groups
+     * @throws BucketStorageServiceException if a group threw
+     */
+    public <T> List<T> invokeAll(Iterator<? extends Callable<List<T>>> groups, int maxGroupsInFlight)
+            throws InterruptedException {
+        Semaphore groupsInFlight = new Semaphore(maxGroupsInFlight);
+        List<Future<List<T>>> futures = new ArrayList<>();
+
+        try {
+            while (groups.hasNext()) {
+                Callable<List<T>> group = groups.next();
+                groupsInFlight.acquire();
+                futures.add(executorService.submit(() -> {
+                    try {
+                        return group.call();
+                    }
+                    finally {
+                        groupsInFlight.release();
+                    }
+                }));
+            }
+
+            List<T> results = new ArrayList<>();
+            for (Future<List<T>> future : futures) {
+                results.addAll(future.get());
+            }
+            return results;
+        }
+
+        // A group failed as a whole
+        catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw new BucketStorageServiceException(e.getCause().getMessage(), e.getCause());
+        }
+
+        // Stop the remaining groups, nobody is waiting for them anymore
+        catch (InterruptedException | RuntimeException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executorService.shutdownNow();
+    }
+}
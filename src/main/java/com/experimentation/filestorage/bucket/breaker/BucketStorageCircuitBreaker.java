@@ -0,0 +1,116 @@
+package com.experimentation.filestorage.bucket.breaker;
+
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.experimentation.filestorage.bucket.util.BucketStorageExceptionUtil;
+import com.experimentation.filestorage.bucket.util.BucketStorageServiceException;
+import com.experimentation.filestorage.bucket.util.BucketStorageTransientException;
+import com.experimentation.filestorage.bucket.util.BucketStorageUnavailableException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Keeps a circuit breaker for each bucket of each storage provider. When most recent calls to a bucket have failed
+ * or been slow, further calls are refused straight away with a BucketStorageUnavailableException for a while,
+ * instead of each one waiting for the provider's timeouts. Only failures the provider may recover from count
+ * against it; a missing file or a refused permission is an answer like any other. Calls refused below the breaker,
+ * e.g. by the bulkhead, never reached the provider and do not count at all.
+ */
+@Component
+public class BucketStorageCircuitBreaker {
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int halfOpenCalls;
+
+    private final Map<String, CircuitBreakerPartition> partitions = new ConcurrentHashMap<>();
+
+    @Autowired
+    public BucketStorageCircuitBreaker(
+            @Value("${filestorage.circuit-breaker.window-size:100}") int windowSize,
+            @Value("${filestorage.circuit-breaker.minimum-calls:20}") int minimumCalls,
+            @Value("${filestorage.circuit-breaker.failure-rate-threshold:50}") double failureRateThreshold,
+            @Value("${filestorage.circuit-breaker.slow-call-rate-threshold:80}") double slowCallRateThreshold,
+            @Value("${filestorage.circuit-breaker.slow-call-duration:5000}") long slowCallMillis,
+            @Value("${filestorage.circuit-breaker.open-duration:30}") long openSeconds,
+            @Value("${filestorage.circuit-breaker.half-open-calls:5}") int halfOpenCalls) {
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMillis);
+        this.openNanos = TimeUnit.SECONDS.toNanos(openSeconds);
+        this.halfOpenCalls = halfOpenCalls;
+    }
+
+    /**
+     * Makes a provider call through the bucket's circuit breaker. Its duration only counts when timed is set, which
+     * it should only be for calls whose duration does not grow with the amount of data they move.
+     *
+     * @param bucketStorageType
+     * @param bucketName
+     * @param timed
+     * @param call
+     * @return result of the call
+     * @throws BucketStorageUnavailableException if the circuit breaker is open
+     */
+    public <T> T call(BucketStorageType bucketStorageType, String bucketName, boolean timed, Supplier<T> call)
+            throws BucketStorageServiceException {
+        String name = bucketStorageType + "/" + bucketName;
+        CircuitBreakerPartition partition = partitions.computeIfAbsent(name, key -> new CircuitBreakerPartition(
+                key, windowSize, minimumCalls, failureRateThreshold, slowCallRateThreshold, openNanos, halfOpenCalls));
+
+        long startedAt = System.nanoTime();
+        long permit = partition.tryAcquire(startedAt);
+        if (permit < 0) {
+            long retryAfterNanos = partition.getRetryAfterNanos(startedAt);
+            throw new BucketStorageUnavailableException(BucketStorageExceptionUtil.setMessageCircuitOpen(name),
+                    Math.max(1, TimeUnit.NANOSECONDS.toSeconds(retryAfterNanos + TimeUnit.SECONDS.toNanos(1) - 1)));
+        }
+
+        boolean failed = false;
+        boolean refused = false;
+        try {
+            return call.get();
+        }
+
+        // The call was refused below the breaker, e.g. by the bulkhead, without reaching the provider
+        catch (BucketStorageUnavailableException e) {
+            refused = true;
+            throw e;
+        }
+
+        // The provider failed in a way it may recover from, which counts against it
+        catch (BucketStorageTransientException e) {
+            failed = true;
+            throw e;
+        }
+
+        finally {
+            long finishedAt = System.nanoTime();
+            if (refused) {
+                partition.onRefused(permit);
+            }
+            else {
+                partition.onResult(permit, failed, timed && finishedAt - startedAt > slowCallNanos, finishedAt);
+            }
+        }
+    }
+
+    public List<BucketStorageCircuitBreakerStatistics> getStatistics() {
+        List<BucketStorageCircuitBreakerStatistics> statistics = new ArrayList<>();
+        partitions.values().forEach(partition -> statistics.add(partition.getStatistics()));
+        return statistics;
+    }
+}
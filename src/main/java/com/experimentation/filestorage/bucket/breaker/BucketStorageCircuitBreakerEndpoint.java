@@ -0,0 +1,28 @@
+package com.experimentation.filestorage.bucket.breaker;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Exposes the state of the circuit breakers at /actuator/circuitbreakers.
+ */
+@Component
+@Endpoint(id = "circuitbreakers")
+public class BucketStorageCircuitBreakerEndpoint {
+
+    private final BucketStorageCircuitBreaker bucketStorageCircuitBreaker;
+
+    @Autowired
+    public BucketStorageCircuitBreakerEndpoint(BucketStorageCircuitBreaker bucketStorageCircuitBreaker) {
+        this.bucketStorageCircuitBreaker = bucketStorageCircuitBreaker;
+    }
+
+    @ReadOperation
+    public List<BucketStorageCircuitBreakerStatistics> circuitBreakers() {
+        return bucketStorageCircuitBreaker.getStatistics();
+    }
+}
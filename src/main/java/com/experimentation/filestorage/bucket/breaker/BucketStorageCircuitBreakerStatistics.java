@@ -0,0 +1,70 @@
+package com.experimentation.filestorage.bucket.breaker;
+
+/**
+ * Snapshot of one circuit breaker's state and the calls it has seen since it last changed state.
+ */
+public class BucketStorageCircuitBreakerStatistics {
+
+    private final String name;
+    private final String state;
+    private final int bufferedCalls;
+    private final double failureRate;
+    private final double slowCallRate;
+    private final long rejected;
+    private final long timesOpened;
+
+    public BucketStorageCircuitBreakerStatistics(String name, String state, int bufferedCalls, double failureRate,
+                                                 double slowCallRate, long rejected, long timesOpened) {
+        this.name = name;
+        this.state = state;
+        this.bufferedCalls = bufferedCalls;
+        this.failureRate = failureRate;
+        this.slowCallRate = slowCallRate;
+        this.rejected = rejected;
+        this.timesOpened = timesOpened;
+    }
+
+    /**
+     * Storage provider, followed by the bucket.
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * CLOSED, OPEN or HALF_OPEN.
+     * @return state
+     */
+    public String getState() {
+        return state;
+    }
+
+    public int getBufferedCalls() {
+        return bufferedCalls;
+    }
+
+    /**
+     * Percentage of the buffered calls that failed.
+     * @return failureRate
+     */
+    public double getFailureRate() {
+        return failureRate;
+    }
+
+    /**
+     * Percentage of the buffered calls that were slow.
+     * @return slowCallRate
+     */
+    public double getSlowCallRate() {
+        return slowCallRate;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public long getTimesOpened() {
+        return timesOpened;
+    }
+}
@@ -0,0 +1,54 @@
+package com.experimentation.filestorage.bucket.breaker;
+
+import com.experimentation.filestorage.bucket.BucketStorage;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.experimentation.filestorage.bucket.retry.HedgingBeanPostProcessor;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+/**
+ * Wraps every storage provider bean in a circuit breaking decorator when circuit breakers are enabled. It is
+ * applied before the hedged reads and the caches, so that only calls which actually reach the provider count towards
+ * its breakers, each attempt of a hedged read on its own.
+ */
+@Component
+public class CircuitBreakerBeanPostProcessor implements BeanPostProcessor, Ordered {
+
+    public static final int ORDER = HedgingBeanPostProcessor.ORDER - 1;
+
+    private final boolean enabled;
+    private final ObjectFactory<BucketStorageCircuitBreaker> bucketStorageCircuitBreaker;
+
+    @Autowired
+    public CircuitBreakerBeanPostProcessor(
+            @Value("${filestorage.circuit-breaker.enabled:false}") boolean enabled,
+            ObjectFactory<BucketStorageCircuitBreaker> bucketStorageCircuitBreaker) {
+        this.enabled = enabled;
+        this.bucketStorageCircuitBreaker = bucketStorageCircuitBreaker;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!enabled || !(bean instanceof BucketStorage)) {
+            return bean;
+        }
+
+        for (BucketStorageType bucketStorageType : BucketStorageType.values()) {
+            if (bucketStorageType.toString().equals(beanName)) {
+                return new CircuitBreakingBucketStorage(
+                        bucketStorageType, (BucketStorage) bean, bucketStorageCircuitBreaker.getObject());
+            }
+        }
+
+        return bean;
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+}
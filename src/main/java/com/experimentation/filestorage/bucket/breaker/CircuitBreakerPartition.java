@@ -0,0 +1,176 @@
+package com.experimentation.filestorage.bucket.breaker;
+
+/**
+ * Circuit breaker state for the calls to one bucket of a provider. While closed, the outcomes of the most recent
+ * calls are kept, and the breaker opens once too many of them failed or were slow. While open, every call is
+ * refused until the open duration has passed. The breaker is then half open: a few probe calls are let through, and
+ * it closes again if they all succeed in time, or opens again as soon as one does not.
+ */
+class CircuitBreakerPartition {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final byte SUCCEEDED = 0;
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+
+    private final String name;
+    private final byte[] outcomes;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long openNanos;
+    private final int halfOpenCalls;
+
+    private State state = State.CLOSED;
+    private int count;
+    private int next;
+    private int failures;
+    private int slowCalls;
+    private long openedAt;
+    private int probesInFlight;
+    private int probesSucceeded;
+
+    // Counts the state changes, so that a call let through in an earlier state does not count towards this one
+    private long transitions;
+
+    private long rejected;
+    private long timesOpened;
+
+    CircuitBreakerPartition(String name, int windowSize, int minimumCalls, double failureRateThreshold,
+                            double slowCallRateThreshold, long openNanos, int halfOpenCalls) {
+        this.name = name;
+        this.outcomes = new byte[Math.max(1, windowSize)];
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, outcomes.length));
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.openNanos = openNanos;
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * @param now in nanoseconds
+     * @return permit to pass to onResult, or -1 if the call is refused
+     */
+    synchronized long tryAcquire(long now) {
+        if (state == State.OPEN) {
+            if (now - openedAt < openNanos) {
+                rejected++;
+                return -1;
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+
+        if (state == State.HALF_OPEN) {
+            if (probesInFlight + probesSucceeded >= halfOpenCalls) {
+                rejected++;
+                return -1;
+            }
+            probesInFlight++;
+        }
+        return transitions;
+    }
+
+    /**
+     * @param now in nanoseconds
+     * @return nanoseconds until the breaker lets calls through again, at least while it is open
+     */
+    synchronized long getRetryAfterNanos(long now) {
+        return state == State.OPEN ? Math.max(0, openedAt + openNanos - now) : 0;
+    }
+
+    /**
+     * @param permit returned by tryAcquire
+     * @param failed whether the provider failed the call in a way it may recover from
+     * @param slow whether the call took longer than the slow call duration
+     * @param now in nanoseconds
+     */
+    synchronized void onResult(long permit, boolean failed, boolean slow, long now) {
+        if (permit != transitions) {
+            return;
+        }
+
+        if (state == State.HALF_OPEN) {
+            probesInFlight--;
+            if (failed || slow) {
+                open(now);
+            }
+            else if (++probesSucceeded >= halfOpenCalls) {
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+
+        record(failed ? FAILED : slow ? SLOW : SUCCEEDED);
+        if (count >= minimumCalls && (failures * 100.0 >= failureRateThreshold * count
+                || slowCalls * 100.0 >= slowCallRateThreshold * count)) {
+            open(now);
+        }
+    }
+
+    /**
+     * Gives back a permit whose call never reached the provider, e.g. because the bulkhead refused it. The call says
+     * nothing about the provider, so no outcome is recorded; a probe only frees its slot for another one.
+     *
+     * @param permit returned by tryAcquire
+     */
+    synchronized void onRefused(long permit) {
+        if (permit == transitions && state == State.HALF_OPEN) {
+            probesInFlight--;
+        }
+    }
+
+    synchronized BucketStorageCircuitBreakerStatistics getStatistics() {
+        return new BucketStorageCircuitBreakerStatistics(name, state.toString(), count,
+                count > 0 ? failures * 100.0 / count : 0, count > 0 ? slowCalls * 100.0 / count : 0,
+                rejected, timesOpened);
+    }
+
+    private void record(byte outcome) {
+        if (count == outcomes.length) {
+            forget(outcomes[next]);
+        }
+        else {
+            count++;
+        }
+
+        outcomes[next] = outcome;
+        next = (next + 1) % outcomes.length;
+        if (outcome == FAILED) {
+            failures++;
+        }
+        else if (outcome == SLOW) {
+            slowCalls++;
+        }
+    }
+
+    private void forget(byte outcome) {
+        if (outcome == FAILED) {
+            failures--;
+        }
+        else if (outcome == SLOW) {
+            slowCalls--;
+        }
+    }
+
+    private void open(long now) {
+        openedAt = now;
+        timesOpened++;
+        transitionTo(State.OPEN);
+    }
+
+    private void transitionTo(State state) {
+        this.state = state;
+        transitions++;
+        probesInFlight = 0;
+        probesSucceeded = 0;
+        count = 0;
+        next = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+}
@@ -0,0 +1,91 @@
+package com.experimentation.filestorage.bucket.breaker;
+
+import com.experimentation.filestorage.bucket.BucketStorage;
+import com.experimentation.filestorage.bucket.BucketStorageDTO;
+import com.experimentation.filestorage.bucket.BucketStorageDeleteResult;
+import com.experimentation.filestorage.bucket.BucketStorageListOptions;
+import com.experimentation.filestorage.bucket.BucketStorageListing;
+import com.experimentation.filestorage.bucket.BucketStorageMetadata;
+import com.experimentation.filestorage.bucket.BucketStorageReadOptions;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.experimentation.filestorage.bucket.util.BucketStorageServiceException;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Sends every call to the provider through its bucket's circuit breaker. Only the time to open a file is timed, and
+ * uploads and bulk deletes are not timed at all, as their duration depends on how much they move.
+ */
+class CircuitBreakingBucketStorage implements BucketStorage {
+
+    private final BucketStorageType bucketStorageType;
+    private final BucketStorage bucketStorage;
+    private final BucketStorageCircuitBreaker bucketStorageCircuitBreaker;
+
+    CircuitBreakingBucketStorage(BucketStorageType bucketStorageType, BucketStorage bucketStorage,
+                                 BucketStorageCircuitBreaker bucketStorageCircuitBreaker) {
+        this.bucketStorageType = bucketStorageType;
+        this.bucketStorage = bucketStorage;
+        this.bucketStorageCircuitBreaker = bucketStorageCircuitBreaker;
+    }
+
+    @Override
+    public BucketStorageDTO getFile(String bucketName, String fileName, BucketStorageReadOptions readOptions)
+            throws BucketStorageServiceException {
+        return bucketStorageCircuitBreaker.call(bucketStorageType, bucketName, true,
+                () -> bucketStorage.getFile(bucketName, fileName, readOptions));
+    }
+
+    @Override
+    public BucketStorageMetadata getFileMetadata(String bucketName, String fileName)
+            throws BucketStorageServiceException {
+        return bucketStorageCircuitBreaker.call(bucketStorageType, bucketName, true,
+                () -> bucketStorage.getFileMetadata(bucketName, fileName));
+    }
+
+    @Override
+    public Iterator<String> listFileNames(String bucketName, String prefix) throws BucketStorageServiceException {
+        return bucketStorageCircuitBreaker.call(bucketStorageType, bucketName, false,
+                () -> bucketStorage.listFileNames(bucketName, prefix));
+    }
+
+    @Override
+    public BucketStorageListing listFiles(String bucketName, BucketStorageListOptions listOptions)
+            throws BucketStorageServiceException {
+        return bucketStorageCircuitBreaker.call(bucketStorageType, bucketName, true,
+                () -> bucketStorage.listFiles(bucketName, listOptions));
+    }
+
+    @Override
+    public void uploadMultipartFile(String bucketName, String fileName, MultipartFile file)
+            throws BucketStorageServiceException {
+        bucketStorageCircuitBreaker.call(bucketStorageType, bucketName, false, () -> {
+            bucketStorage.uploadMultipartFile(bucketName, fileName, file);
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteFile(String bucketName, String fileName) throws BucketStorageServiceException {
+        bucketStorageCircuitBreaker.call(bucketStorageType, bucketName, true, () -> {
+            bucketStorage.deleteFile(bucketName, fileName);
+            return null;
+        });
+    }
+
+    @Override
+    public List<BucketStorageDeleteResult> deleteFiles(String bucketName, List<String> fileNames)
+            throws BucketStorageServiceException {
+        return bucketStorageCircuitBreaker.call(bucketStorageType, bucketName, false,
+                () -> bucketStorage.deleteFiles(bucketName, fileNames));
+    }
+
+    @Override
+    public List<BucketStorageDeleteResult> deleteFilesWithPrefix(String bucketName, String prefix)
+            throws BucketStorageServiceException {
+        return bucketStorageCircuitBreaker.call(bucketStorageType, bucketName, false,
+                () -> bucketStorage.deleteFilesWithPrefix(bucketName, prefix));
+    }
+}
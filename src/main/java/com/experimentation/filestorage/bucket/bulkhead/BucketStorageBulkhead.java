@@ -0,0 +1,191 @@
+package com.experimentation.filestorage.bucket.bulkhead;
+
+import com.experimentation.filestorage.bucket.BucketStorageDTO;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.experimentation.filestorage.bucket.util.BucketStorageExceptionUtil;
+import com.experimentation.filestorage.bucket.util.BucketStorageServiceException;
+import com.experimentation.filestorage.bucket.util.BucketStorageUnavailableException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Bounds the requests in flight to each storage provider, or to each bucket, so that a slow provider can only tie
+ * up its own share of the request threads instead of all of them. Each bulkhead's limit adapts to the provider's
+ * latency: it grows while requests are fast and shrinks as soon as they slow down. A request over the limit waits a
+ * short while for a permit and is then rejected, which the controller answers with 503 Service Unavailable.
+ * Providers are wrapped below the caches, so that only calls which actually reach the provider take a permit.
+ */
+@Component
+public class BucketStorageBulkhead {
+
+    private final boolean enabled;
+    private final boolean perBucket;
+    private final long maxWaitNanos;
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long latencyThresholdNanos;
+
+    private final Map<String, BulkheadPartition> partitions = new ConcurrentHashMap<>();
+
+    @Autowired
+    public BucketStorageBulkhead(@Value("${filestorage.bulkhead.enabled:false}") boolean enabled,
+                                 @Value("${filestorage.bulkhead.per-bucket:false}") boolean perBucket,
+                                 @Value("${filestorage.bulkhead.max-wait:500}") long maxWaitMillis,
+                                 @Value("${filestorage.bulkhead.initial-limit:20}") int initialLimit,
+                                 @Value("${filestorage.bulkhead.min-limit:4}") int minLimit,
+                                 @Value("${filestorage.bulkhead.max-limit:200}") int maxLimit,
+                                 @Value("${filestorage.bulkhead.backoff-ratio:0.9}") double backoffRatio,
+                                 @Value("${filestorage.bulkhead.latency-threshold:1000}") long latencyThresholdMillis) {
+        this.enabled = enabled;
+        this.perBucket = perBucket;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMillis);
+    }
+
+    /**
+     * Makes a provider call within the bulkhead. Its latency adjusts the limit when sampled is set, which it should
+     * only be for calls whose duration does not grow with the amount of data they move.
+     *
+     * @param bucketStorageType
+     * @param bucketName
+     * @param sampled
+     * @param call
+     * @return result of the call
+     * @throws BucketStorageUnavailableException if no permit became free within the maximum wait
+     */
+    public <T> T call(BucketStorageType bucketStorageType, String bucketName, boolean sampled, Supplier<T> call)
+            throws BucketStorageServiceException {
+        if (!enabled) {
+            return call.get();
+        }
+
+        BulkheadPartition partition = acquire(bucketStorageType, bucketName);
+        long startedAt = System.nanoTime();
+
+        try {
+            T result = call.get();
+            if (sampled) {
+                partition.sample(System.nanoTime() - startedAt);
+            }
+            return result;
+        }
+        finally {
+            partition.release();
+        }
+    }
+
+    /**
+     * Opens a file within the bulkhead. The permit is held until the file is closed, as reading its content ties up
+     * a thread on the provider just as the call that opened it did; only the time to open the file is sampled.
+     *
+     * @param bucketStorageType
+     * @param bucketName
+     * @param call
+     * @return file, which must be closed to release the permit
+     * @throws BucketStorageUnavailableException if no permit became free within the maximum wait
+     */
+    public BucketStorageDTO callForContent(BucketStorageType bucketStorageType, String bucketName,
+                                           Supplier<BucketStorageDTO> call) throws BucketStorageServiceException {
+        if (!enabled) {
+            return call.get();
+        }
+
+        BulkheadPartition partition = acquire(bucketStorageType, bucketName);
+        long startedAt = System.nanoTime();
+        BucketStorageDTO bucketStorageDTO;
+
+        try {
+            bucketStorageDTO = call.get();
+        }
+
+        // The call failed, so there is no content to wait for
+        catch (RuntimeException e) {
+            partition.release();
+            throw e;
+        }
+
+        partition.sample(System.nanoTime() - startedAt);
+        if (bucketStorageDTO.getInputStream() == null) {
+            partition.release();
+        }
+        else {
+            bucketStorageDTO.setInputStream(
+                    new PermitReleasingInputStream(bucketStorageDTO.getInputStream(), partition));
+        }
+        return bucketStorageDTO;
+    }
+
+    public List<BucketStorageBulkheadStatistics> getStatistics() {
+        List<BucketStorageBulkheadStatistics> statistics = new ArrayList<>();
+        partitions.values().forEach(partition -> statistics.add(partition.getStatistics()));
+        return statistics;
+    }
+
+    private BulkheadPartition acquire(BucketStorageType bucketStorageType, String bucketName) {
+        String name = perBucket ? bucketStorageType + "/" + bucketName : bucketStorageType.toString();
+        BulkheadPartition partition = partitions.computeIfAbsent(name, key -> new BulkheadPartition(key,
+                new BulkheadLimit(initialLimit, minLimit, maxLimit, backoffRatio, latencyThresholdNanos)));
+
+        boolean acquired;
+        try {
+            acquired = partition.tryAcquire(maxWaitNanos);
+        }
+
+        // While waiting for a permit, the thread is interrupted
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BucketStorageServiceException(
+                    BucketStorageExceptionUtil.setMessageBulkheadThreadInterrupted(name)
+            );
+        }
+
+        if (!acquired) {
+            throw new BucketStorageUnavailableException(BucketStorageExceptionUtil.setMessageProviderOverloaded(name));
+        }
+        return partition;
+    }
+
+    /**
+     * Releases the permit the first time the content stream is closed.
+     */
+    private static class PermitReleasingInputStream extends FilterInputStream {
+
+        private final BulkheadPartition partition;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        PermitReleasingInputStream(InputStream inputStream, BulkheadPartition partition) {
+            super(inputStream);
+            this.partition = partition;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            }
+            finally {
+                if (released.compareAndSet(false, true)) {
+                    partition.release();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.experimentation.filestorage.bucket.bulkhead;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Exposes the current bulkhead limits at /actuator/bulkheads.
+ */
+@Component
+@Endpoint(id = "bulkheads")
+public class BucketStorageBulkheadEndpoint {
+
+    private final BucketStorageBulkhead bucketStorageBulkhead;
+
+    @Autowired
+    public BucketStorageBulkheadEndpoint(BucketStorageBulkhead bucketStorageBulkhead) {
+        this.bucketStorageBulkhead = bucketStorageBulkhead;
+    }
+
+    @ReadOperation
+    public List<BucketStorageBulkheadStatistics> bulkheads() {
+        return bucketStorageBulkhead.getStatistics();
+    }
+}
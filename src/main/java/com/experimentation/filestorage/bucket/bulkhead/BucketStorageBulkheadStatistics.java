@@ -0,0 +1,52 @@
+package com.experimentation.filestorage.bucket.bulkhead;
+
+/**
+ * Snapshot of one bulkhead's current limit and how much of it is in use.
+ */
+public class BucketStorageBulkheadStatistics {
+
+    private final String name;
+    private final int limit;
+    private final int inFlight;
+    private final int waiting;
+    private final long accepted;
+    private final long rejected;
+
+    public BucketStorageBulkheadStatistics(String name, int limit, int inFlight, int waiting, long accepted,
+                                           long rejected) {
+        this.name = name;
+        this.limit = limit;
+        this.inFlight = inFlight;
+        this.waiting = waiting;
+        this.accepted = accepted;
+        this.rejected = rejected;
+    }
+
+    /**
+     * Storage provider, followed by the bucket when bulkheads are kept per bucket.
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public int getWaiting() {
+        return waiting;
+    }
+
+    public long getAccepted() {
+        return accepted;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+}
@@ -0,0 +1,53 @@
+package com.experimentation.filestorage.bucket.bulkhead;
+
+import com.experimentation.filestorage.bucket.BucketStorage;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.experimentation.filestorage.bucket.breaker.CircuitBreakerBeanPostProcessor;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+/**
+ * Wraps every storage provider bean in a bulkhead decorator when bulkheads are enabled. It is applied before the
+ * circuit breakers and the caches, so that cache hits and calls refused by an open breaker take no permit, and only
+ * the latency of calls which actually reach the provider adjusts its limit.
+ */
+@Component
+public class BulkheadBeanPostProcessor implements BeanPostProcessor, Ordered {
+
+    public static final int ORDER = CircuitBreakerBeanPostProcessor.ORDER - 1;
+
+    private final boolean enabled;
+    private final ObjectFactory<BucketStorageBulkhead> bucketStorageBulkhead;
+
+    @Autowired
+    public BulkheadBeanPostProcessor(@Value("${filestorage.bulkhead.enabled:false}") boolean enabled,
+                                     ObjectFactory<BucketStorageBulkhead> bucketStorageBulkhead) {
+        this.enabled = enabled;
+        this.bucketStorageBulkhead = bucketStorageBulkhead;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!enabled || !(bean instanceof BucketStorage)) {
+            return bean;
+        }
+
+        for (BucketStorageType bucketStorageType : BucketStorageType.values()) {
+            if (bucketStorageType.toString().equals(beanName)) {
+                return new BulkheadBucketStorage(
+                        bucketStorageType, (BucketStorage) bean, bucketStorageBulkhead.getObject());
+            }
+        }
+
+        return bean;
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+}
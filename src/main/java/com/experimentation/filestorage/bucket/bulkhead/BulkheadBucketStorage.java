@@ -0,0 +1,92 @@
+package com.experimentation.filestorage.bucket.bulkhead;
+
+import com.experimentation.filestorage.bucket.BucketStorage;
+import com.experimentation.filestorage.bucket.BucketStorageDTO;
+import com.experimentation.filestorage.bucket.BucketStorageDeleteResult;
+import com.experimentation.filestorage.bucket.BucketStorageListOptions;
+import com.experimentation.filestorage.bucket.BucketStorageListing;
+import com.experimentation.filestorage.bucket.BucketStorageMetadata;
+import com.experimentation.filestorage.bucket.BucketStorageReadOptions;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.experimentation.filestorage.bucket.util.BucketStorageServiceException;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Makes every call to the provider within its bulkhead, so each attempt of a retried or hedged read takes a permit
+ * of its own. Uploads, bulk deletes and name listings do not adjust the limit, as their duration depends on how much
+ * they move.
+ */
+class BulkheadBucketStorage implements BucketStorage {
+
+    private final BucketStorageType bucketStorageType;
+    private final BucketStorage bucketStorage;
+    private final BucketStorageBulkhead bucketStorageBulkhead;
+
+    BulkheadBucketStorage(BucketStorageType bucketStorageType, BucketStorage bucketStorage,
+                          BucketStorageBulkhead bucketStorageBulkhead) {
+        this.bucketStorageType = bucketStorageType;
+        this.bucketStorage = bucketStorage;
+        this.bucketStorageBulkhead = bucketStorageBulkhead;
+    }
+
+    @Override
+    public BucketStorageDTO getFile(String bucketName, String fileName, BucketStorageReadOptions readOptions)
+            throws BucketStorageServiceException {
+        return bucketStorageBulkhead.callForContent(bucketStorageType, bucketName,
+                () -> bucketStorage.getFile(bucketName, fileName, readOptions));
+    }
+
+    @Override
+    public BucketStorageMetadata getFileMetadata(String bucketName, String fileName)
+            throws BucketStorageServiceException {
+        return bucketStorageBulkhead.call(bucketStorageType, bucketName, true,
+                () -> bucketStorage.getFileMetadata(bucketName, fileName));
+    }
+
+    @Override
+    public Iterator<String> listFileNames(String bucketName, String prefix) throws BucketStorageServiceException {
+        return bucketStorageBulkhead.call(bucketStorageType, bucketName, false,
+                () -> bucketStorage.listFileNames(bucketName, prefix));
+    }
+
+    @Override
+    public BucketStorageListing listFiles(String bucketName, BucketStorageListOptions listOptions)
+            throws BucketStorageServiceException {
+        return bucketStorageBulkhead.call(bucketStorageType, bucketName, true,
+                () -> bucketStorage.listFiles(bucketName, listOptions));
+    }
+
+    @Override
+    public void uploadMultipartFile(String bucketName, String fileName, MultipartFile file)
+            throws BucketStorageServiceException {
+        bucketStorageBulkhead.call(bucketStorageType, bucketName, false, () -> {
+            bucketStorage.uploadMultipartFile(bucketName, fileName, file);
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteFile(String bucketName, String fileName) throws BucketStorageServiceException {
+        bucketStorageBulkhead.call(bucketStorageType, bucketName, true, () -> {
+            bucketStorage.deleteFile(bucketName, fileName);
+            return null;
+        });
+    }
+
+    @Override
+    public List<BucketStorageDeleteResult> deleteFiles(String bucketName, List<String> fileNames)
+            throws BucketStorageServiceException {
+        return bucketStorageBulkhead.call(bucketStorageType, bucketName, false,
+                () -> bucketStorage.deleteFiles(bucketName, fileNames));
+    }
+
+    @Override
+    public List<BucketStorageDeleteResult> deleteFilesWithPrefix(String bucketName, String prefix)
+            throws BucketStorageServiceException {
+        return bucketStorageBulkhead.call(bucketStorageType, bucketName, false,
+                () -> bucketStorage.deleteFilesWithPrefix(bucketName, prefix));
+    }
+}
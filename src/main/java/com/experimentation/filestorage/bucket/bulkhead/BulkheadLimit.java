@@ -0,0 +1,44 @@
+package com.experimentation.filestorage.bucket.bulkhead;
+
+/**
+ * Concurrency limit that follows the provider's latency with additive increase, multiplicative decrease (AIMD):
+ * every request that finishes within the latency threshold while the limit is in use raises the limit by about one
+ * per limit's worth of requests, and every slower request cuts it by the backoff ratio. Not thread-safe, it is
+ * guarded by its partition's lock.
+ */
+class BulkheadLimit {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long latencyThresholdNanos;
+
+    private double limit;
+
+    BulkheadLimit(int initialLimit, int minLimit, int maxLimit, double backoffRatio, long latencyThresholdNanos) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyThresholdNanos = latencyThresholdNanos;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * @param latencyNanos how long the request took
+     * @param inFlight requests in flight when it finished, including itself
+     */
+    void onSample(long latencyNanos, int inFlight) {
+        if (latencyNanos > latencyThresholdNanos) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+        }
+
+        // Only raised while most of the limit is in use, so a quiet provider does not drift up to the maximum
+        else if (inFlight * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.experimentation.filestorage.bucket.bulkhead;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Permits for the requests to one provider, or to one bucket of a provider. A request that finds every permit
+ * taken waits for one up to the maximum wait, and is rejected after that.
+ */
+class BulkheadPartition {
+
+    private final String name;
+    private final BulkheadLimit limit;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitReleased = lock.newCondition();
+
+    private int inFlight;
+    private int waiting;
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    BulkheadPartition(String name, BulkheadLimit limit) {
+        this.name = name;
+        this.limit = limit;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * @param maxWaitNanos
+     * @return true if a permit was taken, false if none became free in time
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    boolean tryAcquire(long maxWaitNanos) throws InterruptedException {
+        lock.lock();
+        try {
+            long remainingNanos = maxWaitNanos;
+            waiting++;
+            try {
+                while (inFlight >= limit.getLimit()) {
+                    if (remainingNanos <= 0) {
+                        rejected.incrementAndGet();
+                        return false;
+                    }
+                    remainingNanos = permitReleased.awaitNanos(remainingNanos);
+                }
+            }
+            finally {
+                waiting--;
+            }
+
+            inFlight++;
+            accepted.incrementAndGet();
+            return true;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Feeds how long a request took into the limit. Requests whose duration depends on how much they transfer,
+     * rather than on how busy the provider is, are released without a sample.
+     *
+     * @param latencyNanos
+     */
+    void sample(long latencyNanos) {
+        lock.lock();
+        try {
+            int previousLimit = limit.getLimit();
+            limit.onSample(latencyNanos, inFlight);
+
+            // A raised limit frees permits that no release will signal
+            if (limit.getLimit() > previousLimit) {
+                permitReleased.signalAll();
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            permitReleased.signal();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    BucketStorageBulkheadStatistics getStatistics() {
+        lock.lock();
+        try {
+            return new BucketStorageBulkheadStatistics(
+                    name, limit.getLimit(), inFlight, waiting, accepted.get(), rejected.get());
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+}
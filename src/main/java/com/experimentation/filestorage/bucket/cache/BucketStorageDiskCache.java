@@ -0,0 +1,589 @@
+package com.experimentation.filestorage.bucket.cache;
+
+import com.experimentation.filestorage.bucket.BucketStorageDTO;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps recently read files on local disk, within a byte budget, evicting the least recently used files first.
+ * A file is written to a temporary file and moved into place only once it has been read completely, followed by its
+ * metadata file, so a crash never leaves a partial file that could be served. Each cached version of a file has data
+ * and metadata files of its own, so a file another read has open is never replaced. An entry's metadata file is
+ * deleted as soon as it leaves the cache, while its data file may be kept a little longer for a read still sending
+ * it. Entries found on disk at startup are kept, and anything incomplete or without metadata is removed.
+ */
+@Component
+public class BucketStorageDiskCache {
+
+    private static final String DATA_SUFFIX = ".data";
+    private static final String METADATA_SUFFIX = ".meta";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private static final String CONTENT_TYPE_PROPERTY = "contentType";
+    private static final String CONTENT_LENGTH_PROPERTY = "contentLength";
+    private static final String ETAG_PROPERTY = "eTag";
+    private static final String LAST_MODIFIED_PROPERTY = "lastModified";
+    private static final String CACHED_AT_PROPERTY = "cachedAt";
+
+    // How often data files whose grace has ended are deleted when no request does it first
+    private static final long RETIRED_SWEEP_INTERVAL_SECONDS = 10;
+
+    private static final Logger logger = LoggerFactory.getLogger(BucketStorageDiskCache.class);
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long maxBytes;
+    private final long maxObjectBytes;
+    private final Duration timeToLive;
+
+    // Access ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, DiskCacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes;
+
+    // Bytes of data files kept after their entries left the cache, which count against the budget until deleted
+    private long retiredBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+
+    // Generation of each file being read into the cache, bumped when the file changes so that the reads under way
+    // are not committed. A file is only tracked while it is being read. Guarded by entries, like usedBytes.
+    private final Map<String, FillGeneration> fillGenerations = new HashMap<>();
+
+    // Entries that left the cache, whose data files are kept until their sendfile grace ends. Guarded by entries.
+    private final List<DiskCacheEntry> retiredEntries = new ArrayList<>();
+
+    // The container opens a file it sends with sendfile only after the response is handed back to it, so the data
+    // file of an entry served within this time is kept for the rest of it once the entry leaves the cache
+    private final Duration sendfileGrace;
+
+    private final ScheduledExecutorService sweepExecutorService;
+
+    @Autowired
+    public BucketStorageDiskCache(@Value("${filestorage.cache.disk.enabled:false}") boolean enabled,
+                                  @Value("${filestorage.cache.disk.directory:${java.io.tmpdir}/filestorage-cache}")
+                                          String directory,
+                                  @Value("${filestorage.cache.disk.max-size:1073741824}") long maxBytes,
+                                  @Value("${filestorage.cache.disk.max-object-size:67108864}") long maxObjectBytes,
+                                  @Value("${filestorage.cache.disk.time-to-live:3600}") long timeToLiveSeconds,
+                                  @Value("${filestorage.cache.disk.sendfile-grace:60}") long sendfileGraceSeconds) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.maxBytes = maxBytes;
+        this.maxObjectBytes = Math.min(maxObjectBytes, maxBytes);
+        this.timeToLive = Duration.ofSeconds(timeToLiveSeconds);
+        this.sendfileGrace = Duration.ofSeconds(sendfileGraceSeconds);
+
+        if (enabled) {
+            recover();
+            this.sweepExecutorService = Executors.newSingleThreadScheduledExecutor(
+                    new CustomizableThreadFactory("bucket-storage-disk-cache-sweep-"));
+            this.sweepExecutorService.scheduleWithFixedDelay(this::sweepRetiredEntries,
+                    RETIRED_SWEEP_INTERVAL_SECONDS, RETIRED_SWEEP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+        else {
+            this.sweepExecutorService = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Whether a file of the given length may be cached. Files of unknown length are never cached.
+     *
+     * @param contentLength
+     * @return true if the file fits in the cache
+     */
+    public boolean isCacheable(long contentLength) {
+        return enabled && contentLength >= 0 && contentLength <= maxObjectBytes;
+    }
+
+    /**
+     * Looks up a cached file, counting a hit or a miss. Expired entries are removed and count as a miss. The data
+     * file of an entry that is found is kept for the sendfile grace, even if the entry leaves the cache meanwhile.
+     *
+     * @param bucketStorageType
+     * @param bucketName
+     * @param fileName
+     * @return entry, or null if the file is not cached
+     */
+    DiskCacheEntry get(BucketStorageType bucketStorageType, String bucketName, String fileName) {
+        String key = createKey(bucketStorageType, bucketName, fileName);
+        DiskCacheEntry entry;
+        List<DiskCacheEntry> removedEntries = new ArrayList<>();
+        List<DiskCacheEntry> deletedEntries;
+
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && isExpired(entry)) {
+                remove(entry);
+                removedEntries.add(entry);
+                entry = null;
+            }
+            else if (entry != null) {
+                entry.setServedUntil(Instant.now().plus(sendfileGrace));
+            }
+            deletedEntries = retire(removedEntries);
+        }
+
+        deletedEntries.forEach(this::deleteDataFile);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        return entry;
+    }
+
+    /**
+     * Wraps a stream read from the storage provider so that its content is also written to the cache. The file is
+     * added to the cache only if the stream is read to the end; a stream closed early leaves nothing behind.
+     *
+     * @param bucketStorageType
+     * @param bucketName
+     * @param fileName
+     * @param bucketStorageDTO the provider's response, whose content is read
+     * @return inputStream that caches what is read, or the content itself if it cannot be cached
+     */
+    InputStream cacheWhileReading(BucketStorageType bucketStorageType, String bucketName, String fileName,
+                                  BucketStorageDTO bucketStorageDTO) {
+        InputStream inputStream = bucketStorageDTO.getInputStream();
+        long contentLength = bucketStorageDTO.getContentLength();
+        String key = createKey(bucketStorageType, bucketName, fileName);
+        String name = key + "." + UUID.randomUUID();
+        Path temporaryFile = directory.resolve(name + TEMPORARY_SUFFIX);
+        long generation = startFill(key);
+
+        // Caching is best effort, the file is still served if the temporary file cannot be created
+        try {
+            FileChannel fileChannel = FileChannel.open(
+                    temporaryFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            return new DiskCacheWriteThroughInputStream(inputStream, fileChannel, contentLength,
+                    () -> commit(key, name, temporaryFile, bucketStorageDTO, generation),
+                    () -> discard(key, temporaryFile));
+        }
+        catch (IOException e) {
+            logger.warn("Unable to cache file " + fileName + ": " + e.getMessage());
+            endFill(key);
+            return inputStream;
+        }
+    }
+
+    /**
+     * Removes a file from the cache, for instance because it was overwritten or deleted.
+     *
+     * @param bucketStorageType
+     * @param bucketName
+     * @param fileName
+     */
+    void invalidate(BucketStorageType bucketStorageType, String bucketName, String fileName) {
+        String key = createKey(bucketStorageType, bucketName, fileName);
+        List<DiskCacheEntry> removedEntries = new ArrayList<>();
+        List<DiskCacheEntry> deletedEntries;
+
+        synchronized (entries) {
+            FillGeneration fillGeneration = fillGenerations.get(key);
+            if (fillGeneration != null) {
+                fillGeneration.generation++;
+            }
+            DiskCacheEntry entry = entries.get(key);
+            if (entry != null) {
+                remove(entry);
+                removedEntries.add(entry);
+            }
+            deletedEntries = retire(removedEntries);
+        }
+
+        deletedEntries.forEach(this::deleteDataFile);
+    }
+
+    public BucketStorageDiskCacheStatistics getStatistics() {
+        synchronized (entries) {
+            return new BucketStorageDiskCacheStatistics(enabled, hits.get(), misses.get(), evictions.get(),
+                    writes.get(), entries.size(), usedBytes, retiredBytes, maxBytes);
+        }
+    }
+
+    /**
+     * Stops the sweep and deletes the data files kept for reads, as no response is sent once the container stops.
+     * The cached entries are left on disk for the next run.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (sweepExecutorService != null) {
+            sweepExecutorService.shutdownNow();
+        }
+
+        List<DiskCacheEntry> deletedEntries;
+        synchronized (entries) {
+            deletedEntries = new ArrayList<>(retiredEntries);
+            retiredEntries.clear();
+            retiredBytes = 0;
+        }
+        deletedEntries.forEach(this::deleteDataFile);
+    }
+
+    /**
+     * Deletes the data files whose sendfile grace has ended, so they do not hold the budget while no requests come.
+     */
+    void sweepRetiredEntries() {
+        List<DiskCacheEntry> deletedEntries;
+        synchronized (entries) {
+            deletedEntries = retire(new ArrayList<>());
+        }
+        deletedEntries.forEach(this::deleteDataFile);
+    }
+
+    /**
+     * Moves a completely written temporary file into place, then writes its metadata, which is what makes the entry
+     * visible after a restart. Both are done outside the lock, as they are the version's own files. The entry is then
+     * added, unless the file changed since it was read.
+     */
+    private void commit(String key, String name, Path temporaryFile, BucketStorageDTO bucketStorageDTO,
+                        long generation) throws IOException {
+        DiskCacheEntry entry = new DiskCacheEntry(key, directory.resolve(name + DATA_SUFFIX),
+                directory.resolve(name + METADATA_SUFFIX), bucketStorageDTO.getContentType(),
+                bucketStorageDTO.getContentLength(), bucketStorageDTO.getETag(), bucketStorageDTO.getLastModified(),
+                Instant.now());
+
+        try {
+            Files.move(temporaryFile, entry.getDataFile(), StandardCopyOption.ATOMIC_MOVE);
+            writeMetadata(entry);
+        }
+
+        // Neither file may be left for a restart to find, the temporary file is deleted when the read is discarded
+        catch (IOException e) {
+            deleteEntryFiles(entry);
+            throw e;
+        }
+
+        List<DiskCacheEntry> removedEntries = new ArrayList<>();
+        List<DiskCacheEntry> deletedEntries;
+        synchronized (entries) {
+            if (fillGenerations.get(key).generation != generation) {
+                removedEntries.add(entry);
+            }
+            else {
+                DiskCacheEntry previousEntry = entries.get(key);
+                if (previousEntry != null) {
+                    remove(previousEntry);
+                    removedEntries.add(previousEntry);
+                }
+
+                entries.put(key, entry);
+                usedBytes += entry.getContentLength();
+                writes.incrementAndGet();
+                removedEntries.addAll(evictOverBudget());
+            }
+            endFillLocked(key);
+            deletedEntries = retire(removedEntries);
+        }
+
+        deletedEntries.forEach(this::deleteDataFile);
+    }
+
+    private void discard(String key, Path temporaryFile) {
+        deleteQuietly(temporaryFile);
+        endFill(key);
+    }
+
+    /**
+     * @return generation of the file, which must be unchanged when the read commits
+     */
+    private long startFill(String key) {
+        synchronized (entries) {
+            FillGeneration fillGeneration = fillGenerations.computeIfAbsent(key, fillKey -> new FillGeneration());
+            fillGeneration.fills++;
+            return fillGeneration.generation;
+        }
+    }
+
+    private void endFill(String key) {
+        synchronized (entries) {
+            endFillLocked(key);
+        }
+    }
+
+    private void endFillLocked(String key) {
+        FillGeneration fillGeneration = fillGenerations.get(key);
+        if (--fillGeneration.fills == 0) {
+            fillGenerations.remove(key);
+        }
+    }
+
+    private void writeMetadata(DiskCacheEntry entry) throws IOException {
+        Properties properties = new Properties();
+        if (entry.getContentType() != null) {
+            properties.setProperty(CONTENT_TYPE_PROPERTY, entry.getContentType());
+        }
+        if (entry.getETag() != null) {
+            properties.setProperty(ETAG_PROPERTY, entry.getETag());
+        }
+        properties.setProperty(CONTENT_LENGTH_PROPERTY, Long.toString(entry.getContentLength()));
+        properties.setProperty(LAST_MODIFIED_PROPERTY, Long.toString(entry.getLastModified()));
+        properties.setProperty(CACHED_AT_PROPERTY, Long.toString(entry.getCachedAt().toEpochMilli()));
+
+        // Forced to disk before it is moved into place, like the data file, so a crash cannot leave it empty
+        Path temporaryFile = directory.resolve(entry.getMetadataFile().getFileName() + TEMPORARY_SUFFIX);
+        try (FileChannel fileChannel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            properties.store(Channels.newOutputStream(fileChannel), null);
+            fileChannel.force(true);
+        }
+        Files.move(temporaryFile, entry.getMetadataFile(), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Removes the least recently used entries until the cache, including the data files kept for reads, is within its
+     * budget. Called with the lock held.
+     *
+     * @return evicted entries, whose files the caller deletes once it has released the lock
+     */
+    private List<DiskCacheEntry> evictOverBudget() {
+        List<DiskCacheEntry> evictedEntries = new ArrayList<>();
+        Iterator<DiskCacheEntry> leastRecentlyUsed = entries.values().iterator();
+
+        while (usedBytes + retiredBytes > maxBytes && leastRecentlyUsed.hasNext()) {
+            DiskCacheEntry entry = leastRecentlyUsed.next();
+            leastRecentlyUsed.remove();
+            usedBytes -= entry.getContentLength();
+            evictedEntries.add(entry);
+            evictions.incrementAndGet();
+        }
+        return evictedEntries;
+    }
+
+    /**
+     * Called with the lock held. The caller deletes the entry's files once it has released the lock.
+     */
+    private void remove(DiskCacheEntry entry) {
+        entries.remove(entry.getKey());
+        usedBytes -= entry.getContentLength();
+    }
+
+    /**
+     * Deletes the metadata files of entries that left the cache, so a restart cannot bring them back, and keeps their
+     * data files until their sendfile grace ends. Called with the lock held.
+     *
+     * @param removedEntries entries that just left the cache
+     * @return entries whose data files the caller deletes once it has released the lock, as their grace has ended
+     */
+    private List<DiskCacheEntry> retire(List<DiskCacheEntry> removedEntries) {
+        for (DiskCacheEntry entry : removedEntries) {
+            deleteQuietly(entry.getMetadataFile());
+            retiredEntries.add(entry);
+            retiredBytes += entry.getContentLength();
+        }
+
+        List<DiskCacheEntry> deletedEntries = new ArrayList<>();
+        Instant now = Instant.now();
+        Iterator<DiskCacheEntry> retired = retiredEntries.iterator();
+        while (retired.hasNext()) {
+            DiskCacheEntry entry = retired.next();
+            if (!entry.getServedUntil().isAfter(now)) {
+                retired.remove();
+                retiredBytes -= entry.getContentLength();
+                deletedEntries.add(entry);
+            }
+        }
+        return deletedEntries;
+    }
+
+    private void deleteDataFile(DiskCacheEntry entry) {
+        deleteQuietly(entry.getDataFile());
+    }
+
+    private void deleteEntryFiles(DiskCacheEntry entry) {
+        deleteQuietly(entry.getMetadataFile());
+        deleteQuietly(entry.getDataFile());
+    }
+
+    private boolean isExpired(DiskCacheEntry entry) {
+        return !timeToLive.isZero() && entry.getCachedAt().plus(timeToLive).isBefore(Instant.now());
+    }
+
+    /**
+     * Rebuilds the index from the files a previous run left behind. Temporary files and data files without valid
+     * metadata are the remains of interrupted writes and are deleted.
+     */
+    private void recover() {
+        List<DiskCacheEntry> recoveredEntries = new ArrayList<>();
+
+        try {
+            Files.createDirectories(directory);
+
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+
+                    if (name.endsWith(METADATA_SUFFIX)) {
+                        DiskCacheEntry entry =
+                                readEntry(name.substring(0, name.length() - METADATA_SUFFIX.length()));
+                        if (entry != null) {
+                            recoveredEntries.add(entry);
+                        }
+                    }
+                    else if (name.endsWith(TEMPORARY_SUFFIX)) {
+                        deleteQuietly(file);
+                    }
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Unable to open disk cache directory " + directory, e);
+        }
+
+        // Files read least recently are evicted first, as if they had been read in the order they were cached. Of
+        // two versions of a file left by a crash during a commit, the later one is kept.
+        recoveredEntries.sort(Comparator.comparing(DiskCacheEntry::getCachedAt));
+        List<DiskCacheEntry> removedEntries = new ArrayList<>();
+        synchronized (entries) {
+            for (DiskCacheEntry entry : recoveredEntries) {
+                DiskCacheEntry previousEntry = entries.put(entry.getKey(), entry);
+                if (previousEntry != null) {
+                    usedBytes -= previousEntry.getContentLength();
+                    removedEntries.add(previousEntry);
+                }
+                usedBytes += entry.getContentLength();
+            }
+            removedEntries.addAll(evictOverBudget());
+        }
+        removedEntries.forEach(this::deleteEntryFiles);
+
+        deleteOrphanedDataFiles();
+        logger.info("Disk cache recovered " + entries.size() + " files (" + usedBytes + " bytes) from " + directory);
+    }
+
+    /**
+     * @param name of the version's files, the key followed by the version's own suffix
+     */
+    private DiskCacheEntry readEntry(String name) {
+        String key = name.contains(".") ? name.substring(0, name.indexOf('.')) : name;
+        Path dataFile = directory.resolve(name + DATA_SUFFIX);
+        Path metadataFile = directory.resolve(name + METADATA_SUFFIX);
+        Properties properties = new Properties();
+
+        try (InputStream inputStream = Files.newInputStream(metadataFile)) {
+            properties.load(inputStream);
+            long contentLength = Long.parseLong(properties.getProperty(CONTENT_LENGTH_PROPERTY));
+            Instant cachedAt = Instant.ofEpochMilli(Long.parseLong(properties.getProperty(CACHED_AT_PROPERTY)));
+
+            long lastModified = Long.parseLong(properties.getProperty(LAST_MODIFIED_PROPERTY, "-1"));
+
+            if (Files.size(dataFile) == contentLength) {
+                return new DiskCacheEntry(key, dataFile, metadataFile, properties.getProperty(CONTENT_TYPE_PROPERTY),
+                        contentLength, properties.getProperty(ETAG_PROPERTY), lastModified, cachedAt);
+            }
+        }
+
+        // Metadata or data file is missing or incomplete
+        catch (IOException | RuntimeException e) {
+            logger.warn("Discarding disk cache entry " + name + ": " + e.getMessage());
+        }
+
+        deleteQuietly(metadataFile);
+        deleteQuietly(dataFile);
+        return null;
+    }
+
+    private void deleteOrphanedDataFiles() {
+        Set<Path> dataFiles = new HashSet<>();
+        synchronized (entries) {
+            entries.values().forEach(entry -> dataFiles.add(entry.getDataFile()));
+        }
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + DATA_SUFFIX)) {
+            for (Path file : files) {
+                if (!dataFiles.contains(file)) {
+                    deleteQuietly(file);
+                }
+            }
+        }
+        catch (IOException e) {
+            logger.warn("Unable to clean up disk cache directory " + directory + ": " + e.getMessage());
+        }
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        }
+        catch (IOException e) {
+            logger.warn("Unable to delete disk cache file " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * File names are a hash of the provider, bucket and file name, so any file name maps to a safe, fixed-length
+     * name on disk.
+     */
+    private static String createKey(BucketStorageType bucketStorageType, String bucketName, String fileName) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            byte[] digest = messageDigest.digest(
+                    (bucketStorageType.name() + "/" + bucketName + "/" + fileName).getBytes(StandardCharsets.UTF_8));
+
+            StringBuilder key = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                key.append(String.format("%02x", b));
+            }
+            return key.toString();
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reads of a file being cached, and the generation of the file when they started.
+     */
+    private static class FillGeneration {
+
+        private long generation;
+        private int fills;
+    }
+}
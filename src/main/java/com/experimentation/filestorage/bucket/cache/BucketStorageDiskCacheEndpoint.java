@@ -0,0 +1,26 @@
+package com.experimentation.filestorage.bucket.cache;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes the disk cache statistics at /actuator/diskcache.
+ */
+@Component
+@Endpoint(id = "diskcache")
+public class BucketStorageDiskCacheEndpoint {
+
+    private final BucketStorageDiskCache bucketStorageDiskCache;
+
+    @Autowired
+    public BucketStorageDiskCacheEndpoint(BucketStorageDiskCache bucketStorageDiskCache) {
+        this.bucketStorageDiskCache = bucketStorageDiskCache;
+    }
+
+    @ReadOperation
+    public BucketStorageDiskCacheStatistics diskCache() {
+        return bucketStorageDiskCache.getStatistics();
+    }
+}
@@ -0,0 +1,69 @@
+package com.experimentation.filestorage.bucket.cache;
+
+/**
+ * Snapshot of the disk cache's effectiveness and how much of its budget is in use.
+ */
+public class BucketStorageDiskCacheStatistics {
+
+    private final boolean enabled;
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long writes;
+    private final int entries;
+    private final long usedBytes;
+    private final long retiredBytes;
+    private final long maxBytes;
+
+    public BucketStorageDiskCacheStatistics(boolean enabled, long hits, long misses, long evictions, long writes,
+                                            int entries, long usedBytes, long retiredBytes, long maxBytes) {
+        this.enabled = enabled;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.writes = writes;
+        this.entries = entries;
+        this.usedBytes = usedBytes;
+        this.retiredBytes = retiredBytes;
+        this.maxBytes = maxBytes;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getWrites() {
+        return writes;
+    }
+
+    public int getEntries() {
+        return entries;
+    }
+
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * @return bytes of files that left the cache but are kept for reads still sending them, part of the budget
+     */
+    public long getRetiredBytes() {
+        return retiredBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+}
@@ -0,0 +1,270 @@
+package com.experimentation.filestorage.bucket.cache;
+
+import com.experimentation.filestorage.bucket.BucketStorageDTO;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the content of small, frequently read files in memory, within a byte budget.
+ * Files are evicted least recently used first, but a new file is only admitted in place of the files it would evict
+ * if it has been requested more often than they have recently, so a single pass over many files (a scan) does not
+ * push out the files that are read all the time.
+ */
+@Component
+public class BucketStorageMemoryCache {
+
+    // Estimated size of a typical cached file, used to size the frequency sketch for the byte budget
+    private static final int TYPICAL_FILE_BYTES = 4096;
+
+    private final boolean enabled;
+    private final long maxBytes;
+    private final long maxObjectBytes;
+    private final Duration timeToLive;
+
+    // Access ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, MemoryCacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final MemoryCacheFrequencySketch frequencySketch;
+    private long usedBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+
+    // Generation of each file being read, bumped when the file changes so that the reads under way are not cached.
+    // A file is only tracked while it is being read. Guarded by entries, like usedBytes.
+    private final Map<String, ReadGeneration> readGenerations = new HashMap<>();
+
+    @Autowired
+    public BucketStorageMemoryCache(@Value("${filestorage.cache.memory.enabled:false}") boolean enabled,
+                                    @Value("${filestorage.cache.memory.max-size:67108864}") long maxBytes,
+                                    @Value("${filestorage.cache.memory.max-object-size:262144}") long maxObjectBytes,
+                                    @Value("${filestorage.cache.memory.time-to-live:300}") long timeToLiveSeconds) {
+        this.enabled = enabled;
+        this.maxBytes = maxBytes;
+        this.maxObjectBytes = Math.min(maxObjectBytes, maxBytes);
+        this.timeToLive = Duration.ofSeconds(timeToLiveSeconds);
+        this.frequencySketch = new MemoryCacheFrequencySketch(
+                (int) Math.min(Integer.MAX_VALUE, maxBytes / TYPICAL_FILE_BYTES));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Whether a file of the given length may be cached. Files of unknown length are never cached.
+     *
+     * @param contentLength
+     * @return true if the file is small enough
+     */
+    public boolean isCacheable(long contentLength) {
+        return enabled && contentLength >= 0 && contentLength <= maxObjectBytes;
+    }
+
+    /**
+     * Looks up a cached file, counting a hit or a miss. Every lookup also counts towards the file's frequency,
+     * which is what decides whether it is admitted after a miss.
+     *
+     * @param bucketStorageType
+     * @param bucketName
+     * @param fileName
+     * @return entry, or null if the file is not cached
+     */
+    MemoryCacheEntry get(BucketStorageType bucketStorageType, String bucketName, String fileName) {
+        String key = createKey(bucketStorageType, bucketName, fileName);
+        MemoryCacheEntry entry;
+
+        synchronized (entries) {
+            frequencySketch.increment(key.hashCode());
+            entry = entries.get(key);
+            if (entry != null && isExpired(entry)) {
+                remove(entry);
+                entry = null;
+            }
+        }
+
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        return entry;
+    }
+
+    /**
+     * Starts tracking a read of the file from the provider, which must be ended with {@link #endRead}.
+     *
+     * @param bucketStorageType
+     * @param bucketName
+     * @param fileName
+     * @return generation of the file, to be passed to {@link #put} once the file has been read
+     */
+    long startRead(BucketStorageType bucketStorageType, String bucketName, String fileName) {
+        String key = createKey(bucketStorageType, bucketName, fileName);
+
+        synchronized (entries) {
+            ReadGeneration readGeneration = readGenerations.computeIfAbsent(key, readKey -> new ReadGeneration());
+            readGeneration.reads++;
+            return readGeneration.generation;
+        }
+    }
+
+    /**
+     * Stops tracking a read started with {@link #startRead}, whether or not it was offered to the cache.
+     *
+     * @param bucketStorageType
+     * @param bucketName
+     * @param fileName
+     */
+    void endRead(BucketStorageType bucketStorageType, String bucketName, String fileName) {
+        String key = createKey(bucketStorageType, bucketName, fileName);
+
+        synchronized (entries) {
+            ReadGeneration readGeneration = readGenerations.get(key);
+            if (--readGeneration.reads == 0) {
+                readGenerations.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Offers a file that was read completely to the cache. It is dropped if the file was invalidated since the read
+     * started, or if it has been requested less often than the files it would evict.
+     *
+     * @param bucketStorageType
+     * @param bucketName
+     * @param fileName
+     * @param bucketStorageDTO the provider's response, for the file's content type and validators
+     * @param content
+     * @param generation value of {@link #startRead} before the read
+     */
+    void put(BucketStorageType bucketStorageType, String bucketName, String fileName,
+             BucketStorageDTO bucketStorageDTO, byte[] content, long generation) {
+        if (!isCacheable(content.length)) {
+            return;
+        }
+
+        String key = createKey(bucketStorageType, bucketName, fileName);
+        MemoryCacheEntry entry = new MemoryCacheEntry(key, bucketStorageDTO.getContentType(),
+                bucketStorageDTO.getETag(), bucketStorageDTO.getLastModified(), content, Instant.now());
+
+        synchronized (entries) {
+            ReadGeneration readGeneration = readGenerations.get(key);
+            if (readGeneration == null || readGeneration.generation != generation) {
+                return;
+            }
+
+            MemoryCacheEntry previousEntry = entries.get(key);
+            if (previousEntry != null) {
+                remove(previousEntry);
+            }
+
+            if (!evictFor(key, content.length)) {
+                rejections.incrementAndGet();
+                return;
+            }
+
+            entries.put(key, entry);
+            usedBytes += content.length;
+            writes.incrementAndGet();
+        }
+    }
+
+    /**
+     * Removes a file from the cache, for instance because it was overwritten or deleted.
+     *
+     * @param bucketStorageType
+     * @param bucketName
+     * @param fileName
+     */
+    void invalidate(BucketStorageType bucketStorageType, String bucketName, String fileName) {
+        String key = createKey(bucketStorageType, bucketName, fileName);
+
+        synchronized (entries) {
+            ReadGeneration readGeneration = readGenerations.get(key);
+            if (readGeneration != null) {
+                readGeneration.generation++;
+            }
+            MemoryCacheEntry entry = entries.get(key);
+            if (entry != null) {
+                remove(entry);
+            }
+        }
+    }
+
+    public BucketStorageMemoryCacheStatistics getStatistics() {
+        synchronized (entries) {
+            return new BucketStorageMemoryCacheStatistics(enabled, hits.get(), misses.get(), evictions.get(),
+                    writes.get(), rejections.get(), entries.size(), usedBytes, maxBytes);
+        }
+    }
+
+    /**
+     * Evicts the least recently used files until the new file fits, but only if the new file is requested more
+     * often than every file it would evict. Nothing is evicted if the new file is not admitted.
+     *
+     * @return true if the new file fits
+     */
+    private boolean evictFor(String key, long length) {
+        long bytesToFree = usedBytes + length - maxBytes;
+        if (bytesToFree <= 0) {
+            return true;
+        }
+
+        int candidateFrequency = frequencySketch.frequency(key.hashCode());
+        List<MemoryCacheEntry> victims = new ArrayList<>();
+        Iterator<MemoryCacheEntry> leastRecentlyUsed = entries.values().iterator();
+
+        while (bytesToFree > 0 && leastRecentlyUsed.hasNext()) {
+            MemoryCacheEntry victim = leastRecentlyUsed.next();
+            if (!isExpired(victim) && frequencySketch.frequency(victim.getKey().hashCode()) >= candidateFrequency) {
+                return false;
+            }
+            victims.add(victim);
+            bytesToFree -= victim.getContent().length;
+        }
+
+        for (MemoryCacheEntry victim : victims) {
+            remove(victim);
+            evictions.incrementAndGet();
+        }
+        return true;
+    }
+
+    private void remove(MemoryCacheEntry entry) {
+        entries.remove(entry.getKey());
+        usedBytes -= entry.getContent().length;
+    }
+
+    private boolean isExpired(MemoryCacheEntry entry) {
+        return !timeToLive.isZero() && entry.getCachedAt().plus(timeToLive).isBefore(Instant.now());
+    }
+
+    private static String createKey(BucketStorageType bucketStorageType, String bucketName, String fileName) {
+        return bucketStorageType.name() + "/" + bucketName + "/" + fileName;
+    }
+
+    /**
+     * Reads of a file under way, and the generation of the file when they started.
+     */
+    private static class ReadGeneration {
+
+        private long generation;
+        private int reads;
+    }
+}
@@ -0,0 +1,26 @@
+package com.experimentation.filestorage.bucket.cache;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes the memory cache statistics at /actuator/memorycache.
+ */
+@Component
+@Endpoint(id = "memorycache")
+public class BucketStorageMemoryCacheEndpoint {
+
+    private final BucketStorageMemoryCache bucketStorageMemoryCache;
+
+    @Autowired
+    public BucketStorageMemoryCacheEndpoint(BucketStorageMemoryCache bucketStorageMemoryCache) {
+        this.bucketStorageMemoryCache = bucketStorageMemoryCache;
+    }
+
+    @ReadOperation
+    public BucketStorageMemoryCacheStatistics memoryCache() {
+        return bucketStorageMemoryCache.getStatistics();
+    }
+}
@@ -0,0 +1,71 @@
+package com.experimentation.filestorage.bucket.cache;
+
+/**
+ * Snapshot of the memory cache's effectiveness and how much of its budget is in use.
+ */
+public class BucketStorageMemoryCacheStatistics {
+
+    private final boolean enabled;
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long writes;
+    private final long rejections;
+    private final int entries;
+    private final long usedBytes;
+    private final long maxBytes;
+
+    public BucketStorageMemoryCacheStatistics(boolean enabled, long hits, long misses, long evictions, long writes,
+                                              long rejections, int entries, long usedBytes, long maxBytes) {
+        this.enabled = enabled;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.writes = writes;
+        this.rejections = rejections;
+        this.entries = entries;
+        this.usedBytes = usedBytes;
+        this.maxBytes = maxBytes;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getWrites() {
+        return writes;
+    }
+
+    /**
+     * Files that were read but not admitted, because they were requested less often than the files they would
+     * have evicted.
+     * @return rejections
+     */
+    public long getRejections() {
+        return rejections;
+    }
+
+    public int getEntries() {
+        return entries;
+    }
+
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+}
@@ -0,0 +1,56 @@
+package com.experimentation.filestorage.bucket.cache;
+
+import com.experimentation.filestorage.bucket.BucketStorage;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+/**
+ * Wraps every storage provider bean in a disk caching decorator when the disk cache is enabled, so that the
+ * BucketStorageFactory hands out cached providers without the service knowing about the cache.
+ * The cache itself is only created once the first provider is wrapped.
+ */
+@Component
+public class DiskCacheBeanPostProcessor implements BeanPostProcessor, Ordered {
+
+    // Decorators applied later wrap the ones applied earlier. From the outside in, a call passes the metadata index,
+    // the memory cache and this disk cache, then the hedged reads, the circuit breaker, the bulkhead and the metrics,
+    // which lower orders apply closer to the provider so that cache hits never reach them
+    public static final int ORDER = 0;
+
+    private final boolean enabled;
+    private final ObjectFactory<BucketStorageDiskCache> bucketStorageDiskCache;
+
+    @Autowired
+    public DiskCacheBeanPostProcessor(@Value("${filestorage.cache.disk.enabled:false}") boolean enabled,
+                                      ObjectFactory<BucketStorageDiskCache> bucketStorageDiskCache) {
+        this.enabled = enabled;
+        this.bucketStorageDiskCache = bucketStorageDiskCache;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!enabled || !(bean instanceof BucketStorage)) {
+            return bean;
+        }
+
+        for (BucketStorageType bucketStorageType : BucketStorageType.values()) {
+            // Files of the local file system provider are on disk already
+            if (bucketStorageType.toString().equals(beanName) && bucketStorageType != BucketStorageType.LOCAL_FS) {
+                return new DiskCachingBucketStorage(
+                        bucketStorageType, (BucketStorage) bean, bucketStorageDiskCache.getObject());
+            }
+        }
+
+        return bean;
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+}
@@ -0,0 +1,76 @@
+package com.experimentation.filestorage.bucket.cache;
+
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * A file held in the disk cache, along with what is needed to serve it without asking the storage provider.
+ */
+class DiskCacheEntry {
+
+    private final String key;
+    private final Path dataFile;
+    private final Path metadataFile;
+    private final String contentType;
+    private final long contentLength;
+    private final String eTag;
+    private final long lastModified;
+    private final Instant cachedAt;
+    private Instant servedUntil = Instant.MIN;
+
+    DiskCacheEntry(String key, Path dataFile, Path metadataFile, String contentType, long contentLength,
+                   String eTag, long lastModified, Instant cachedAt) {
+        this.key = key;
+        this.dataFile = dataFile;
+        this.metadataFile = metadataFile;
+        this.contentType = contentType;
+        this.contentLength = contentLength;
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+        this.cachedAt = cachedAt;
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    Path getDataFile() {
+        return dataFile;
+    }
+
+    Path getMetadataFile() {
+        return metadataFile;
+    }
+
+    String getContentType() {
+        return contentType;
+    }
+
+    long getContentLength() {
+        return contentLength;
+    }
+
+    String getETag() {
+        return eTag;
+    }
+
+    long getLastModified() {
+        return lastModified;
+    }
+
+    Instant getCachedAt() {
+        return cachedAt;
+    }
+
+    /**
+     * Time until which the files are kept once the entry leaves the cache, as they may still be opened by their path
+     * to be sent. Guarded by the cache's lock.
+     */
+    Instant getServedUntil() {
+        return servedUntil;
+    }
+
+    void setServedUntil(Instant servedUntil) {
+        this.servedUntil = servedUntil;
+    }
+}
@@ -0,0 +1,144 @@
+package com.experimentation.filestorage.bucket.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Copies everything read from a provider stream into a temporary cache file. Once the expected number of bytes has
+ * been read, the file is flushed to disk and committed; if the stream is closed early or fails, it is discarded.
+ * Problems writing the cache file never affect the reader, caching just stops for that stream.
+ */
+class DiskCacheWriteThroughInputStream extends FilterInputStream {
+
+    private static final Logger logger = LoggerFactory.getLogger(DiskCacheWriteThroughInputStream.class);
+
+    interface CacheAction {
+        void run() throws IOException;
+    }
+
+    private final FileChannel fileChannel;
+    private final long expectedLength;
+    private final CacheAction commit;
+    private final Runnable discard;
+    private long bytesWritten;
+    private boolean caching = true;
+
+    DiskCacheWriteThroughInputStream(InputStream inputStream, FileChannel fileChannel, long expectedLength,
+                                     CacheAction commit, Runnable discard) {
+        super(inputStream);
+        this.fileChannel = fileChannel;
+        this.expectedLength = expectedLength;
+        this.commit = commit;
+        this.discard = discard;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b == -1) {
+            finish();
+        }
+        else {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int bytesRead = super.read(buffer, offset, length);
+        if (bytesRead == -1) {
+            finish();
+        }
+        else {
+            write(buffer, offset, bytesRead);
+        }
+        return bytesRead;
+    }
+
+    /**
+     * Skipped bytes never reach the cache file, so the file can no longer be completed.
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        if (skipped > 0) {
+            stopCaching();
+        }
+        return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        }
+        finally {
+            stopCaching();
+        }
+    }
+
+    private void write(byte[] buffer, int offset, int length) {
+        if (!caching) {
+            return;
+        }
+
+        try {
+            ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, offset, length);
+            while (byteBuffer.hasRemaining()) {
+                fileChannel.write(byteBuffer);
+            }
+            bytesWritten += length;
+        }
+        catch (IOException e) {
+            logger.warn("Stopped writing disk cache file: " + e.getMessage());
+            stopCaching();
+        }
+    }
+
+    private void finish() {
+        if (!caching) {
+            return;
+        }
+
+        // A stream that ends short of its length was cut off, so it must not be cached
+        if (bytesWritten != expectedLength) {
+            stopCaching();
+            return;
+        }
+
+        caching = false;
+
+        try {
+            fileChannel.force(true);
+            fileChannel.close();
+            commit.run();
+        }
+        catch (IOException e) {
+            logger.warn("Unable to commit disk cache file: " + e.getMessage());
+            discard.run();
+        }
+    }
+
+    private void stopCaching() {
+        if (!caching) {
+            return;
+        }
+
+        caching = false;
+
+        try {
+            fileChannel.close();
+        }
+        catch (IOException e) {
+            logger.warn("Unable to close disk cache file: " + e.getMessage());
+        }
+        discard.run();
+    }
+}
@@ -0,0 +1,182 @@
+package com.experimentation.filestorage.bucket.cache;
+
+import com.experimentation.filestorage.bucket.BucketStorage;
+import com.experimentation.filestorage.bucket.BucketStorageDTO;
+import com.experimentation.filestorage.bucket.BucketStorageDeleteResult;
+import com.experimentation.filestorage.bucket.BucketStorageListOptions;
+import com.experimentation.filestorage.bucket.BucketStorageListing;
+import com.experimentation.filestorage.bucket.BucketStorageMetadata;
+import com.experimentation.filestorage.bucket.BucketStorageRange;
+import com.experimentation.filestorage.bucket.BucketStorageReadOptions;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.experimentation.filestorage.bucket.util.BucketStorageServiceException;
+import com.google.common.io.ByteStreams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Serves reads from the disk cache when it can and fills the cache from whole-file reads that miss it.
+ * Ranged reads that miss go straight to the provider, as they never contain the whole file. Uploads and deletes
+ * invalidate the cached file.
+ */
+class DiskCachingBucketStorage implements BucketStorage {
+
+    private static final Logger logger = LoggerFactory.getLogger(DiskCachingBucketStorage.class);
+
+    private final BucketStorageType bucketStorageType;
+    private final BucketStorage bucketStorage;
+    private final BucketStorageDiskCache bucketStorageDiskCache;
+
+    DiskCachingBucketStorage(BucketStorageType bucketStorageType, BucketStorage bucketStorage,
+                             BucketStorageDiskCache bucketStorageDiskCache) {
+        this.bucketStorageType = bucketStorageType;
+        this.bucketStorage = bucketStorage;
+        this.bucketStorageDiskCache = bucketStorageDiskCache;
+    }
+
+    @Override
+    public BucketStorageDTO getFile(String bucketName, String fileName, BucketStorageReadOptions readOptions)
+            throws BucketStorageServiceException {
+
+        DiskCacheEntry entry = bucketStorageDiskCache.get(bucketStorageType, bucketName, fileName);
+
+        // The client's copy is checked against the cached validators, as the provider would have
+        if (entry != null && readOptions.isNotModified(entry.getETag(), entry.getLastModified())) {
+            return BucketStorageDTO.notModified(fileName, entry.getETag(), entry.getLastModified());
+        }
+
+        // A read pinned to another version than the cached one is left to the provider to check
+        if (entry != null && !readOptions.isChanged(entry.getETag())) {
+            BucketStorageDTO bucketStorageDTO = readFromCache(entry, fileName, readOptions.getRange());
+            if (bucketStorageDTO != null) {
+                return bucketStorageDTO;
+            }
+        }
+
+        BucketStorageDTO bucketStorageDTO = bucketStorage.getFile(bucketName, fileName, readOptions);
+
+        // Only whole files of a known, small enough length are cached
+        if (readOptions.getRange() != null
+                || !bucketStorageDiskCache.isCacheable(bucketStorageDTO.getContentLength())) {
+            return bucketStorageDTO;
+        }
+
+        InputStream inputStream =
+                bucketStorageDiskCache.cacheWhileReading(bucketStorageType, bucketName, fileName, bucketStorageDTO);
+
+        BucketStorageDTO cachingDTO = new BucketStorageDTO(bucketStorageDTO.getFileName(),
+                bucketStorageDTO.getContentType(), bucketStorageDTO.getContentLength(), inputStream);
+        cachingDTO.setETag(bucketStorageDTO.getETag());
+        cachingDTO.setLastModified(bucketStorageDTO.getLastModified());
+        return cachingDTO;
+    }
+
+    @Override
+    public BucketStorageMetadata getFileMetadata(String bucketName, String fileName)
+            throws BucketStorageServiceException {
+        return bucketStorage.getFileMetadata(bucketName, fileName);
+    }
+
+    @Override
+    public Iterator<String> listFileNames(String bucketName, String prefix) throws BucketStorageServiceException {
+        return bucketStorage.listFileNames(bucketName, prefix);
+    }
+
+    @Override
+    public BucketStorageListing listFiles(String bucketName, BucketStorageListOptions listOptions)
+            throws BucketStorageServiceException {
+        return bucketStorage.listFiles(bucketName, listOptions);
+    }
+
+    @Override
+    public void uploadMultipartFile(String bucketName, String fileName, MultipartFile file)
+            throws BucketStorageServiceException {
+        try {
+            bucketStorage.uploadMultipartFile(bucketName, fileName, file);
+        }
+        finally {
+            bucketStorageDiskCache.invalidate(bucketStorageType, bucketName, fileName);
+        }
+    }
+
+    @Override
+    public void deleteFile(String bucketName, String fileName) throws BucketStorageServiceException {
+        try {
+            bucketStorage.deleteFile(bucketName, fileName);
+        }
+        finally {
+            bucketStorageDiskCache.invalidate(bucketStorageType, bucketName, fileName);
+        }
+    }
+
+    @Override
+    public List<BucketStorageDeleteResult> deleteFiles(String bucketName, List<String> fileNames)
+            throws BucketStorageServiceException {
+        try {
+            return bucketStorage.deleteFiles(bucketName, fileNames);
+        }
+        finally {
+            fileNames.forEach(fileName -> bucketStorageDiskCache.invalidate(bucketStorageType, bucketName, fileName));
+        }
+    }
+
+    /**
+     * Only the files the provider reports are invalidated, as the names under the prefix are not known up front.
+     */
+    @Override
+    public List<BucketStorageDeleteResult> deleteFilesWithPrefix(String bucketName, String prefix)
+            throws BucketStorageServiceException {
+        List<BucketStorageDeleteResult> results = bucketStorage.deleteFilesWithPrefix(bucketName, prefix);
+        results.forEach(result ->
+                bucketStorageDiskCache.invalidate(bucketStorageType, bucketName, result.getFileName()));
+        return results;
+    }
+
+    /**
+     * Opens the cached file at the start of the requested range.
+     *
+     * @return bucketStorageDTO, or null if the cached file was evicted before it could be opened
+     * @throws BucketStorageServiceException if the range does not overlap the file
+     */
+    private BucketStorageDTO readFromCache(DiskCacheEntry entry, String fileName, BucketStorageRange range) {
+        BucketStorageRange resolvedRange = range != null ? range.resolve(entry.getContentLength()) : null;
+        long position = resolvedRange != null ? resolvedRange.getFirstBytePosition() : 0;
+        long length = resolvedRange != null ? resolvedRange.getLength() : entry.getContentLength();
+
+        try {
+            FileChannel fileChannel = FileChannel.open(entry.getDataFile(), StandardOpenOption.READ);
+            fileChannel.position(position);
+
+            BucketStorageDTO bucketStorageDTO = new BucketStorageDTO(fileName, entry.getContentType(), length,
+                    ByteStreams.limit(Channels.newInputStream(fileChannel), length));
+            bucketStorageDTO.setRange(resolvedRange);
+            bucketStorageDTO.setInstanceLength(entry.getContentLength());
+            bucketStorageDTO.setLocalFileChannel(fileChannel);
+            bucketStorageDTO.setLocalFile(entry.getDataFile());
+            bucketStorageDTO.setETag(entry.getETag());
+            bucketStorageDTO.setLastModified(entry.getLastModified());
+            return bucketStorageDTO;
+        }
+
+        // Evicted by another request since the lookup
+        catch (NoSuchFileException e) {
+            return null;
+        }
+
+        // Unable to read the cached file, so it is read from the provider instead
+        catch (IOException e) {
+            logger.warn("Unable to read cached file " + fileName + ": " + e.getMessage());
+            return null;
+        }
+    }
+}
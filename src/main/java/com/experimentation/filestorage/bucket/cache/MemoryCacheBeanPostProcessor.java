@@ -0,0 +1,51 @@
+package com.experimentation.filestorage.bucket.cache;
+
+import com.experimentation.filestorage.bucket.BucketStorage;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+/**
+ * Wraps every storage provider bean in a memory caching decorator when the memory cache is enabled.
+ * It is applied after the disk cache, so a read is looked up in memory first, then on disk, then at the provider.
+ */
+@Component
+public class MemoryCacheBeanPostProcessor implements BeanPostProcessor, Ordered {
+
+    public static final int ORDER = DiskCacheBeanPostProcessor.ORDER + 1;
+
+    private final boolean enabled;
+    private final ObjectFactory<BucketStorageMemoryCache> bucketStorageMemoryCache;
+
+    @Autowired
+    public MemoryCacheBeanPostProcessor(@Value("${filestorage.cache.memory.enabled:false}") boolean enabled,
+                                        ObjectFactory<BucketStorageMemoryCache> bucketStorageMemoryCache) {
+        this.enabled = enabled;
+        this.bucketStorageMemoryCache = bucketStorageMemoryCache;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!enabled || !(bean instanceof BucketStorage)) {
+            return bean;
+        }
+
+        for (BucketStorageType bucketStorageType : BucketStorageType.values()) {
+            if (bucketStorageType.toString().equals(beanName)) {
+                return new MemoryCachingBucketStorage(
+                        bucketStorageType, (BucketStorage) bean, bucketStorageMemoryCache.getObject());
+            }
+        }
+
+        return bean;
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+}
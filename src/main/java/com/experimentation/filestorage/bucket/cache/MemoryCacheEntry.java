@@ -0,0 +1,50 @@
+package com.experimentation.filestorage.bucket.cache;
+
+import java.time.Instant;
+
+/**
+ * A file held in the memory cache, with its whole content.
+ */
+class MemoryCacheEntry {
+
+    private final String key;
+    private final String contentType;
+    private final String eTag;
+    private final long lastModified;
+    private final byte[] content;
+    private final Instant cachedAt;
+
+    MemoryCacheEntry(String key, String contentType, String eTag, long lastModified, byte[] content,
+                     Instant cachedAt) {
+        this.key = key;
+        this.contentType = contentType;
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+        this.content = content;
+        this.cachedAt = cachedAt;
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    String getContentType() {
+        return contentType;
+    }
+
+    String getETag() {
+        return eTag;
+    }
+
+    long getLastModified() {
+        return lastModified;
+    }
+
+    byte[] getContent() {
+        return content;
+    }
+
+    Instant getCachedAt() {
+        return cachedAt;
+    }
+}
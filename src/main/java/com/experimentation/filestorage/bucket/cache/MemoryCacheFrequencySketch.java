@@ -0,0 +1,77 @@
+package com.experimentation.filestorage.bucket.cache;
+
+/**
+ * Approximate count of how often each key was requested recently, in a fixed amount of memory (a count-min sketch).
+ * Every counter is halved once the sample period has passed, so keys that stop being requested lose their
+ * frequency over time.
+ */
+class MemoryCacheFrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = {0x97cb3127, 0x5f356495, 0x4b3b09d1, 0xc2b2ae35};
+
+    private final int[][] counters;
+    private final int mask;
+    private final int samplePeriod;
+    private int samples;
+
+    /**
+     * @param expectedKeys number of distinct keys the sketch should tell apart reasonably well
+     */
+    MemoryCacheFrequencySketch(int expectedKeys) {
+        int width = Integer.highestOneBit(Math.max(64, Math.min(expectedKeys, 1 << 24)) - 1) << 1;
+        this.counters = new int[DEPTH][width];
+        this.mask = width - 1;
+        this.samplePeriod = width * 10;
+    }
+
+    /**
+     * Records one request for the key.
+     *
+     * @param keyHash
+     */
+    void increment(int keyHash) {
+        boolean incremented = false;
+
+        for (int row = 0; row < DEPTH; row++) {
+            int index = indexOf(keyHash, row);
+            if (counters[row][index] < MAX_COUNT) {
+                counters[row][index]++;
+                incremented = true;
+            }
+        }
+
+        if (incremented && ++samples >= samplePeriod) {
+            age();
+        }
+    }
+
+    /**
+     * @param keyHash
+     * @return estimated number of recent requests for the key, never less than the real number
+     */
+    int frequency(int keyHash) {
+        int frequency = MAX_COUNT;
+
+        for (int row = 0; row < DEPTH; row++) {
+            frequency = Math.min(frequency, counters[row][indexOf(keyHash, row)]);
+        }
+
+        return frequency;
+    }
+
+    private void age() {
+        for (int[] row : counters) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] >>>= 1;
+            }
+        }
+        samples /= 2;
+    }
+
+    private int indexOf(int keyHash, int row) {
+        int hash = (keyHash ^ SEEDS[row]) * 0x9e3779b9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,189 @@
+package com.experimentation.filestorage.bucket.cache;
+
+import com.experimentation.filestorage.bucket.BucketStorage;
+import com.experimentation.filestorage.bucket.BucketStorageDTO;
+import com.experimentation.filestorage.bucket.BucketStorageDeleteResult;
+import com.experimentation.filestorage.bucket.BucketStorageListOptions;
+import com.experimentation.filestorage.bucket.BucketStorageListing;
+import com.experimentation.filestorage.bucket.BucketStorageMetadata;
+import com.experimentation.filestorage.bucket.BucketStorageRange;
+import com.experimentation.filestorage.bucket.BucketStorageReadOptions;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.experimentation.filestorage.bucket.util.BucketStorageExceptionUtil;
+import com.experimentation.filestorage.bucket.util.BucketStorageServiceException;
+import com.experimentation.filestorage.bucket.util.BucketStorageStreamUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Serves reads from the memory cache when it can. A whole-file read that misses is read into memory before it is
+ * returned if the file is small enough to be cached, and then offered to the cache. Uploads and deletes invalidate
+ * the cached file.
+ */
+class MemoryCachingBucketStorage implements BucketStorage {
+
+    private static final Logger logger = LoggerFactory.getLogger(MemoryCachingBucketStorage.class);
+
+    private final BucketStorageType bucketStorageType;
+    private final BucketStorage bucketStorage;
+    private final BucketStorageMemoryCache bucketStorageMemoryCache;
+
+    MemoryCachingBucketStorage(BucketStorageType bucketStorageType, BucketStorage bucketStorage,
+                               BucketStorageMemoryCache bucketStorageMemoryCache) {
+        this.bucketStorageType = bucketStorageType;
+        this.bucketStorage = bucketStorage;
+        this.bucketStorageMemoryCache = bucketStorageMemoryCache;
+    }
+
+    @Override
+    public BucketStorageDTO getFile(String bucketName, String fileName, BucketStorageReadOptions readOptions)
+            throws BucketStorageServiceException {
+
+        MemoryCacheEntry entry = bucketStorageMemoryCache.get(bucketStorageType, bucketName, fileName);
+
+        // The client's copy is checked against the cached validators, as the provider would have
+        if (entry != null && readOptions.isNotModified(entry.getETag(), entry.getLastModified())) {
+            return BucketStorageDTO.notModified(fileName, entry.getETag(), entry.getLastModified());
+        }
+
+        // A read pinned to another version than the cached one is left to the provider to check
+        if (entry != null && !readOptions.isChanged(entry.getETag())) {
+            return readFromCache(entry, fileName, readOptions.getRange());
+        }
+
+        BucketStorageDTO bucketStorageDTO;
+        byte[] content;
+        long generation = bucketStorageMemoryCache.startRead(bucketStorageType, bucketName, fileName);
+        try {
+            bucketStorageDTO = bucketStorage.getFile(bucketName, fileName, readOptions);
+
+            // Only whole files of a known, small enough length are cached, which leaves out responses without content
+            if (readOptions.getRange() != null
+                    || !bucketStorageMemoryCache.isCacheable(bucketStorageDTO.getContentLength())) {
+                return bucketStorageDTO;
+            }
+
+            content = readContent(bucketName, bucketStorageDTO);
+            bucketStorageMemoryCache.put(bucketStorageType, bucketName, fileName, bucketStorageDTO, content,
+                    generation);
+        }
+        finally {
+            bucketStorageMemoryCache.endRead(bucketStorageType, bucketName, fileName);
+        }
+
+        BucketStorageDTO contentDTO = new BucketStorageDTO(bucketStorageDTO.getFileName(),
+                bucketStorageDTO.getContentType(), content.length, new ByteArrayInputStream(content));
+        contentDTO.setETag(bucketStorageDTO.getETag());
+        contentDTO.setLastModified(bucketStorageDTO.getLastModified());
+        return contentDTO;
+    }
+
+    @Override
+    public BucketStorageMetadata getFileMetadata(String bucketName, String fileName)
+            throws BucketStorageServiceException {
+        return bucketStorage.getFileMetadata(bucketName, fileName);
+    }
+
+    @Override
+    public Iterator<String> listFileNames(String bucketName, String prefix) throws BucketStorageServiceException {
+        return bucketStorage.listFileNames(bucketName, prefix);
+    }
+
+    @Override
+    public BucketStorageListing listFiles(String bucketName, BucketStorageListOptions listOptions)
+            throws BucketStorageServiceException {
+        return bucketStorage.listFiles(bucketName, listOptions);
+    }
+
+    @Override
+    public void uploadMultipartFile(String bucketName, String fileName, MultipartFile file)
+            throws BucketStorageServiceException {
+        try {
+            bucketStorage.uploadMultipartFile(bucketName, fileName, file);
+        }
+        finally {
+            bucketStorageMemoryCache.invalidate(bucketStorageType, bucketName, fileName);
+        }
+    }
+
+    @Override
+    public void deleteFile(String bucketName, String fileName) throws BucketStorageServiceException {
+        try {
+            bucketStorage.deleteFile(bucketName, fileName);
+        }
+        finally {
+            bucketStorageMemoryCache.invalidate(bucketStorageType, bucketName, fileName);
+        }
+    }
+
+    @Override
+    public List<BucketStorageDeleteResult> deleteFiles(String bucketName, List<String> fileNames)
+            throws BucketStorageServiceException {
+        try {
+            return bucketStorage.deleteFiles(bucketName, fileNames);
+        }
+        finally {
+            fileNames.forEach(fileName -> bucketStorageMemoryCache.invalidate(bucketStorageType, bucketName, fileName));
+        }
+    }
+
+    /**
+     * Only the files the provider reports are invalidated, as the names under the prefix are not known up front.
+     */
+    @Override
+    public List<BucketStorageDeleteResult> deleteFilesWithPrefix(String bucketName, String prefix)
+            throws BucketStorageServiceException {
+        List<BucketStorageDeleteResult> results = bucketStorage.deleteFilesWithPrefix(bucketName, prefix);
+        results.forEach(result ->
+                bucketStorageMemoryCache.invalidate(bucketStorageType, bucketName, result.getFileName()));
+        return results;
+    }
+
+    /**
+     * @throws BucketStorageServiceException if the range does not overlap the file
+     */
+    private BucketStorageDTO readFromCache(MemoryCacheEntry entry, String fileName, BucketStorageRange range) {
+        byte[] content = entry.getContent();
+        BucketStorageRange resolvedRange = range != null ? range.resolve(content.length) : null;
+        int offset = resolvedRange != null ? resolvedRange.getFirstBytePosition().intValue() : 0;
+        int length = resolvedRange != null ? (int) resolvedRange.getLength() : content.length;
+
+        BucketStorageDTO bucketStorageDTO = new BucketStorageDTO(fileName, entry.getContentType(), length,
+                new ByteArrayInputStream(content, offset, length));
+        bucketStorageDTO.setRange(resolvedRange);
+        bucketStorageDTO.setInstanceLength(content.length);
+        bucketStorageDTO.setETag(entry.getETag());
+        bucketStorageDTO.setLastModified(entry.getLastModified());
+        return bucketStorageDTO;
+    }
+
+    private byte[] readContent(String bucketName, BucketStorageDTO bucketStorageDTO) {
+        byte[] content = new byte[(int) bucketStorageDTO.getContentLength()];
+
+        try (InputStream inputStream = bucketStorageDTO.getInputStream()) {
+            int length = BucketStorageStreamUtil.readFully(inputStream, content);
+            if (length != content.length || inputStream.read() != -1) {
+                throw new BucketStorageServiceException(
+                        BucketStorageExceptionUtil.setMessageFileChangedDuringRead(
+                                bucketName, bucketStorageDTO.getFileName())
+                );
+            }
+            return content;
+        }
+
+        // Unable to read the file's content from the provider
+        catch (IOException e) {
+            logger.error(e.getMessage());
+            throw new BucketStorageServiceException(
+                    BucketStorageExceptionUtil.setMessageUnableToConvertInputStream(bucketStorageDTO.getFileName())
+            );
+        }
+    }
+}
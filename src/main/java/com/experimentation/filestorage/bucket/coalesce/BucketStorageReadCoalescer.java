@@ -0,0 +1,124 @@
+package com.experimentation.filestorage.bucket.coalesce;
+
+import com.experimentation.filestorage.bucket.BucketStorageDTO;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.experimentation.filestorage.bucket.util.BucketStorageServiceException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Lets concurrent reads of the same file share one fetch from the provider. The first read fetches the file and
+ * every read of it that arrives while that fetch is in flight is given its own stream over the same content, with
+ * the entity tag of the version that was fetched. A fetch stops taking new readers once the whole file or the memory
+ * buffer has been fetched, or when the file is uploaded or deleted through this service, so a later read starts a
+ * fetch of its own.
+ */
+@Component
+public class BucketStorageReadCoalescer {
+
+    private final boolean enabled;
+    private final long memoryBufferSize;
+    private final int chunkSize;
+    private final Path spillDirectory;
+
+    private final Map<String, ReadFlight> readFlights = new ConcurrentHashMap<>();
+    private final AtomicLong fetches = new AtomicLong();
+    private final AtomicLong coalescedReads = new AtomicLong();
+    private final AtomicLong spilledBytes = new AtomicLong();
+
+    @Autowired
+    public BucketStorageReadCoalescer(
+            @Value("${filestorage.coalescing.enabled:false}") boolean enabled,
+            @Value("${filestorage.coalescing.memory-buffer-size:1048576}") long memoryBufferSize,
+            @Value("${filestorage.streaming.buffer-size:8192}") int chunkSize,
+            @Value("${filestorage.coalescing.spill-directory:${java.io.tmpdir}/filestorage-coalescing}")
+                    String spillDirectory) {
+        this.enabled = enabled;
+        this.memoryBufferSize = memoryBufferSize;
+        this.chunkSize = chunkSize;
+        this.spillDirectory = Paths.get(spillDirectory);
+    }
+
+    /**
+     * Gets the whole file, joining a fetch of it that is already in flight if there is one.
+     *
+     * @param bucketStorageType
+     * @param bucketName
+     * @param fileName
+     * @param getFile fetches the file from the provider
+     * @return file, with a stream of its own
+     * @throws BucketStorageServiceException if the shared fetch failed
+     */
+    public BucketStorageDTO getFile(BucketStorageType bucketStorageType, String bucketName, String fileName,
+                                    Supplier<BucketStorageDTO> getFile) throws BucketStorageServiceException {
+        if (!enabled) {
+            return getFile.get();
+        }
+
+        String name = getName(bucketStorageType, bucketName, fileName);
+        while (true) {
+            ReadFlight[] created = new ReadFlight[1];
+            ReadFlight readFlight = readFlights.compute(name, (key, existing) -> {
+                if (existing != null && existing.tryJoin()) {
+                    return existing;
+                }
+                created[0] = new ReadFlight(key, detached -> readFlights.remove(key, detached),
+                        spillDirectory, memoryBufferSize, chunkSize, spilledBytes);
+                return created[0];
+            });
+
+            boolean first = readFlight == created[0];
+            if (first) {
+                fetches.incrementAndGet();
+                try {
+                    readFlight.open(getFile.get());
+                }
+
+                // The reads that joined fail along with this one
+                catch (RuntimeException e) {
+                    readFlight.fail(e);
+                    throw e;
+                }
+            }
+            else {
+                coalescedReads.incrementAndGet();
+            }
+
+            BucketStorageDTO bucketStorageDTO = readFlight.await(first);
+            if (bucketStorageDTO != null) {
+                return bucketStorageDTO;
+            }
+        }
+    }
+
+    /**
+     * Stops a fetch of the file in flight from taking new readers, as the file has changed.
+     *
+     * @param bucketStorageType
+     * @param bucketName
+     * @param fileName
+     */
+    public void invalidate(BucketStorageType bucketStorageType, String bucketName, String fileName) {
+        ReadFlight readFlight = readFlights.get(getName(bucketStorageType, bucketName, fileName));
+        if (readFlight != null) {
+            readFlight.detach();
+        }
+    }
+
+    public BucketStorageReadCoalescerStatistics getStatistics() {
+        return new BucketStorageReadCoalescerStatistics(
+                fetches.get(), coalescedReads.get(), readFlights.size(), spilledBytes.get());
+    }
+
+    private String getName(BucketStorageType bucketStorageType, String bucketName, String fileName) {
+        return bucketStorageType + "/" + bucketName + "/" + fileName;
+    }
+}
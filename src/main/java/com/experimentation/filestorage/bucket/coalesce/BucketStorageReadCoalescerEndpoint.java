@@ -0,0 +1,26 @@
+package com.experimentation.filestorage.bucket.coalesce;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes the read coalescing counters at /actuator/coalescing.
+ */
+@Component
+@Endpoint(id = "coalescing")
+public class BucketStorageReadCoalescerEndpoint {
+
+    private final BucketStorageReadCoalescer bucketStorageReadCoalescer;
+
+    @Autowired
+    public BucketStorageReadCoalescerEndpoint(BucketStorageReadCoalescer bucketStorageReadCoalescer) {
+        this.bucketStorageReadCoalescer = bucketStorageReadCoalescer;
+    }
+
+    @ReadOperation
+    public BucketStorageReadCoalescerStatistics coalescing() {
+        return bucketStorageReadCoalescer.getStatistics();
+    }
+}
@@ -0,0 +1,52 @@
+package com.experimentation.filestorage.bucket.coalesce;
+
+/**
+ * Snapshot of how many reads were served by sharing another read's fetch.
+ */
+public class BucketStorageReadCoalescerStatistics {
+
+    private final long fetches;
+    private final long coalescedReads;
+    private final int readsInFlight;
+    private final long spilledBytes;
+
+    public BucketStorageReadCoalescerStatistics(long fetches, long coalescedReads, int readsInFlight,
+                                                long spilledBytes) {
+        this.fetches = fetches;
+        this.coalescedReads = coalescedReads;
+        this.readsInFlight = readsInFlight;
+        this.spilledBytes = spilledBytes;
+    }
+
+    /**
+     * Reads that fetched the file from the provider.
+     * @return fetches
+     */
+    public long getFetches() {
+        return fetches;
+    }
+
+    /**
+     * Reads that joined a fetch already in flight.
+     * @return coalescedReads
+     */
+    public long getCoalescedReads() {
+        return coalescedReads;
+    }
+
+    /**
+     * Fetches that are still taking new readers.
+     * @return readsInFlight
+     */
+    public int getReadsInFlight() {
+        return readsInFlight;
+    }
+
+    /**
+     * Bytes written to spill files for readers that fell behind.
+     * @return spilledBytes
+     */
+    public long getSpilledBytes() {
+        return spilledBytes;
+    }
+}
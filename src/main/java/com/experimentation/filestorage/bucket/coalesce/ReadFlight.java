@@ -0,0 +1,512 @@
+package com.experimentation.filestorage.bucket.coalesce;
+
+import com.experimentation.filestorage.bucket.BucketStorageDTO;
+import com.experimentation.filestorage.bucket.util.BucketStorageExceptionUtil;
+import com.experimentation.filestorage.bucket.util.BucketStorageServiceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * One fetch of a file from the provider, shared by every reader that asked for the file while it was in flight.
+ * There is no thread of its own moving the content: whichever reader is furthest ahead reads the next chunk from
+ * the provider, and the others read it from the shared buffer. Until the memory buffer fills, every chunk is kept, so
+ * readers that join late can still start from the first byte. After that the flight stops taking readers, chunks that
+ * every reader has consumed are dropped, and chunks are only spilled to a file while the slowest reader lags more
+ * than the memory buffer behind the fetch, so it falls behind onto disk instead of holding back the others.
+ */
+class ReadFlight {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReadFlight.class);
+
+    private final String name;
+    private final Consumer<ReadFlight> onDetached;
+    private final Path spillDirectory;
+    private final long memoryBufferSize;
+    private final int chunkSize;
+    private final AtomicLong spilledBytes;
+
+    private final CompletableFuture<BucketStorageDTO> opened = new CompletableFuture<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition contentChanged = lock.newCondition();
+
+    private int readers = 1;
+    private final Set<ReaderInputStream> readerStreams = new HashSet<>();
+    private boolean detached;
+    private boolean released;
+
+    private InputStream upstream;
+    private boolean upstreamClosed;
+    private final ArrayDeque<byte[]> chunks = new ArrayDeque<>();
+    private long memoryStart;
+    private long memoryBytes;
+    private long written;
+    private boolean fetching;
+    private boolean finished;
+    private IOException failure;
+    private FileChannel spillChannel;
+
+    /**
+     * Creates the flight with its first reader, who fetches the file.
+     *
+     * @param name storage provider, bucket and file name
+     * @param onDetached called once, when the flight stops taking new readers
+     * @param spillDirectory
+     * @param memoryBufferSize bytes kept in memory before the flight stops taking readers, and that the slowest
+     *                         reader may lag behind before older chunks are spilled
+     * @param chunkSize bytes read from the provider at a time
+     * @param spilledBytes counter of the bytes spilled by every flight
+     */
+    ReadFlight(String name, Consumer<ReadFlight> onDetached, Path spillDirectory,
+               long memoryBufferSize, int chunkSize, AtomicLong spilledBytes) {
+        this.name = name;
+        this.onDetached = onDetached;
+        this.spillDirectory = spillDirectory;
+        this.memoryBufferSize = memoryBufferSize;
+        this.chunkSize = chunkSize;
+        this.spilledBytes = spilledBytes;
+    }
+
+    /**
+     * @return true if the flight took another reader, false if it no longer takes readers
+     */
+    boolean tryJoin() {
+        lock.lock();
+        try {
+            if (detached) {
+                return false;
+            }
+            readers++;
+            return true;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Shares the file fetched by the first reader, and its entity tag. A file without content, or with content already
+     * on local disk, is not shared: the first reader keeps it and the others fetch their own.
+     *
+     * @param bucketStorageDTO
+     */
+    void open(BucketStorageDTO bucketStorageDTO) {
+        if (bucketStorageDTO.getInputStream() == null || bucketStorageDTO.getLocalFileChannel() != null) {
+            detach();
+        }
+        else {
+            lock.lock();
+            try {
+                upstream = bucketStorageDTO.getInputStream();
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+        opened.complete(bucketStorageDTO);
+    }
+
+    void fail(RuntimeException e) {
+        detach();
+        opened.completeExceptionally(e);
+    }
+
+    /**
+     * Waits for the file to be opened.
+     *
+     * @param first whether this is the reader who fetched the file
+     * @return this reader's copy of the file, or null if the file is not shared and must be fetched again
+     * @throws BucketStorageServiceException the file could not be fetched
+     */
+    BucketStorageDTO await(boolean first) throws BucketStorageServiceException {
+        BucketStorageDTO bucketStorageDTO;
+        try {
+            bucketStorageDTO = opened.get();
+        }
+
+        // While waiting for the file to be opened, the thread is interrupted
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            leave(null);
+            throw new BucketStorageServiceException(
+                    BucketStorageExceptionUtil.setMessageCoalescedReadThreadInterrupted(name)
+            );
+        }
+
+        // The reader who fetched the file failed, and so do the others
+        catch (ExecutionException e) {
+            throw (RuntimeException) e.getCause();
+        }
+
+        if (upstream == null) {
+            return first ? bucketStorageDTO : null;
+        }
+
+        ReaderInputStream readerInputStream = new ReaderInputStream();
+        lock.lock();
+        try {
+            readerStreams.add(readerInputStream);
+        }
+        finally {
+            lock.unlock();
+        }
+
+        BucketStorageDTO copy = new BucketStorageDTO(bucketStorageDTO.getFileName(),
+                bucketStorageDTO.getContentType(), bucketStorageDTO.getContentLength(), readerInputStream);
+        copy.setETag(bucketStorageDTO.getETag());
+        copy.setLastModified(bucketStorageDTO.getLastModified());
+        return copy;
+    }
+
+    /**
+     * Stops taking new readers. Readers that already joined keep reading the content fetched for them.
+     */
+    void detach() {
+        lock.lock();
+        try {
+            if (detached) {
+                return;
+            }
+            detached = true;
+        }
+        finally {
+            lock.unlock();
+        }
+        onDetached.accept(this);
+    }
+
+    /**
+     * Reads content at the reader's position, fetching the next chunk from the provider if nobody has yet.
+     */
+    private int read(long position, byte[] bytes, int offset, int length) throws IOException {
+        FileChannel channel;
+        int spilledLength;
+
+        lock.lock();
+        try {
+            while (position >= written) {
+                if (failure != null) {
+                    throw new IOException(failure.getMessage(), failure);
+                }
+                if (finished) {
+                    return -1;
+                }
+                if (fetching) {
+                    awaitContent();
+                    continue;
+                }
+
+                fetching = true;
+                lock.unlock();
+                try {
+                    fetchChunk();
+                }
+                finally {
+                    lock.lock();
+                    fetching = false;
+                    contentChanged.signalAll();
+                }
+            }
+
+            if (position >= memoryStart) {
+                return readFromMemory(position, bytes, offset, length);
+            }
+            channel = spillChannel;
+            spilledLength = (int) Math.min(length, memoryStart - position);
+        }
+        finally {
+            lock.unlock();
+        }
+
+        return channel.read(ByteBuffer.wrap(bytes, offset, spilledLength), position);
+    }
+
+    private void awaitContent() throws InterruptedIOException {
+        try {
+            contentChanged.await();
+        }
+
+        // While waiting for another reader to fetch the next chunk, the thread is interrupted
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        }
+    }
+
+    /**
+     * Called without the lock by the one reader that is fetching.
+     */
+    private void fetchChunk() {
+        byte[] buffer = new byte[chunkSize];
+        int count;
+        try {
+            count = upstream.read(buffer);
+        }
+
+        // The provider's content failed, for every reader
+        catch (IOException e) {
+            finish(e);
+            return;
+        }
+
+        if (count < 0) {
+            finish(null);
+            return;
+        }
+
+        lock.lock();
+        try {
+            chunks.addLast(count == buffer.length ? buffer : Arrays.copyOf(buffer, count));
+            written += count;
+            memoryBytes += count;
+            contentChanged.signalAll();
+        }
+        finally {
+            lock.unlock();
+        }
+        trimMemoryBuffer();
+    }
+
+    /**
+     * Keeps the memory buffer within its size once it has filled. The flight stops taking readers, as the first
+     * bytes can no longer be kept for them; chunks every reader has consumed are dropped, and the oldest remaining
+     * chunks are moved to the spill file only while the slowest reader still lags more than the buffer behind.
+     * Called without the lock by the one reader that is fetching; chunks stay readable in memory until they have
+     * been written.
+     */
+    private void trimMemoryBuffer() {
+        boolean filled;
+        lock.lock();
+        try {
+            filled = !detached && memoryBytes > memoryBufferSize;
+        }
+        finally {
+            lock.unlock();
+        }
+        if (filled) {
+            detach();
+        }
+
+        while (true) {
+            byte[] oldest;
+            long oldestPosition;
+            FileChannel channel;
+
+            lock.lock();
+            try {
+                if (released || !detached) {
+                    return;
+                }
+
+                long slowestPosition = getSlowestPosition();
+                while (!chunks.isEmpty() && memoryStart + chunks.peekFirst().length <= slowestPosition) {
+                    byte[] consumed = chunks.pollFirst();
+                    memoryStart += consumed.length;
+                    memoryBytes -= consumed.length;
+                }
+
+                if (memoryBytes <= memoryBufferSize) {
+                    return;
+                }
+                oldest = chunks.peekFirst();
+                oldestPosition = memoryStart;
+                channel = spillChannel;
+            }
+            finally {
+                lock.unlock();
+            }
+
+            try {
+                if (channel == null) {
+                    Files.createDirectories(spillDirectory);
+                    channel = FileChannel.open(Files.createTempFile(spillDirectory, "coalesced-", ".tmp"),
+                            StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+                }
+                ByteBuffer byteBuffer = ByteBuffer.wrap(oldest);
+                while (byteBuffer.hasRemaining()) {
+                    channel.write(byteBuffer, oldestPosition + byteBuffer.position());
+                }
+            }
+
+            // Without the spill file the memory buffer cannot be kept within its size
+            catch (IOException e) {
+                finish(e);
+                return;
+            }
+
+            lock.lock();
+            try {
+                spillChannel = channel;
+                chunks.pollFirst();
+                memoryStart += oldest.length;
+                memoryBytes -= oldest.length;
+            }
+            finally {
+                lock.unlock();
+            }
+            spilledBytes.addAndGet(oldest.length);
+        }
+    }
+
+    /**
+     * Position of the reader furthest behind. Readers that joined but have not been handed their stream yet start
+     * from the first byte. Called with the lock held.
+     */
+    private long getSlowestPosition() {
+        if (readers > readerStreams.size()) {
+            return 0;
+        }
+        long slowestPosition = written;
+        for (ReaderInputStream readerStream : readerStreams) {
+            slowestPosition = Math.min(slowestPosition, readerStream.position);
+        }
+        return slowestPosition;
+    }
+
+    private int readFromMemory(long position, byte[] bytes, int offset, int length) {
+        long chunkStart = memoryStart;
+        for (byte[] chunk : chunks) {
+            if (position < chunkStart + chunk.length) {
+                int start = (int) (position - chunkStart);
+                int count = Math.min(length, chunk.length - start);
+                System.arraycopy(chunk, start, bytes, offset, count);
+                return count;
+            }
+            chunkStart += chunk.length;
+        }
+        return 0;
+    }
+
+    /**
+     * Ends the fetch, as complete or failed, and closes the provider's content so its connection is released.
+     */
+    private void finish(IOException e) {
+        lock.lock();
+        try {
+            finished = true;
+            failure = e;
+        }
+        finally {
+            lock.unlock();
+        }
+        closeUpstream();
+        detach();
+    }
+
+    /**
+     * Removes a reader. The last reader to leave releases the provider's content and the spill file.
+     *
+     * @param readerStream the reader's stream, or null if it left before it was handed one
+     */
+    private void leave(ReaderInputStream readerStream) {
+        FileChannel channel;
+
+        lock.lock();
+        try {
+            readerStreams.remove(readerStream);
+            if (--readers > 0 || released) {
+                return;
+            }
+            released = true;
+            channel = spillChannel;
+        }
+        finally {
+            lock.unlock();
+        }
+
+        closeUpstream();
+        closeQuietly(channel);
+        detach();
+    }
+
+    private void closeUpstream() {
+        InputStream inputStream;
+
+        lock.lock();
+        try {
+            if (upstreamClosed || upstream == null) {
+                return;
+            }
+            upstreamClosed = true;
+            inputStream = upstream;
+        }
+        finally {
+            lock.unlock();
+        }
+        closeQuietly(inputStream);
+    }
+
+    private void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        }
+
+        // The content is not needed anymore either way
+        catch (IOException e) {
+            logger.warn("Unable to close shared read of " + name + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * One reader's position in the shared content.
+     */
+    private class ReaderInputStream extends InputStream {
+
+        // Only moves forward, so the fetching reader may act on a slightly older value without harm
+        private volatile long position;
+        private boolean closed;
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int count = read(single, 0, 1);
+            return count == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            if (length == 0) {
+                return 0;
+            }
+
+            int count = ReadFlight.this.read(position, bytes, offset, length);
+            if (count > 0) {
+                position += count;
+            }
+            return count;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                leave(this);
+            }
+        }
+    }
+}
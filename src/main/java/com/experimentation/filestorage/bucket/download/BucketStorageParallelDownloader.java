@@ -0,0 +1,111 @@
+package com.experimentation.filestorage.bucket.download;
+
+import com.experimentation.filestorage.bucket.BucketStorageRange;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.InputStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Splits large downloads into ranged parts that are fetched at the same time on a shared, bounded pool.
+ * Settings are read per provider from filestorage.download.{provider}.*, e.g. filestorage.download.aws-s3.part-size.
+ * Parts buffered by all downloads together are capped by filestorage.download.max-buffered-bytes; a download that
+ * would go over the cap is read as a single stream instead.
+ */
+@Component
+public class BucketStorageParallelDownloader {
+
+    private static final String PROPERTY_PREFIX = "filestorage.download.";
+
+    private final ExecutorService executorService;
+    private final ParallelDownloadBudget parallelDownloadBudget;
+    private final Map<BucketStorageType, ParallelDownloadSettings> settingsByType =
+            new EnumMap<>(BucketStorageType.class);
+
+    @Autowired
+    public BucketStorageParallelDownloader(Environment environment,
+                                           @Value("${filestorage.download.pool-size:32}") int poolSize,
+                                           @Value("${filestorage.download.max-buffered-bytes:268435456}")
+                                                   long maxBufferedBytes) {
+        this.executorService =
+                Executors.newFixedThreadPool(poolSize, new CustomizableThreadFactory("bucket-storage-download-"));
+        this.parallelDownloadBudget = new ParallelDownloadBudget(maxBufferedBytes);
+
+        for (BucketStorageType bucketStorageType : BucketStorageType.values()) {
+            settingsByType.put(bucketStorageType, readSettings(environment, bucketStorageType));
+        }
+    }
+
+    /**
+     * Whether an object of the given length should be downloaded in parallel parts for the provider.
+     *
+     * @param bucketStorageType
+     * @param instanceLength
+     * @return true if the object should be downloaded in parallel
+     */
+    public boolean shouldDownloadInParallel(BucketStorageType bucketStorageType, long instanceLength) {
+        ParallelDownloadSettings settings = settingsByType.get(bucketStorageType);
+        return settings.isEnabled() && instanceLength > settings.getThreshold();
+    }
+
+    /**
+     * Creates a stream over the whole object whose parts are fetched ahead of the reader through the range reader.
+     * When the parts would not fit under the shared cap, the object is read as a single stream: the first part
+     * stream itself, or one range over the whole object when there is none.
+     *
+     * @param bucketStorageType
+     * @param firstPart stream already positioned at the start of the object, or null to fetch the first part too
+     * @param instanceLength
+     * @param rangeReader
+     * @return inputStream
+     */
+    public InputStream newInputStream(BucketStorageType bucketStorageType, InputStream firstPart, long instanceLength,
+                                      BucketStorageRangeReader rangeReader) {
+        ParallelDownloadSettings settings = settingsByType.get(bucketStorageType);
+        long windowBytes = Math.min(settings.getParallelism() * settings.getPartSize(), instanceLength);
+
+        // Other downloads already hold as many parts as allowed, so this one is not buffered at all
+        if (!parallelDownloadBudget.tryReserve(windowBytes)) {
+            return firstPart != null
+                    ? firstPart
+                    : new DeferredRangeInputStream(rangeReader, BucketStorageRange.ofBytes(0, instanceLength - 1));
+        }
+
+        return new ParallelRangeInputStream(firstPart, instanceLength, settings, rangeReader, executorService,
+                () -> parallelDownloadBudget.release(windowBytes));
+    }
+
+    /**
+     * Bytes reserved for parts by the parallel downloads that are still open.
+     *
+     * @return reservedBytes
+     */
+    long getBufferedBytes() {
+        return parallelDownloadBudget.getReservedBytes();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executorService.shutdownNow();
+    }
+
+    private ParallelDownloadSettings readSettings(Environment environment, BucketStorageType bucketStorageType) {
+        String prefix = PROPERTY_PREFIX + bucketStorageType.name().toLowerCase().replace('_', '-') + ".";
+
+        return new ParallelDownloadSettings(
+                environment.getProperty(prefix + "enabled", Boolean.class, true),
+                environment.getProperty(prefix + "threshold", Long.class, 64L * 1024 * 1024),
+                environment.getProperty(prefix + "part-size", Long.class, 8L * 1024 * 1024),
+                environment.getProperty(prefix + "parallelism", Integer.class, 4)
+        );
+    }
+}
@@ -0,0 +1,15 @@
+package com.experimentation.filestorage.bucket.download;
+
+import com.experimentation.filestorage.bucket.BucketStorageRange;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Opens a stream over a resolved byte range of a single object, used to fetch the parts of a parallel download.
+ */
+@FunctionalInterface
+public interface BucketStorageRangeReader {
+
+    InputStream openRange(BucketStorageRange range) throws IOException;
+}
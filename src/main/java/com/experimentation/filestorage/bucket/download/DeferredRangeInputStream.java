@@ -0,0 +1,53 @@
+package com.experimentation.filestorage.bucket.download;
+
+import com.experimentation.filestorage.bucket.BucketStorageRange;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a single range through the range reader, opening it only once the first byte is requested.
+ */
+class DeferredRangeInputStream extends InputStream {
+
+    private final BucketStorageRangeReader rangeReader;
+    private final BucketStorageRange range;
+
+    private InputStream inputStream;
+    private boolean closed;
+
+    DeferredRangeInputStream(BucketStorageRangeReader rangeReader, BucketStorageRange range) {
+        this.rangeReader = rangeReader;
+        this.range = range;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return open().read();
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        return open().read(buffer, offset, length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+
+        if (inputStream != null) {
+            inputStream.close();
+            inputStream = null;
+        }
+    }
+
+    private InputStream open() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (inputStream == null) {
+            inputStream = rangeReader.openRange(range);
+        }
+        return inputStream;
+    }
+}
@@ -0,0 +1,44 @@
+package com.experimentation.filestorage.bucket.download;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bytes of fetched parts that all parallel downloads together may hold in memory. A download reserves its whole
+ * window up front and releases it once closed and no part is still being fetched, so the total stays under the cap
+ * however many downloads run.
+ */
+class ParallelDownloadBudget {
+
+    private final long maxBytes;
+    private final AtomicLong reservedBytes = new AtomicLong();
+
+    ParallelDownloadBudget(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Reserves the bytes if they fit under the cap alongside every other reservation.
+     *
+     * @param bytes
+     * @return true if the bytes were reserved
+     */
+    boolean tryReserve(long bytes) {
+        while (true) {
+            long current = reservedBytes.get();
+            if (current + bytes > maxBytes) {
+                return false;
+            }
+            if (reservedBytes.compareAndSet(current, current + bytes)) {
+                return true;
+            }
+        }
+    }
+
+    void release(long bytes) {
+        reservedBytes.addAndGet(-bytes);
+    }
+
+    long getReservedBytes() {
+        return reservedBytes.get();
+    }
+}
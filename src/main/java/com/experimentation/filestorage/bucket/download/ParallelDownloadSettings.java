@@ -0,0 +1,47 @@
+package com.experimentation.filestorage.bucket.download;
+
+/**
+ * Per-provider settings deciding when and how an object is downloaded as parallel ranged parts.
+ */
+public class ParallelDownloadSettings {
+
+    private final boolean enabled;
+    private final long threshold;
+    private final long partSize;
+    private final int parallelism;
+
+    public ParallelDownloadSettings(boolean enabled, long threshold, long partSize, int parallelism) {
+        if (partSize <= 0 || partSize > Integer.MAX_VALUE || parallelism <= 0) {
+            throw new IllegalArgumentException(
+                    "Invalid parallel download settings, part size " + partSize + " and parallelism " + parallelism);
+        }
+        this.enabled = enabled;
+        this.threshold = threshold;
+        this.partSize = partSize;
+        this.parallelism = parallelism;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Objects larger than this many bytes are downloaded in parallel.
+     * @return threshold
+     */
+    public long getThreshold() {
+        return threshold;
+    }
+
+    public long getPartSize() {
+        return partSize;
+    }
+
+    /**
+     * Number of parts fetched ahead of the part being read, which also bounds the parts held in memory.
+     * @return parallelism
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+}
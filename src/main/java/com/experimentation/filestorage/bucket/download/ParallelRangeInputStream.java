@@ -0,0 +1,243 @@
+package com.experimentation.filestorage.bucket.download;
+
+import com.experimentation.filestorage.bucket.BucketStorageRange;
+import com.google.common.io.ByteStreams;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads an object as consecutive ranged parts fetched at the same time, handing the bytes back in order.
+ * At most {@code parallelism} parts are in flight, waiting to be read or being read, since the window is only
+ * refilled once the part being read is done with, so memory use is bounded by parallelism * partSize no matter how
+ * large the object is. The total across streams is capped by the downloader, which is told through onReleased once
+ * the stream is closed and no part is still being fetched into memory.
+ */
+class ParallelRangeInputStream extends InputStream {
+
+    private final BucketStorageRangeReader rangeReader;
+    private final ExecutorService executorService;
+    private final long instanceLength;
+    private final long partSize;
+    private final int parallelism;
+    private final long partCount;
+    private final Runnable onReleased;
+
+    // Parts that have been scheduled but not yet read, in object order
+    private final Deque<Part> window = new ArrayDeque<>();
+
+    // Parts scheduled whose task may still fill a buffer; a cancelled task can keep reading from its socket
+    private final AtomicInteger partsInFlight = new AtomicInteger();
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private long nextPartToSchedule;
+    private InputStream currentPart;
+    private volatile boolean closed;
+
+    /**
+     * @param firstPart stream already positioned at the start of the object, used for the first part; may be null
+     * @param instanceLength
+     * @param settings
+     * @param rangeReader
+     * @param executorService
+     * @param onReleased run once when the stream is closed and no part is still being fetched
+     */
+    ParallelRangeInputStream(InputStream firstPart, long instanceLength, ParallelDownloadSettings settings,
+                             BucketStorageRangeReader rangeReader, ExecutorService executorService,
+                             Runnable onReleased) {
+        this.rangeReader = rangeReader;
+        this.executorService = executorService;
+        this.instanceLength = instanceLength;
+        this.partSize = settings.getPartSize();
+        this.parallelism = settings.getParallelism();
+        this.partCount = (instanceLength + partSize - 1) / partSize;
+        this.onReleased = onReleased;
+
+        if (firstPart != null) {
+            currentPart = ByteStreams.limit(firstPart, partSize);
+            nextPartToSchedule = 1;
+        }
+
+        fillWindow();
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] singleByte = new byte[1];
+        int bytesRead = read(singleByte, 0, 1);
+        return bytesRead == -1 ? -1 : singleByte[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (length == 0) {
+            return 0;
+        }
+
+        while (true) {
+            if (currentPart == null && !advanceToNextPart()) {
+                return -1;
+            }
+
+            int bytesRead = currentPart.read(buffer, offset, length);
+            if (bytesRead != -1) {
+                return bytesRead;
+            }
+
+            currentPart.close();
+            currentPart = null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        // Parts still being fetched are no longer needed
+        for (Part part : window) {
+            part.cancel();
+        }
+        window.clear();
+
+        try {
+            if (currentPart != null) {
+                currentPart.close();
+                currentPart = null;
+            }
+        }
+        finally {
+            releaseIfSettled();
+        }
+    }
+
+    private boolean advanceToNextPart() throws IOException {
+        // The previous part has been read, so its buffer can be given to the next part scheduled
+        fillWindow();
+
+        Part nextPart = window.poll();
+        if (nextPart == null) {
+            return false;
+        }
+
+        currentPart = new ByteArrayInputStream(awaitPart(nextPart.future));
+        return true;
+    }
+
+    private void fillWindow() {
+        while (window.size() < parallelism && nextPartToSchedule < partCount) {
+            long firstBytePosition = nextPartToSchedule * partSize;
+            long lastBytePosition = Math.min(firstBytePosition + partSize, instanceLength) - 1;
+            BucketStorageRange range = BucketStorageRange.ofBytes(firstBytePosition, lastBytePosition);
+
+            Part part = new Part(range);
+            partsInFlight.incrementAndGet();
+            part.future = executorService.submit(part);
+            window.add(part);
+            nextPartToSchedule++;
+        }
+    }
+
+    private void partSettled() {
+        if (partsInFlight.decrementAndGet() == 0) {
+            releaseIfSettled();
+        }
+    }
+
+    private void releaseIfSettled() {
+        if (closed && partsInFlight.get() == 0 && released.compareAndSet(false, true)) {
+            onReleased.run();
+        }
+    }
+
+    private byte[] readPart(BucketStorageRange range) throws IOException {
+        byte[] content = new byte[(int) range.getLength()];
+
+        try (InputStream inputStream = rangeReader.openRange(range)) {
+            int totalBytesRead = 0;
+            while (totalBytesRead < content.length) {
+                int bytesRead = inputStream.read(content, totalBytesRead, content.length - totalBytesRead);
+                if (bytesRead == -1) {
+                    throw new EOFException("Range " + range + " ended after " + totalBytesRead + " bytes");
+                }
+                totalBytesRead += bytesRead;
+            }
+        }
+
+        return content;
+    }
+
+    private byte[] awaitPart(Future<byte[]> part) throws IOException {
+        try {
+            return part.get();
+        }
+
+        // Reading thread was interrupted while waiting for the part to arrive
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new InterruptedIOException("Interrupted while waiting for a part of the download");
+        }
+
+        // Part could not be fetched from the provider
+        catch (ExecutionException e) {
+            close();
+            throw e.getCause() instanceof IOException
+                    ? (IOException) e.getCause()
+                    : new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * A scheduled part. Either its task or close() claims it first, so a part cancelled before it started is
+     * settled by close() and one already running is settled by its task once it stops filling the buffer.
+     */
+    private final class Part implements Callable<byte[]> {
+
+        private final BucketStorageRange range;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private Future<byte[]> future;
+
+        private Part(BucketStorageRange range) {
+            this.range = range;
+        }
+
+        @Override
+        public byte[] call() throws IOException {
+            // Cancelled before it started, so nothing is read
+            if (!claimed.compareAndSet(false, true)) {
+                return null;
+            }
+
+            try {
+                return readPart(range);
+            }
+            finally {
+                partSettled();
+            }
+        }
+
+        private void cancel() {
+            if (claimed.compareAndSet(false, true)) {
+                partSettled();
+            }
+            future.cancel(true);
+        }
+    }
+}
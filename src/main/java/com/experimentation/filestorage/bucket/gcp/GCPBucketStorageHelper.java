@@ -1,17 +1,86 @@
 package com.experimentation.filestorage.bucket.gcp;
 
+import com.experimentation.filestorage.bucket.BucketStorageRange;
+import com.google.cloud.ReadChannel;
+import com.google.cloud.storage.Blob;
 import com.google.cloud.storage.BlobId;
 import com.google.cloud.storage.BlobInfo;
+import com.google.common.io.ByteStreams;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+
 @Component
 public class GCPBucketStorageHelper {
 
+    // Default chunk size of a GCP ReadChannel
+    private static final int DEFAULT_READ_CHUNK_SIZE = 2 * 1024 * 1024;
+
     protected BlobId createBlobId(String bucketName, String fileName) {
         return BlobId.of(bucketName, fileName);
     }
 
+    protected BlobId createBlobId(String bucketName, String fileName, Long generation) {
+        return BlobId.of(bucketName, fileName, generation);
+    }
+
     protected BlobInfo createBlobInfo(BlobId blobId, String contentType){
         return BlobInfo.newBuilder(blobId).setContentType(contentType).build();
     }
+
+    protected InputStream newInputStream(ReadChannel readChannel) {
+        return Channels.newInputStream(readChannel);
+    }
+
+    /**
+     * Creates a stream over the channel that ends after the given number of bytes.
+     *
+     * @param readChannel
+     * @param limit
+     * @return inputStream
+     */
+    protected InputStream newInputStream(ReadChannel readChannel, long limit) {
+        return ByteStreams.limit(Channels.newInputStream(readChannel), limit);
+    }
+
+    /**
+     * Positions the channel at the start of a resolved range. The chunk size is capped at the range length so
+     * that small ranges do not pull a full default-sized chunk from GCP.
+     *
+     * @param readChannel
+     * @param range
+     * @throws IOException
+     */
+    protected void seek(ReadChannel readChannel, BucketStorageRange range) throws IOException {
+        readChannel.seek(range.getFirstBytePosition());
+        readChannel.setChunkSize((int) Math.min(range.getLength(), DEFAULT_READ_CHUNK_SIZE));
+    }
+
+    protected void closeQuietly(ReadChannel readChannel) {
+        if (readChannel != null) {
+            readChannel.close();
+        }
+    }
+
+    /**
+     * Returns the size of the blob, or -1 if GCP did not report one.
+     *
+     * @param blob
+     * @return size
+     */
+    protected long getSize(Blob blob) {
+        return blob.getSize() != null ? blob.getSize() : -1;
+    }
+
+    /**
+     * Returns the time in epoch milliseconds the blob was last updated, or -1 if GCP did not report one.
+     *
+     * @param blob
+     * @return lastModified
+     */
+    protected long getLastModified(Blob blob) {
+        return blob.getUpdateTime() != null ? blob.getUpdateTime() : -1;
+    }
 }
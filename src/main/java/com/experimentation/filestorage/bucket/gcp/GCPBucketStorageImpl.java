@@ -1,12 +1,23 @@
 package com.experimentation.filestorage.bucket.gcp;
 
 import com.experimentation.filestorage.bucket.*;
+import com.experimentation.filestorage.bucket.batch.BucketStorageBatchExecutor;
+import com.experimentation.filestorage.bucket.download.BucketStorageParallelDownloader;
+import com.experimentation.filestorage.bucket.download.BucketStorageRangeReader;
 import com.experimentation.filestorage.bucket.util.BucketStorageExceptionUtil;
+import com.experimentation.filestorage.bucket.util.BucketStorageFileNotFoundException;
 import com.experimentation.filestorage.bucket.util.BucketStorageHelper;
+import com.experimentation.filestorage.bucket.util.BucketStorageListingIterator;
 import com.experimentation.filestorage.bucket.util.BucketStorageLoggerUtil;
+import com.experimentation.filestorage.bucket.util.BucketStorageRangeNotSatisfiableException;
 import com.experimentation.filestorage.bucket.util.BucketStorageServiceException;
+import com.experimentation.filestorage.bucket.util.BucketStorageTransientException;
+import com.google.api.gax.paging.Page;
 import com.google.cloud.BaseServiceException;
+import com.google.cloud.ReadChannel;
 import com.google.cloud.storage.*;
+import com.google.common.base.Strings;
+import com.google.common.collect.Iterators;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,6 +25,11 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
 
 @Component(BucketStorageTypeConstants.GCP)
 public class GCPBucketStorageImpl implements BucketStorage {
@@ -21,27 +37,119 @@ public class GCPBucketStorageImpl implements BucketStorage {
     private Storage storage;
     private final GCPBucketStorageHelper gcpBucketStorageHelper;
     private final BucketStorageHelper bucketStorageHelper;
+    private final BucketStorageParallelDownloader bucketStorageParallelDownloader;
+    private final GCPResumableUploader gcpResumableUploader;
+    private final BucketStorageBatchExecutor bucketStorageBatchExecutor;
 
     private static final Logger logger = LoggerFactory.getLogger(GCPBucketStorageImpl.class);
 
+    // Only the fields that make up the file's metadata are requested from GCP
+    private static final Storage.BlobGetOption METADATA_FIELDS = Storage.BlobGetOption.fields(
+            Storage.BlobField.CONTENT_TYPE, Storage.BlobField.SIZE, Storage.BlobField.ETAG, Storage.BlobField.UPDATED);
+
+    // Only the fields that make up a listing entry are requested from GCP
+    private static final Storage.BlobListOption LISTING_FIELDS = Storage.BlobListOption.fields(
+            Storage.BlobField.NAME, Storage.BlobField.SIZE, Storage.BlobField.ETAG, Storage.BlobField.UPDATED);
+
+    // Most calls GCS accepts in one batch request
+    private static final int MAX_BLOBS_PER_BATCH = 100;
+
     @Autowired
     public GCPBucketStorageImpl(Storage storage,
                                 GCPBucketStorageHelper gcpBucketStorageHelper,
-                                BucketStorageHelper bucketStorageHelper) {
+                                BucketStorageHelper bucketStorageHelper,
+                                BucketStorageParallelDownloader bucketStorageParallelDownloader,
+                                GCPResumableUploader gcpResumableUploader,
+                                BucketStorageBatchExecutor bucketStorageBatchExecutor) {
         this.storage = storage;
         this.gcpBucketStorageHelper = gcpBucketStorageHelper;
         this.bucketStorageHelper = bucketStorageHelper;
+        this.bucketStorageParallelDownloader = bucketStorageParallelDownloader;
+        this.gcpResumableUploader = gcpResumableUploader;
+        this.bucketStorageBatchExecutor = bucketStorageBatchExecutor;
     }
 
     @Override
-    public BucketStorageDTO getFile(String bucketName, String fileName) throws BucketStorageServiceException {
+    public BucketStorageDTO getFile(String bucketName, String fileName, BucketStorageReadOptions readOptions)
+            throws BucketStorageServiceException {
 
         BucketStorageLoggerUtil.infoStartGettingFile(logger, bucketName, fileName);
 
+        ReadChannel readChannel = null;
+
         try {
-            Blob blob = storage.get(gcpBucketStorageHelper.createBlobId(bucketName, fileName));
+            BlobId blobId = gcpBucketStorageHelper.createBlobId(bucketName, fileName);
+            Blob blob = storage.get(blobId);
+            String contentType = blob.getContentType();
+            long size = gcpBucketStorageHelper.getSize(blob);
+            long lastModified = gcpBucketStorageHelper.getLastModified(blob);
+
+            // The client's copy is current, so the content is not read at all
+            if (readOptions.isNotModified(blob.getEtag(), lastModified)) {
+                BucketStorageLoggerUtil.infoFinishGettingFile(logger, bucketName, fileName);
+                return bucketStorageHelper.createNotModifiedBucketStorageDTO(fileName, blob.getEtag(), lastModified);
+            }
+
+            // The blob is no longer the version the read was pinned to
+            if (readOptions.isChanged(blob.getEtag())) {
+                throw new BucketStorageServiceException(
+                        BucketStorageExceptionUtil.setMessageFileChangedDuringRead(bucketName, fileName));
+            }
+
+            BucketStorageDTO bucketStorageDTO;
+
+            // Large blobs are read as parallel ranged parts instead of through a single channel
+            if (readOptions.getRange() == null
+                    && bucketStorageParallelDownloader.shouldDownloadInParallel(BucketStorageType.GCP, size)) {
+                InputStream inputStream = bucketStorageParallelDownloader.newInputStream(
+                        BucketStorageType.GCP, null, size, newRangeReader(blob));
+                bucketStorageDTO = bucketStorageHelper.createBucketStorageDTO(fileName, contentType, size, inputStream);
+            }
+            else {
+                // Content is read through the channel in chunks as the caller consumes the stream. The read only
+                // succeeds on the generation that was looked up, so the content matches the ETag and Last-Modified.
+                readChannel = blob.getGeneration() != null
+                        ? storage.reader(blobId, Storage.BlobSourceOption.generationMatch(blob.getGeneration()))
+                        : storage.reader(blobId);
+
+                if (readOptions.getRange() == null) {
+                    InputStream inputStream = gcpBucketStorageHelper.newInputStream(readChannel);
+                    bucketStorageDTO =
+                            bucketStorageHelper.createBucketStorageDTO(fileName, contentType, size, inputStream);
+                }
+                else {
+                    // Seek to the start of the range and stop reading once its last byte has been returned
+                    BucketStorageRange range = readOptions.getRange().resolve(size);
+                    gcpBucketStorageHelper.seek(readChannel, range);
+                    InputStream inputStream = gcpBucketStorageHelper.newInputStream(readChannel, range.getLength());
+
+                    bucketStorageDTO = bucketStorageHelper.createBucketStorageDTO(
+                            fileName, contentType, range.getLength(), inputStream);
+                    bucketStorageDTO.setRange(range);
+                    bucketStorageDTO.setInstanceLength(size);
+                }
+            }
+
+            bucketStorageDTO.setETag(blob.getEtag());
+            bucketStorageDTO.setLastModified(lastModified);
+
             BucketStorageLoggerUtil.infoFinishGettingFile(logger, bucketName, fileName);
-            return bucketStorageHelper.createBucketStorageDTO(fileName, blob.getContentType(), blob.getContent());
+            return bucketStorageDTO;
+        }
+
+        // Requested range starts beyond the end of the blob
+        catch (BucketStorageRangeNotSatisfiableException e) {
+            gcpBucketStorageHelper.closeQuietly(readChannel);
+            throw e;
+        }
+
+        // Unable to position the channel at the start of the range
+        catch (IOException e) {
+            logger.error(e.getMessage());
+            gcpBucketStorageHelper.closeQuietly(readChannel);
+            throw new BucketStorageServiceException(
+                    BucketStorageExceptionUtil.setMessageUnableToGetFile(bucketName, fileName)
+            );
         }
 
         // Returned blob is null; no file was found
@@ -55,8 +163,130 @@ public class GCPBucketStorageImpl implements BucketStorage {
         // Google Cloud extension of RuntimeException
         catch (BaseServiceException e) {
             logger.error(e.getMessage());
-            throw new BucketStorageServiceException(
-                    BucketStorageExceptionUtil.setMessageUnableToGetFile(bucketName, fileName)
+            throw newServiceException(
+                    BucketStorageExceptionUtil.setMessageUnableToGetFile(bucketName, fileName), e
+            );
+        }
+    }
+
+    /**
+     * Creates a reader for the parts of a parallel download. Every part is read from the generation of the blob
+     * that was looked up, so the parts cannot be mixed from two versions of the blob.
+     *
+     * @param blob
+     * @return rangeReader
+     */
+    private BucketStorageRangeReader newRangeReader(Blob blob) {
+        BlobId generationBlobId =
+                gcpBucketStorageHelper.createBlobId(blob.getBucket(), blob.getName(), blob.getGeneration());
+
+        return range -> {
+            ReadChannel partReadChannel = null;
+
+            try {
+                partReadChannel = storage.reader(generationBlobId);
+                gcpBucketStorageHelper.seek(partReadChannel, range);
+                return gcpBucketStorageHelper.newInputStream(partReadChannel, range.getLength());
+            }
+
+            // Part could not be fetched from GCP
+            catch (BaseServiceException e) {
+                gcpBucketStorageHelper.closeQuietly(partReadChannel);
+                throw new IOException(e.getMessage(), e);
+            }
+        };
+    }
+
+    @Override
+    public BucketStorageMetadata getFileMetadata(String bucketName, String fileName)
+            throws BucketStorageServiceException {
+
+        BucketStorageLoggerUtil.infoStartGettingFileMetadata(logger, bucketName, fileName);
+
+        try {
+            BlobId blobId = gcpBucketStorageHelper.createBlobId(bucketName, fileName);
+            Blob blob = storage.get(blobId, METADATA_FIELDS);
+
+            // No file was found
+            if (blob == null) {
+                throw new BucketStorageFileNotFoundException(
+                        BucketStorageExceptionUtil.setMessageFileNotFound(bucketName, fileName)
+                );
+            }
+
+            BucketStorageLoggerUtil.infoFinishGettingFileMetadata(logger, bucketName, fileName);
+            return new BucketStorageMetadata(fileName, blob.getContentType(), gcpBucketStorageHelper.getSize(blob),
+                    blob.getEtag(), gcpBucketStorageHelper.getLastModified(blob));
+        }
+
+        // Google Cloud extension of RuntimeException
+        catch (BaseServiceException e) {
+            logger.error(e.getMessage());
+            throw newServiceException(
+                    BucketStorageExceptionUtil.setMessageUnableToGetFileMetadata(bucketName, fileName), e
+            );
+        }
+    }
+
+    @Override
+    public Iterator<String> listFileNames(String bucketName, String prefix) throws BucketStorageServiceException {
+        try {
+            Page<Blob> page = storage.list(bucketName,
+                    Storage.BlobListOption.prefix(prefix), Storage.BlobListOption.fields(Storage.BlobField.NAME));
+            return new BucketStorageListingIterator<>(Iterators.transform(page.iterateAll().iterator(), Blob::getName),
+                    BaseServiceException.class, bucketName, prefix);
+        }
+
+        // Unable to list the first page of blobs
+        catch (BaseServiceException e) {
+            logger.error(e.getMessage());
+            throw newServiceException(
+                    BucketStorageExceptionUtil.setMessageUnableToListFiles(bucketName, prefix), e
+            );
+        }
+    }
+
+    @Override
+    public BucketStorageListing listFiles(String bucketName, BucketStorageListOptions listOptions)
+            throws BucketStorageServiceException {
+
+        BucketStorageLoggerUtil.infoStartListingFiles(logger, bucketName, listOptions.getPrefix());
+
+        List<Storage.BlobListOption> blobListOptions = new ArrayList<>();
+        blobListOptions.add(Storage.BlobListOption.pageSize(listOptions.getPageSize()));
+        blobListOptions.add(LISTING_FIELDS);
+        if (listOptions.getPrefix() != null) {
+            blobListOptions.add(Storage.BlobListOption.prefix(listOptions.getPrefix()));
+        }
+        // GCS only rolls names up into directories at slashes
+        if (listOptions.getDelimiter() != null) {
+            blobListOptions.add(Storage.BlobListOption.currentDirectory());
+        }
+        if (listOptions.getPageToken() != null) {
+            blobListOptions.add(Storage.BlobListOption.pageToken(listOptions.getPageToken()));
+        }
+
+        try {
+            Page<Blob> page = storage.list(bucketName, blobListOptions.toArray(new Storage.BlobListOption[0]));
+
+            // Directories are returned as blobs in name order along with the files
+            List<BucketStorageListingEntry> entries = new ArrayList<>();
+            for (Blob blob : page.getValues()) {
+                entries.add(blob.isDirectory()
+                        ? BucketStorageListingEntry.directory(blob.getName())
+                        : BucketStorageListingEntry.file(blob.getName(), gcpBucketStorageHelper.getSize(blob),
+                                blob.getEtag(), gcpBucketStorageHelper.getLastModified(blob)));
+            }
+
+            BucketStorageLoggerUtil.infoFinishListingFiles(logger, bucketName, entries.size());
+            return new BucketStorageListing(entries, Strings.emptyToNull(page.getNextPageToken()));
+        }
+
+        // Google Cloud extension of RuntimeException
+        catch (BaseServiceException e) {
+            logger.error(e.getMessage());
+            throw newServiceException(
+                    BucketStorageExceptionUtil.setMessageUnableToListFiles(bucketName, listOptions.getPrefix()), e
             );
         }
     }
@@ -70,11 +300,21 @@ public class GCPBucketStorageImpl implements BucketStorage {
         BlobId blobId = gcpBucketStorageHelper.createBlobId(bucketName, fileName);
         BlobInfo blobInfo = gcpBucketStorageHelper.createBlobInfo(blobId, multipartFile.getContentType());
 
-        try {
-            storage.create(blobInfo, multipartFile.getBytes());
+        // The request content is streamed to a resumable upload session, one chunk at a time
+        try (InputStream inputStream = multipartFile.getInputStream()) {
+            gcpResumableUploader.upload(blobInfo, inputStream);
             BucketStorageLoggerUtil.infoFinishUploadingFile(logger, bucketName, fileName);
         }
 
+        // While waiting for a buffer or to resume the upload, the thread is interrupted
+        catch(InterruptedException e) {
+            logger.error(e.getMessage());
+            Thread.currentThread().interrupt();
+            throw new BucketStorageServiceException(
+                    BucketStorageExceptionUtil.setMessageUploadThreadInterrupted(fileName)
+            );
+        }
+
         // Unable to read multipart file for upload
         catch(IOException e) {
             logger.error(e.getMessage());
@@ -101,8 +341,8 @@ public class GCPBucketStorageImpl implements BucketStorage {
             BlobId blobId = gcpBucketStorageHelper.createBlobId(bucketName, fileName);
             boolean deleted = storage.delete(blobId);
             if (!deleted) {
-                throw new BucketStorageServiceException(
-                        BucketStorageExceptionUtil.setMessageUnableToDeleteFile(bucketName, fileName)
+                throw new BucketStorageFileNotFoundException(
+                        BucketStorageExceptionUtil.setMessageFileNotFound(bucketName, fileName)
                 );
             }
             BucketStorageLoggerUtil.infoFinishDeletingFile(logger, bucketName, fileName);
@@ -111,9 +351,113 @@ public class GCPBucketStorageImpl implements BucketStorage {
         // Google Cloud extension of RuntimeException
         catch (BaseServiceException e) {
             logger.error(e.getMessage());
+            throw newServiceException(
+                    BucketStorageExceptionUtil.setMessageUnableToDeleteFile(bucketName, fileName), e
+            );
+        }
+    }
+
+    @Override
+    public List<BucketStorageDeleteResult> deleteFiles(String bucketName, List<String> fileNames)
+            throws BucketStorageServiceException {
+
+        BucketStorageLoggerUtil.infoStartDeletingFiles(logger, bucketName, fileNames.size());
+        List<BucketStorageDeleteResult> results =
+                deleteInGroups(bucketName, Iterators.partition(fileNames.iterator(), MAX_BLOBS_PER_BATCH));
+        BucketStorageLoggerUtil.infoFinishDeletingFiles(logger, bucketName, results.size());
+        return results;
+    }
+
+    @Override
+    public List<BucketStorageDeleteResult> deleteFilesWithPrefix(String bucketName, String prefix)
+            throws BucketStorageServiceException {
+
+        BucketStorageLoggerUtil.infoStartDeletingFilesWithPrefix(logger, bucketName, prefix);
+
+        // Blob names are listed a page at a time, as the groups before them are deleted
+        List<BucketStorageDeleteResult> results = deleteInGroups(
+                bucketName, Iterators.partition(listFileNames(bucketName, prefix), MAX_BLOBS_PER_BATCH));
+        BucketStorageLoggerUtil.infoFinishDeletingFiles(logger, bucketName, results.size());
+        return results;
+    }
+
+    private List<BucketStorageDeleteResult> deleteInGroups(String bucketName, Iterator<List<String>> groups) {
+        try {
+            return bucketStorageBatchExecutor.invokeAll(Iterators.transform(groups,
+                    fileNames -> (Callable<List<BucketStorageDeleteResult>>) () -> deleteGroup(bucketName, fileNames)));
+        }
+
+        // While waiting for the groups to be deleted, the thread is interrupted
+        catch (InterruptedException e) {
+            logger.error(e.getMessage());
+            Thread.currentThread().interrupt();
             throw new BucketStorageServiceException(
-                    BucketStorageExceptionUtil.setMessageUnableToDeleteFile(bucketName, fileName)
+                    BucketStorageExceptionUtil.setMessageBatchThreadInterrupted(bucketName)
             );
         }
     }
+
+    /**
+     * Deletes up to 100 blobs with a single batch request. Each blob's outcome is read from its own batch result.
+     *
+     * @param bucketName
+     * @param fileNames
+     * @return result for each blob
+     */
+    private List<BucketStorageDeleteResult> deleteGroup(String bucketName, List<String> fileNames) {
+        List<StorageBatchResult<Boolean>> batchResults = new ArrayList<>(fileNames.size());
+
+        try {
+            StorageBatch storageBatch = storage.batch();
+            for (String fileName : fileNames) {
+                batchResults.add(storageBatch.delete(gcpBucketStorageHelper.createBlobId(bucketName, fileName)));
+            }
+            storageBatch.submit();
+        }
+
+        // The batch request as a whole failed
+        catch (BaseServiceException e) {
+            logger.error(e.getMessage());
+            List<BucketStorageDeleteResult> results = new ArrayList<>(fileNames.size());
+            fileNames.forEach(fileName -> results.add(BucketStorageDeleteResult.failed(fileName,
+                    BucketStorageExceptionUtil.setMessageUnableToDeleteFile(bucketName, fileName))));
+            return results;
+        }
+
+        List<BucketStorageDeleteResult> results = new ArrayList<>(fileNames.size());
+        for (int i = 0; i < fileNames.size(); i++) {
+            results.add(getDeleteResult(bucketName, fileNames.get(i), batchResults.get(i)));
+        }
+        return results;
+    }
+
+    private BucketStorageDeleteResult getDeleteResult(String bucketName, String fileName,
+                                                      StorageBatchResult<Boolean> batchResult) {
+        try {
+            return Boolean.TRUE.equals(batchResult.get())
+                    ? BucketStorageDeleteResult.deleted(fileName)
+                    : BucketStorageDeleteResult.failed(fileName,
+                            BucketStorageExceptionUtil.setMessageFileNotFound(bucketName, fileName));
+        }
+
+        // This blob's delete failed within the batch
+        catch (BaseServiceException e) {
+            logger.error(e.getMessage());
+            return BucketStorageDeleteResult.failed(fileName, e.getMessage());
+        }
+    }
+
+    /**
+     * Creates the exception for a failed GCP call, as a BucketStorageTransientException if GCP reports that sending
+     * the call again may succeed.
+     *
+     * @param message
+     * @param e
+     * @return bucketStorageServiceException
+     */
+    private BucketStorageServiceException newServiceException(String message, BaseServiceException e) {
+        return e.isRetryable()
+                ? new BucketStorageTransientException(message)
+                : new BucketStorageServiceException(message);
+    }
 }
@@ -0,0 +1,138 @@
+package com.experimentation.filestorage.bucket.gcp;
+
+import com.experimentation.filestorage.bucket.util.BucketStorageBufferPool;
+import com.experimentation.filestorage.bucket.util.BucketStorageStreamUtil;
+import com.google.cloud.BaseServiceException;
+import com.google.cloud.RestorableState;
+import com.google.cloud.WriteChannel;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Uploads a stream to GCS through a resumable upload session, one chunk at a time.
+ * The channel state is captured before each chunk, so a chunk that fails with a retryable error is written again
+ * to the same session, which resumes at the last offset GCS committed instead of starting the upload over.
+ */
+@Component
+public class GCPResumableUploader {
+
+    // GCS requires every chunk of a resumable upload, other than the last one, to be a multiple of 256 KB
+    private static final int CHUNK_SIZE_MULTIPLE = 256 * 1024;
+
+    private static final Logger logger = LoggerFactory.getLogger(GCPResumableUploader.class);
+
+    private final Storage storage;
+    private final BucketStorageBufferPool bufferPool;
+    private final int maxResumeAttempts;
+    private final long resumeBackoffMillis;
+
+    @Autowired
+    public GCPResumableUploader(Storage storage,
+                                @Value("${filestorage.gcp.upload.chunk-size:8388608}") int chunkSize,
+                                @Value("${filestorage.gcp.upload.buffer-count:16}") int bufferCount,
+                                @Value("${filestorage.gcp.upload.max-resume-attempts:3}") int maxResumeAttempts,
+                                @Value("${filestorage.gcp.upload.resume-backoff:500}") long resumeBackoffMillis) {
+        this.storage = storage;
+        this.bufferPool = new BucketStorageBufferPool(roundChunkSize(chunkSize), bufferCount);
+        this.maxResumeAttempts = maxResumeAttempts;
+        this.resumeBackoffMillis = resumeBackoffMillis;
+    }
+
+    /**
+     * Uploads the stream's content as the given blob.
+     *
+     * @param blobInfo
+     * @param inputStream
+     * @throws IOException if the stream could not be read
+     * @throws InterruptedException if the thread was interrupted while waiting for a buffer or to resume
+     */
+    public void upload(BlobInfo blobInfo, InputStream inputStream) throws IOException, InterruptedException {
+        byte[] buffer = bufferPool.acquire();
+
+        try {
+            WriteChannel writeChannel = storage.writer(blobInfo);
+            writeChannel.setChunkSize(buffer.length);
+            int length;
+
+            // A full chunk is flushed to GCS as soon as it is written, so the captured state holds no buffered bytes
+            while ((length = BucketStorageStreamUtil.readFully(inputStream, buffer)) > 0) {
+                writeChannel = writeChunk(blobInfo, writeChannel, buffer, length);
+            }
+
+            closeChannel(blobInfo, writeChannel);
+        }
+
+        // A failed channel is not closed, as closing it would commit the partial content as the blob.
+        // GCS discards the unfinished upload session on its own.
+        finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    private WriteChannel writeChunk(BlobInfo blobInfo, WriteChannel writeChannel, byte[] buffer, int length)
+            throws IOException, InterruptedException {
+
+        RestorableState<WriteChannel> state = writeChannel.capture();
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, length);
+                while (chunk.hasRemaining()) {
+                    writeChannel.write(chunk);
+                }
+                return writeChannel;
+            }
+
+            // Resume the session from the state before this chunk and write the chunk again
+            catch (BaseServiceException e) {
+                awaitResume(blobInfo, e, attempt);
+                writeChannel = state.restore();
+            }
+        }
+    }
+
+    private void closeChannel(BlobInfo blobInfo, WriteChannel writeChannel)
+            throws IOException, InterruptedException {
+
+        RestorableState<WriteChannel> state = writeChannel.capture();
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                writeChannel.close();
+                return;
+            }
+
+            // The last chunk is sent on close, so it is resumed the same way as any other chunk
+            catch (BaseServiceException e) {
+                awaitResume(blobInfo, e, attempt);
+                writeChannel = state.restore();
+            }
+        }
+    }
+
+    /**
+     * Rethrows the failure if it cannot be resumed, otherwise waits before the next attempt.
+     */
+    private void awaitResume(BlobInfo blobInfo, BaseServiceException e, int attempt) throws InterruptedException {
+        if (!e.isRetryable() || attempt > maxResumeAttempts) {
+            throw e;
+        }
+
+        logger.warn("Resuming upload of file " + blobInfo.getName() + " after attempt " + attempt + " failed: "
+                + e.getMessage());
+        Thread.sleep(resumeBackoffMillis * (1L << (attempt - 1)));
+    }
+
+    private static int roundChunkSize(int chunkSize) {
+        return Math.max(1, (chunkSize + CHUNK_SIZE_MULTIPLE - 1) / CHUNK_SIZE_MULTIPLE) * CHUNK_SIZE_MULTIPLE;
+    }
+}
@@ -0,0 +1,413 @@
+package com.experimentation.filestorage.bucket.index;
+
+import com.experimentation.filestorage.bucket.BucketStorageListingEntry;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Metadata index of a single bucket. Every file's record is held in a sorted in-memory map, which is what queries
+ * read. On disk, the index is a snapshot of the records sorted by name, followed by a journal of the changes made
+ * since. Snapshots and journals are numbered by generation: snapshot N holds everything up to the moment journal N
+ * was started, so on opening, the latest snapshot is read and only the journals from its generation on are replayed.
+ * A journal whose last record was cut short by a crash is replayed up to that record. Every change is forced to disk
+ * before it is acknowledged, and a snapshot before it replaces the journals it covers.
+ */
+class BucketMetadataIndex {
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".dat";
+    private static final String JOURNAL_PREFIX = "journal-";
+    private static final String JOURNAL_SUFFIX = ".log";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+
+    private static final Logger logger = LoggerFactory.getLogger(BucketMetadataIndex.class);
+
+    private final BucketStorageType bucketStorageType;
+    private final String bucketName;
+    private final Path directory;
+
+    private volatile ConcurrentSkipListMap<String, MetadataIndexRecord> records = new ConcurrentSkipListMap<>();
+
+    // While a reconciling scan runs, changes are applied to the scan's records as well, and the files they touch
+    // are not overwritten by what the scan lists, which may have been listed before the change
+    private ConcurrentSkipListMap<String, MetadataIndexRecord> reconcilingRecords;
+    private Set<String> changedWhileReconciling;
+
+    private long generation;
+    private FileChannel journalChannel;
+    private DataOutputStream journal;
+    private long journalRecords;
+
+    private volatile boolean ready;
+    private volatile Instant lastReconciledAt;
+    private volatile int reconcileFailures;
+
+    private BucketMetadataIndex(BucketStorageType bucketStorageType, String bucketName, Path directory) {
+        this.bucketStorageType = bucketStorageType;
+        this.bucketName = bucketName;
+        this.directory = directory;
+    }
+
+    /**
+     * Opens the index kept in the directory, creating an empty one if there is none. An index is only ready to be
+     * queried once it has a snapshot, which a new index gets from its first reconciling scan.
+     *
+     * @param bucketStorageType
+     * @param bucketName
+     * @param directory
+     * @return index
+     * @throws IOException if the directory could not be read or the journal could not be started
+     */
+    static BucketMetadataIndex open(BucketStorageType bucketStorageType, String bucketName, Path directory)
+            throws IOException {
+        BucketMetadataIndex index = new BucketMetadataIndex(bucketStorageType, bucketName, directory);
+        index.load();
+        return index;
+    }
+
+    BucketStorageType getBucketStorageType() {
+        return bucketStorageType;
+    }
+
+    String getBucketName() {
+        return bucketName;
+    }
+
+    boolean isReady() {
+        return ready;
+    }
+
+    Instant getLastReconciledAt() {
+        return lastReconciledAt;
+    }
+
+    /**
+     * Number of reconciling scans that failed since the last one that finished.
+     * @return reconcileFailures
+     */
+    int getReconcileFailures() {
+        return reconcileFailures;
+    }
+
+    int size() {
+        return records.size();
+    }
+
+    synchronized long getJournalRecords() {
+        return journalRecords;
+    }
+
+    synchronized void put(String fileName, MetadataIndexRecord record) throws IOException {
+        records.put(fileName, record);
+        if (reconcilingRecords != null) {
+            reconcilingRecords.put(fileName, record);
+            changedWhileReconciling.add(fileName);
+        }
+        writeRecord(journal, PUT, fileName, record);
+        journal.flush();
+        journalChannel.force(false);
+        journalRecords++;
+    }
+
+    synchronized void remove(String fileName) throws IOException {
+        records.remove(fileName);
+        if (reconcilingRecords != null) {
+            reconcilingRecords.remove(fileName);
+            changedWhileReconciling.add(fileName);
+        }
+        writeRecord(journal, REMOVE, fileName, null);
+        journal.flush();
+        journalChannel.force(false);
+        journalRecords++;
+    }
+
+    /**
+     * Returns the records from the query's prefix on, in name order. The view is live, so records changed while it
+     * is iterated may or may not be seen.
+     *
+     * @param query
+     * @return records by file name
+     */
+    NavigableMap<String, MetadataIndexRecord> tailMap(BucketStorageMetadataIndexQuery query) {
+        String from = query.getStartAfter() != null && query.getStartAfter().compareTo(query.getPrefix()) >= 0
+                ? query.getStartAfter()
+                : query.getPrefix();
+        return records.tailMap(from, !from.equals(query.getStartAfter()));
+    }
+
+    synchronized void startReconcile() {
+        reconcilingRecords = new ConcurrentSkipListMap<>();
+        changedWhileReconciling = new HashSet<>();
+    }
+
+    /**
+     * Adds a page of the provider's listing to the running scan.
+     *
+     * @param entries
+     */
+    synchronized void addReconciled(List<BucketStorageListingEntry> entries) {
+        for (BucketStorageListingEntry entry : entries) {
+            if (!entry.isDirectory() && !changedWhileReconciling.contains(entry.getFileName())) {
+                reconcilingRecords.putIfAbsent(entry.getFileName(),
+                        new MetadataIndexRecord(entry.getSize(), entry.getETag(), entry.getLastModified()));
+            }
+        }
+    }
+
+    /**
+     * Replaces the records with those of the finished scan and writes them as a new snapshot. Only called from the
+     * maintenance thread, which also compacts, so two snapshots are never written at the same time.
+     *
+     * @throws IOException if the snapshot could not be written
+     */
+    void finishReconcile() throws IOException {
+        Map<String, MetadataIndexRecord> snapshotRecords;
+        long snapshotGeneration;
+
+        synchronized (this) {
+            records = reconcilingRecords;
+            reconcilingRecords = null;
+            changedWhileReconciling = null;
+            snapshotRecords = records;
+            snapshotGeneration = startJournal();
+        }
+
+        writeSnapshot(snapshotGeneration, snapshotRecords);
+        ready = true;
+        lastReconciledAt = Instant.now();
+        reconcileFailures = 0;
+    }
+
+    synchronized void abortReconcile() {
+        reconcilingRecords = null;
+        changedWhileReconciling = null;
+        reconcileFailures++;
+    }
+
+    /**
+     * Writes the current records as a new snapshot and drops the journals it replaces. Changes made while the
+     * snapshot is written go to the new journal, so replaying it over the snapshot restores them either way.
+     * Only called from the maintenance thread.
+     *
+     * @throws IOException if the snapshot could not be written
+     */
+    void compact() throws IOException {
+        Map<String, MetadataIndexRecord> snapshotRecords;
+        long snapshotGeneration;
+
+        synchronized (this) {
+            snapshotRecords = records;
+            snapshotGeneration = startJournal();
+        }
+
+        writeSnapshot(snapshotGeneration, snapshotRecords);
+    }
+
+    synchronized void close() {
+        closeQuietly(journal);
+    }
+
+    /**
+     * Closes the index and removes its files and directory.
+     *
+     * @throws IOException if a file could not be removed
+     */
+    synchronized void delete() throws IOException {
+        close();
+
+        List<Path> indexFiles = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            files.forEach(indexFiles::add);
+        }
+        for (Path file : indexFiles) {
+            Files.deleteIfExists(file);
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    private void load() throws IOException {
+        Files.createDirectories(directory);
+
+        TreeMap<Long, Path> snapshots = new TreeMap<>();
+        TreeMap<Long, Path> journals = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TEMPORARY_SUFFIX)) {
+                    Files.deleteIfExists(file);
+                }
+                else if (name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX)) {
+                    snapshots.put(parseGeneration(name, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX), file);
+                }
+                else if (name.startsWith(JOURNAL_PREFIX) && name.endsWith(JOURNAL_SUFFIX)) {
+                    journals.put(parseGeneration(name, JOURNAL_PREFIX, JOURNAL_SUFFIX), file);
+                }
+            }
+        }
+
+        long snapshotGeneration = snapshots.isEmpty() ? 0 : snapshots.lastKey();
+        if (!snapshots.isEmpty()) {
+            replay(snapshots.lastEntry().getValue());
+            ready = true;
+            lastReconciledAt = Files.getLastModifiedTime(snapshots.lastEntry().getValue()).toInstant();
+        }
+        for (Path journalFile : journals.tailMap(snapshotGeneration, true).values()) {
+            replay(journalFile);
+        }
+
+        generation = Math.max(snapshotGeneration, journals.isEmpty() ? 0 : journals.lastKey());
+        startJournal();
+        deleteOlderThan(snapshotGeneration);
+
+        logger.info("Metadata index of " + bucketStorageType + " location " + bucketName + " opened with "
+                + records.size() + " files");
+    }
+
+    private void replay(Path file) throws IOException {
+        try (DataInputStream inputStream =
+                     new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                byte operation = inputStream.readByte();
+                String fileName = inputStream.readUTF();
+
+                if (operation == PUT) {
+                    long size = inputStream.readLong();
+                    long lastModified = inputStream.readLong();
+                    String eTag = inputStream.readBoolean() ? inputStream.readUTF() : null;
+                    records.put(fileName, new MetadataIndexRecord(size, eTag, lastModified));
+                }
+                else {
+                    records.remove(fileName);
+                }
+            }
+        }
+
+        // End of the file, or a last record that was only partly written before a crash
+        catch (EOFException e) {
+            logger.debug("Replayed " + file);
+        }
+    }
+
+    /**
+     * Starts the journal of the next generation, which records every change from now on.
+     *
+     * @return generation of the new journal
+     */
+    private long startJournal() throws IOException {
+        generation++;
+        Path journalFile = directory.resolve(JOURNAL_PREFIX + generation + JOURNAL_SUFFIX);
+        FileChannel fileChannel = FileChannel.open(journalFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        closeQuietly(journal);
+        journalChannel = fileChannel;
+        journal = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(fileChannel)));
+        journalRecords = 0;
+        return generation;
+    }
+
+    private void writeSnapshot(long snapshotGeneration, Map<String, MetadataIndexRecord> snapshotRecords)
+            throws IOException {
+        Path snapshotFile = directory.resolve(SNAPSHOT_PREFIX + snapshotGeneration + SNAPSHOT_SUFFIX);
+        Path temporaryFile = directory.resolve(snapshotFile.getFileName() + TEMPORARY_SUFFIX);
+
+        try (FileChannel fileChannel = FileChannel.open(temporaryFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream outputStream =
+                    new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(fileChannel)));
+            for (Map.Entry<String, MetadataIndexRecord> entry : snapshotRecords.entrySet()) {
+                writeRecord(outputStream, PUT, entry.getKey(), entry.getValue());
+            }
+            outputStream.flush();
+
+            // The journals the snapshot replaces are deleted next, so it has to be on disk first
+            fileChannel.force(false);
+        }
+
+        Files.move(temporaryFile, snapshotFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        deleteOlderThan(snapshotGeneration);
+    }
+
+    private void deleteOlderThan(long snapshotGeneration) throws IOException {
+        List<Path> olderFiles = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if ((name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX)
+                        && parseGeneration(name, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX) < snapshotGeneration)
+                        || (name.startsWith(JOURNAL_PREFIX) && name.endsWith(JOURNAL_SUFFIX)
+                        && parseGeneration(name, JOURNAL_PREFIX, JOURNAL_SUFFIX) < snapshotGeneration)) {
+                    olderFiles.add(file);
+                }
+            }
+        }
+
+        for (Path file : olderFiles) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void writeRecord(DataOutputStream outputStream, byte operation, String fileName,
+                                    MetadataIndexRecord record) throws IOException {
+        outputStream.writeByte(operation);
+        outputStream.writeUTF(fileName);
+
+        if (operation == PUT) {
+            outputStream.writeLong(record.getSize());
+            outputStream.writeLong(record.getLastModified());
+            outputStream.writeBoolean(record.getETag() != null);
+            if (record.getETag() != null) {
+                outputStream.writeUTF(record.getETag());
+            }
+        }
+    }
+
+    private static long parseGeneration(String name, String prefix, String suffix) {
+        return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+    }
+
+    private static void closeQuietly(DataOutputStream outputStream) {
+        if (outputStream == null) {
+            return;
+        }
+
+        try {
+            outputStream.close();
+        }
+        catch (IOException e) {
+            logger.warn("Unable to close metadata index journal: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return bucketStorageType + "/" + bucketName;
+    }
+}
@@ -0,0 +1,476 @@
+package com.experimentation.filestorage.bucket.index;
+
+import com.experimentation.filestorage.bucket.BucketStorage;
+import com.experimentation.filestorage.bucket.BucketStorageListOptions;
+import com.experimentation.filestorage.bucket.BucketStorageListing;
+import com.experimentation.filestorage.bucket.BucketStorageListingEntry;
+import com.experimentation.filestorage.bucket.BucketStorageMetadata;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.experimentation.filestorage.bucket.util.BucketStorageExceptionUtil;
+import com.experimentation.filestorage.bucket.util.BucketStorageIndexNotFoundException;
+import com.experimentation.filestorage.bucket.util.BucketStorageIndexUnavailableException;
+import com.experimentation.filestorage.bucket.util.BucketStorageServiceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps a local index of the metadata of every file, per storage provider and bucket, so that files can be found by
+ * prefix, size and last modified time without listing the bucket at the provider. Uploads and deletes made through
+ * this service update the index as they happen; a periodic scan of the bucket picks up changes made around it.
+ * Only the configured buckets and buckets this service has uploaded to are indexed, so a query cannot have an index
+ * created for any bucket name. An index can be queried once its first scan has finished. An index whose scans keep
+ * failing is scanned at doubling intervals, and dropped if none of its scans ever finished and it is not configured.
+ */
+@Component
+public class BucketStorageMetadataIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(BucketStorageMetadataIndex.class);
+
+    // Bucket names of both providers, which also keeps the name from leaving the index directory
+    private static final Pattern BUCKET_NAME = Pattern.compile("[A-Za-z0-9][A-Za-z0-9._-]*");
+
+    // Failed scans after which an index is scanned at most every 2^N intervals, or dropped if it never had a scan
+    private static final int MAX_RECONCILE_BACKOFF = 5;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long compactThreshold;
+    private final Set<String> configuredIndexes = new HashSet<>();
+    private final ScheduledExecutorService executorService;
+
+    private final Map<String, BucketMetadataIndex> indexes = new ConcurrentHashMap<>();
+    private final Set<BucketMetadataIndex> compactingIndexes = ConcurrentHashMap.newKeySet();
+    private long reconcileRounds;
+    private final Map<BucketStorageType, BucketStorage> bucketStorages = new ConcurrentHashMap<>();
+
+    private final AtomicLong reconciles = new AtomicLong();
+    private final AtomicLong reconcileFailures = new AtomicLong();
+
+    @Autowired
+    public BucketStorageMetadataIndex(@Value("${filestorage.index.enabled:false}") boolean enabled,
+                                      @Value("${filestorage.index.directory:${java.io.tmpdir}/filestorage-index}")
+                                              String directory,
+                                      @Value("${filestorage.index.reconcile-interval:3600}") long reconcileInterval,
+                                      @Value("${filestorage.index.compact-threshold:100000}") long compactThreshold,
+                                      @Value("${filestorage.index.buckets:}") String[] buckets) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.compactThreshold = compactThreshold;
+        this.executorService = Executors.newSingleThreadScheduledExecutor(
+                new CustomizableThreadFactory("bucket-storage-index-"));
+
+        for (String bucket : buckets) {
+            configuredIndexes.add(parseConfiguredBucket(bucket));
+        }
+
+        if (enabled) {
+            openExistingIndexes();
+            openConfiguredIndexes();
+            executorService.scheduleWithFixedDelay(
+                    this::reconcileAll, reconcileInterval, reconcileInterval, TimeUnit.SECONDS);
+        }
+    }
+
+    // Buckets are configured as provider/bucket, e.g. AWS_S3/my-bucket
+    private static String parseConfiguredBucket(String bucket) {
+        int slashIndex = bucket.indexOf('/');
+        if (slashIndex >= 0) {
+            String bucketName = bucket.substring(slashIndex + 1).trim();
+            try {
+                BucketStorageType bucketStorageType = BucketStorageType.valueOf(bucket.substring(0, slashIndex).trim());
+                if (BUCKET_NAME.matcher(bucketName).matches()) {
+                    return getKey(bucketStorageType, bucketName);
+                }
+            }
+            // Not one of the providers, reported below along with the other malformed entries
+            catch (IllegalArgumentException e) {
+                logger.debug("Unknown storage provider in configured bucket " + bucket, e);
+            }
+        }
+        throw new IllegalArgumentException("Invalid entry '" + bucket + "' in filestorage.index.buckets, expected "
+                + "PROVIDER/bucket with PROVIDER one of " + Arrays.toString(BucketStorageType.values()));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Registers the provider whose buckets are scanned, called once for each provider bean.
+     *
+     * @param bucketStorageType
+     * @param bucketStorage
+     */
+    public void register(BucketStorageType bucketStorageType, BucketStorage bucketStorage) {
+        bucketStorages.put(bucketStorageType, bucketStorage);
+
+        // Indexes opened at startup that never finished a scan can only be scanned once their provider is known
+        for (BucketMetadataIndex index : indexes.values()) {
+            if (index.getBucketStorageType() == bucketStorageType && !index.isReady()) {
+                executorService.execute(() -> reconcile(index));
+            }
+        }
+    }
+
+    /**
+     * Records a file that was uploaded. A failure to write the journal is only logged, the next scan corrects it.
+     *
+     * @param bucketStorageType
+     * @param bucketName
+     * @param bucketStorageMetadata
+     */
+    public void fileUploaded(BucketStorageType bucketStorageType, String bucketName,
+                             BucketStorageMetadata bucketStorageMetadata) {
+        if (!enabled) {
+            return;
+        }
+
+        BucketMetadataIndex index = getOrOpenIndex(bucketStorageType, bucketName);
+        try {
+            index.put(bucketStorageMetadata.getFileName(), new MetadataIndexRecord(
+                    bucketStorageMetadata.getContentLength(), bucketStorageMetadata.getETag(),
+                    bucketStorageMetadata.getLastModified()));
+        }
+
+        // Unable to write the journal, the file is still in the index until the service restarts
+        catch (IOException e) {
+            logger.warn("Unable to record file " + bucketStorageMetadata.getFileName() + " in metadata index "
+                    + index + ": " + e.getMessage());
+        }
+
+        compactIfNeeded(index);
+    }
+
+    /**
+     * Records a file that was deleted, if its bucket is indexed. A failure to write the journal is only logged, the
+     * next scan corrects it.
+     *
+     * @param bucketStorageType
+     * @param bucketName
+     * @param fileName
+     */
+    public void fileDeleted(BucketStorageType bucketStorageType, String bucketName, String fileName) {
+        if (!enabled) {
+            return;
+        }
+
+        BucketMetadataIndex index = indexes.get(getKey(bucketStorageType, bucketName));
+        if (index == null) {
+            return;
+        }
+
+        try {
+            index.remove(fileName);
+        }
+
+        // Unable to write the journal, the file is still out of the index until the service restarts
+        catch (IOException e) {
+            logger.warn("Unable to remove file " + fileName + " from metadata index " + index + ": "
+                    + e.getMessage());
+        }
+
+        compactIfNeeded(index);
+    }
+
+    /**
+     * Finds the files that match the query, in name order. The files are read from the index as the iterator is
+     * advanced, so a large result is never held as a whole.
+     *
+     * @param bucketStorageType
+     * @param bucketName
+     * @param query
+     * @return matching files
+     * @throws BucketStorageIndexUnavailableException if the index is disabled or the bucket's first scan has not
+     *                                                finished
+     * @throws BucketStorageIndexNotFoundException if the bucket is not indexed
+     */
+    public Iterator<BucketStorageListingEntry> query(BucketStorageType bucketStorageType, String bucketName,
+                                                     BucketStorageMetadataIndexQuery query)
+            throws BucketStorageServiceException {
+        if (!enabled) {
+            throw new BucketStorageIndexUnavailableException(BucketStorageExceptionUtil.setMessageIndexNotEnabled());
+        }
+
+        String key = getKey(bucketStorageType, bucketName);
+        BucketMetadataIndex index = configuredIndexes.contains(key)
+                ? getOrOpenIndex(bucketStorageType, bucketName)
+                : indexes.get(key);
+        if (index == null) {
+            throw new BucketStorageIndexNotFoundException(
+                    BucketStorageExceptionUtil.setMessageLocationNotIndexed(bucketName)
+            );
+        }
+        if (!index.isReady()) {
+            throw new BucketStorageIndexUnavailableException(
+                    BucketStorageExceptionUtil.setMessageIndexNotReady(bucketName)
+            );
+        }
+
+        return new QueryIterator(index.tailMap(query).entrySet().iterator(), query);
+    }
+
+    public BucketStorageMetadataIndexStatistics getStatistics() {
+        int readyIndexes = 0;
+        long files = 0;
+        long journalRecords = 0;
+        for (BucketMetadataIndex index : indexes.values()) {
+            readyIndexes += index.isReady() ? 1 : 0;
+            files += index.size();
+            journalRecords += index.getJournalRecords();
+        }
+
+        return new BucketStorageMetadataIndexStatistics(enabled, indexes.size(), readyIndexes, files,
+                journalRecords, reconciles.get(), reconcileFailures.get());
+    }
+
+    private BucketMetadataIndex getOrOpenIndex(BucketStorageType bucketStorageType, String bucketName) {
+        if (!BUCKET_NAME.matcher(bucketName).matches()) {
+            throw new BucketStorageServiceException(BucketStorageExceptionUtil.setMessageUnableToOpenIndex(bucketName));
+        }
+
+        return indexes.computeIfAbsent(getKey(bucketStorageType, bucketName), key -> {
+            BucketMetadataIndex index = openIndex(bucketStorageType, bucketName);
+
+            // A new index is scanned right away instead of at the next interval
+            if (!index.isReady()) {
+                executorService.execute(() -> reconcile(index));
+            }
+            return index;
+        });
+    }
+
+    private BucketMetadataIndex openIndex(BucketStorageType bucketStorageType, String bucketName) {
+        try {
+            return BucketMetadataIndex.open(
+                    bucketStorageType, bucketName, directory.resolve(bucketStorageType.toString()).resolve(bucketName));
+        }
+
+        // Unable to read or create the index's directory
+        catch (IOException e) {
+            logger.error(e.getMessage());
+            throw new BucketStorageServiceException(BucketStorageExceptionUtil.setMessageUnableToOpenIndex(bucketName));
+        }
+    }
+
+    /**
+     * Opens the indexes that were kept before the service restarted, so they can be queried right away.
+     */
+    private void openExistingIndexes() {
+        for (BucketStorageType bucketStorageType : BucketStorageType.values()) {
+            Path providerDirectory = directory.resolve(bucketStorageType.toString());
+            if (!Files.isDirectory(providerDirectory)) {
+                continue;
+            }
+
+            try (DirectoryStream<Path> bucketDirectories = Files.newDirectoryStream(providerDirectory)) {
+                for (Path bucketDirectory : bucketDirectories) {
+                    String bucketName = bucketDirectory.getFileName().toString();
+                    indexes.put(getKey(bucketStorageType, bucketName), openIndex(bucketStorageType, bucketName));
+                }
+            }
+
+            // Unable to read the directory, the indexes are opened again as their buckets are used
+            catch (IOException | BucketStorageServiceException e) {
+                logger.error("Unable to open metadata indexes of " + bucketStorageType + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Opens the indexes of the configured buckets that were not kept before the service restarted. Their first scan
+     * starts once their provider is registered.
+     */
+    private void openConfiguredIndexes() {
+        for (String key : configuredIndexes) {
+            int slashIndex = key.indexOf('/');
+            String bucketName = key.substring(slashIndex + 1);
+
+            try {
+                if (BUCKET_NAME.matcher(bucketName).matches()) {
+                    indexes.computeIfAbsent(key, k -> openIndex(
+                            BucketStorageType.valueOf(key.substring(0, slashIndex)), bucketName));
+                }
+            }
+
+            // Unable to create the index's directory, it is opened again when the bucket is queried
+            catch (BucketStorageServiceException e) {
+                logger.error(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Scans every index, skipping those whose recent scans failed for a growing number of intervals. An index that
+     * never finished a scan is dropped once too many have failed, unless its bucket is configured.
+     */
+    private void reconcileAll() {
+        reconcileRounds++;
+
+        for (BucketMetadataIndex index : indexes.values()) {
+            int failures = Math.min(index.getReconcileFailures(), MAX_RECONCILE_BACKOFF);
+
+            if (failures == MAX_RECONCILE_BACKOFF && !index.isReady()
+                    && !configuredIndexes.contains(getKey(index.getBucketStorageType(), index.getBucketName()))) {
+                dropIndex(index);
+            }
+            else if (reconcileRounds % (1L << failures) == 0) {
+                reconcile(index);
+            }
+        }
+    }
+
+    private void dropIndex(BucketMetadataIndex index) {
+        logger.warn("Dropping metadata index " + index + " after " + index.getReconcileFailures() + " failed scans");
+        indexes.remove(getKey(index.getBucketStorageType(), index.getBucketName()), index);
+
+        try {
+            index.delete();
+        }
+
+        // The files are left behind and the index is opened again on the next start
+        catch (IOException e) {
+            logger.error("Unable to delete metadata index " + index + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lists the whole bucket at the provider and replaces the index's records with what was listed.
+     * Runs on the index thread only.
+     */
+    private void reconcile(BucketMetadataIndex index) {
+        BucketStorage bucketStorage = bucketStorages.get(index.getBucketStorageType());
+        if (bucketStorage == null) {
+            return;
+        }
+
+        logger.info("Reconciling metadata index " + index);
+        index.startReconcile();
+
+        try {
+            BucketStorageListOptions listOptions =
+                    new BucketStorageListOptions(null, null, BucketStorageListOptions.MAX_PAGE_SIZE, null);
+            BucketStorageListing listing;
+            do {
+                listing = bucketStorage.listFiles(index.getBucketName(), listOptions);
+                index.addReconciled(listing.getEntries());
+                listOptions = listOptions.withPageToken(listing.getNextPageToken());
+            } while (listing.getNextPageToken() != null);
+
+            index.finishReconcile();
+            reconciles.incrementAndGet();
+            logger.info("Reconciled metadata index " + index + " with " + index.size() + " files");
+        }
+
+        // Unable to list the bucket or to write the snapshot, the index keeps its records until the next scan
+        catch (IOException | RuntimeException e) {
+            index.abortReconcile();
+            reconcileFailures.incrementAndGet();
+            logger.error("Unable to reconcile metadata index " + index + ": " + e.getMessage());
+        }
+    }
+
+    private void compactIfNeeded(BucketMetadataIndex index) {
+        // Only one compaction of an index is scheduled at a time; after a failed one, the next change schedules another
+        if (index.getJournalRecords() >= compactThreshold && compactingIndexes.add(index)) {
+            executorService.execute(() -> compact(index));
+        }
+    }
+
+    private void compact(BucketMetadataIndex index) {
+        try {
+            index.compact();
+        }
+
+        // Unable to write the snapshot, the journal keeps growing until the next compaction or scan
+        catch (IOException e) {
+            logger.error("Unable to compact metadata index " + index + ": " + e.getMessage());
+        }
+        finally {
+            compactingIndexes.remove(index);
+        }
+    }
+
+    private static String getKey(BucketStorageType bucketStorageType, String bucketName) {
+        return bucketStorageType + "/" + bucketName;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executorService.shutdownNow();
+        indexes.values().forEach(BucketMetadataIndex::close);
+    }
+
+    /**
+     * Walks the records from the query's start while their names have its prefix, skipping those that do not
+     * match its filters and stopping at its limit.
+     */
+    private static class QueryIterator implements Iterator<BucketStorageListingEntry> {
+
+        private final Iterator<Map.Entry<String, MetadataIndexRecord>> records;
+        private final BucketStorageMetadataIndexQuery query;
+        private BucketStorageListingEntry next;
+        private int returned;
+        private boolean done;
+
+        QueryIterator(Iterator<Map.Entry<String, MetadataIndexRecord>> records,
+                      BucketStorageMetadataIndexQuery query) {
+            this.records = records;
+            this.query = query;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !done) {
+                if (returned >= query.getLimit() || !records.hasNext()) {
+                    done = true;
+                    break;
+                }
+
+                Map.Entry<String, MetadataIndexRecord> record = records.next();
+                if (!record.getKey().startsWith(query.getPrefix())) {
+                    done = true;
+                }
+                else if (query.matches(record.getValue())) {
+                    next = BucketStorageListingEntry.file(record.getKey(), record.getValue().getSize(),
+                            record.getValue().getETag(), record.getValue().getLastModified());
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public BucketStorageListingEntry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            BucketStorageListingEntry entry = next;
+            next = null;
+            returned++;
+            return entry;
+        }
+    }
+}
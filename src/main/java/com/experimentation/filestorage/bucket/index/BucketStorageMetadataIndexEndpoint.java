@@ -0,0 +1,26 @@
+package com.experimentation.filestorage.bucket.index;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes the metadata index statistics at /actuator/metadataindex.
+ */
+@Component
+@Endpoint(id = "metadataindex")
+public class BucketStorageMetadataIndexEndpoint {
+
+    private final BucketStorageMetadataIndex bucketStorageMetadataIndex;
+
+    @Autowired
+    public BucketStorageMetadataIndexEndpoint(BucketStorageMetadataIndex bucketStorageMetadataIndex) {
+        this.bucketStorageMetadataIndex = bucketStorageMetadataIndex;
+    }
+
+    @ReadOperation
+    public BucketStorageMetadataIndexStatistics metadataIndex() {
+        return bucketStorageMetadataIndex.getStatistics();
+    }
+}
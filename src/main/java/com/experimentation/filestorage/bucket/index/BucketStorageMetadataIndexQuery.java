@@ -0,0 +1,53 @@
+package com.experimentation.filestorage.bucket.index;
+
+/**
+ * Filters for a metadata index query. Files are returned in name order, so a query that stopped at its limit is
+ * continued by passing the last returned name as startAfter.
+ */
+public class BucketStorageMetadataIndexQuery {
+
+    private final String prefix;
+    private final String startAfter;
+    private final long minSize;
+    private final long maxSize;
+    private final long modifiedSince;
+    private final long modifiedBefore;
+    private final int limit;
+
+    /**
+     * @param prefix only files whose name starts with the prefix, or null for all files
+     * @param startAfter only files whose name sorts after this one, or null to start at the first file
+     * @param minSize smallest size in bytes, inclusive
+     * @param maxSize largest size in bytes, inclusive
+     * @param modifiedSince earliest last modified time in epoch milliseconds, inclusive
+     * @param modifiedBefore latest last modified time in epoch milliseconds, exclusive
+     * @param limit most files to return
+     */
+    public BucketStorageMetadataIndexQuery(String prefix, String startAfter, long minSize, long maxSize,
+                                           long modifiedSince, long modifiedBefore, int limit) {
+        this.prefix = prefix != null ? prefix : "";
+        this.startAfter = startAfter;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.modifiedSince = modifiedSince;
+        this.modifiedBefore = modifiedBefore;
+        this.limit = limit;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public String getStartAfter() {
+        return startAfter;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    boolean matches(MetadataIndexRecord record) {
+        return record.getSize() >= minSize && record.getSize() <= maxSize
+                && record.getLastModified() >= modifiedSince && record.getLastModified() < modifiedBefore;
+    }
+}
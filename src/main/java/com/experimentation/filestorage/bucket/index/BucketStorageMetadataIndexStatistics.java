@@ -0,0 +1,62 @@
+package com.experimentation.filestorage.bucket.index;
+
+/**
+ * Snapshot of how many buckets are indexed and how the indexes are kept up to date.
+ */
+public class BucketStorageMetadataIndexStatistics {
+
+    private final boolean enabled;
+    private final int indexes;
+    private final int readyIndexes;
+    private final long files;
+    private final long journalRecords;
+    private final long reconciles;
+    private final long reconcileFailures;
+
+    public BucketStorageMetadataIndexStatistics(boolean enabled, int indexes, int readyIndexes, long files,
+                                                long journalRecords, long reconciles, long reconcileFailures) {
+        this.enabled = enabled;
+        this.indexes = indexes;
+        this.readyIndexes = readyIndexes;
+        this.files = files;
+        this.journalRecords = journalRecords;
+        this.reconciles = reconciles;
+        this.reconcileFailures = reconcileFailures;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getIndexes() {
+        return indexes;
+    }
+
+    /**
+     * Indexes whose first scan has finished, which are the ones that can be queried.
+     * @return readyIndexes
+     */
+    public int getReadyIndexes() {
+        return readyIndexes;
+    }
+
+    public long getFiles() {
+        return files;
+    }
+
+    /**
+     * Changes recorded in the journals since their last snapshot, which are replayed when the service restarts.
+     * @return journalRecords
+     */
+    public long getJournalRecords() {
+        return journalRecords;
+    }
+
+    public long getReconciles() {
+        return reconciles;
+    }
+
+    public long getReconcileFailures() {
+        return reconcileFailures;
+    }
+}
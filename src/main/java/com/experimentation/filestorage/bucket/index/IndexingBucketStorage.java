@@ -0,0 +1,117 @@
+package com.experimentation.filestorage.bucket.index;
+
+import com.experimentation.filestorage.bucket.BucketStorage;
+import com.experimentation.filestorage.bucket.BucketStorageDTO;
+import com.experimentation.filestorage.bucket.BucketStorageDeleteResult;
+import com.experimentation.filestorage.bucket.BucketStorageListOptions;
+import com.experimentation.filestorage.bucket.BucketStorageListing;
+import com.experimentation.filestorage.bucket.BucketStorageMetadata;
+import com.experimentation.filestorage.bucket.BucketStorageReadOptions;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.experimentation.filestorage.bucket.util.BucketStorageServiceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Records uploads and deletes in the metadata index once the provider has accepted them. An uploaded file's size,
+ * ETag and last modified time are only known to the provider, so they are read back after the upload.
+ */
+class IndexingBucketStorage implements BucketStorage {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexingBucketStorage.class);
+
+    private final BucketStorageType bucketStorageType;
+    private final BucketStorage bucketStorage;
+    private final BucketStorageMetadataIndex bucketStorageMetadataIndex;
+
+    IndexingBucketStorage(BucketStorageType bucketStorageType, BucketStorage bucketStorage,
+                          BucketStorageMetadataIndex bucketStorageMetadataIndex) {
+        this.bucketStorageType = bucketStorageType;
+        this.bucketStorage = bucketStorage;
+        this.bucketStorageMetadataIndex = bucketStorageMetadataIndex;
+    }
+
+    @Override
+    public BucketStorageDTO getFile(String bucketName, String fileName, BucketStorageReadOptions readOptions)
+            throws BucketStorageServiceException {
+        return bucketStorage.getFile(bucketName, fileName, readOptions);
+    }
+
+    @Override
+    public BucketStorageMetadata getFileMetadata(String bucketName, String fileName)
+            throws BucketStorageServiceException {
+        return bucketStorage.getFileMetadata(bucketName, fileName);
+    }
+
+    @Override
+    public Iterator<String> listFileNames(String bucketName, String prefix) throws BucketStorageServiceException {
+        return bucketStorage.listFileNames(bucketName, prefix);
+    }
+
+    @Override
+    public BucketStorageListing listFiles(String bucketName, BucketStorageListOptions listOptions)
+            throws BucketStorageServiceException {
+        return bucketStorage.listFiles(bucketName, listOptions);
+    }
+
+    @Override
+    public void uploadMultipartFile(String bucketName, String fileName, MultipartFile file)
+            throws BucketStorageServiceException {
+        bucketStorage.uploadMultipartFile(bucketName, fileName, file);
+
+        try {
+            bucketStorageMetadataIndex.fileUploaded(
+                    bucketStorageType, bucketName, bucketStorage.getFileMetadata(bucketName, fileName));
+        }
+
+        // The upload succeeded either way, a file missing from the index is added by the next scan
+        catch (BucketStorageServiceException e) {
+            logger.warn("Unable to index uploaded file " + fileName + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void deleteFile(String bucketName, String fileName) throws BucketStorageServiceException {
+        bucketStorage.deleteFile(bucketName, fileName);
+        removeQuietly(bucketName, fileName);
+    }
+
+    @Override
+    public List<BucketStorageDeleteResult> deleteFiles(String bucketName, List<String> fileNames)
+            throws BucketStorageServiceException {
+        List<BucketStorageDeleteResult> results = bucketStorage.deleteFiles(bucketName, fileNames);
+        removeDeleted(bucketName, results);
+        return results;
+    }
+
+    @Override
+    public List<BucketStorageDeleteResult> deleteFilesWithPrefix(String bucketName, String prefix)
+            throws BucketStorageServiceException {
+        List<BucketStorageDeleteResult> results = bucketStorage.deleteFilesWithPrefix(bucketName, prefix);
+        removeDeleted(bucketName, results);
+        return results;
+    }
+
+    private void removeDeleted(String bucketName, List<BucketStorageDeleteResult> results) {
+        for (BucketStorageDeleteResult result : results) {
+            if (result.isDeleted()) {
+                removeQuietly(bucketName, result.getFileName());
+            }
+        }
+    }
+
+    private void removeQuietly(String bucketName, String fileName) {
+        try {
+            bucketStorageMetadataIndex.fileDeleted(bucketStorageType, bucketName, fileName);
+        }
+
+        // The delete succeeded either way, a file left in the index is removed by the next scan
+        catch (BucketStorageServiceException e) {
+            logger.warn("Unable to remove deleted file " + fileName + " from the index: " + e.getMessage());
+        }
+    }
+}
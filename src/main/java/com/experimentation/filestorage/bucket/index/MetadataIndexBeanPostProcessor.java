@@ -0,0 +1,53 @@
+package com.experimentation.filestorage.bucket.index;
+
+import com.experimentation.filestorage.bucket.BucketStorage;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.experimentation.filestorage.bucket.cache.MemoryCacheBeanPostProcessor;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+/**
+ * Wraps every storage provider bean in a decorator that keeps the metadata index up to date when the index is
+ * enabled, and registers the provider so that its buckets can be scanned.
+ */
+@Component
+public class MetadataIndexBeanPostProcessor implements BeanPostProcessor, Ordered {
+
+    static final int ORDER = MemoryCacheBeanPostProcessor.ORDER + 1;
+
+    private final boolean enabled;
+    private final ObjectFactory<BucketStorageMetadataIndex> bucketStorageMetadataIndex;
+
+    @Autowired
+    public MetadataIndexBeanPostProcessor(@Value("${filestorage.index.enabled:false}") boolean enabled,
+                                          ObjectFactory<BucketStorageMetadataIndex> bucketStorageMetadataIndex) {
+        this.enabled = enabled;
+        this.bucketStorageMetadataIndex = bucketStorageMetadataIndex;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!enabled || !(bean instanceof BucketStorage)) {
+            return bean;
+        }
+
+        for (BucketStorageType bucketStorageType : BucketStorageType.values()) {
+            if (bucketStorageType.toString().equals(beanName)) {
+                BucketStorageMetadataIndex index = bucketStorageMetadataIndex.getObject();
+                index.register(bucketStorageType, (BucketStorage) bean);
+                return new IndexingBucketStorage(bucketStorageType, (BucketStorage) bean, index);
+            }
+        }
+
+        return bean;
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+}
@@ -0,0 +1,29 @@
+package com.experimentation.filestorage.bucket.index;
+
+/**
+ * What the metadata index keeps about a file. The file's name is the record's key.
+ */
+class MetadataIndexRecord {
+
+    private final long size;
+    private final String eTag;
+    private final long lastModified;
+
+    MetadataIndexRecord(long size, String eTag, long lastModified) {
+        this.size = size;
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    String getETag() {
+        return eTag;
+    }
+
+    long getLastModified() {
+        return lastModified;
+    }
+}
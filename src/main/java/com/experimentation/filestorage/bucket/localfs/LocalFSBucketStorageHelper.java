@@ -0,0 +1,517 @@
+package com.experimentation.filestorage.bucket.localfs;
+
+import com.experimentation.filestorage.bucket.util.BucketStorageExceptionUtil;
+import com.experimentation.filestorage.bucket.util.BucketStorageServiceException;
+import com.google.common.io.ByteStreams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maps buckets to directories under the root directory and file names to paths within them. Each file's content
+ * type is kept in an extended attribute of the file where the file system supports them, and otherwise in a
+ * sidecar file. Sidecars, uploads in progress and links to versions being sent live in a reserved directory of the
+ * bucket that is never listed.
+ */
+@Component
+public class LocalFSBucketStorageHelper {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalFSBucketStorageHelper.class);
+
+    static final String RESERVED_DIRECTORY = ".filestorage";
+    private static final String UPLOADS_DIRECTORY = "uploads";
+    private static final String METADATA_DIRECTORY = "metadata";
+    private static final String SERVED_DIRECTORY = "served";
+    private static final String CONTENT_TYPE_ATTRIBUTE = "filestorage.content-type";
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+    private static final String DELIMITER = "/";
+
+    // Largest part of a file mapped into memory at once
+    private static final long MAPPED_WINDOW_SIZE = 64L * 1024 * 1024;
+
+    // How often links whose sendfile grace has ended are deleted
+    private static final long SERVED_SWEEP_INTERVAL_SECONDS = 10;
+
+    private final Path rootDirectory;
+    private final boolean createBuckets;
+    private final boolean syncOnWrite;
+    private final long mappedReadThreshold;
+    private final boolean attributesSupported;
+    private final Duration sendfileGrace;
+
+    // Links handed out for sendfile, in the order their grace ends. Guarded by itself.
+    private final Deque<ServedLink> servedLinks = new ArrayDeque<>();
+
+    private final ScheduledExecutorService sweepExecutorService;
+
+    @Autowired
+    public LocalFSBucketStorageHelper(
+            @Value("${filestorage.local-fs.root-directory:${java.io.tmpdir}/filestorage-local}") String rootDirectory,
+            @Value("${filestorage.local-fs.create-buckets:true}") boolean createBuckets,
+            @Value("${filestorage.local-fs.sync-on-write:true}") boolean syncOnWrite,
+            @Value("${filestorage.local-fs.mapped-read-threshold:1048576}") long mappedReadThreshold,
+            @Value("${filestorage.local-fs.sendfile-grace:60}") long sendfileGraceSeconds) {
+        this.rootDirectory = Paths.get(rootDirectory).toAbsolutePath().normalize();
+        this.createBuckets = createBuckets;
+        this.syncOnWrite = syncOnWrite;
+        this.mappedReadThreshold = mappedReadThreshold;
+        this.attributesSupported = probeAttributes();
+        this.sendfileGrace = Duration.ofSeconds(sendfileGraceSeconds);
+
+        if (sendfileGraceSeconds > 0) {
+            deleteLeftoverServedLinks();
+            this.sweepExecutorService = Executors.newSingleThreadScheduledExecutor(
+                    new CustomizableThreadFactory("bucket-storage-local-fs-sweep-"));
+            this.sweepExecutorService.scheduleWithFixedDelay(this::sweepServedLinks,
+                    SERVED_SWEEP_INTERVAL_SECONDS, SERVED_SWEEP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+        else {
+            this.sweepExecutorService = null;
+        }
+    }
+
+    /**
+     * Resolves the bucket's directory, whether or not it exists.
+     *
+     * @param bucketName
+     * @return bucketDirectory
+     * @throws BucketStorageServiceException if the name is not a single directory name
+     */
+    protected Path resolveBucket(String bucketName) throws BucketStorageServiceException {
+        if (bucketName == null || bucketName.isEmpty() || bucketName.startsWith(".")
+                || bucketName.contains(DELIMITER) || bucketName.contains("\\")) {
+            throw new BucketStorageServiceException(
+                    BucketStorageExceptionUtil.setMessageInvalidFileName(bucketName, "")
+            );
+        }
+        return rootDirectory.resolve(bucketName);
+    }
+
+    /**
+     * Resolves the file's path within the bucket's directory. Names that would leave the bucket, end with the
+     * delimiter or point into the reserved directory are rejected.
+     *
+     * @param bucketName
+     * @param fileName
+     * @return file
+     * @throws BucketStorageServiceException if the name cannot be stored as a path
+     */
+    protected Path resolveFile(String bucketName, String fileName) throws BucketStorageServiceException {
+        Path bucketDirectory = resolveBucket(bucketName);
+
+        if (fileName == null || fileName.isEmpty() || fileName.startsWith(DELIMITER) || fileName.endsWith(DELIMITER)
+                || fileName.contains("\\") || fileName.indexOf('\0') >= 0
+                || fileName.equals(RESERVED_DIRECTORY) || fileName.startsWith(RESERVED_DIRECTORY + DELIMITER)) {
+            throw new BucketStorageServiceException(
+                    BucketStorageExceptionUtil.setMessageInvalidFileName(bucketName, fileName)
+            );
+        }
+        for (String segment : fileName.split(DELIMITER)) {
+            if (segment.isEmpty() || segment.equals(".") || segment.equals("..")) {
+                throw new BucketStorageServiceException(
+                        BucketStorageExceptionUtil.setMessageInvalidFileName(bucketName, fileName)
+                );
+            }
+        }
+
+        return bucketDirectory.resolve(fileName);
+    }
+
+    /**
+     * Builds an entity tag from the file's modification time, size and identity, which all change when an upload
+     * replaces the file.
+     *
+     * @param attributes
+     * @return eTag
+     */
+    protected String getETag(BasicFileAttributes attributes) {
+        long modified = attributes.lastModifiedTime().to(TimeUnit.MICROSECONDS);
+        Object fileKey = attributes.fileKey();
+        return Long.toHexString(modified) + "-" + Long.toHexString(attributes.size())
+                + (fileKey != null ? "-" + Integer.toHexString(fileKey.hashCode()) : "");
+    }
+
+    protected long getLastModified(BasicFileAttributes attributes) {
+        return attributes.lastModifiedTime().toMillis();
+    }
+
+    /**
+     * Opens a stream over part of the file. Parts larger than the mapped read threshold are read through memory
+     * mappings, the others through the channel.
+     *
+     * @param fileChannel
+     * @param position
+     * @param length
+     * @return inputStream, which closes the channel
+     * @throws IOException
+     */
+    protected InputStream newInputStream(FileChannel fileChannel, long position, long length) throws IOException {
+        if (length > mappedReadThreshold) {
+            return new MappedFileInputStream(fileChannel, position, length, MAPPED_WINDOW_SIZE);
+        }
+        fileChannel.position(position);
+        return ByteStreams.limit(Channels.newInputStream(fileChannel), length);
+    }
+
+    /**
+     * Links the opened version of a file under the bucket's reserved directory, so that the container can open it by
+     * a path no upload replaces and send it with sendfile. The link is deleted once the sendfile grace has ended.
+     *
+     * @param bucketName
+     * @param file
+     * @param fileKey identity of the opened file
+     * @return link, or null if sendfile is disabled or the opened version could not be linked
+     */
+    protected Path linkServedFile(String bucketName, Path file, Object fileKey) {
+        if (sweepExecutorService == null || fileKey == null) {
+            return null;
+        }
+
+        Path link = null;
+        try {
+            Path servedDirectory = resolveBucket(bucketName).resolve(RESERVED_DIRECTORY).resolve(SERVED_DIRECTORY);
+            Files.createDirectories(servedDirectory);
+            link = Files.createLink(servedDirectory.resolve(UUID.randomUUID().toString()), file);
+
+            // An upload moved another file into place since this one was opened
+            if (!fileKey.equals(Files.readAttributes(link, BasicFileAttributes.class).fileKey())) {
+                deleteQuietly(link);
+                return null;
+            }
+
+            synchronized (servedLinks) {
+                servedLinks.add(new ServedLink(link, Instant.now().plus(sendfileGrace)));
+            }
+            return link;
+        }
+
+        // The file system has no hard links, or the file is gone; the content is copied from its channel instead
+        catch (IOException | UnsupportedOperationException e) {
+            logger.debug("Unable to link " + file + " for sendfile: " + e.getMessage());
+            deleteQuietly(link);
+            return null;
+        }
+    }
+
+    /**
+     * Stops the sweep and deletes every link handed out for sendfile, as no response is sent once the container
+     * stops.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (sweepExecutorService != null) {
+            sweepExecutorService.shutdownNow();
+        }
+
+        List<Path> deletedLinks = new ArrayList<>();
+        synchronized (servedLinks) {
+            servedLinks.forEach(servedLink -> deletedLinks.add(servedLink.link));
+            servedLinks.clear();
+        }
+        deletedLinks.forEach(this::deleteQuietly);
+    }
+
+    /**
+     * Deletes the links whose sendfile grace has ended, so the versions they keep no longer take up disk space.
+     */
+    void sweepServedLinks() {
+        Instant now = Instant.now();
+        List<Path> deletedLinks = new ArrayList<>();
+        synchronized (servedLinks) {
+            while (!servedLinks.isEmpty() && !servedLinks.peek().deleteAt.isAfter(now)) {
+                deletedLinks.add(servedLinks.poll().link);
+            }
+        }
+        deletedLinks.forEach(this::deleteQuietly);
+    }
+
+    /**
+     * Creates an empty file to upload into, in the bucket's reserved directory so that it is on the same file
+     * system as its destination.
+     *
+     * @param bucketName
+     * @return uploadFile
+     * @throws IOException, as a NoSuchFileException if the bucket does not exist and is not created on demand
+     */
+    protected Path createUploadFile(String bucketName) throws IOException {
+        Path bucketDirectory = resolveBucket(bucketName);
+        if (!createBuckets && !Files.isDirectory(bucketDirectory)) {
+            throw new NoSuchFileException(bucketDirectory.toString());
+        }
+
+        Path uploadsDirectory = bucketDirectory.resolve(RESERVED_DIRECTORY).resolve(UPLOADS_DIRECTORY);
+        Files.createDirectories(uploadsDirectory);
+        return Files.createTempFile(uploadsDirectory, "upload-", ".tmp");
+    }
+
+    /**
+     * Writes the content to the upload file. Content that is itself a file, as a large multipart part spooled to
+     * disk is, is copied by the kernel from channel to channel; any other content is transferred as it is read.
+     *
+     * @param inputStream
+     * @param uploadFile
+     * @throws IOException
+     */
+    protected void writeContent(InputStream inputStream, Path uploadFile) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(uploadFile, StandardOpenOption.WRITE)) {
+            ReadableByteChannel source = inputStream instanceof FileInputStream
+                    ? ((FileInputStream) inputStream).getChannel()
+                    : Channels.newChannel(inputStream);
+
+            long position = 0;
+            long transferred;
+            while ((transferred = fileChannel.transferFrom(source, position, MAPPED_WINDOW_SIZE)) > 0) {
+                position += transferred;
+            }
+
+            if (syncOnWrite) {
+                fileChannel.force(true);
+            }
+        }
+    }
+
+    /**
+     * Moves the uploaded file into place in one step, so that readers see either the previous content or the new
+     * content, never a partly written file. The content type is attached to the upload file before the move, so
+     * that it is replaced together with the content.
+     *
+     * @param bucketName
+     * @param fileName
+     * @param uploadFile
+     * @param contentType
+     * @throws IOException
+     */
+    protected void commit(String bucketName, String fileName, Path uploadFile, String contentType)
+            throws IOException {
+        Path file = resolveFile(bucketName, fileName);
+        Path sidecar = resolveSidecar(bucketName, fileName);
+        Files.createDirectories(file.getParent());
+
+        if (contentType == null || (attributesSupported && writeContentTypeAttribute(uploadFile, contentType))) {
+            Files.deleteIfExists(sidecar);
+        }
+        else {
+            Files.createDirectories(sidecar.getParent());
+            Path sidecarUpload = Files.createTempFile(sidecar.getParent(), "upload-", ".tmp");
+            Files.write(sidecarUpload, contentType.getBytes(StandardCharsets.UTF_8));
+            Files.move(sidecarUpload, sidecar, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        Files.move(uploadFile, file, StandardCopyOption.ATOMIC_MOVE);
+        if (syncOnWrite) {
+            syncDirectory(file.getParent());
+        }
+    }
+
+    /**
+     * Reads the content type stored with the file, or guesses it from the file's name if none was stored, as for
+     * files copied into the bucket's directory by other means.
+     *
+     * @param bucketName
+     * @param fileName
+     * @param file
+     * @return contentType
+     */
+    protected String readContentType(String bucketName, String fileName, Path file) {
+        try {
+            if (attributesSupported) {
+                UserDefinedFileAttributeView view =
+                        Files.getFileAttributeView(file, UserDefinedFileAttributeView.class);
+                if (view.list().contains(CONTENT_TYPE_ATTRIBUTE)) {
+                    ByteBuffer buffer = ByteBuffer.allocate(view.size(CONTENT_TYPE_ATTRIBUTE));
+                    view.read(CONTENT_TYPE_ATTRIBUTE, buffer);
+                    buffer.flip();
+                    return StandardCharsets.UTF_8.decode(buffer).toString();
+                }
+            }
+
+            Path sidecar = resolveSidecar(bucketName, fileName);
+            if (Files.exists(sidecar)) {
+                return new String(Files.readAllBytes(sidecar), StandardCharsets.UTF_8);
+            }
+
+            String probedContentType = Files.probeContentType(file);
+            return probedContentType != null ? probedContentType : DEFAULT_CONTENT_TYPE;
+        }
+
+        // The content is still served, without the type it was uploaded with
+        catch (IOException e) {
+            logger.warn("Unable to read content type of file " + fileName + ": " + e.getMessage());
+            return DEFAULT_CONTENT_TYPE;
+        }
+    }
+
+    /**
+     * Deletes the file and its sidecar, then the directories above it that are left empty, up to the bucket's.
+     *
+     * @param bucketName
+     * @param fileName
+     * @throws IOException, as a NoSuchFileException if there is no such file
+     */
+    protected void delete(String bucketName, String fileName) throws IOException {
+        Path bucketDirectory = resolveBucket(bucketName);
+        Path file = resolveFile(bucketName, fileName);
+        if (Files.isDirectory(file)) {
+            throw new NoSuchFileException(file.toString());
+        }
+
+        Files.delete(file);
+        deleteEmptyDirectories(bucketDirectory, file.getParent());
+
+        Path sidecar = resolveSidecar(bucketName, fileName);
+        if (Files.deleteIfExists(sidecar)) {
+            deleteEmptyDirectories(bucketDirectory, sidecar.getParent());
+        }
+    }
+
+    protected void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(file);
+        }
+
+        // Left behind in the reserved directory, where it is never listed
+        catch (IOException e) {
+            logger.warn("Unable to delete " + file + ": " + e.getMessage());
+        }
+    }
+
+    private Path resolveSidecar(String bucketName, String fileName) {
+        return resolveBucket(bucketName).resolve(RESERVED_DIRECTORY).resolve(METADATA_DIRECTORY).resolve(fileName);
+    }
+
+    /**
+     * Deletes the links an earlier run left behind when it stopped without shutting down, as they would otherwise
+     * keep replaced versions on disk for good.
+     */
+    private void deleteLeftoverServedLinks() {
+        try (DirectoryStream<Path> bucketDirectories = Files.newDirectoryStream(rootDirectory)) {
+            for (Path bucketDirectory : bucketDirectories) {
+                Path servedDirectory = bucketDirectory.resolve(RESERVED_DIRECTORY).resolve(SERVED_DIRECTORY);
+                if (!Files.isDirectory(servedDirectory)) {
+                    continue;
+                }
+                try (DirectoryStream<Path> links = Files.newDirectoryStream(servedDirectory)) {
+                    links.forEach(this::deleteQuietly);
+                }
+            }
+        }
+
+        // The links are left in the reserved directories, where they are never listed
+        catch (IOException e) {
+            logger.warn("Unable to delete links left under " + rootDirectory + ": " + e.getMessage());
+        }
+    }
+
+    private boolean writeContentTypeAttribute(Path file, String contentType) {
+        try {
+            Files.getFileAttributeView(file, UserDefinedFileAttributeView.class)
+                    .write(CONTENT_TYPE_ATTRIBUTE, StandardCharsets.UTF_8.encode(contentType));
+            return true;
+        }
+
+        // This bucket's directory is on a file system without extended attributes; a sidecar is written instead
+        catch (IOException | UnsupportedOperationException e) {
+            logger.warn("Unable to write content type attribute of " + file + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void deleteEmptyDirectories(Path bucketDirectory, Path directory) {
+        while (directory != null && directory.startsWith(bucketDirectory) && !directory.equals(bucketDirectory)) {
+            try {
+                Files.delete(directory);
+            }
+
+            // Still holds other files, or was removed by a concurrent delete
+            catch (IOException e) {
+                return;
+            }
+            directory = directory.getParent();
+        }
+    }
+
+    /**
+     * Flushes the directory entry of a moved file to disk, where the platform allows a directory to be opened.
+     */
+    private void syncDirectory(Path directory) {
+        try (FileChannel fileChannel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            fileChannel.force(true);
+        }
+
+        // Directories cannot be opened on this platform; the move itself is still atomic
+        catch (IOException e) {
+            logger.debug("Unable to sync directory " + directory + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Checks once whether the root directory's file system stores extended attributes, so that reads on one that
+     * does not go straight to the sidecar.
+     *
+     * @return attributesSupported
+     */
+    private boolean probeAttributes() {
+        Path probe = null;
+
+        try {
+            Files.createDirectories(rootDirectory);
+            probe = Files.createTempFile(rootDirectory, ".probe-", ".tmp");
+            UserDefinedFileAttributeView view = Files.getFileAttributeView(probe, UserDefinedFileAttributeView.class);
+            if (view == null) {
+                return false;
+            }
+            view.write(CONTENT_TYPE_ATTRIBUTE, StandardCharsets.UTF_8.encode(DEFAULT_CONTENT_TYPE));
+            return true;
+        }
+
+        // Content types are kept in sidecar files instead
+        catch (IOException | UnsupportedOperationException e) {
+            logger.info("Extended attributes are not available under " + rootDirectory + ": " + e.getMessage());
+            return false;
+        }
+        finally {
+            deleteQuietly(probe);
+        }
+    }
+
+    private static final class ServedLink {
+
+        private final Path link;
+        private final Instant deleteAt;
+
+        private ServedLink(Path link, Instant deleteAt) {
+            this.link = link;
+            this.deleteAt = deleteAt;
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package com.experimentation.filestorage.bucket.localfs;
+
+import com.experimentation.filestorage.bucket.*;
+import com.experimentation.filestorage.bucket.util.BucketStorageExceptionUtil;
+import com.experimentation.filestorage.bucket.util.BucketStorageFileNotFoundException;
+import com.experimentation.filestorage.bucket.util.BucketStorageHelper;
+import com.experimentation.filestorage.bucket.util.BucketStorageListingIterator;
+import com.experimentation.filestorage.bucket.util.BucketStorageLoggerUtil;
+import com.experimentation.filestorage.bucket.util.BucketStorageRangeNotSatisfiableException;
+import com.experimentation.filestorage.bucket.util.BucketStorageServiceException;
+import com.google.common.base.Strings;
+import com.google.common.collect.Iterators;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Stores files on a local or mounted file system, with each bucket a directory under the root directory and each
+ * file name a path within it. Downloads read the version of the file that was opened, so an upload that replaces
+ * the file meanwhile does not change them: they are sent with sendfile from a link to that version where the file
+ * system allows it, and otherwise from its open channel. Uploads are written to a temporary file that is moved into
+ * place.
+ */
+@Component(BucketStorageTypeConstants.LOCAL_FS)
+public class LocalFSBucketStorageImpl implements BucketStorage {
+
+    private final LocalFSBucketStorageHelper localFSBucketStorageHelper;
+    private final BucketStorageHelper bucketStorageHelper;
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalFSBucketStorageImpl.class);
+
+    // Times the file is opened again when an upload replaced it while it was being opened
+    private static final int MAX_OPEN_ATTEMPTS = 3;
+
+    @Autowired
+    public LocalFSBucketStorageImpl(LocalFSBucketStorageHelper localFSBucketStorageHelper,
+                                    BucketStorageHelper bucketStorageHelper) {
+        this.localFSBucketStorageHelper = localFSBucketStorageHelper;
+        this.bucketStorageHelper = bucketStorageHelper;
+    }
+
+    @Override
+    public BucketStorageDTO getFile(String bucketName, String fileName, BucketStorageReadOptions readOptions)
+            throws BucketStorageServiceException {
+
+        BucketStorageLoggerUtil.infoStartGettingFile(logger, bucketName, fileName);
+
+        FileChannel fileChannel = null;
+
+        try {
+            Path file = localFSBucketStorageHelper.resolveFile(bucketName, fileName);
+
+            for (int attempt = 1; ; attempt++) {
+                BasicFileAttributes attributes = readFileAttributes(bucketName, fileName, file);
+                String eTag = localFSBucketStorageHelper.getETag(attributes);
+                long lastModified = localFSBucketStorageHelper.getLastModified(attributes);
+
+                // The client's copy is current, so the file is not opened at all
+                if (readOptions.isNotModified(eTag, lastModified)) {
+                    BucketStorageLoggerUtil.infoFinishGettingFile(logger, bucketName, fileName);
+                    return bucketStorageHelper.createNotModifiedBucketStorageDTO(fileName, eTag, lastModified);
+                }
+
+                // The file is no longer the version the read was pinned to
+                if (readOptions.isChanged(eTag)) {
+                    throw new BucketStorageServiceException(
+                            BucketStorageExceptionUtil.setMessageFileChangedDuringRead(bucketName, fileName));
+                }
+
+                String contentType = localFSBucketStorageHelper.readContentType(bucketName, fileName, file);
+
+                // The channel stays on the file that was opened even if an upload replaces it while it is read
+                fileChannel = FileChannel.open(file, StandardOpenOption.READ);
+                long size = fileChannel.size();
+
+                // The attributes only describe the opened file if no upload replaced it while it was opened
+                if (!isSameFile(attributes, readFileAttributes(bucketName, fileName, file), size)) {
+                    closeQuietly(fileChannel);
+                    fileChannel = null;
+                    if (attempt < MAX_OPEN_ATTEMPTS) {
+                        continue;
+                    }
+                    throw new IOException("File " + file + " kept being replaced while it was opened");
+                }
+
+                BucketStorageRange range =
+                        readOptions.getRange() != null ? readOptions.getRange().resolve(size) : null;
+                long position = range != null ? range.getFirstBytePosition() : 0;
+                long length = range != null ? range.getLength() : size;
+
+                InputStream inputStream = localFSBucketStorageHelper.newInputStream(fileChannel, position, length);
+                BucketStorageDTO bucketStorageDTO =
+                        bucketStorageHelper.createBucketStorageDTO(fileName, contentType, length, inputStream);
+                bucketStorageDTO.setRange(range);
+                bucketStorageDTO.setInstanceLength(size);
+                bucketStorageDTO.setLocalFileChannel(fileChannel);
+                bucketStorageDTO.setLocalFile(
+                        localFSBucketStorageHelper.linkServedFile(bucketName, file, attributes.fileKey()));
+                bucketStorageDTO.setETag(eTag);
+                bucketStorageDTO.setLastModified(lastModified);
+
+                BucketStorageLoggerUtil.infoFinishGettingFile(logger, bucketName, fileName);
+                return bucketStorageDTO;
+            }
+        }
+
+        // Requested range starts beyond the end of the file, or the file was deleted once it was opened
+        catch (BucketStorageRangeNotSatisfiableException | BucketStorageFileNotFoundException e) {
+            closeQuietly(fileChannel);
+            throw e;
+        }
+
+        // Deleted between the lookup and opening it
+        catch (NoSuchFileException e) {
+            logger.error(e.getMessage());
+            throw new BucketStorageFileNotFoundException(
+                    BucketStorageExceptionUtil.setMessageFileNotFound(bucketName, fileName)
+            );
+        }
+
+        // Unable to open the file or position it at the start of the range
+        catch (IOException e) {
+            logger.error(e.getMessage());
+            closeQuietly(fileChannel);
+            throw new BucketStorageServiceException(
+                    BucketStorageExceptionUtil.setMessageUnableToGetFile(bucketName, fileName)
+            );
+        }
+    }
+
+    @Override
+    public BucketStorageMetadata getFileMetadata(String bucketName, String fileName)
+            throws BucketStorageServiceException {
+
+        BucketStorageLoggerUtil.infoStartGettingFileMetadata(logger, bucketName, fileName);
+
+        try {
+            Path file = localFSBucketStorageHelper.resolveFile(bucketName, fileName);
+            BasicFileAttributes attributes = readFileAttributes(bucketName, fileName, file);
+
+            BucketStorageLoggerUtil.infoFinishGettingFileMetadata(logger, bucketName, fileName);
+            return new BucketStorageMetadata(fileName,
+                    localFSBucketStorageHelper.readContentType(bucketName, fileName, file), attributes.size(),
+                    localFSBucketStorageHelper.getETag(attributes),
+                    localFSBucketStorageHelper.getLastModified(attributes));
+        }
+
+        // Unable to read the file's attributes
+        catch (IOException e) {
+            logger.error(e.getMessage());
+            throw new BucketStorageServiceException(
+                    BucketStorageExceptionUtil.setMessageUnableToGetFileMetadata(bucketName, fileName)
+            );
+        }
+    }
+
+    @Override
+    public Iterator<String> listFileNames(String bucketName, String prefix) throws BucketStorageServiceException {
+        LocalFSFileWalker fileWalker = newFileWalker(bucketName, prefix, null, false);
+        return new BucketStorageListingIterator<>(Iterators.transform(fileWalker, LocalFSFileWalker.Entry::getName),
+                UncheckedIOException.class, bucketName, prefix);
+    }
+
+    @Override
+    public BucketStorageListing listFiles(String bucketName, BucketStorageListOptions listOptions)
+            throws BucketStorageServiceException {
+
+        BucketStorageLoggerUtil.infoStartListingFiles(logger, bucketName, listOptions.getPrefix());
+
+        // Like GCS, names are only rolled up into directories at slashes. The page token is the last name listed.
+        LocalFSFileWalker fileWalker = newFileWalker(bucketName, listOptions.getPrefix(),
+                listOptions.getPageToken(), listOptions.getDelimiter() != null);
+
+        try {
+            List<BucketStorageListingEntry> entries = new ArrayList<>();
+            while (entries.size() < listOptions.getPageSize() && fileWalker.hasNext()) {
+                LocalFSFileWalker.Entry entry = fileWalker.next();
+                BasicFileAttributes attributes = entry.getAttributes();
+                entries.add(entry.isDirectory()
+                        ? BucketStorageListingEntry.directory(entry.getName())
+                        : BucketStorageListingEntry.file(entry.getName(), attributes.size(),
+                                localFSBucketStorageHelper.getETag(attributes),
+                                localFSBucketStorageHelper.getLastModified(attributes)));
+            }
+
+            String nextPageToken = !entries.isEmpty() && fileWalker.hasNext()
+                    ? entries.get(entries.size() - 1).getFileName()
+                    : null;
+
+            BucketStorageLoggerUtil.infoFinishListingFiles(logger, bucketName, entries.size());
+            return new BucketStorageListing(entries, nextPageToken);
+        }
+
+        // A directory within the bucket could not be read
+        catch (UncheckedIOException e) {
+            logger.error(e.getMessage());
+            throw new BucketStorageServiceException(
+                    BucketStorageExceptionUtil.setMessageUnableToListFiles(bucketName, listOptions.getPrefix())
+            );
+        }
+    }
+
+    @Override
+    public void uploadMultipartFile(String bucketName, String fileName, MultipartFile multipartFile)
+            throws BucketStorageServiceException {
+
+        BucketStorageLoggerUtil.infoStartUploadingFile(logger, bucketName, fileName);
+
+        // Validated before anything is written
+        localFSBucketStorageHelper.resolveFile(bucketName, fileName);
+        Path uploadFile = null;
+
+        try (InputStream inputStream = multipartFile.getInputStream()) {
+            uploadFile = localFSBucketStorageHelper.createUploadFile(bucketName);
+            localFSBucketStorageHelper.writeContent(inputStream, uploadFile);
+            localFSBucketStorageHelper.commit(bucketName, fileName, uploadFile, multipartFile.getContentType());
+            BucketStorageLoggerUtil.infoFinishUploadingFile(logger, bucketName, fileName);
+        }
+
+        // Unable to read the multipart file, or to write it to the bucket's directory
+        catch (IOException e) {
+            logger.error(e.getMessage());
+            throw new BucketStorageServiceException(
+                    BucketStorageExceptionUtil.setMessageUnableToUploadMultipartFile(bucketName, fileName)
+            );
+        }
+        finally {
+            // Only left behind if the upload failed before it was moved into place
+            localFSBucketStorageHelper.deleteQuietly(uploadFile);
+        }
+    }
+
+    @Override
+    public void deleteFile(String bucketName, String fileName) throws BucketStorageServiceException {
+
+        BucketStorageLoggerUtil.infoStartDeletingFile(logger, bucketName, fileName);
+
+        try {
+            localFSBucketStorageHelper.delete(bucketName, fileName);
+            BucketStorageLoggerUtil.infoFinishDeletingFile(logger, bucketName, fileName);
+        }
+
+        // No file was found
+        catch (NoSuchFileException e) {
+            logger.error(e.getMessage());
+            throw new BucketStorageFileNotFoundException(
+                    BucketStorageExceptionUtil.setMessageFileNotFound(bucketName, fileName)
+            );
+        }
+
+        // Unable to delete the file from the bucket's directory
+        catch (IOException e) {
+            logger.error(e.getMessage());
+            throw new BucketStorageServiceException(
+                    BucketStorageExceptionUtil.setMessageUnableToDeleteFile(bucketName, fileName)
+            );
+        }
+    }
+
+    @Override
+    public List<BucketStorageDeleteResult> deleteFiles(String bucketName, List<String> fileNames)
+            throws BucketStorageServiceException {
+
+        BucketStorageLoggerUtil.infoStartDeletingFiles(logger, bucketName, fileNames.size());
+        List<BucketStorageDeleteResult> results = deleteEach(bucketName, fileNames.iterator());
+        BucketStorageLoggerUtil.infoFinishDeletingFiles(logger, bucketName, results.size());
+        return results;
+    }
+
+    @Override
+    public List<BucketStorageDeleteResult> deleteFilesWithPrefix(String bucketName, String prefix)
+            throws BucketStorageServiceException {
+
+        BucketStorageLoggerUtil.infoStartDeletingFilesWithPrefix(logger, bucketName, prefix);
+
+        // File names are listed a directory at a time, as the files before them are deleted
+        List<BucketStorageDeleteResult> results = deleteEach(bucketName, listFileNames(bucketName, prefix));
+        BucketStorageLoggerUtil.infoFinishDeletingFiles(logger, bucketName, results.size());
+        return results;
+    }
+
+    /**
+     * Deletes the files one after another. A delete on a local file system is a single system call, so sending
+     * them in parallel would not finish sooner.
+     *
+     * @param bucketName
+     * @param fileNames
+     * @return result for each file
+     */
+    private List<BucketStorageDeleteResult> deleteEach(String bucketName, Iterator<String> fileNames) {
+        List<BucketStorageDeleteResult> results = new ArrayList<>();
+
+        while (fileNames.hasNext()) {
+            String fileName = fileNames.next();
+            try {
+                localFSBucketStorageHelper.delete(bucketName, fileName);
+                results.add(BucketStorageDeleteResult.deleted(fileName));
+            }
+
+            // No file was found
+            catch (NoSuchFileException e) {
+                results.add(BucketStorageDeleteResult.failed(fileName,
+                        BucketStorageExceptionUtil.setMessageFileNotFound(bucketName, fileName)));
+            }
+
+            // This file's delete failed, or its name cannot be stored as a path
+            catch (IOException | BucketStorageServiceException e) {
+                logger.error(e.getMessage());
+                results.add(BucketStorageDeleteResult.failed(fileName,
+                        BucketStorageExceptionUtil.setMessageUnableToDeleteFile(bucketName, fileName)));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Compares the attributes read before and after the file was opened. An upload moves a new file into place, so a
+     * file that was replaced in between has a different identity, modification time or size.
+     *
+     * @param before
+     * @param after
+     * @param openedSize size of the opened file, read from its channel
+     * @return true if both attributes and the channel are of the same file
+     */
+    private boolean isSameFile(BasicFileAttributes before, BasicFileAttributes after, long openedSize) {
+        return Objects.equals(before.fileKey(), after.fileKey())
+                && before.lastModifiedTime().equals(after.lastModifiedTime())
+                && before.size() == after.size()
+                && before.size() == openedSize;
+    }
+
+    /**
+     * Reads the attributes of a regular file. A directory is not a file in a bucket, so it is not found either.
+     *
+     * @param bucketName
+     * @param fileName
+     * @param file
+     * @return attributes
+     * @throws BucketStorageFileNotFoundException if there is no such file
+     * @throws IOException
+     */
+    private BasicFileAttributes readFileAttributes(String bucketName, String fileName, Path file)
+            throws IOException {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            if (attributes.isRegularFile()) {
+                return attributes;
+            }
+        }
+
+        // No file was found
+        catch (NoSuchFileException e) {
+            logger.error(e.getMessage());
+        }
+
+        throw new BucketStorageFileNotFoundException(
+                BucketStorageExceptionUtil.setMessageFileNotFound(bucketName, fileName)
+        );
+    }
+
+    /**
+     * Starts a walk of the bucket's directory, which must exist, as a bucket must in a cloud provider.
+     */
+    private LocalFSFileWalker newFileWalker(String bucketName, String prefix, String startAfter, boolean rollUp) {
+        Path bucketDirectory = localFSBucketStorageHelper.resolveBucket(bucketName);
+
+        // No directory was found for the bucket
+        if (!Files.isDirectory(bucketDirectory)) {
+            throw new BucketStorageServiceException(
+                    BucketStorageExceptionUtil.setMessageUnableToListFiles(bucketName, prefix)
+            );
+        }
+
+        try {
+            return new LocalFSFileWalker(bucketDirectory, Strings.nullToEmpty(prefix), startAfter, rollUp);
+        }
+
+        // Unable to read the bucket's directory
+        catch (UncheckedIOException e) {
+            logger.error(e.getMessage());
+            throw new BucketStorageServiceException(
+                    BucketStorageExceptionUtil.setMessageUnableToListFiles(bucketName, prefix)
+            );
+        }
+    }
+
+    private void closeQuietly(FileChannel fileChannel) {
+        if (fileChannel == null) {
+            return;
+        }
+
+        try {
+            fileChannel.close();
+        }
+
+        // Nothing was read from the channel
+        catch (IOException e) {
+            logger.warn("Unable to close file channel: " + e.getMessage());
+        }
+    }
+}
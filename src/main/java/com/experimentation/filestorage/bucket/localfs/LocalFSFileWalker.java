@@ -0,0 +1,174 @@
+package com.experimentation.filestorage.bucket.localfs;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+/**
+ * Walks a bucket's directory tree in the lexicographic order of the file names, as the cloud providers list a
+ * bucket, reading one directory at a time as the walk reaches it. Only directories that can hold names starting
+ * with the prefix are read. When directories are rolled up, a directory below the prefix is returned as a single
+ * entry, named up to and including its trailing slash, instead of being read.
+ */
+class LocalFSFileWalker implements Iterator<LocalFSFileWalker.Entry> {
+
+    private static final String DELIMITER = "/";
+
+    private final String prefix;
+    private final String startAfter;
+    private final boolean rollUp;
+    private final Deque<Iterator<Entry>> directories = new ArrayDeque<>();
+
+    private Entry next;
+
+    /**
+     * @param bucketDirectory
+     * @param prefix names to list, or empty for all
+     * @param startAfter only names after this one are listed, or null
+     * @param rollUp whether directories below the prefix are returned instead of their files
+     * @throws UncheckedIOException if the bucket's directory could not be read
+     */
+    LocalFSFileWalker(Path bucketDirectory, String prefix, String startAfter, boolean rollUp) {
+        this.prefix = prefix;
+        this.startAfter = startAfter;
+        this.rollUp = rollUp;
+        directories.push(read(bucketDirectory, ""));
+    }
+
+    /**
+     * @throws UncheckedIOException if a directory could not be read
+     */
+    @Override
+    public boolean hasNext() {
+        while (next == null && !directories.isEmpty()) {
+            Iterator<Entry> directory = directories.peek();
+            if (!directory.hasNext()) {
+                directories.pop();
+                continue;
+            }
+
+            Entry entry = directory.next();
+            if (!entry.isDirectory()) {
+                if (isAfterStart(entry.getName())) {
+                    next = entry;
+                }
+            }
+            else if (rollUp && entry.getName().startsWith(prefix) && entry.getName().length() > prefix.length()) {
+                if (isAfterStart(entry.getName())) {
+                    next = entry;
+                }
+            }
+            // A directory before the start is still read if the start lies within it
+            else if (isAfterStart(entry.getName()) || startAfter.startsWith(entry.getName())) {
+                directories.push(read(entry.getPath(), entry.getName()));
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public Entry next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Entry entry = next;
+        next = null;
+        return entry;
+    }
+
+    private boolean isAfterStart(String name) {
+        return startAfter == null || name.compareTo(startAfter) > 0;
+    }
+
+    /**
+     * Reads the entries of one directory that can lead to names starting with the prefix, in name order. The
+     * bucket's reserved directory is left out, and a directory deleted since it was reached has no entries.
+     *
+     * @param directory
+     * @param directoryName name of the directory within the bucket, ending with a slash, or empty for the bucket
+     * @return entries
+     */
+    private Iterator<Entry> read(Path directory, String directoryName) {
+        List<Entry> entries = new ArrayList<>();
+
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directory)) {
+            for (Path path : directoryStream) {
+                String name = directoryName + path.getFileName().toString();
+                if (directoryName.isEmpty() && name.equals(LocalFSBucketStorageHelper.RESERVED_DIRECTORY)) {
+                    continue;
+                }
+
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                }
+
+                // Deleted since the directory was read
+                catch (NoSuchFileException e) {
+                    continue;
+                }
+
+                if (attributes.isDirectory()) {
+                    name += DELIMITER;
+                }
+                if (name.startsWith(prefix) || (attributes.isDirectory() && prefix.startsWith(name))) {
+                    entries.add(new Entry(name, path, attributes));
+                }
+            }
+        }
+
+        // Deleted since the walk reached it
+        catch (NoSuchFileException e) {
+            return Collections.emptyIterator();
+        }
+
+        // The directory could not be read at all
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        entries.sort(Comparator.comparing(Entry::getName));
+        return entries.iterator();
+    }
+
+    /**
+     * A file, or a directory, with the attributes read while walking.
+     */
+    static class Entry {
+
+        private final String name;
+        private final Path path;
+        private final BasicFileAttributes attributes;
+
+        Entry(String name, Path path, BasicFileAttributes attributes) {
+            this.name = name;
+            this.path = path;
+            this.attributes = attributes;
+        }
+
+        /**
+         * Name within the bucket, ending with a slash for a directory.
+         * @return name
+         */
+        String getName() {
+            return name;
+        }
+
+        Path getPath() {
+            return path;
+        }
+
+        BasicFileAttributes getAttributes() {
+            return attributes;
+        }
+
+        boolean isDirectory() {
+            return attributes.isDirectory();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.experimentation.filestorage.bucket.localfs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads part of a file through read-only memory mappings, one window at a time, so that a large file is copied
+ * straight from the page cache into the caller's buffer without a read system call for every buffer. The mappings
+ * are only released once they are garbage collected, which is why the window size is bounded. Uploads replace a
+ * file by moving a new one into place, so a mapped file is never truncated while it is being read.
+ */
+class MappedFileInputStream extends InputStream {
+
+    private final FileChannel fileChannel;
+    private final long end;
+    private final long windowSize;
+
+    private long position;
+    private MappedByteBuffer window;
+
+    /**
+     * @param fileChannel closed with the stream
+     * @param position first byte to read
+     * @param length bytes to read
+     * @param windowSize largest part of the file mapped at once
+     */
+    MappedFileInputStream(FileChannel fileChannel, long position, long length, long windowSize) {
+        this.fileChannel = fileChannel;
+        this.position = position;
+        this.end = position + length;
+        this.windowSize = windowSize;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!hasRemaining()) {
+            return -1;
+        }
+        return window.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!hasRemaining()) {
+            return -1;
+        }
+
+        int count = Math.min(length, window.remaining());
+        window.get(bytes, offset, count);
+        return count;
+    }
+
+    @Override
+    public long skip(long count) throws IOException {
+        if (count <= 0) {
+            return 0;
+        }
+
+        long remainingInWindow = window != null ? window.remaining() : 0;
+        if (count < remainingInWindow) {
+            window.position(window.position() + (int) count);
+            return count;
+        }
+
+        // Skipping past the current window moves to the next one without mapping what lies between
+        long skipped = Math.min(count, remainingInWindow + (end - position));
+        position += skipped - remainingInWindow;
+        window = null;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        long remaining = (window != null ? window.remaining() : 0) + (end - position);
+        return (int) Math.min(remaining, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        fileChannel.close();
+    }
+
+    /**
+     * Maps the next window once the current one has been read.
+     *
+     * @return false at the end of the part
+     * @throws IOException
+     */
+    private boolean hasRemaining() throws IOException {
+        if (window != null && window.hasRemaining()) {
+            return true;
+        }
+        if (position >= end) {
+            return false;
+        }
+
+        long size = Math.min(windowSize, end - position);
+        window = fileChannel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        position += size;
+        return true;
+    }
+}
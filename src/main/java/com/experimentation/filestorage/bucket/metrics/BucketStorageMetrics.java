@@ -0,0 +1,212 @@
+package com.experimentation.filestorage.bucket.metrics;
+
+import com.experimentation.filestorage.bucket.BucketStorageDTO;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.experimentation.filestorage.bucket.util.BucketStorageFileNotFoundException;
+import com.experimentation.filestorage.bucket.util.BucketStorageRangeNotSatisfiableException;
+import com.experimentation.filestorage.bucket.util.BucketStorageTransientException;
+import com.experimentation.filestorage.bucket.util.BucketStorageUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Records the Micrometer meters of the file storage, published through the actuator's metrics endpoint and any
+ * registry on the classpath:
+ * <ul>
+ *     <li>filestorage.requests, a timer of each request to the service, including the time it waited for a
+ *     bulkhead permit and its retries</li>
+ *     <li>filestorage.provider.calls, a timer of each call that reached a storage provider</li>
+ *     <li>filestorage.bytes.out and filestorage.bytes.in, counters of the content sent to clients and of the
+ *     content uploaded</li>
+ *     <li>filestorage.object.size, a summary of the size of the files downloaded and uploaded</li>
+ *     <li>filestorage.transfers.active, a gauge of the downloads and uploads whose content is being moved</li>
+ * </ul>
+ * Timers are tagged by provider, operation and outcome. A download is timed until its file is opened, as the time to
+ * send its content depends on its size and on the client.
+ */
+@Component
+public class BucketStorageMetrics {
+
+    static final String DIRECTION_IN = "in";
+    static final String DIRECTION_OUT = "out";
+
+    private final MeterRegistry meterRegistry;
+    private final boolean percentileHistogram;
+
+    private final Map<BucketStorageType, AtomicInteger> activeDownloads = new EnumMap<>(BucketStorageType.class);
+    private final Map<BucketStorageType, AtomicInteger> activeUploads = new EnumMap<>(BucketStorageType.class);
+
+    @Autowired
+    public BucketStorageMetrics(
+            MeterRegistry meterRegistry,
+            @Value("${filestorage.metrics.percentile-histogram:true}") boolean percentileHistogram) {
+        this.meterRegistry = meterRegistry;
+        this.percentileHistogram = percentileHistogram;
+
+        for (BucketStorageType bucketStorageType : BucketStorageType.values()) {
+            activeDownloads.put(bucketStorageType, meterRegistry.gauge("filestorage.transfers.active",
+                    Tags.of("provider", bucketStorageType.toString(), "direction", DIRECTION_OUT),
+                    new AtomicInteger()));
+            activeUploads.put(bucketStorageType, meterRegistry.gauge("filestorage.transfers.active",
+                    Tags.of("provider", bucketStorageType.toString(), "direction", DIRECTION_IN),
+                    new AtomicInteger()));
+        }
+    }
+
+    /**
+     * Times a request to the service.
+     *
+     * @param bucketStorageType
+     * @param operation
+     * @param call
+     * @return result of the call
+     */
+    public <T> T recordRequest(BucketStorageType bucketStorageType, String operation, Supplier<T> call) {
+        return record("filestorage.requests", bucketStorageType, operation, call);
+    }
+
+    /**
+     * Times a call that reaches the storage provider.
+     *
+     * @param bucketStorageType
+     * @param operation
+     * @param call
+     * @return result of the call
+     */
+    public <T> T recordProviderCall(BucketStorageType bucketStorageType, String operation, Supplier<T> call) {
+        return record("filestorage.provider.calls", bucketStorageType, operation, call);
+    }
+
+    /**
+     * Counts the downloaded file's content as it is read, or as it is sent straight from its local file, and its
+     * transfer as active until it is closed.
+     *
+     * @param bucketStorageType
+     * @param bucketStorageDTO
+     * @return the same file
+     */
+    public BucketStorageDTO recordDownload(BucketStorageType bucketStorageType, BucketStorageDTO bucketStorageDTO) {
+        if (bucketStorageDTO.getInputStream() == null) {
+            return bucketStorageDTO;
+        }
+
+        long objectSize = bucketStorageDTO.getRange() != null
+                ? bucketStorageDTO.getInstanceLength()
+                : bucketStorageDTO.getContentLength();
+        if (objectSize >= 0) {
+            objectSizeSummary(bucketStorageType, DIRECTION_OUT).record(objectSize);
+        }
+
+        Counter bytesCounter = bytesCounter(bucketStorageType, DIRECTION_OUT);
+        AtomicInteger active = activeDownloads.get(bucketStorageType);
+        active.incrementAndGet();
+        bucketStorageDTO.setInputStream(new CountingInputStream(bucketStorageDTO.getInputStream(),
+                bytesCounter, bytesRead -> active.decrementAndGet()));
+        bucketStorageDTO.setLocalTransferListener(bytesCounter::increment);
+        return bucketStorageDTO;
+    }
+
+    /**
+     * Times an upload and counts its content, and its transfer as active during the upload. The content is counted
+     * by its declared size when that is known, and otherwise as the provider reads it.
+     *
+     * @param bucketStorageType
+     * @param operation
+     * @param multipartFile
+     * @param upload
+     */
+    public void recordUpload(BucketStorageType bucketStorageType, String operation, MultipartFile multipartFile,
+                             Consumer<MultipartFile> upload) {
+        Counter bytesCounter = bytesCounter(bucketStorageType, DIRECTION_IN);
+        CountingMultipartFile countingMultipartFile =
+                multipartFile.getSize() < 0 ? new CountingMultipartFile(multipartFile, bytesCounter) : null;
+        AtomicInteger active = activeUploads.get(bucketStorageType);
+        active.incrementAndGet();
+
+        try {
+            recordRequest(bucketStorageType, operation, () -> {
+                upload.accept(countingMultipartFile != null ? countingMultipartFile : multipartFile);
+                return null;
+            });
+        }
+        finally {
+            active.decrementAndGet();
+        }
+
+        long objectSize = multipartFile.getSize();
+        if (countingMultipartFile != null) {
+            objectSize = countingMultipartFile.getBytesRead();
+        }
+        else {
+            bytesCounter.increment(objectSize);
+        }
+        objectSizeSummary(bucketStorageType, DIRECTION_IN).record(objectSize);
+    }
+
+    private <T> T record(String name, BucketStorageType bucketStorageType, String operation, Supplier<T> call) {
+        long startedAt = System.nanoTime();
+        String outcome = "success";
+
+        try {
+            return call.get();
+        }
+
+        // The outcome is tagged and the exception left to the caller
+        catch (RuntimeException e) {
+            outcome = outcome(e);
+            throw e;
+        }
+        finally {
+            Timer.builder(name)
+                    .tags("provider", bucketStorageType.toString(), "operation", operation, "outcome", outcome)
+                    .publishPercentileHistogram(percentileHistogram)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private String outcome(RuntimeException e) {
+        if (e instanceof BucketStorageFileNotFoundException) {
+            return "not_found";
+        }
+        if (e instanceof BucketStorageRangeNotSatisfiableException) {
+            return "range_not_satisfiable";
+        }
+        if (e instanceof BucketStorageUnavailableException) {
+            return "unavailable";
+        }
+        if (e instanceof BucketStorageTransientException) {
+            return "transient_error";
+        }
+        return "error";
+    }
+
+    private Counter bytesCounter(BucketStorageType bucketStorageType, String direction) {
+        return Counter.builder("filestorage.bytes." + direction)
+                .baseUnit("bytes")
+                .tags("provider", bucketStorageType.toString())
+                .register(meterRegistry);
+    }
+
+    private DistributionSummary objectSizeSummary(BucketStorageType bucketStorageType, String direction) {
+        return DistributionSummary.builder("filestorage.object.size")
+                .baseUnit("bytes")
+                .tags("provider", bucketStorageType.toString(), "direction", direction)
+                .publishPercentileHistogram(percentileHistogram)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,62 @@
+package com.experimentation.filestorage.bucket.metrics;
+
+import io.micrometer.core.instrument.Counter;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongConsumer;
+
+/**
+ * Counts the bytes read through it, and passes their number to the close action the first time it is closed.
+ */
+class CountingInputStream extends FilterInputStream {
+
+    private final Counter counter;
+    private final LongConsumer onClose;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private long bytesRead;
+
+    CountingInputStream(InputStream inputStream, Counter counter, LongConsumer onClose) {
+        super(inputStream);
+        this.counter = counter;
+        this.onClose = onClose;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int value = super.read();
+        if (value != -1) {
+            count(1);
+        }
+        return value;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        int count = super.read(bytes, offset, length);
+        if (count > 0) {
+            count(count);
+        }
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        }
+        finally {
+            if (closed.compareAndSet(false, true)) {
+                onClose.accept(bytesRead);
+            }
+        }
+    }
+
+    private void count(int count) {
+        bytesRead += count;
+        counter.increment(count);
+    }
+}
@@ -0,0 +1,76 @@
+package com.experimentation.filestorage.bucket.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the bytes of the file's content that are read, by whichever means the storage provider reads it.
+ */
+class CountingMultipartFile implements MultipartFile {
+
+    private final MultipartFile multipartFile;
+    private final Counter counter;
+    private final AtomicLong bytesRead = new AtomicLong();
+
+    CountingMultipartFile(MultipartFile multipartFile, Counter counter) {
+        this.multipartFile = multipartFile;
+        this.counter = counter;
+    }
+
+    @Override
+    public String getName() {
+        return multipartFile.getName();
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return multipartFile.getOriginalFilename();
+    }
+
+    @Override
+    public String getContentType() {
+        return multipartFile.getContentType();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return multipartFile.isEmpty();
+    }
+
+    @Override
+    public long getSize() {
+        return multipartFile.getSize();
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        byte[] bytes = multipartFile.getBytes();
+        count(bytes.length);
+        return bytes;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return new CountingInputStream(multipartFile.getInputStream(), counter, bytesRead::addAndGet);
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException {
+        multipartFile.transferTo(dest);
+        count(dest.length());
+    }
+
+    long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    private void count(long count) {
+        bytesRead.addAndGet(count);
+        counter.increment(count);
+    }
+}
@@ -0,0 +1,91 @@
+package com.experimentation.filestorage.bucket.metrics;
+
+import com.experimentation.filestorage.bucket.BucketStorage;
+import com.experimentation.filestorage.bucket.BucketStorageDTO;
+import com.experimentation.filestorage.bucket.BucketStorageDeleteResult;
+import com.experimentation.filestorage.bucket.BucketStorageListOptions;
+import com.experimentation.filestorage.bucket.BucketStorageListing;
+import com.experimentation.filestorage.bucket.BucketStorageMetadata;
+import com.experimentation.filestorage.bucket.BucketStorageReadOptions;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.experimentation.filestorage.bucket.util.BucketStorageServiceException;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Times every call to the provider. Listing file names is timed up to its first page, as further pages are fetched
+ * while the caller iterates.
+ */
+class MeteredBucketStorage implements BucketStorage {
+
+    private final BucketStorageType bucketStorageType;
+    private final BucketStorage bucketStorage;
+    private final BucketStorageMetrics bucketStorageMetrics;
+
+    MeteredBucketStorage(BucketStorageType bucketStorageType, BucketStorage bucketStorage,
+                         BucketStorageMetrics bucketStorageMetrics) {
+        this.bucketStorageType = bucketStorageType;
+        this.bucketStorage = bucketStorage;
+        this.bucketStorageMetrics = bucketStorageMetrics;
+    }
+
+    @Override
+    public BucketStorageDTO getFile(String bucketName, String fileName, BucketStorageReadOptions readOptions)
+            throws BucketStorageServiceException {
+        return bucketStorageMetrics.recordProviderCall(bucketStorageType, "getFile",
+                () -> bucketStorage.getFile(bucketName, fileName, readOptions));
+    }
+
+    @Override
+    public BucketStorageMetadata getFileMetadata(String bucketName, String fileName)
+            throws BucketStorageServiceException {
+        return bucketStorageMetrics.recordProviderCall(bucketStorageType, "getFileMetadata",
+                () -> bucketStorage.getFileMetadata(bucketName, fileName));
+    }
+
+    @Override
+    public Iterator<String> listFileNames(String bucketName, String prefix) throws BucketStorageServiceException {
+        return bucketStorageMetrics.recordProviderCall(bucketStorageType, "listFileNames",
+                () -> bucketStorage.listFileNames(bucketName, prefix));
+    }
+
+    @Override
+    public BucketStorageListing listFiles(String bucketName, BucketStorageListOptions listOptions)
+            throws BucketStorageServiceException {
+        return bucketStorageMetrics.recordProviderCall(bucketStorageType, "listFiles",
+                () -> bucketStorage.listFiles(bucketName, listOptions));
+    }
+
+    @Override
+    public void uploadMultipartFile(String bucketName, String fileName, MultipartFile file)
+            throws BucketStorageServiceException {
+        bucketStorageMetrics.recordProviderCall(bucketStorageType, "uploadFile", () -> {
+            bucketStorage.uploadMultipartFile(bucketName, fileName, file);
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteFile(String bucketName, String fileName) throws BucketStorageServiceException {
+        bucketStorageMetrics.recordProviderCall(bucketStorageType, "deleteFile", () -> {
+            bucketStorage.deleteFile(bucketName, fileName);
+            return null;
+        });
+    }
+
+    @Override
+    public List<BucketStorageDeleteResult> deleteFiles(String bucketName, List<String> fileNames)
+            throws BucketStorageServiceException {
+        return bucketStorageMetrics.recordProviderCall(bucketStorageType, "deleteFiles",
+                () -> bucketStorage.deleteFiles(bucketName, fileNames));
+    }
+
+    @Override
+    public List<BucketStorageDeleteResult> deleteFilesWithPrefix(String bucketName, String prefix)
+            throws BucketStorageServiceException {
+        return bucketStorageMetrics.recordProviderCall(bucketStorageType, "deleteFilesWithPrefix",
+                () -> bucketStorage.deleteFilesWithPrefix(bucketName, prefix));
+    }
+}
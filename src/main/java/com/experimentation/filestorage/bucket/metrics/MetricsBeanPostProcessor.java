@@ -0,0 +1,54 @@
+package com.experimentation.filestorage.bucket.metrics;
+
+import com.experimentation.filestorage.bucket.BucketStorage;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.experimentation.filestorage.bucket.bulkhead.BulkheadBeanPostProcessor;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+/**
+ * Wraps every storage provider bean in a timing decorator unless provider call metrics are disabled. It is applied
+ * before the bulkheads, the circuit breakers and the caches, so that only calls which actually reach the provider
+ * are timed, without the time spent waiting for a permit.
+ */
+@Component
+public class MetricsBeanPostProcessor implements BeanPostProcessor, Ordered {
+
+    static final int ORDER = BulkheadBeanPostProcessor.ORDER - 1;
+
+    private final boolean enabled;
+    private final ObjectFactory<BucketStorageMetrics> bucketStorageMetrics;
+
+    @Autowired
+    public MetricsBeanPostProcessor(
+            @Value("${filestorage.metrics.provider-calls.enabled:true}") boolean enabled,
+            ObjectFactory<BucketStorageMetrics> bucketStorageMetrics) {
+        this.enabled = enabled;
+        this.bucketStorageMetrics = bucketStorageMetrics;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!enabled || !(bean instanceof BucketStorage)) {
+            return bean;
+        }
+
+        for (BucketStorageType bucketStorageType : BucketStorageType.values()) {
+            if (bucketStorageType.toString().equals(beanName)) {
+                return new MeteredBucketStorage(
+                        bucketStorageType, (BucketStorage) bean, bucketStorageMetrics.getObject());
+            }
+        }
+
+        return bean;
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+}
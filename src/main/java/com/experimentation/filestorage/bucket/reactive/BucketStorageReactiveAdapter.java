@@ -0,0 +1,172 @@
+package com.experimentation.filestorage.bucket.reactive;
+
+import com.experimentation.filestorage.bucket.BucketStorageDTO;
+import com.experimentation.filestorage.bucket.BucketStorageReadOptions;
+import com.experimentation.filestorage.bucket.BucketStorageService;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.experimentation.filestorage.bucket.util.BucketStorageExceptionUtil;
+import com.experimentation.filestorage.bucket.util.BucketStorageUnavailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adapts the blocking storage providers to reactive streams. Provider calls run on a bounded pool of their own,
+ * never on the server's event loop, and content moves only as fast as the other side asks for it: a download reads
+ * the next buffer from the provider when the client's connection has taken the previous one, and an upload receives
+ * the next buffer from the client when the provider has taken the previous one.
+ *
+ * <p>A download only holds a thread while a buffer is being read. The providers take an upload's content as one
+ * blocking stream though, so an upload holds its thread for the length of its transfer, and a slow client keeps it
+ * busy. Uploads therefore run on a pool of their own, so that slow uploaders cannot starve downloads, metadata calls
+ * and deletes. On either pool, calls wait for a thread in a bounded queue, and are turned away as unavailable once it
+ * is full.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class BucketStorageReactiveAdapter {
+
+    private static final Logger logger = LoggerFactory.getLogger(BucketStorageReactiveAdapter.class);
+
+    private final BucketStorageService bucketStorageService;
+    private final ExecutorService executorService;
+    private final Scheduler scheduler;
+    private final ExecutorService uploadExecutorService;
+    private final Scheduler uploadScheduler;
+    private final int streamingBufferSize;
+    private final int uploadPrefetch;
+
+    @Autowired
+    public BucketStorageReactiveAdapter(BucketStorageService bucketStorageService,
+                                        @Value("${filestorage.reactive.pool-size:64}") int poolSize,
+                                        @Value("${filestorage.reactive.queue-capacity:256}") int queueCapacity,
+                                        @Value("${filestorage.reactive.upload-pool-size:16}") int uploadPoolSize,
+                                        @Value("${filestorage.reactive.upload-queue-capacity:64}")
+                                                int uploadQueueCapacity,
+                                        @Value("${filestorage.reactive.upload-prefetch:4}") int uploadPrefetch,
+                                        @Value("${filestorage.streaming.buffer-size:8192}") int streamingBufferSize) {
+        this.bucketStorageService = bucketStorageService;
+        this.executorService = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("bucket-storage-reactive-"));
+        this.scheduler = Schedulers.fromExecutorService(executorService);
+        this.uploadExecutorService = new ThreadPoolExecutor(uploadPoolSize, uploadPoolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(uploadQueueCapacity),
+                new CustomizableThreadFactory("bucket-storage-reactive-upload-"));
+        this.uploadScheduler = Schedulers.fromExecutorService(uploadExecutorService);
+        this.uploadPrefetch = uploadPrefetch;
+        this.streamingBufferSize = streamingBufferSize;
+    }
+
+    /**
+     * Gets the file from the provider, without reading its content yet.
+     *
+     * @param bucketName
+     * @param fileName
+     * @param readOptions
+     * @param bucketStorageType
+     * @return file, or an error with the BucketStorageServiceException
+     */
+    public Mono<BucketStorageDTO> getFile(String bucketName, String fileName, BucketStorageReadOptions readOptions,
+                                          BucketStorageType bucketStorageType) {
+        return Mono.fromCallable(() -> bucketStorageService.doGetFile(
+                bucketName, fileName, readOptions, bucketStorageType))
+                .subscribeOn(scheduler)
+                .onErrorMap(RejectedExecutionException.class, this::newPoolBusyException);
+    }
+
+    /**
+     * Reads the file's content one buffer per request from the subscriber. The file is closed once its content
+     * has been read, or as soon as the subscriber cancels.
+     *
+     * @param bucketStorageDTO
+     * @param dataBufferFactory
+     * @return content
+     */
+    public Flux<DataBuffer> readContent(BucketStorageDTO bucketStorageDTO, DataBufferFactory dataBufferFactory) {
+        return Flux.using(
+                () -> bucketStorageDTO,
+                source -> DataBufferUtils.readInputStream(source::getInputStream, dataBufferFactory,
+                        streamingBufferSize),
+                this::closeQuietly)
+                .subscribeOn(scheduler)
+                .onErrorMap(RejectedExecutionException.class, this::newPoolBusyException);
+    }
+
+    /**
+     * Uploads the content as it arrives. The upload only requests a few buffers ahead of what it has sent to the
+     * provider, and holds a thread of the upload pool until the provider has taken all of the content.
+     *
+     * @param bucketName
+     * @param fileName
+     * @param contentType
+     * @param contentLength length of the content, or -1 if unknown
+     * @param content
+     * @param bucketStorageType
+     * @return completion, or an error with the BucketStorageServiceException
+     */
+    public Mono<Void> upload(String bucketName, String fileName, String contentType, long contentLength,
+                             Flux<DataBuffer> content, BucketStorageType bucketStorageType) {
+        return Mono.<Void>fromRunnable(() -> {
+            try (DataBufferInputStream inputStream = new DataBufferInputStream(content, uploadPrefetch)) {
+                bucketStorageService.doUploadMultipartFile(bucketName, fileName,
+                        new BucketStorageStreamedFile(fileName, contentType, contentLength, inputStream),
+                        bucketStorageType);
+            }
+        }).subscribeOn(uploadScheduler)
+                .onErrorMap(RejectedExecutionException.class, this::newPoolBusyException);
+    }
+
+    /**
+     * @param bucketName
+     * @param fileName
+     * @param bucketStorageType
+     * @return completion, or an error with the BucketStorageServiceException
+     */
+    public Mono<Void> deleteFile(String bucketName, String fileName, BucketStorageType bucketStorageType) {
+        return Mono.<Void>fromRunnable(() -> bucketStorageService.doDeleteFile(bucketName, fileName, bucketStorageType))
+                .subscribeOn(scheduler)
+                .onErrorMap(RejectedExecutionException.class, this::newPoolBusyException);
+    }
+
+    private BucketStorageUnavailableException newPoolBusyException(RejectedExecutionException e) {
+        return new BucketStorageUnavailableException(BucketStorageExceptionUtil.setMessageReactivePoolBusy());
+    }
+
+    private void closeQuietly(BucketStorageDTO bucketStorageDTO) {
+        try {
+            bucketStorageDTO.close();
+        }
+
+        // The content has been sent or abandoned either way
+        catch (IOException e) {
+            logger.warn("Unable to close file " + bucketStorageDTO.getFileName() + ": " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.dispose();
+        executorService.shutdownNow();
+        uploadScheduler.dispose();
+        uploadExecutorService.shutdownNow();
+    }
+}
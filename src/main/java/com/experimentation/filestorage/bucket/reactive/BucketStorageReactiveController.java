@@ -0,0 +1,263 @@
+package com.experimentation.filestorage.bucket.reactive;
+
+import com.experimentation.filestorage.bucket.BucketStorageDTO;
+import com.experimentation.filestorage.bucket.BucketStorageRange;
+import com.experimentation.filestorage.bucket.BucketStorageReadOptions;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.experimentation.filestorage.bucket.util.BucketStorageHeaderUtil;
+import com.experimentation.filestorage.bucket.util.BucketStorageRangeNotSatisfiableException;
+import com.experimentation.filestorage.bucket.util.BucketStorageServiceException;
+import com.experimentation.filestorage.bucket.util.BucketStorageUnavailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The file endpoints of the servlet controller, served non-blocking when the application runs as a reactive web
+ * application. Downloads are streamed to the client as the provider's content is read, and uploads are sent to the
+ * provider as the request body arrives, both at the pace of the slower side.
+ */
+@RestController
+@RequestMapping("/api/fileStorage")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class BucketStorageReactiveController {
+
+    private final BucketStorageReactiveAdapter bucketStorageReactiveAdapter;
+
+    private static final Logger logger = LoggerFactory.getLogger(BucketStorageReactiveController.class);
+
+    private static final String BYTES_RANGE_UNIT = "bytes";
+    private static final String WEAK_ENTITY_TAG_PREFIX = "W/";
+
+    @Autowired
+    public BucketStorageReactiveController(BucketStorageReactiveAdapter bucketStorageReactiveAdapter) {
+        this.bucketStorageReactiveAdapter = bucketStorageReactiveAdapter;
+    }
+
+    /**
+     * Serves the whole file, or a single requested range of it. A request for several ranges is answered with the
+     * whole file, which HTTP allows.
+     */
+    @GetMapping("storageProvider/{storageProvider}/storageLocation/{storageLocation}/fileName/{fileName}")
+    public Mono<ResponseEntity<Flux<DataBuffer>>> getFile(
+            @PathVariable("storageProvider") String storageProvider,
+            @PathVariable("storageLocation") String bucketName,
+            @PathVariable String fileName,
+            ServerHttpRequest request,
+            ServerHttpResponse response) {
+
+        BucketStorageType bucketStorageType;
+        try {
+            bucketStorageType = BucketStorageType.valueOf(storageProvider);
+        }
+
+        // BucketStorageType could not be identified from the storageProvider value
+        catch (IllegalArgumentException e) {
+            logger.error(e.getMessage());
+            return Mono.just(buildMessageResponse(
+                    ResponseEntity.status(500), "Invalid storage provider identifier provided.", response));
+        }
+
+        List<BucketStorageRange> ranges =
+                BucketStorageRange.parseRanges(request.getHeaders().getFirst(HttpHeaders.RANGE));
+        BucketStorageReadOptions readOptions = newReadOptions(ranges.size() == 1 ? ranges.get(0) : null, request);
+
+        return bucketStorageReactiveAdapter.getFile(bucketName, fileName, readOptions, bucketStorageType)
+                .map(bucketStorageDTO -> bucketStorageDTO.isNotModified()
+                        ? buildNotModifiedResponse(bucketStorageDTO)
+                        : buildFileResponse(bucketStorageDTO, response))
+
+                // Requested range does not overlap the file
+                .onErrorResume(BucketStorageRangeNotSatisfiableException.class, e -> {
+                    logger.error(e.getMessage());
+                    ResponseEntity.BodyBuilder bodyBuilder =
+                            ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+                    if (e.getInstanceLength() >= 0) {
+                        bodyBuilder.header(HttpHeaders.CONTENT_RANGE, "bytes */" + e.getInstanceLength());
+                    }
+                    return Mono.just(buildMessageResponse(bodyBuilder, e.getMessage(), response));
+                })
+
+                // The storage provider is too busy, or failing, to take the request
+                .onErrorResume(BucketStorageUnavailableException.class, e -> {
+                    logger.error(e.getMessage());
+                    return Mono.just(buildMessageResponse(newUnavailableResponse(e), e.getMessage(), response));
+                })
+
+                // Unable to retrieve file
+                .onErrorResume(BucketStorageServiceException.class, e -> {
+                    logger.error(e.getMessage());
+                    return Mono.just(buildMessageResponse(ResponseEntity.status(500), e.getMessage(), response));
+                });
+    }
+
+    /**
+     * Uploads the request body as the file's content, with the request's content type.
+     */
+    @PutMapping("storageProvider/{storageProvider}/storageLocation/{storageLocation}/fileName/{fileName}")
+    public Mono<ResponseEntity<String>> uploadFile(@PathVariable("storageProvider") String storageProvider,
+                                                   @PathVariable("storageLocation") String bucketName,
+                                                   @PathVariable String fileName,
+                                                   ServerHttpRequest request) {
+
+        BucketStorageType bucketStorageType;
+        try {
+            bucketStorageType = BucketStorageType.valueOf(storageProvider);
+        }
+
+        // BucketStorageType could not be identified from the storageProvider value
+        catch (IllegalArgumentException e) {
+            logger.error(e.getMessage());
+            return Mono.just(ResponseEntity.status(500).body("Invalid storage provider identifier provided."));
+        }
+
+        MediaType contentType = request.getHeaders().getContentType();
+
+        return bucketStorageReactiveAdapter.upload(bucketName, fileName,
+                contentType != null ? contentType.toString() : MediaType.APPLICATION_OCTET_STREAM_VALUE,
+                request.getHeaders().getContentLength(), request.getBody(), bucketStorageType)
+                .then(Mono.just(ResponseEntity.ok().<String>build()))
+
+                // The storage provider is too busy, or failing, to take the request
+                .onErrorResume(BucketStorageUnavailableException.class, e -> {
+                    logger.error(e.getMessage());
+                    return Mono.just(newUnavailableResponse(e).body(e.getMessage()));
+                })
+
+                // Unable to upload file
+                .onErrorResume(BucketStorageServiceException.class, e -> {
+                    logger.error(e.getMessage());
+                    return Mono.just(ResponseEntity.status(500).body(e.getMessage()));
+                });
+    }
+
+    @DeleteMapping("storageProvider/{storageProvider}/storageLocation/{storageLocation}/fileName/{fileName}")
+    public Mono<ResponseEntity<String>> deleteFile(@PathVariable("storageProvider") String storageProvider,
+                                                   @PathVariable("storageLocation") String bucketName,
+                                                   @PathVariable String fileName) {
+
+        BucketStorageType bucketStorageType;
+        try {
+            bucketStorageType = BucketStorageType.valueOf(storageProvider);
+        }
+
+        // BucketStorageType could not be identified from the storageProvider value
+        catch (IllegalArgumentException e) {
+            logger.error(e.getMessage());
+            return Mono.just(ResponseEntity.status(500).body("Invalid storage provider identifier provided."));
+        }
+
+        return bucketStorageReactiveAdapter.deleteFile(bucketName, fileName, bucketStorageType)
+                .then(Mono.just(ResponseEntity.ok().<String>build()))
+
+                // The storage provider is too busy, or failing, to take the request
+                .onErrorResume(BucketStorageUnavailableException.class, e -> {
+                    logger.error(e.getMessage());
+                    return Mono.just(newUnavailableResponse(e).body(e.getMessage()));
+                })
+
+                // Unable to delete file
+                .onErrorResume(BucketStorageServiceException.class, e -> {
+                    logger.error(e.getMessage());
+                    return Mono.just(ResponseEntity.status(500).body(e.getMessage()));
+                });
+    }
+
+    private BucketStorageReadOptions newReadOptions(BucketStorageRange range, ServerHttpRequest request) {
+        HttpHeaders headers = request.getHeaders();
+        List<String> ifNoneMatch = new ArrayList<>();
+
+        for (String entityTag : headers.getIfNoneMatch()) {
+            String opaqueTag = entityTag.startsWith(WEAK_ENTITY_TAG_PREFIX)
+                    ? entityTag.substring(WEAK_ENTITY_TAG_PREFIX.length())
+                    : entityTag;
+            ifNoneMatch.add(StringUtils.trimTrailingCharacter(StringUtils.trimLeadingCharacter(opaqueTag, '"'), '"'));
+        }
+
+        return new BucketStorageReadOptions(range, ifNoneMatch, headers.getIfModifiedSince());
+    }
+
+    /**
+     * Sets up the response to have the file as an attachment, read from the provider as the client takes it.
+     *
+     * @param bucketStorageDTO
+     * @param response
+     * @return responseEntity
+     */
+    private ResponseEntity<Flux<DataBuffer>> buildFileResponse(BucketStorageDTO bucketStorageDTO,
+                                                               ServerHttpResponse response) {
+        ResponseEntity.BodyBuilder bodyBuilder;
+
+        if (bucketStorageDTO.getRange() != null) {
+            bodyBuilder = ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                    .header(HttpHeaders.CONTENT_RANGE,
+                            bucketStorageDTO.getRange().toContentRange(bucketStorageDTO.getInstanceLength()));
+        }
+        else {
+            bodyBuilder = ResponseEntity.ok();
+        }
+
+        bodyBuilder.contentType(getMediaType(bucketStorageDTO.getContentType()))
+                .header(HttpHeaders.ACCEPT_RANGES, BYTES_RANGE_UNIT)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        BucketStorageHeaderUtil.attachmentContentDisposition(bucketStorageDTO.getFileName()));
+        addValidators(bodyBuilder, bucketStorageDTO.getETag(), bucketStorageDTO.getLastModified());
+        if (bucketStorageDTO.getContentLength() >= 0) {
+            bodyBuilder.contentLength(bucketStorageDTO.getContentLength());
+        }
+
+        return bodyBuilder.body(
+                bucketStorageReactiveAdapter.readContent(bucketStorageDTO, response.bufferFactory()));
+    }
+
+    private ResponseEntity<Flux<DataBuffer>> buildNotModifiedResponse(BucketStorageDTO bucketStorageDTO) {
+        ResponseEntity.BodyBuilder bodyBuilder = ResponseEntity.status(HttpStatus.NOT_MODIFIED);
+        addValidators(bodyBuilder, bucketStorageDTO.getETag(), bucketStorageDTO.getLastModified());
+        return bodyBuilder.build();
+    }
+
+    private void addValidators(ResponseEntity.BodyBuilder bodyBuilder, String eTag, long lastModified) {
+        if (eTag != null) {
+            bodyBuilder.eTag(eTag);
+        }
+        if (lastModified >= 0) {
+            bodyBuilder.lastModified(lastModified);
+        }
+    }
+
+    private ResponseEntity.BodyBuilder newUnavailableResponse(BucketStorageUnavailableException e) {
+        ResponseEntity.BodyBuilder bodyBuilder = ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE);
+        if (e.getRetryAfterSeconds() >= 0) {
+            bodyBuilder.header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+        }
+        return bodyBuilder;
+    }
+
+    private ResponseEntity<Flux<DataBuffer>> buildMessageResponse(ResponseEntity.BodyBuilder bodyBuilder,
+                                                                  String message, ServerHttpResponse response) {
+        byte[] body = String.valueOf(message).getBytes(StandardCharsets.UTF_8);
+        return bodyBuilder.contentType(MediaType.TEXT_PLAIN)
+                .contentLength(body.length)
+                .body(Flux.just(response.bufferFactory().wrap(body)));
+    }
+
+    private MediaType getMediaType(String contentType) {
+        return contentType != null ? MediaType.parseMediaType(contentType) : MediaType.APPLICATION_OCTET_STREAM;
+    }
+}
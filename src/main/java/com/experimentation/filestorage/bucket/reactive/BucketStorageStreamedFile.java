@@ -0,0 +1,75 @@
+package com.experimentation.filestorage.bucket.reactive;
+
+import org.springframework.util.FileCopyUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * A file whose content is still arriving, handed to the providers as a multipart file. Its content can only be
+ * read once, as it is read straight from the request body.
+ */
+class BucketStorageStreamedFile implements MultipartFile {
+
+    private final String fileName;
+    private final String contentType;
+    private final long size;
+    private final InputStream inputStream;
+
+    /**
+     * @param fileName
+     * @param contentType
+     * @param size length of the content, or -1 if the client did not send it
+     * @param inputStream
+     */
+    BucketStorageStreamedFile(String fileName, String contentType, long size, InputStream inputStream) {
+        this.fileName = fileName;
+        this.contentType = contentType;
+        this.size = size;
+        this.inputStream = inputStream;
+    }
+
+    @Override
+    public String getName() {
+        return fileName;
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return fileName;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        return FileCopyUtils.copyToByteArray(inputStream);
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException {
+        Files.copy(inputStream, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
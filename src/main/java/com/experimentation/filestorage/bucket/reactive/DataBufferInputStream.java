@@ -0,0 +1,163 @@
+package com.experimentation.filestorage.bucket.reactive;
+
+import org.reactivestreams.Subscription;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Reads a stream of data buffers, such as a request body, through a blocking input stream. Only a few buffers are
+ * requested ahead of the reader and one more each time a buffer has been read, so the body is received as fast as
+ * the reader consumes it: a slow provider upload slows down reading from the client's connection instead of the
+ * body piling up in memory.
+ */
+class DataBufferInputStream extends InputStream {
+
+    // Signals the end of the stream in the queue of received buffers
+    private static final Object COMPLETE = new Object();
+
+    private final BlockingQueue<Object> signals = new LinkedBlockingQueue<>();
+    private final BufferSubscriber subscriber;
+
+    private DataBuffer current;
+    private boolean finished;
+
+    /**
+     * Subscribes to the buffers right away, requesting the first few.
+     *
+     * @param buffers
+     * @param prefetch buffers requested ahead of the reader
+     */
+    DataBufferInputStream(Flux<DataBuffer> buffers, int prefetch) {
+        this.subscriber = new BufferSubscriber(Math.max(1, prefetch));
+        buffers.subscribe(subscriber);
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int length = read(single, 0, 1);
+        return length == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+
+        DataBuffer buffer = currentBuffer();
+        if (buffer == null) {
+            return -1;
+        }
+
+        int count = Math.min(length, buffer.readableByteCount());
+        buffer.read(bytes, offset, count);
+        if (buffer.readableByteCount() == 0) {
+            releaseCurrent();
+        }
+        return count;
+    }
+
+    /**
+     * Stops receiving the stream and releases the buffers that were received but not read.
+     */
+    @Override
+    public void close() {
+        subscriber.dispose();
+        finished = true;
+
+        if (current != null) {
+            DataBufferUtils.release(current);
+            current = null;
+        }
+        for (Object signal = signals.poll(); signal != null; signal = signals.poll()) {
+            if (signal instanceof DataBuffer) {
+                DataBufferUtils.release((DataBuffer) signal);
+            }
+        }
+    }
+
+    /**
+     * Waits for a buffer that still has bytes to read.
+     *
+     * @return buffer, or null at the end of the stream
+     * @throws IOException if the stream failed or the thread was interrupted while waiting
+     */
+    private DataBuffer currentBuffer() throws IOException {
+        while (current == null && !finished) {
+            Object signal;
+            try {
+                signal = signals.take();
+            }
+
+            // While waiting for the next buffer, the thread is interrupted
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(e.getMessage());
+            }
+
+            if (signal == COMPLETE) {
+                finished = true;
+            }
+            else if (signal instanceof Throwable) {
+                finished = true;
+                throw new IOException((Throwable) signal);
+            }
+            else {
+                current = (DataBuffer) signal;
+                if (current.readableByteCount() == 0) {
+                    releaseCurrent();
+                }
+            }
+        }
+        return current;
+    }
+
+    private void releaseCurrent() {
+        DataBufferUtils.release(current);
+        current = null;
+        subscriber.request(1);
+    }
+
+    private class BufferSubscriber extends BaseSubscriber<DataBuffer> {
+
+        private final int prefetch;
+
+        BufferSubscriber(int prefetch) {
+            this.prefetch = prefetch;
+        }
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            subscription.request(prefetch);
+        }
+
+        @Override
+        protected void hookOnNext(DataBuffer buffer) {
+            // A buffer that was already on its way when the stream was closed is not read by anyone
+            if (isDisposed()) {
+                DataBufferUtils.release(buffer);
+                return;
+            }
+            signals.add(buffer);
+        }
+
+        @Override
+        protected void hookOnComplete() {
+            signals.add(COMPLETE);
+        }
+
+        @Override
+        protected void hookOnError(Throwable throwable) {
+            signals.add(throwable);
+        }
+    }
+}
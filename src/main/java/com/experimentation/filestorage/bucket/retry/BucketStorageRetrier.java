@@ -0,0 +1,363 @@
+package com.experimentation.filestorage.bucket.retry;
+
+import com.experimentation.filestorage.bucket.BucketStorageDTO;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.experimentation.filestorage.bucket.util.BucketStorageExceptionUtil;
+import com.experimentation.filestorage.bucket.util.BucketStorageServiceException;
+import com.experimentation.filestorage.bucket.util.BucketStorageTransientException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Sends provider calls again when they fail transiently, and sends a second read when the first is slow to answer.
+ * Only calls that are safe to repeat may be passed in. Retries wait a random backoff of up to twice the previous
+ * one, so that clients which failed together do not retry together, and together with hedged reads they are limited
+ * by a retry budget per provider. Reads are hedged below the caches, by HedgingBucketStorage, so that only reads the
+ * provider answers are timed and hedged.
+ */
+@Component
+public class BucketStorageRetrier {
+
+    private static final Logger logger = LoggerFactory.getLogger(BucketStorageRetrier.class);
+
+    private final boolean enabled;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final boolean hedgeEnabled;
+    private final long hedgeMinDelayNanos;
+    private final ScheduledExecutorService hedgeScheduler;
+    private final ThreadPoolExecutor hedgeExecutor;
+
+    private final Map<BucketStorageType, RetryState> retryStates = new EnumMap<>(BucketStorageType.class);
+
+    @Autowired
+    public BucketStorageRetrier(@Value("${filestorage.retry.enabled:false}") boolean enabled,
+                                @Value("${filestorage.retry.max-attempts:3}") int maxAttempts,
+                                @Value("${filestorage.retry.initial-backoff:50}") long initialBackoffMillis,
+                                @Value("${filestorage.retry.max-backoff:2000}") long maxBackoffMillis,
+                                @Value("${filestorage.retry.budget-max-tokens:100}") double budgetMaxTokens,
+                                @Value("${filestorage.retry.budget-token-ratio:0.1}") double budgetTokenRatio,
+                                @Value("${filestorage.retry.hedge-enabled:true}") boolean hedgeEnabled,
+                                @Value("${filestorage.retry.hedge-percentile:95}") double hedgePercentile,
+                                @Value("${filestorage.retry.hedge-min-delay:10}") long hedgeMinDelayMillis,
+                                @Value("${filestorage.retry.hedge-window:1000}") int hedgeWindow,
+                                @Value("${filestorage.retry.hedge-pool-size:64}") int hedgePoolSize) {
+        this.enabled = enabled;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.hedgeEnabled = enabled && hedgeEnabled;
+        this.hedgeMinDelayNanos = TimeUnit.MILLISECONDS.toNanos(hedgeMinDelayMillis);
+        this.hedgeScheduler = this.hedgeEnabled
+                ? Executors.newSingleThreadScheduledExecutor(
+                        new CustomizableThreadFactory("bucket-storage-hedge-timer-"))
+                : null;
+
+        // Without a queue, a hedge that finds every thread busy is rejected instead of waiting its turn
+        this.hedgeExecutor = this.hedgeEnabled
+                ? new ThreadPoolExecutor(hedgePoolSize, hedgePoolSize, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                        new CustomizableThreadFactory("bucket-storage-hedge-"))
+                : null;
+        if (this.hedgeExecutor != null) {
+            this.hedgeExecutor.allowCoreThreadTimeOut(true);
+        }
+
+        for (BucketStorageType bucketStorageType : BucketStorageType.values()) {
+            retryStates.put(bucketStorageType, new RetryState(bucketStorageType,
+                    new RetryBudget(budgetMaxTokens, budgetTokenRatio),
+                    new LatencyWindow(hedgeWindow, hedgePercentile)));
+        }
+    }
+
+    /**
+     * Makes a provider call, sending it again after a backoff when it fails with a BucketStorageTransientException.
+     *
+     * @param bucketStorageType
+     * @param call which must be safe to repeat
+     * @return result of the call
+     * @throws BucketStorageServiceException of the last attempt
+     */
+    public <T> T call(BucketStorageType bucketStorageType, Supplier<T> call) throws BucketStorageServiceException {
+        if (!enabled) {
+            return call.get();
+        }
+
+        RetryState retryState = retryStates.get(bucketStorageType);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                T result = call.get();
+                retryState.onSuccess();
+                return result;
+            }
+
+            // The provider may serve the same call when it is sent again
+            catch (BucketStorageTransientException e) {
+                retryState.onTransientFailure();
+                if (attempt >= maxAttempts || !retryState.tryRetry()) {
+                    throw e;
+                }
+                logger.warn("Retrying call to " + bucketStorageType + " after attempt " + attempt + ": "
+                        + e.getMessage());
+                backoff(bucketStorageType, attempt);
+            }
+        }
+    }
+
+    /**
+     * Opens a file from the provider on the hedge pool, and when it has not been opened within the recent percentile
+     * of the time it takes to open one, sends the call a second time. The file opened first is returned as soon as it
+     * is, and the other is aborted when it arrives. When the hedge pool has no thread free, the call is made on the
+     * caller's thread and not hedged. The call is not retried; that is left to call, further up.
+     *
+     * @param bucketStorageType
+     * @param call which must be safe to repeat
+     * @return file
+     * @throws BucketStorageServiceException of the last attempt
+     */
+    BucketStorageDTO callHedged(BucketStorageType bucketStorageType, Supplier<BucketStorageDTO> call)
+            throws BucketStorageServiceException {
+        if (!hedgeEnabled) {
+            return call.get();
+        }
+
+        return hedge(bucketStorageType, retryStates.get(bucketStorageType), call);
+    }
+
+    public List<BucketStorageRetryStatistics> getStatistics() {
+        List<BucketStorageRetryStatistics> statistics = new ArrayList<>();
+        retryStates.values().forEach(retryState -> statistics.add(retryState.getStatistics()));
+        return statistics;
+    }
+
+    private BucketStorageDTO hedge(BucketStorageType bucketStorageType, RetryState retryState,
+                                   Supplier<BucketStorageDTO> call) {
+        long hedgeDelayNanos = retryState.getHedgeDelayNanos();
+
+        // Until enough files have been opened to know how long it usually takes, the call is not hedged
+        if (hedgeDelayNanos < 0) {
+            return timedCall(retryState, call);
+        }
+
+        // With every thread of the hedge pool busy, the call is made on the caller's thread instead
+        HedgedCall hedgedCall = new HedgedCall(retryState, call);
+        if (!hedgedCall.sendFirst()) {
+            return timedCall(retryState, call);
+        }
+
+        ScheduledFuture<?> hedgeTimer = hedgeScheduler.schedule(hedgedCall::sendHedge,
+                Math.max(hedgeDelayNanos, hedgeMinDelayNanos), TimeUnit.NANOSECONDS);
+        try {
+            return hedgedCall.awaitWinner();
+        }
+
+        // While waiting for the attempts, the thread is interrupted
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            hedgedCall.abandon();
+            throw new BucketStorageServiceException(
+                    BucketStorageExceptionUtil.setMessageRetryThreadInterrupted(bucketStorageType.toString())
+            );
+        }
+        finally {
+            hedgeTimer.cancel(false);
+        }
+    }
+
+    private static BucketStorageDTO timedCall(RetryState retryState, Supplier<BucketStorageDTO> call) {
+        long startedAt = System.nanoTime();
+        BucketStorageDTO bucketStorageDTO = call.get();
+        retryState.recordLatency(System.nanoTime() - startedAt);
+        return bucketStorageDTO;
+    }
+
+    private void backoff(BucketStorageType bucketStorageType, int attempt) {
+        long ceilingMillis = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 30));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceilingMillis + 1));
+        }
+
+        // While waiting to retry, the thread is interrupted
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BucketStorageServiceException(
+                    BucketStorageExceptionUtil.setMessageRetryThreadInterrupted(bucketStorageType.toString())
+            );
+        }
+    }
+
+    private static void abortQuietly(BucketStorageDTO bucketStorageDTO) {
+        try {
+            bucketStorageDTO.abort();
+        }
+
+        // The file was not wanted anyway
+        catch (IOException e) {
+            logger.warn("Unable to abort file " + bucketStorageDTO.getFileName() + ": " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (hedgeScheduler != null) {
+            hedgeScheduler.shutdownNow();
+        }
+        if (hedgeExecutor != null) {
+            hedgeExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * The attempts to open one file, of which the first to succeed wins. The call only fails once every attempt
+     * sent has failed.
+     */
+    private class HedgedCall {
+
+        private final RetryState retryState;
+        private final Supplier<BucketStorageDTO> call;
+        private final CompletableFuture<BucketStorageDTO> winner = new CompletableFuture<>();
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private final AtomicBoolean answered = new AtomicBoolean();
+        private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+        HedgedCall(RetryState retryState, Supplier<BucketStorageDTO> call) {
+            this.retryState = retryState;
+            this.call = call;
+        }
+
+        /**
+         * Sends the first attempt on the hedge pool.
+         *
+         * @return false if every thread of the hedge pool is busy, in which case nothing was sent
+         */
+        boolean sendFirst() {
+            try {
+                hedgeExecutor.execute(() -> attempt(false));
+                return true;
+            }
+
+            // The caller makes the call itself
+            catch (RejectedExecutionException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Waits for the first attempt to open the file, or for every attempt sent to fail.
+         *
+         * @return file
+         * @throws InterruptedException if the thread was interrupted while waiting
+         */
+        BucketStorageDTO awaitWinner() throws InterruptedException {
+            try {
+                return winner.get();
+            }
+
+            // Every attempt failed, the last one's failure is passed on
+            catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new BucketStorageServiceException(e.getCause().getMessage(), e.getCause());
+            }
+        }
+
+        /**
+         * Sends the hedged attempt, unless the call has been answered, the budget is spent or every thread of the
+         * hedge pool is busy. Runs on the hedge timer.
+         */
+        void sendHedge() {
+            if (answered.get() || !retryState.tryHedge()) {
+                return;
+            }
+
+            // An attempt that already failed for good leaves nothing to hedge
+            if (pending.getAndUpdate(count -> count == 0 ? 0 : count + 1) == 0) {
+                retryState.onHedgeRejected();
+                return;
+            }
+
+            try {
+                hedgeExecutor.execute(() -> attempt(true));
+            }
+
+            // Every thread of the hedge pool is busy, so the call is left to the first attempt
+            catch (RejectedExecutionException e) {
+                retryState.onHedgeRejected();
+                onFailure(null);
+            }
+        }
+
+        private void attempt(boolean hedged) {
+            long startedAt = System.nanoTime();
+            BucketStorageDTO bucketStorageDTO;
+            try {
+                bucketStorageDTO = call.get();
+            }
+
+            // Only passed on once every attempt has failed
+            catch (RuntimeException e) {
+                onFailure(e);
+                return;
+            }
+
+            retryState.recordLatency(System.nanoTime() - startedAt);
+            if (!answered.compareAndSet(false, true)) {
+                abortQuietly(bucketStorageDTO);
+                return;
+            }
+            if (hedged) {
+                retryState.onHedgeWon();
+            }
+            if (!winner.complete(bucketStorageDTO)) {
+                abortQuietly(bucketStorageDTO);
+            }
+        }
+
+        /**
+         * @param e failure of an attempt, or null for a hedged attempt that was never sent
+         */
+        private void onFailure(RuntimeException e) {
+            if (e != null) {
+                failure.set(e);
+            }
+            if (pending.decrementAndGet() == 0) {
+                winner.completeExceptionally(failure.get());
+            }
+        }
+
+        /**
+         * Aborts the files of the attempts still on their way, and the winner's if nobody took it.
+         */
+        void abandon() {
+            if (!winner.cancel(false) && !winner.isCompletedExceptionally()) {
+                winner.thenAccept(BucketStorageRetrier::abortQuietly);
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.experimentation.filestorage.bucket.retry;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Exposes the retry and hedging counters at /actuator/retries.
+ */
+@Component
+@Endpoint(id = "retries")
+public class BucketStorageRetryEndpoint {
+
+    private final BucketStorageRetrier bucketStorageRetrier;
+
+    @Autowired
+    public BucketStorageRetryEndpoint(BucketStorageRetrier bucketStorageRetrier) {
+        this.bucketStorageRetrier = bucketStorageRetrier;
+    }
+
+    @ReadOperation
+    public List<BucketStorageRetryStatistics> retries() {
+        return bucketStorageRetrier.getStatistics();
+    }
+}
@@ -0,0 +1,66 @@
+package com.experimentation.filestorage.bucket.retry;
+
+/**
+ * Snapshot of how often requests to one storage provider were retried or hedged.
+ */
+public class BucketStorageRetryStatistics {
+
+    private final String storageProvider;
+    private final long retries;
+    private final long hedges;
+    private final long hedgesWon;
+    private final long budgetExhausted;
+    private final double budgetTokens;
+    private final long hedgeDelayMillis;
+
+    public BucketStorageRetryStatistics(String storageProvider, long retries, long hedges, long hedgesWon,
+                                        long budgetExhausted, double budgetTokens, long hedgeDelayMillis) {
+        this.storageProvider = storageProvider;
+        this.retries = retries;
+        this.hedges = hedges;
+        this.hedgesWon = hedgesWon;
+        this.budgetExhausted = budgetExhausted;
+        this.budgetTokens = budgetTokens;
+        this.hedgeDelayMillis = hedgeDelayMillis;
+    }
+
+    public String getStorageProvider() {
+        return storageProvider;
+    }
+
+    public long getRetries() {
+        return retries;
+    }
+
+    public long getHedges() {
+        return hedges;
+    }
+
+    /**
+     * Hedged requests that answered before the request they were sent after.
+     * @return hedgesWon
+     */
+    public long getHedgesWon() {
+        return hedgesWon;
+    }
+
+    /**
+     * Retries and hedged requests that were not sent because the retry budget was spent.
+     * @return budgetExhausted
+     */
+    public long getBudgetExhausted() {
+        return budgetExhausted;
+    }
+
+    public double getBudgetTokens() {
+        return budgetTokens;
+    }
+
+    /**
+     * Time a read waits for its file before a hedged request is sent, or -1 while too few reads have been seen.
+     * @return hedgeDelayMillis
+     */
+    public long getHedgeDelayMillis() {
+        return hedgeDelayMillis;
+    }
+}
@@ -0,0 +1,54 @@
+package com.experimentation.filestorage.bucket.retry;
+
+import com.experimentation.filestorage.bucket.BucketStorage;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.experimentation.filestorage.bucket.cache.DiskCacheBeanPostProcessor;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+/**
+ * Wraps every storage provider bean in a hedging decorator when retries and hedged reads are enabled. It is applied
+ * before the caches, so that cache hits are neither hedged nor sampled into the latencies hedges wait for, and after
+ * the circuit breakers and bulkheads, so that each attempt of a hedged read goes through them on its own.
+ */
+@Component
+public class HedgingBeanPostProcessor implements BeanPostProcessor, Ordered {
+
+    public static final int ORDER = DiskCacheBeanPostProcessor.ORDER - 1;
+
+    private final boolean enabled;
+    private final ObjectFactory<BucketStorageRetrier> bucketStorageRetrier;
+
+    @Autowired
+    public HedgingBeanPostProcessor(@Value("${filestorage.retry.enabled:false}") boolean retryEnabled,
+                                    @Value("${filestorage.retry.hedge-enabled:true}") boolean hedgeEnabled,
+                                    ObjectFactory<BucketStorageRetrier> bucketStorageRetrier) {
+        this.enabled = retryEnabled && hedgeEnabled;
+        this.bucketStorageRetrier = bucketStorageRetrier;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!enabled || !(bean instanceof BucketStorage)) {
+            return bean;
+        }
+
+        for (BucketStorageType bucketStorageType : BucketStorageType.values()) {
+            if (bucketStorageType.toString().equals(beanName)) {
+                return new HedgingBucketStorage(
+                        bucketStorageType, (BucketStorage) bean, bucketStorageRetrier.getObject());
+            }
+        }
+
+        return bean;
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+}
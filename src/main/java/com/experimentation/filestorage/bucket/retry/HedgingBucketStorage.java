@@ -0,0 +1,80 @@
+package com.experimentation.filestorage.bucket.retry;
+
+import com.experimentation.filestorage.bucket.BucketStorage;
+import com.experimentation.filestorage.bucket.BucketStorageDTO;
+import com.experimentation.filestorage.bucket.BucketStorageDeleteResult;
+import com.experimentation.filestorage.bucket.BucketStorageListOptions;
+import com.experimentation.filestorage.bucket.BucketStorageListing;
+import com.experimentation.filestorage.bucket.BucketStorageMetadata;
+import com.experimentation.filestorage.bucket.BucketStorageReadOptions;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.experimentation.filestorage.bucket.util.BucketStorageServiceException;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Opens files from the provider as hedged reads. Only reads that reach the provider are timed, so the delay before a
+ * hedge follows the provider's own latency. Every other call is passed straight through.
+ */
+class HedgingBucketStorage implements BucketStorage {
+
+    private final BucketStorageType bucketStorageType;
+    private final BucketStorage bucketStorage;
+    private final BucketStorageRetrier bucketStorageRetrier;
+
+    HedgingBucketStorage(BucketStorageType bucketStorageType, BucketStorage bucketStorage,
+                         BucketStorageRetrier bucketStorageRetrier) {
+        this.bucketStorageType = bucketStorageType;
+        this.bucketStorage = bucketStorage;
+        this.bucketStorageRetrier = bucketStorageRetrier;
+    }
+
+    @Override
+    public BucketStorageDTO getFile(String bucketName, String fileName, BucketStorageReadOptions readOptions)
+            throws BucketStorageServiceException {
+        return bucketStorageRetrier.callHedged(bucketStorageType,
+                () -> bucketStorage.getFile(bucketName, fileName, readOptions));
+    }
+
+    @Override
+    public BucketStorageMetadata getFileMetadata(String bucketName, String fileName)
+            throws BucketStorageServiceException {
+        return bucketStorage.getFileMetadata(bucketName, fileName);
+    }
+
+    @Override
+    public Iterator<String> listFileNames(String bucketName, String prefix) throws BucketStorageServiceException {
+        return bucketStorage.listFileNames(bucketName, prefix);
+    }
+
+    @Override
+    public BucketStorageListing listFiles(String bucketName, BucketStorageListOptions listOptions)
+            throws BucketStorageServiceException {
+        return bucketStorage.listFiles(bucketName, listOptions);
+    }
+
+    @Override
+    public void uploadMultipartFile(String bucketName, String fileName, MultipartFile file)
+            throws BucketStorageServiceException {
+        bucketStorage.uploadMultipartFile(bucketName, fileName, file);
+    }
+
+    @Override
+    public void deleteFile(String bucketName, String fileName) throws BucketStorageServiceException {
+        bucketStorage.deleteFile(bucketName, fileName);
+    }
+
+    @Override
+    public List<BucketStorageDeleteResult> deleteFiles(String bucketName, List<String> fileNames)
+            throws BucketStorageServiceException {
+        return bucketStorage.deleteFiles(bucketName, fileNames);
+    }
+
+    @Override
+    public List<BucketStorageDeleteResult> deleteFilesWithPrefix(String bucketName, String prefix)
+            throws BucketStorageServiceException {
+        return bucketStorage.deleteFilesWithPrefix(bucketName, prefix);
+    }
+}
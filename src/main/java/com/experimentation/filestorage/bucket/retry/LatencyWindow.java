@@ -0,0 +1,50 @@
+package com.experimentation.filestorage.bucket.retry;
+
+import java.util.Arrays;
+
+/**
+ * The most recent latencies of a provider, from which a percentile is kept. The percentile is worked out again
+ * after every tenth of the window has been replaced, so recording a latency stays cheap.
+ */
+class LatencyWindow {
+
+    private final long[] samples;
+    private final double percentile;
+    private final int recomputeInterval;
+
+    private int count;
+    private int next;
+    private int sinceRecompute;
+    private volatile long percentileNanos = -1;
+
+    /**
+     * @param size number of latencies kept
+     * @param percentile between 0 and 100
+     */
+    LatencyWindow(int size, double percentile) {
+        this.samples = new long[Math.max(1, size)];
+        this.percentile = percentile;
+        this.recomputeInterval = Math.max(1, samples.length / 10);
+    }
+
+    synchronized void record(long latencyNanos) {
+        samples[next] = latencyNanos;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+
+        if (++sinceRecompute >= recomputeInterval) {
+            sinceRecompute = 0;
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100 * count) - 1;
+            percentileNanos = sorted[Math.max(0, Math.min(count - 1, index))];
+        }
+    }
+
+    /**
+     * @return percentile of the recent latencies, or -1 until a tenth of the window has been recorded
+     */
+    long getPercentileNanos() {
+        return percentileNanos;
+    }
+}
@@ -0,0 +1,57 @@
+package com.experimentation.filestorage.bucket.retry;
+
+/**
+ * Limits retries and hedged requests to a share of the requests that succeed. Every transient failure and every extra
+ * request takes a token and every success puts back a fraction of one; extra requests are only sent while more than
+ * half of the tokens are left. When a provider is failing most requests, the tokens run out and requests are no
+ * longer multiplied, which would only add to its load.
+ */
+class RetryBudget {
+
+    private final double maxTokens;
+    private final double tokenRatio;
+    private double tokens;
+
+    /**
+     * @param maxTokens
+     * @param tokenRatio tokens put back per success
+     */
+    RetryBudget(double maxTokens, double tokenRatio) {
+        this.maxTokens = maxTokens;
+        this.tokenRatio = tokenRatio;
+        this.tokens = maxTokens;
+    }
+
+    synchronized void onSuccess() {
+        tokens = Math.min(maxTokens, tokens + tokenRatio);
+    }
+
+    synchronized void onTransientFailure() {
+        tokens = Math.max(0, tokens - 1);
+    }
+
+    /**
+     * Takes a token for an extra request if more than half of the tokens are left. Checking and taking happen
+     * together, so concurrent requests cannot all pass the check on the same token.
+     *
+     * @return true if the extra request may be sent
+     */
+    synchronized boolean tryAcquireExtraRequest() {
+        if (tokens <= maxTokens / 2) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    /**
+     * Puts back the token of an extra request that was not sent after all.
+     */
+    synchronized void releaseExtraRequest() {
+        tokens = Math.min(maxTokens, tokens + 1);
+    }
+
+    synchronized double getTokens() {
+        return tokens;
+    }
+}
@@ -0,0 +1,86 @@
+package com.experimentation.filestorage.bucket.retry;
+
+import com.experimentation.filestorage.bucket.BucketStorageType;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Retry budget, read latencies and counters of one storage provider.
+ */
+class RetryState {
+
+    private final BucketStorageType bucketStorageType;
+    private final RetryBudget retryBudget;
+    private final LatencyWindow latencyWindow;
+
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgesWon = new AtomicLong();
+    private final AtomicLong budgetExhausted = new AtomicLong();
+
+    RetryState(BucketStorageType bucketStorageType, RetryBudget retryBudget, LatencyWindow latencyWindow) {
+        this.bucketStorageType = bucketStorageType;
+        this.retryBudget = retryBudget;
+        this.latencyWindow = latencyWindow;
+    }
+
+    void onSuccess() {
+        retryBudget.onSuccess();
+    }
+
+    void onTransientFailure() {
+        retryBudget.onTransientFailure();
+    }
+
+    /**
+     * @return true if the budget allows a retry, which then takes a token and is counted
+     */
+    boolean tryRetry() {
+        if (!retryBudget.tryAcquireExtraRequest()) {
+            budgetExhausted.incrementAndGet();
+            return false;
+        }
+        retries.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * @return true if the budget allows a hedged request, which then takes a token and is counted
+     */
+    boolean tryHedge() {
+        if (!retryBudget.tryAcquireExtraRequest()) {
+            budgetExhausted.incrementAndGet();
+            return false;
+        }
+        hedges.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Gives back the token of a hedged request that could not be sent, and no longer counts it.
+     */
+    void onHedgeRejected() {
+        retryBudget.releaseExtraRequest();
+        hedges.decrementAndGet();
+    }
+
+    void onHedgeWon() {
+        hedgesWon.incrementAndGet();
+    }
+
+    void recordLatency(long latencyNanos) {
+        latencyWindow.record(latencyNanos);
+    }
+
+    long getHedgeDelayNanos() {
+        return latencyWindow.getPercentileNanos();
+    }
+
+    BucketStorageRetryStatistics getStatistics() {
+        long hedgeDelayNanos = latencyWindow.getPercentileNanos();
+        return new BucketStorageRetryStatistics(bucketStorageType.toString(), retries.get(), hedges.get(),
+                hedgesWon.get(), budgetExhausted.get(), retryBudget.getTokens(),
+                hedgeDelayNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(hedgeDelayNanos));
+    }
+}
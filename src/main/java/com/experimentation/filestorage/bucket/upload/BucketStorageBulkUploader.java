@@ -0,0 +1,95 @@
+package com.experimentation.filestorage.bucket.upload;
+
+import com.experimentation.filestorage.bucket.BucketStorageService;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.experimentation.filestorage.bucket.BucketStorageUploadResult;
+import com.experimentation.filestorage.bucket.batch.BucketStorageBatchExecutor;
+import com.experimentation.filestorage.bucket.util.BucketStorageExceptionUtil;
+import com.experimentation.filestorage.bucket.util.BucketStorageServiceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Uploads the files of a single request at the same time. Each file is its own group, so a slow file only holds one
+ * of the slots in flight while the remaining files keep going through the others. Uploads hold their threads for as
+ * long as their clients take to send them, so they run on a batch pool of their own rather than the one batch
+ * deletes share.
+ */
+@Component
+public class BucketStorageBulkUploader {
+
+    private static final Logger logger = LoggerFactory.getLogger(BucketStorageBulkUploader.class);
+
+    private final BucketStorageService bucketStorageService;
+    private final BucketStorageBatchExecutor bucketStorageBatchExecutor;
+    private final int maxFilesInFlight;
+
+    @Autowired
+    public BucketStorageBulkUploader(BucketStorageService bucketStorageService,
+                                     @Value("${filestorage.upload.bulk.pool-size:16}") int poolSize,
+                                     @Value("${filestorage.upload.bulk.max-files-in-flight:8}") int maxFilesInFlight) {
+        this.bucketStorageService = bucketStorageService;
+        this.bucketStorageBatchExecutor = new BucketStorageBatchExecutor(poolSize, maxFilesInFlight);
+        this.maxFilesInFlight = maxFilesInFlight;
+    }
+
+    /**
+     * Uploads every file under its original file name.
+     *
+     * @param bucketName
+     * @param multipartFiles
+     * @param bucketStorageType
+     * @return result for each file, in the given order
+     * @throws BucketStorageServiceException if the thread was interrupted while waiting for the uploads
+     */
+    public List<BucketStorageUploadResult> upload(String bucketName, List<MultipartFile> multipartFiles,
+                                                  BucketStorageType bucketStorageType)
+            throws BucketStorageServiceException {
+
+        try {
+            return bucketStorageBatchExecutor.invokeAll(multipartFiles.stream()
+                    .map(multipartFile -> (Callable<List<BucketStorageUploadResult>>) () ->
+                            Collections.singletonList(upload(bucketName, multipartFile, bucketStorageType)))
+                    .iterator(), maxFilesInFlight);
+        }
+
+        // While waiting for the uploads, the thread is interrupted
+        catch (InterruptedException e) {
+            logger.error(e.getMessage());
+            Thread.currentThread().interrupt();
+            throw new BucketStorageServiceException(
+                    BucketStorageExceptionUtil.setMessageBulkUploadThreadInterrupted(bucketName)
+            );
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        bucketStorageBatchExecutor.shutdown();
+    }
+
+    private BucketStorageUploadResult upload(String bucketName, MultipartFile multipartFile,
+                                             BucketStorageType bucketStorageType) {
+        String fileName = multipartFile.getOriginalFilename();
+
+        try {
+            bucketStorageService.doUploadMultipartFile(bucketName, fileName, multipartFile, bucketStorageType);
+            return BucketStorageUploadResult.uploaded(fileName, multipartFile.getSize());
+        }
+
+        // Unable to upload file, the failure is reported in its result
+        catch (RuntimeException e) {
+            logger.error(e.getMessage());
+            return BucketStorageUploadResult.failed(fileName, multipartFile.getSize(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.experimentation.filestorage.bucket.upload;
+
+import org.springframework.util.FileCopyUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * A multipart file whose content has been moved to a file owned by the application, so that it outlives the
+ * request it was received in. Reads are counted into the upload job as bytes transferred.
+ */
+class BucketStorageUploadFile implements MultipartFile {
+
+    private final String name;
+    private final String originalFilename;
+    private final String contentType;
+    private final File file;
+    private final BucketStorageUploadJob job;
+
+    BucketStorageUploadFile(MultipartFile multipartFile, File file, BucketStorageUploadJob job) {
+        this.name = multipartFile.getName();
+        this.originalFilename = multipartFile.getOriginalFilename();
+        this.contentType = multipartFile.getContentType();
+        this.file = file;
+        this.job = job;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return originalFilename;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return file.length() == 0;
+    }
+
+    @Override
+    public long getSize() {
+        return file.length();
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        return FileCopyUtils.copyToByteArray(getInputStream());
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return new FilterInputStream(new FileInputStream(file)) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b != -1) {
+                    job.addBytesTransferred(1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int bytesRead = super.read(buffer, offset, length);
+                if (bytesRead > 0) {
+                    job.addBytesTransferred(bytesRead);
+                }
+                return bytesRead;
+            }
+        };
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException {
+        Files.copy(file.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(file.toPath());
+    }
+}
@@ -0,0 +1,109 @@
+package com.experimentation.filestorage.bucket.upload;
+
+import com.experimentation.filestorage.bucket.BucketStorageType;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * State of an upload that is transferred to the storage provider in the background.
+ * Fields are updated by the upload thread and read by status requests, so they are safe to read at any time.
+ */
+public class BucketStorageUploadJob {
+
+    private final String uploadId;
+    private final BucketStorageType storageProvider;
+    private final String bucketName;
+    private final String fileName;
+    private final long totalBytes;
+    private final Instant submittedAt;
+    private final AtomicLong bytesTransferred = new AtomicLong();
+
+    private volatile BucketStorageUploadStatus status = BucketStorageUploadStatus.QUEUED;
+    private volatile String error;
+    private volatile Instant completedAt;
+
+    public BucketStorageUploadJob(String uploadId, BucketStorageType storageProvider, String bucketName,
+                                  String fileName, long totalBytes) {
+        this.uploadId = uploadId;
+        this.storageProvider = storageProvider;
+        this.bucketName = bucketName;
+        this.fileName = fileName;
+        this.totalBytes = totalBytes;
+        this.submittedAt = Instant.now();
+    }
+
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public BucketStorageType getStorageProvider() {
+        return storageProvider;
+    }
+
+    public String getBucketName() {
+        return bucketName;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public long getBytesTransferred() {
+        return bytesTransferred.get();
+    }
+
+    /**
+     * Share of the file handed to the storage provider so far, from 0 to 100.
+     * @return progress
+     */
+    public double getProgress() {
+        if (status == BucketStorageUploadStatus.COMPLETED) {
+            return 100;
+        }
+        return totalBytes > 0 ? Math.min(100, 100.0 * bytesTransferred.get() / totalBytes) : 0;
+    }
+
+    public BucketStorageUploadStatus getStatus() {
+        return status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public Instant getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public Instant getCompletedAt() {
+        return completedAt;
+    }
+
+    public boolean isFinished() {
+        return status == BucketStorageUploadStatus.COMPLETED || status == BucketStorageUploadStatus.FAILED;
+    }
+
+    void addBytesTransferred(long bytes) {
+        bytesTransferred.addAndGet(bytes);
+    }
+
+    void markInProgress() {
+        status = BucketStorageUploadStatus.IN_PROGRESS;
+    }
+
+    void markCompleted() {
+        completedAt = Instant.now();
+        status = BucketStorageUploadStatus.COMPLETED;
+    }
+
+    void markFailed(String error) {
+        this.error = error;
+        completedAt = Instant.now();
+        status = BucketStorageUploadStatus.FAILED;
+    }
+}
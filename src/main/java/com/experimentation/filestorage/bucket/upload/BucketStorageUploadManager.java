@@ -0,0 +1,216 @@
+package com.experimentation.filestorage.bucket.upload;
+
+import com.experimentation.filestorage.bucket.BucketStorageService;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.experimentation.filestorage.bucket.util.BucketStorageExceptionUtil;
+import com.experimentation.filestorage.bucket.util.BucketStorageServiceException;
+import com.experimentation.filestorage.bucket.util.BucketStorageUploadRejectedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs uploads in the background so that the request which carried the file does not wait on the storage provider.
+ * The received file is moved out of the container's multipart storage into the spool directory, then uploaded by a
+ * bounded pool. Finished jobs are kept for the retention period so that their result can still be polled, and are
+ * swept once it has passed. Uploads still queued when the service stops are dropped along with their spooled files.
+ */
+@Component
+public class BucketStorageUploadManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(BucketStorageUploadManager.class);
+
+    // Longest time between two sweeps of expired jobs; a shorter retention is swept as often as it expires
+    private static final long MAX_SWEEP_INTERVAL_SECONDS = 60;
+
+    private final BucketStorageService bucketStorageService;
+    private final Path spoolDirectory;
+    private final Duration jobRetention;
+    private final ThreadPoolExecutor executorService;
+    private final ScheduledExecutorService sweepExecutorService;
+    private final Map<String, BucketStorageUploadJob> jobs = new ConcurrentHashMap<>();
+
+    @Autowired
+    public BucketStorageUploadManager(BucketStorageService bucketStorageService,
+                                      @Value("${filestorage.upload.spool-directory:${java.io.tmpdir}}")
+                                              String spoolDirectory,
+                                      @Value("${filestorage.upload.pool-size:8}") int poolSize,
+                                      @Value("${filestorage.upload.queue-capacity:256}") int queueCapacity,
+                                      @Value("${filestorage.upload.job-retention:3600}") long jobRetentionSeconds) {
+        this.bucketStorageService = bucketStorageService;
+        this.spoolDirectory = Paths.get(spoolDirectory);
+        this.jobRetention = Duration.ofSeconds(jobRetentionSeconds);
+        this.executorService = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("bucket-storage-upload-"));
+
+        long sweepInterval = Math.max(1, Math.min(jobRetentionSeconds, MAX_SWEEP_INTERVAL_SECONDS));
+        this.sweepExecutorService = Executors.newSingleThreadScheduledExecutor(
+                new CustomizableThreadFactory("bucket-storage-upload-sweep-"));
+        this.sweepExecutorService.scheduleWithFixedDelay(
+                this::removeExpiredJobs, sweepInterval, sweepInterval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Takes ownership of the multipart file's content and queues it for upload.
+     *
+     * @param bucketName
+     * @param fileName
+     * @param multipartFile
+     * @param bucketStorageType
+     * @return job that tracks the upload
+     * @throws BucketStorageServiceException if the file could not be spooled or the upload queue is full
+     */
+    public BucketStorageUploadJob submit(String bucketName, String fileName, MultipartFile multipartFile,
+                                         BucketStorageType bucketStorageType) throws BucketStorageServiceException {
+        BucketStorageUploadJob job = new BucketStorageUploadJob(
+                UUID.randomUUID().toString(), bucketStorageType, bucketName, fileName, multipartFile.getSize());
+        BucketStorageUploadFile uploadFile = spool(multipartFile, job);
+
+        jobs.put(job.getUploadId(), job);
+
+        try {
+            executorService.execute(new UploadTask(job, uploadFile));
+        }
+
+        // Every upload thread is busy and the queue is full
+        catch (RejectedExecutionException e) {
+            jobs.remove(job.getUploadId());
+            deleteQuietly(uploadFile);
+            throw new BucketStorageUploadRejectedException(
+                    BucketStorageExceptionUtil.setMessageUploadQueueFull(fileName)
+            );
+        }
+
+        return job;
+    }
+
+    /**
+     * Returns the job for the upload ID, or null if there is no such upload or it expired.
+     *
+     * @param uploadId
+     * @return job
+     */
+    public BucketStorageUploadJob getJob(String uploadId) {
+        return jobs.get(uploadId);
+    }
+
+    private BucketStorageUploadFile spool(MultipartFile multipartFile, BucketStorageUploadJob job) {
+        File file = null;
+
+        // The container usually moves its own temp file here instead of copying the content
+        try {
+            file = Files.createTempFile(spoolDirectory, "upload-", ".tmp").toFile();
+            multipartFile.transferTo(file);
+            return new BucketStorageUploadFile(multipartFile, file, job);
+        }
+
+        // Unable to move the received file into the spool directory
+        catch (IOException e) {
+            logger.error(e.getMessage());
+            if (file != null) {
+                file.delete();
+            }
+            throw new BucketStorageServiceException(
+                    BucketStorageExceptionUtil.setMessageUnableToReadFileForUpload(job.getFileName())
+            );
+        }
+    }
+
+    private void runUpload(BucketStorageUploadJob job, BucketStorageUploadFile uploadFile) {
+        job.markInProgress();
+        RuntimeException failure = null;
+
+        try {
+            bucketStorageService.doUploadMultipartFile(
+                    job.getBucketName(), job.getFileName(), uploadFile, job.getStorageProvider());
+        }
+
+        // Unable to upload file, the failure is reported through the job's status
+        catch (RuntimeException e) {
+            logger.error(e.getMessage());
+            failure = e;
+        }
+
+        // The spooled file is removed before the job is reported as finished
+        finally {
+            deleteQuietly(uploadFile);
+        }
+
+        if (failure == null) {
+            job.markCompleted();
+        }
+        else {
+            job.markFailed(failure.getMessage());
+        }
+    }
+
+    private void removeExpiredJobs() {
+        Instant expiredBefore = Instant.now().minus(jobRetention);
+        jobs.values().removeIf(job -> job.isFinished() && job.getCompletedAt().isBefore(expiredBefore));
+    }
+
+    private void deleteQuietly(BucketStorageUploadFile uploadFile) {
+        try {
+            uploadFile.delete();
+        }
+        catch (IOException e) {
+            logger.error(e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the pools. Running uploads are interrupted and remove their own spooled files; the files of uploads that
+     * never started are removed here.
+     */
+    @PreDestroy
+    public void shutdown() {
+        sweepExecutorService.shutdownNow();
+
+        for (Runnable queuedTask : executorService.shutdownNow()) {
+            if (queuedTask instanceof UploadTask) {
+                deleteQuietly(((UploadTask) queuedTask).uploadFile);
+            }
+        }
+    }
+
+    /**
+     * An upload waiting for or running on the pool, which keeps its spooled file reachable if it is never run.
+     */
+    private class UploadTask implements Runnable {
+
+        private final BucketStorageUploadJob job;
+        private final BucketStorageUploadFile uploadFile;
+
+        UploadTask(BucketStorageUploadJob job, BucketStorageUploadFile uploadFile) {
+            this.job = job;
+            this.uploadFile = uploadFile;
+        }
+
+        @Override
+        public void run() {
+            runUpload(job, uploadFile);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.experimentation.filestorage.bucket.upload;
+
+public enum BucketStorageUploadStatus {
+
+    QUEUED,
+    IN_PROGRESS,
+    COMPLETED,
+    FAILED
+}
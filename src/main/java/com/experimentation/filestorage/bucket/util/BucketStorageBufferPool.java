@@ -0,0 +1,54 @@
+package com.experimentation.filestorage.bucket.util;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A fixed number of equally sized, reusable byte buffers. Callers block in {@link #acquire()} when every buffer is
+ * in use, which bounds the memory held by transfers using the pool. Buffers are allocated lazily on first use.
+ */
+public class BucketStorageBufferPool {
+
+    private final int bufferSize;
+    private final Semaphore availableBuffers;
+    private final ConcurrentLinkedQueue<byte[]> freeBuffers = new ConcurrentLinkedQueue<>();
+
+    public BucketStorageBufferPool(int bufferSize, int bufferCount) {
+        this.bufferSize = bufferSize;
+        this.availableBuffers = new Semaphore(bufferCount, true);
+    }
+
+    /**
+     * Takes a buffer from the pool, waiting until one is released if all are in use.
+     *
+     * @return buffer of {@link #getBufferSize()} bytes
+     * @throws InterruptedException
+     */
+    public byte[] acquire() throws InterruptedException {
+        availableBuffers.acquire();
+        byte[] buffer = freeBuffers.poll();
+        return buffer != null ? buffer : new byte[bufferSize];
+    }
+
+    /**
+     * Returns a buffer taken with {@link #acquire()} to the pool.
+     *
+     * @param buffer
+     */
+    public void release(byte[] buffer) {
+        freeBuffers.offer(buffer);
+        availableBuffers.release();
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Number of buffers that can be acquired without waiting.
+     * @return availableBufferCount
+     */
+    public int getAvailableBufferCount() {
+        return availableBuffers.availablePermits();
+    }
+}
@@ -6,6 +6,14 @@ public class BucketStorageExceptionUtil {
         return "Unable to get file " + fileName + " at location " + bucketName;
     }
 
+    public static String setMessageUnableToGetFileMetadata(String bucketName, String fileName) {
+        return "Unable to get metadata of file " + fileName + " at location " + bucketName;
+    }
+
+    public static String setMessageFileNotFound(String bucketName, String fileName) {
+        return "File " + fileName + " does not exist at location " + bucketName;
+    }
+
     public static String setMessageUnableToUploadMultipartFile(String bucketName, String fileName) {
         return "Unable to upload file " + fileName + " to location " + bucketName;
     }
@@ -14,6 +22,18 @@ public class BucketStorageExceptionUtil {
         return "Unable to delete file " + fileName + " at location " + bucketName;
     }
 
+    public static String setMessageUnableToListFiles(String bucketName, String prefix) {
+        return "Unable to list files with prefix " + prefix + " at location " + bucketName;
+    }
+
+    public static String setMessageBatchThreadInterrupted(String bucketName) {
+        return "Thread was interrupted while trying to delete files at location " + bucketName;
+    }
+
+    public static String setMessageBulkUploadThreadInterrupted(String bucketName) {
+        return "Thread was interrupted while trying to upload files to location " + bucketName;
+    }
+
     public static String setMessageUnableToReadFileForUpload(String fileName) {
         return "Unable to read file " + fileName + " for upload";
     }
@@ -26,7 +46,63 @@ public class BucketStorageExceptionUtil {
         return "Thread was interrupted while trying to upload file " + fileName;
     }
 
-    public static String setMessageUnableToCreateTempFileOrReadContent(String fileName) {
-        return "Unable to create a temp file or read content from file " + fileName;
+    public static String setMessageRangeNotSatisfiable(String range, long instanceLength) {
+        return "Range " + range + " cannot be satisfied for a file of length " + instanceLength;
+    }
+
+    public static String setMessageRangeNotSatisfiable(String bucketName, String fileName) {
+        return "Requested range cannot be satisfied for file " + fileName + " at location " + bucketName;
+    }
+
+    public static String setMessageFileChangedDuringRead(String bucketName, String fileName) {
+        return "File " + fileName + " at location " + bucketName + " changed while it was being read";
+    }
+
+    public static String setMessageUploadQueueFull(String fileName) {
+        return "Too many uploads are queued to accept file " + fileName + ", try again later";
+    }
+
+    public static String setMessageReactivePoolBusy() {
+        return "Too many requests are waiting for a storage thread, try again later";
+    }
+
+    public static String setMessageIndexNotEnabled() {
+        return "The metadata index is not enabled";
+    }
+
+    public static String setMessageIndexNotReady(String bucketName) {
+        return "The metadata index of location " + bucketName + " is still being built, try again later";
+    }
+
+    public static String setMessageLocationNotIndexed(String bucketName) {
+        return "Location " + bucketName + " is not indexed";
+    }
+
+    public static String setMessageUnableToOpenIndex(String bucketName) {
+        return "Unable to open the metadata index of location " + bucketName;
+    }
+
+    public static String setMessageProviderOverloaded(String bulkheadName) {
+        return "Too many requests to " + bulkheadName + " are in progress, try again later";
+    }
+
+    public static String setMessageBulkheadThreadInterrupted(String bulkheadName) {
+        return "Thread was interrupted while waiting to send a request to " + bulkheadName;
+    }
+
+    public static String setMessageRetryThreadInterrupted(String storageProvider) {
+        return "Thread was interrupted while waiting for a retried request to " + storageProvider;
+    }
+
+    public static String setMessageCircuitOpen(String circuitBreakerName) {
+        return "Requests to " + circuitBreakerName + " are failing and are not being sent for now, try again later";
+    }
+
+    public static String setMessageCoalescedReadThreadInterrupted(String fileName) {
+        return "Thread was interrupted while waiting for another request to open file " + fileName;
+    }
+
+    public static String setMessageInvalidFileName(String bucketName, String fileName) {
+        return "Invalid file name " + fileName + " at location " + bucketName;
     }
 }
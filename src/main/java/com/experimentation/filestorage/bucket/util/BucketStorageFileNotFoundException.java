@@ -0,0 +1,8 @@
+package com.experimentation.filestorage.bucket.util;
+
+public class BucketStorageFileNotFoundException extends BucketStorageServiceException {
+
+    public BucketStorageFileNotFoundException(String message) {
+        super(message);
+    }
+}
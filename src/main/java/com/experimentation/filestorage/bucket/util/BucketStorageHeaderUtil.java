@@ -0,0 +1,29 @@
+package com.experimentation.filestorage.bucket.util;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+public class BucketStorageHeaderUtil {
+
+    /**
+     * Creates the content disposition of a downloaded file. The file name is URL encoded, so the header is the same
+     * whichever provider or cache the file came from, and a name with quotes or non-ASCII characters stays valid.
+     *
+     * @param fileName
+     * @return contentDisposition
+     */
+    public static String attachmentContentDisposition(String fileName) {
+        try {
+            // Note: encoder converts a space to a plus, so we replace the pluses with %20 for content disposition
+            String encodedFileName =
+                    URLEncoder.encode(fileName, StandardCharsets.UTF_8.name()).replaceAll("\\+", "%20");
+            return "attachment; filename=\"" + encodedFileName + "\"";
+        }
+
+        // UTF-8 is always supported
+        catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
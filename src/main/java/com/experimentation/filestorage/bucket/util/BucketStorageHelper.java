@@ -3,10 +3,25 @@ package com.experimentation.filestorage.bucket.util;
 import com.experimentation.filestorage.bucket.BucketStorageDTO;
 import org.springframework.stereotype.Component;
 
+import java.io.InputStream;
+
 @Component
 public class BucketStorageHelper {
 
-    public BucketStorageDTO createBucketStorageDTO(String bucketName, String contentType, byte[] content) {
-        return new BucketStorageDTO(bucketName, contentType, content);
+    public BucketStorageDTO createBucketStorageDTO(String fileName, String contentType, long contentLength,
+                                                   InputStream inputStream) {
+        return new BucketStorageDTO(fileName, contentType, contentLength, inputStream);
+    }
+
+    /**
+     * Creates a DTO without content, for a read whose preconditions showed the client's copy is current.
+     *
+     * @param fileName
+     * @param eTag
+     * @param lastModified
+     * @return bucketStorageDTO
+     */
+    public BucketStorageDTO createNotModifiedBucketStorageDTO(String fileName, String eTag, long lastModified) {
+        return BucketStorageDTO.notModified(fileName, eTag, lastModified);
     }
 }
@@ -0,0 +1,8 @@
+package com.experimentation.filestorage.bucket.util;
+
+public class BucketStorageIndexNotFoundException extends BucketStorageServiceException {
+
+    public BucketStorageIndexNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.experimentation.filestorage.bucket.util;
+
+public class BucketStorageIndexUnavailableException extends BucketStorageServiceException {
+
+    public BucketStorageIndexUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,63 @@
+package com.experimentation.filestorage.bucket.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+
+/**
+ * Iterates over a provider's listing, which fetches its next page while it is iterated. A page that could not be
+ * fetched is reported as a BucketStorageServiceException instead of the provider's own exception.
+ */
+public class BucketStorageListingIterator<T> implements Iterator<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(BucketStorageListingIterator.class);
+
+    private final Iterator<T> iterator;
+    private final Class<? extends RuntimeException> providerExceptionType;
+    private final String bucketName;
+    private final String prefix;
+
+    public BucketStorageListingIterator(Iterator<T> iterator, Class<? extends RuntimeException> providerExceptionType,
+                                        String bucketName, String prefix) {
+        this.iterator = iterator;
+        this.providerExceptionType = providerExceptionType;
+        this.bucketName = bucketName;
+        this.prefix = prefix;
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            return iterator.hasNext();
+        }
+
+        // Unable to fetch the next page of the listing
+        catch (RuntimeException e) {
+            throw translate(e);
+        }
+    }
+
+    @Override
+    public T next() {
+        try {
+            return iterator.next();
+        }
+
+        // Unable to fetch the next page of the listing
+        catch (RuntimeException e) {
+            throw translate(e);
+        }
+    }
+
+    private RuntimeException translate(RuntimeException e) {
+        if (!providerExceptionType.isInstance(e)) {
+            return e;
+        }
+
+        logger.error(e.getMessage());
+        return new BucketStorageServiceException(
+                BucketStorageExceptionUtil.setMessageUnableToListFiles(bucketName, prefix)
+        );
+    }
+}
@@ -8,6 +8,10 @@ public class BucketStorageLoggerUtil {
         logger.info("Getting file " + fileName + " at location " + bucketName);
     }
 
+    public static void infoStartGettingFileMetadata(Logger logger, String bucketName, String fileName) {
+        logger.info("Getting metadata of file " + fileName + " at location " + bucketName);
+    }
+
     public static void infoStartUploadingFile(Logger logger, String bucketName, String fileName) {
         logger.info("Uploading file " + fileName + " to location " + bucketName);
     }
@@ -16,10 +20,26 @@ public class BucketStorageLoggerUtil {
         logger.info("Deleting file " + fileName + " at location " + bucketName);
     }
 
+    public static void infoStartDeletingFiles(Logger logger, String bucketName, int fileCount) {
+        logger.info("Deleting " + fileCount + " files at location " + bucketName);
+    }
+
+    public static void infoStartDeletingFilesWithPrefix(Logger logger, String bucketName, String prefix) {
+        logger.info("Deleting files with prefix " + prefix + " at location " + bucketName);
+    }
+
+    public static void infoStartListingFiles(Logger logger, String bucketName, String prefix) {
+        logger.info("Listing files with prefix " + prefix + " at location " + bucketName);
+    }
+
     public static void infoFinishGettingFile(Logger logger, String bucketName, String fileName) {
         logger.info("Got file " + fileName + " at location " + bucketName);
     }
 
+    public static void infoFinishGettingFileMetadata(Logger logger, String bucketName, String fileName) {
+        logger.info("Got metadata of file " + fileName + " at location " + bucketName);
+    }
+
     public static void infoFinishUploadingFile(Logger logger, String bucketName, String fileName) {
         logger.info("Uploaded file " + fileName + " to location " + bucketName);
     }
@@ -27,4 +47,12 @@ public class BucketStorageLoggerUtil {
     public static void infoFinishDeletingFile(Logger logger, String bucketName, String fileName) {
         logger.info("Deleted file " + fileName + " at location " + bucketName);
     }
+
+    public static void infoFinishDeletingFiles(Logger logger, String bucketName, int fileCount) {
+        logger.info("Deleted " + fileCount + " files at location " + bucketName);
+    }
+
+    public static void infoFinishListingFiles(Logger logger, String bucketName, int entryCount) {
+        logger.info("Listed " + entryCount + " entries at location " + bucketName);
+    }
 }
@@ -0,0 +1,19 @@
+package com.experimentation.filestorage.bucket.util;
+
+public class BucketStorageRangeNotSatisfiableException extends BucketStorageServiceException {
+
+    private final long instanceLength;
+
+    public BucketStorageRangeNotSatisfiableException(String message, long instanceLength) {
+        super(message);
+        this.instanceLength = instanceLength;
+    }
+
+    /**
+     * Full length of the file the range was requested from, or -1 if it is not known.
+     * @return instanceLength
+     */
+    public long getInstanceLength() {
+        return instanceLength;
+    }
+}
@@ -0,0 +1,68 @@
+package com.experimentation.filestorage.bucket.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+public class BucketStorageStreamUtil {
+
+    /**
+     * Copies the input stream to the output stream through a single buffer of the given size, so memory use
+     * stays constant regardless of how much content is copied.
+     *
+     * @param inputStream
+     * @param outputStream
+     * @param bufferSize
+     * @return number of bytes copied
+     * @throws IOException
+     */
+    public static long copy(InputStream inputStream, OutputStream outputStream, int bufferSize) throws IOException {
+        byte[] buffer = new byte[bufferSize];
+        long bytesCopied = 0;
+        int bytesRead;
+
+        while ((bytesRead = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, bytesRead);
+            bytesCopied += bytesRead;
+        }
+
+        outputStream.flush();
+        return bytesCopied;
+    }
+
+    /**
+     * Reads from the input stream until the buffer is full or the stream ends.
+     *
+     * @param inputStream
+     * @param buffer
+     * @return number of bytes read, less than the buffer length only if the stream ended
+     * @throws IOException
+     */
+    public static int readFully(InputStream inputStream, byte[] buffer) throws IOException {
+        return readFully(inputStream, buffer, 0, buffer.length);
+    }
+
+    /**
+     * Reads from the input stream into part of the buffer until the given length is read or the stream ends.
+     *
+     * @param inputStream
+     * @param buffer
+     * @param offset
+     * @param length
+     * @return number of bytes read, less than the length only if the stream ended
+     * @throws IOException
+     */
+    public static int readFully(InputStream inputStream, byte[] buffer, int offset, int length) throws IOException {
+        int totalBytesRead = 0;
+
+        while (totalBytesRead < length) {
+            int bytesRead = inputStream.read(buffer, offset + totalBytesRead, length - totalBytesRead);
+            if (bytesRead == -1) {
+                break;
+            }
+            totalBytesRead += bytesRead;
+        }
+
+        return totalBytesRead;
+    }
+}
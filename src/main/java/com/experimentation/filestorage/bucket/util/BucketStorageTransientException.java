@@ -0,0 +1,12 @@
+package com.experimentation.filestorage.bucket.util;
+
+/**
+ * The provider failed in a way that is likely to pass, such as a timeout, a throttled request or a server error,
+ * so the same request may succeed when it is sent again.
+ */
+public class BucketStorageTransientException extends BucketStorageServiceException {
+
+    public BucketStorageTransientException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,22 @@
+package com.experimentation.filestorage.bucket.util;
+
+public class BucketStorageUnavailableException extends BucketStorageServiceException {
+
+    private final long retryAfterSeconds;
+
+    public BucketStorageUnavailableException(String message) {
+        this(message, -1);
+    }
+
+    public BucketStorageUnavailableException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * @return seconds after which the request is expected to be accepted, or -1 if that is not known
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
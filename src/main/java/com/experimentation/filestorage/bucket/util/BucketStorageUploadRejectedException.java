@@ -0,0 +1,8 @@
+package com.experimentation.filestorage.bucket.util;
+
+public class BucketStorageUploadRejectedException extends BucketStorageServiceException {
+
+    public BucketStorageUploadRejectedException(String message) {
+        super(message);
+    }
+}
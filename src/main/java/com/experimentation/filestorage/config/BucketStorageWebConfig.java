@@ -0,0 +1,48 @@
+package com.experimentation.filestorage.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class BucketStorageWebConfig implements WebMvcConfigurer {
+
+    @Value("${filestorage.streaming.core-pool-size:16}")
+    private int corePoolSize;
+
+    @Value("${filestorage.streaming.max-pool-size:256}")
+    private int maxPoolSize;
+
+    @Value("${filestorage.streaming.timeout:-1}")
+    private long timeout;
+
+    /**
+     * Executor that writes streamed responses (downloads) out to clients. Requests beyond the maximum pool size
+     * are rejected rather than queued, so a backlog of slow clients cannot grow without bound.
+     * @return
+     */
+    @Bean(name = "bucketStorageStreamingExecutor")
+    public ThreadPoolTaskExecutor bucketStorageStreamingExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("bucket-storage-streaming-");
+        return executor;
+    }
+
+    /**
+     * Streamed responses can take as long as the transfer does, so by default they are not timed out
+     * @param configurer
+     */
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(bucketStorageStreamingExecutor());
+        configurer.setDefaultTimeout(timeout);
+    }
+}
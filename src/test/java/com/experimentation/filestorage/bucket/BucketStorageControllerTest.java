@@ -1,24 +1,50 @@
 package com.experimentation.filestorage.bucket;
 
+import com.experimentation.filestorage.bucket.archive.BucketStorageZipWriter;
+import com.experimentation.filestorage.bucket.index.BucketStorageMetadataIndex;
+import com.experimentation.filestorage.bucket.index.BucketStorageMetadataIndexQuery;
+import com.experimentation.filestorage.bucket.upload.BucketStorageBulkUploader;
+import com.experimentation.filestorage.bucket.upload.BucketStorageUploadJob;
+import com.experimentation.filestorage.bucket.upload.BucketStorageUploadManager;
+import com.experimentation.filestorage.bucket.upload.BucketStorageUploadStatus;
+import com.experimentation.filestorage.bucket.util.BucketStorageFileNotFoundException;
+import com.experimentation.filestorage.bucket.util.BucketStorageIndexNotFoundException;
+import com.experimentation.filestorage.bucket.util.BucketStorageIndexUnavailableException;
+import com.experimentation.filestorage.bucket.util.BucketStorageRangeNotSatisfiableException;
 import com.experimentation.filestorage.bucket.util.BucketStorageServiceException;
+import com.experimentation.filestorage.bucket.util.BucketStorageUnavailableException;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
+import org.mockito.internal.verification.VerificationModeFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockPart;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @RunWith(SpringRunner.class)
 @WebMvcTest(BucketStorageController.class)
@@ -30,6 +56,18 @@ public class BucketStorageControllerTest {
     @MockBean
     private BucketStorageService bucketStorageService;
 
+    @MockBean
+    private BucketStorageUploadManager bucketStorageUploadManager;
+
+    @MockBean
+    private BucketStorageZipWriter bucketStorageZipWriter;
+
+    @MockBean
+    private BucketStorageBulkUploader bucketStorageBulkUploader;
+
+    @MockBean
+    private BucketStorageMetadataIndex bucketStorageMetadataIndex;
+
     @MockBean
     private MultipartFile multipartFile;
 
@@ -53,7 +91,8 @@ public class BucketStorageControllerTest {
         mediaType = MediaType.TEXT_PLAIN;
         content = "Coffee ipsum".getBytes();
 
-        bucketStorageDTO = new BucketStorageDTO(fileName, MediaType.TEXT_PLAIN_VALUE, content);
+        bucketStorageDTO = new BucketStorageDTO(
+                fileName, MediaType.TEXT_PLAIN_VALUE, content.length, new ByteArrayInputStream(content));
         requestPart = new MockPart("file", fileName, content);
     }
 
@@ -62,7 +101,8 @@ public class BucketStorageControllerTest {
 
         // Arrange
         Mockito.doReturn(bucketStorageDTO)
-                .when(bucketStorageService).doGetFile(bucketName, fileName, BucketStorageType.AWS_S3);
+                .when(bucketStorageService).doGetFile(
+                        eq(bucketName), eq(fileName), any(BucketStorageReadOptions.class), eq(BucketStorageType.AWS_S3));
 
         // Act and Assert
         mockMvc
@@ -76,12 +116,578 @@ public class BucketStorageControllerTest {
                         content().contentType(mediaType));
     }
 
+    @Test
+    public void getFile_shouldStreamFileContent_whenCalledNormally() throws Exception {
+
+        // Arrange
+        Mockito.doReturn(bucketStorageDTO)
+                .when(bucketStorageService).doGetFile(
+                        eq(bucketName), eq(fileName), any(BucketStorageReadOptions.class), eq(BucketStorageType.AWS_S3));
+
+        // Act
+        MvcResult mvcResult = mockMvc
+                .perform(
+                        get(
+                                buildUrlForGetOrDeleteRequest(BucketStorageTypeConstants.AWS_S3, bucketName, fileName)
+                        )
+                ).andExpect(
+                        request().asyncStarted())
+                .andReturn();
+
+        // Assert
+        mockMvc
+                .perform(
+                        asyncDispatch(mvcResult)
+                ).andExpect(
+                        status().isOk()
+                ).andExpect(
+                        header().longValue(HttpHeaders.CONTENT_LENGTH, content.length)
+                ).andExpect(
+                        content().bytes(content));
+    }
+
+    @Test
+    public void getFile_shouldSendOpenedLocalFile_whenFileIsDeletedBeforeTheResponseIsWritten() throws Exception {
+
+        // Arrange
+        Path localFile = Files.createTempFile("controller-", ".data");
+        Files.write(localFile, content);
+        FileChannel fileChannel = FileChannel.open(localFile, StandardOpenOption.READ);
+        Files.delete(localFile);
+        AtomicLong transferredBytes = new AtomicLong();
+        bucketStorageDTO.setLocalFileChannel(fileChannel);
+        bucketStorageDTO.setLocalTransferListener(transferredBytes::addAndGet);
+        Mockito.doReturn(bucketStorageDTO)
+                .when(bucketStorageService).doGetFile(
+                        eq(bucketName), eq(fileName), any(BucketStorageReadOptions.class), eq(BucketStorageType.AWS_S3));
+
+        // Act
+        MvcResult mvcResult = mockMvc
+                .perform(
+                        get(
+                                buildUrlForGetOrDeleteRequest(BucketStorageTypeConstants.AWS_S3, bucketName, fileName)
+                        )
+                ).andExpect(
+                        request().asyncStarted()
+                ).andReturn();
+
+        // Assert
+        mockMvc
+                .perform(
+                        asyncDispatch(mvcResult)
+                ).andExpect(
+                        status().isOk()
+                ).andExpect(
+                        header().longValue(HttpHeaders.CONTENT_LENGTH, content.length)
+                ).andExpect(
+                        content().bytes(content));
+        assertThat(fileChannel.isOpen()).isFalse();
+        assertThat(transferredBytes.get()).isEqualTo(content.length);
+    }
+
+    @Test
+    public void getFile_shouldHandFileToContainer_whenLocalFileIsKeptInPlaceAndSendfileIsSupported() throws Exception {
+
+        // Arrange
+        Path localFile = Files.createTempFile("controller-", ".data");
+        Files.write(localFile, content);
+        FileChannel fileChannel = FileChannel.open(localFile, StandardOpenOption.READ);
+        AtomicLong transferredBytes = new AtomicLong();
+        bucketStorageDTO.setLocalFileChannel(fileChannel);
+        bucketStorageDTO.setLocalFile(localFile);
+        bucketStorageDTO.setLocalTransferListener(transferredBytes::addAndGet);
+        Mockito.doReturn(bucketStorageDTO)
+                .when(bucketStorageService).doGetFile(
+                        eq(bucketName), eq(fileName), any(BucketStorageReadOptions.class), eq(BucketStorageType.AWS_S3));
+
+        // Act and Assert
+        mockMvc
+                .perform(
+                        get(
+                                buildUrlForGetOrDeleteRequest(BucketStorageTypeConstants.AWS_S3, bucketName, fileName)
+                        ).requestAttr("org.apache.tomcat.sendfile.support", Boolean.TRUE)
+                ).andExpect(
+                        request().asyncNotStarted()
+                ).andExpect(
+                        status().isOk()
+                ).andExpect(
+                        header().longValue(HttpHeaders.CONTENT_LENGTH, content.length)
+                ).andExpect(
+                        request().attribute("org.apache.tomcat.sendfile.filename", localFile.toString())
+                ).andExpect(
+                        request().attribute("org.apache.tomcat.sendfile.start", 0L)
+                ).andExpect(
+                        request().attribute("org.apache.tomcat.sendfile.end", (long) content.length));
+        assertThat(fileChannel.isOpen()).isFalse();
+        assertThat(transferredBytes.get()).isEqualTo(content.length);
+        Files.delete(localFile);
+    }
+
+    @Test
+    public void getFile_shouldEncodeFileNameInContentDisposition_whenFileNameHasASpace() throws Exception {
+
+        // Arrange
+        String spacedFileName = "example file.txt";
+        Mockito.doReturn(new BucketStorageDTO(
+                spacedFileName, MediaType.TEXT_PLAIN_VALUE, content.length, new ByteArrayInputStream(content)))
+                .when(bucketStorageService).doGetFile(
+                        eq(bucketName), eq(spacedFileName), any(BucketStorageReadOptions.class),
+                        eq(BucketStorageType.AWS_S3));
+
+        // Act and Assert
+        mockMvc
+                .perform(
+                        get(
+                                buildUrlForGetOrDeleteRequest(
+                                        BucketStorageTypeConstants.AWS_S3, bucketName, spacedFileName)
+                        )
+                ).andExpect(
+                        status().isOk()
+                ).andExpect(
+                        header().string(HttpHeaders.CONTENT_DISPOSITION,
+                                "attachment; filename=\"example%20file.txt\""));
+    }
+
+    @Test
+    public void getFile_shouldReturnNotModified_whenClientsCopyIsCurrent() throws Exception {
+
+        // Arrange
+        Mockito.doReturn(BucketStorageDTO.notModified(fileName, "etag", 0))
+                .when(bucketStorageService).doGetFile(
+                        eq(bucketName), eq(fileName),
+                        argThat(readOptions -> readOptions.getIfNoneMatch().contains("etag")),
+                        eq(BucketStorageType.AWS_S3));
+
+        // Act and Assert
+        mockMvc
+                .perform(
+                        get(
+                                buildUrlForGetOrDeleteRequest(BucketStorageTypeConstants.AWS_S3, bucketName, fileName)
+                        ).header(HttpHeaders.IF_NONE_MATCH, "W/\"etag\"")
+                ).andExpect(
+                        request().asyncNotStarted()
+                ).andExpect(
+                        status().isNotModified()
+                ).andExpect(
+                        header().string(HttpHeaders.ETAG, "\"etag\"")
+                ).andExpect(
+                        content().bytes(new byte[0]));
+    }
+
+    @Test
+    public void getFile_shouldReturnValidators_whenProviderReportsThem() throws Exception {
+
+        // Arrange
+        bucketStorageDTO.setETag("etag");
+        bucketStorageDTO.setLastModified(1000000000000L);
+        Mockito.doReturn(bucketStorageDTO)
+                .when(bucketStorageService).doGetFile(
+                        eq(bucketName), eq(fileName), any(BucketStorageReadOptions.class), eq(BucketStorageType.AWS_S3));
+
+        // Act and Assert
+        mockMvc
+                .perform(
+                        get(
+                                buildUrlForGetOrDeleteRequest(BucketStorageTypeConstants.AWS_S3, bucketName, fileName)
+                        )
+                ).andExpect(
+                        header().string(HttpHeaders.ETAG, "\"etag\"")
+                ).andExpect(
+                        header().dateValue(HttpHeaders.LAST_MODIFIED, 1000000000000L));
+    }
+
+    @Test
+    public void listFiles_shouldStreamEntriesOfEveryPageAsNdjson_whenCalledNormally() throws Exception {
+
+        // Arrange
+        Mockito.doReturn(new BucketStorageListing(
+                Collections.singletonList(BucketStorageListingEntry.directory("docs/a/")), "next-token"))
+                .when(bucketStorageService)
+                .doListFiles(eq(bucketName), argThat(listOptions -> listOptions.getPageToken() == null),
+                        eq(BucketStorageType.AWS_S3));
+        Mockito.doReturn(new BucketStorageListing(
+                Collections.singletonList(BucketStorageListingEntry.file("docs/b.txt", 12, "etag", 0)), null))
+                .when(bucketStorageService)
+                .doListFiles(eq(bucketName), argThat(listOptions -> "next-token".equals(listOptions.getPageToken())),
+                        eq(BucketStorageType.AWS_S3));
+
+        // Act
+        MvcResult mvcResult = mockMvc
+                .perform(
+                        get(buildUrlForPostRequest(BucketStorageTypeConstants.AWS_S3, bucketName) + "/files")
+                                .param("prefix", "docs/")
+                                .param("delimiter", "/")
+                ).andExpect(
+                        request().asyncStarted())
+                .andReturn();
+
+        // Assert
+        String[] lines = mockMvc
+                .perform(
+                        asyncDispatch(mvcResult)
+                ).andExpect(
+                        status().isOk()
+                ).andExpect(
+                        content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString().split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).contains("\"fileName\":\"docs/a/\"", "\"directory\":true");
+        assertThat(lines[1]).contains("\"fileName\":\"docs/b.txt\"", "\"size\":12");
+    }
+
+    @Test
+    public void listFiles_shouldEndWithNextPageToken_whenMaxPagesIsReached() throws Exception {
+
+        // Arrange
+        Mockito.doReturn(new BucketStorageListing(
+                Collections.singletonList(BucketStorageListingEntry.directory("docs/a/")), "next-token"))
+                .when(bucketStorageService)
+                .doListFiles(eq(bucketName), any(BucketStorageListOptions.class), eq(BucketStorageType.GCP));
+
+        // Act
+        MvcResult mvcResult = mockMvc
+                .perform(
+                        get(buildUrlForPostRequest(BucketStorageTypeConstants.GCP, bucketName) + "/files")
+                                .param("maxPages", "1")
+                ).andExpect(
+                        request().asyncStarted())
+                .andReturn();
+
+        // Assert
+        String[] lines = mockMvc
+                .perform(
+                        asyncDispatch(mvcResult)
+                ).andReturn().getResponse().getContentAsString().split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[1]).isEqualTo("{\"nextPageToken\":\"next-token\"}");
+        Mockito.verify(bucketStorageService, VerificationModeFactory.times(1))
+                .doListFiles(eq(bucketName), any(BucketStorageListOptions.class), eq(BucketStorageType.GCP));
+    }
+
+    @Test
+    public void queryIndex_shouldStreamMatchingFilesAsNdjson_whenIndexIsReady() throws Exception {
+
+        // Arrange
+        Mockito.doReturn(Collections.singletonList(
+                BucketStorageListingEntry.file("videos/a.mp4", 209715200, "etag", 1565568000000L)).iterator())
+                .when(bucketStorageMetadataIndex)
+                .query(eq(BucketStorageType.AWS_S3), eq(bucketName), argThat(query ->
+                        "videos/".equals(query.getPrefix()) && query.getLimit() == 10));
+
+        // Act
+        MvcResult mvcResult = mockMvc
+                .perform(
+                        get(buildUrlForPostRequest(BucketStorageTypeConstants.AWS_S3, bucketName) + "/index")
+                                .param("prefix", "videos/")
+                                .param("minSize", "104857600")
+                                .param("modifiedSince", "2019-08-05T00:00:00Z")
+                                .param("limit", "10")
+                ).andExpect(
+                        request().asyncStarted())
+                .andReturn();
+
+        // Assert
+        String content = mockMvc
+                .perform(
+                        asyncDispatch(mvcResult)
+                ).andExpect(
+                        status().isOk()
+                ).andExpect(
+                        content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+        assertThat(content).contains("\"fileName\":\"videos/a.mp4\"", "\"size\":209715200");
+    }
+
+    @Test
+    public void queryIndex_shouldReturnNotFound_whenBucketIsNotIndexed() throws Exception {
+
+        // Arrange
+        Mockito.doThrow(new BucketStorageIndexNotFoundException("Location my-bucket is not indexed"))
+                .when(bucketStorageMetadataIndex)
+                .query(eq(BucketStorageType.GCP), eq(bucketName), any(BucketStorageMetadataIndexQuery.class));
+
+        // Act
+        MvcResult mvcResult = mockMvc
+                .perform(
+                        get(buildUrlForPostRequest(BucketStorageTypeConstants.GCP, bucketName) + "/index")
+                ).andExpect(
+                        request().asyncStarted())
+                .andReturn();
+
+        // Assert
+        mockMvc
+                .perform(
+                        asyncDispatch(mvcResult)
+                ).andExpect(
+                        status().isNotFound());
+    }
+
+    @Test
+    public void queryIndex_shouldReturnServiceUnavailable_whenIndexIsNotReady() throws Exception {
+
+        // Arrange
+        Mockito.doThrow(new BucketStorageIndexUnavailableException("The metadata index is not enabled"))
+                .when(bucketStorageMetadataIndex)
+                .query(eq(BucketStorageType.GCP), eq(bucketName), any(BucketStorageMetadataIndexQuery.class));
+
+        // Act
+        MvcResult mvcResult = mockMvc
+                .perform(
+                        get(buildUrlForPostRequest(BucketStorageTypeConstants.GCP, bucketName) + "/index")
+                ).andExpect(
+                        request().asyncStarted())
+                .andReturn();
+
+        // Assert
+        mockMvc
+                .perform(
+                        asyncDispatch(mvcResult)
+                ).andExpect(
+                        status().isServiceUnavailable());
+    }
+
+    @Test
+    public void listFiles_shouldReturnBadRequestStatus_whenDelimiterIsNotASlash() throws Exception {
+
+        // Act and Assert
+        mockMvc
+                .perform(
+                        get(buildUrlForPostRequest(BucketStorageTypeConstants.GCP, bucketName) + "/files")
+                                .param("delimiter", "-")
+                ).andExpect(
+                        status().isBadRequest());
+    }
+
+    @Test
+    public void getFilesAsZip_shouldStreamArchiveOfListedFiles_whenCalledWithPrefix() throws Exception {
+
+        // Arrange
+        Iterator<String> fileNames = Collections.singletonList(fileName).iterator();
+        Mockito.doReturn(fileNames)
+                .when(bucketStorageService).doListFileNames(bucketName, "reports/", BucketStorageType.GCP);
+
+        // Act
+        MvcResult mvcResult = mockMvc
+                .perform(
+                        get(buildUrlForPostRequest(BucketStorageTypeConstants.GCP, bucketName) + "/zip")
+                                .param("prefix", "reports/")
+                ).andExpect(
+                        request().asyncStarted())
+                .andReturn();
+
+        // Assert
+        mockMvc
+                .perform(
+                        asyncDispatch(mvcResult)
+                ).andExpect(
+                        status().isOk()
+                ).andExpect(
+                        content().contentType("application/zip"));
+        Mockito.verify(bucketStorageZipWriter, VerificationModeFactory.times(1))
+                .write(eq(bucketName), eq(fileNames), eq(BucketStorageType.GCP), any());
+    }
+
+    @Test
+    public void getFilesAsZip_shouldReturnBadRequestStatus_whenBothFileNamesAndPrefixAreGiven() throws Exception {
+
+        // Act and Assert
+        mockMvc
+                .perform(
+                        get(buildUrlForPostRequest(BucketStorageTypeConstants.GCP, bucketName) + "/zip")
+                                .param("fileName", fileName)
+                                .param("prefix", "reports/")
+                ).andExpect(
+                        status().isBadRequest());
+    }
+
+    @Test
+    public void headFile_shouldReturnHeadersFromMetadata_whenFileExists() throws Exception {
+
+        // Arrange
+        Mockito.doReturn(new BucketStorageMetadata(fileName, MediaType.TEXT_PLAIN_VALUE, content.length, "etag", 0))
+                .when(bucketStorageService).doGetFileMetadata(bucketName, fileName, BucketStorageType.AWS_S3);
+
+        // Act and Assert
+        mockMvc
+                .perform(
+                        head(
+                                buildUrlForGetOrDeleteRequest(BucketStorageTypeConstants.AWS_S3, bucketName, fileName)
+                        )
+                ).andExpect(
+                        status().isOk()
+                ).andExpect(
+                        header().longValue(HttpHeaders.CONTENT_LENGTH, content.length)
+                ).andExpect(
+                        header().string(HttpHeaders.ETAG, "\"etag\"")
+                ).andExpect(
+                        content().bytes(new byte[0]));
+
+        Mockito.verify(bucketStorageService, VerificationModeFactory.times(0))
+                .doGetFile(any(), any(), any(), any());
+    }
+
+    @Test
+    public void headFile_shouldReturnNotFound_whenFileDoesNotExist() throws Exception {
+
+        // Arrange
+        Mockito.doThrow(BucketStorageFileNotFoundException.class)
+                .when(bucketStorageService).doGetFileMetadata(bucketName, fileName, BucketStorageType.AWS_S3);
+
+        // Act and Assert
+        mockMvc
+                .perform(
+                        head(
+                                buildUrlForGetOrDeleteRequest(BucketStorageTypeConstants.AWS_S3, bucketName, fileName)
+                        )
+                ).andExpect(
+                        status().isNotFound());
+    }
+
+    @Test
+    public void getFileMetadata_shouldReturnMetadataAsJson_whenFileExists() throws Exception {
+
+        // Arrange
+        Mockito.doReturn(new BucketStorageMetadata(fileName, MediaType.TEXT_PLAIN_VALUE, content.length, "etag", 0))
+                .when(bucketStorageService).doGetFileMetadata(bucketName, fileName, BucketStorageType.GCP);
+
+        // Act and Assert
+        mockMvc
+                .perform(
+                        get(
+                                buildUrlForGetOrDeleteRequest(BucketStorageTypeConstants.GCP, bucketName, fileName)
+                                        + "/metadata"
+                        )
+                ).andExpect(
+                        status().isOk()
+                ).andExpect(
+                        jsonPath("$.contentLength").value(content.length)
+                ).andExpect(
+                        jsonPath("$.contentType").value(MediaType.TEXT_PLAIN_VALUE));
+    }
+
+    @Test
+    public void getFile_shouldReturnPartialContent_whenRangeHeaderIsGiven() throws Exception {
+
+        // Arrange
+        bucketStorageDTO.setRange(BucketStorageRange.ofBytes(0, 5));
+        bucketStorageDTO.setInstanceLength(content.length);
+        Mockito.doReturn(bucketStorageDTO)
+                .when(bucketStorageService).doGetFile(
+                        eq(bucketName), eq(fileName), any(BucketStorageReadOptions.class), eq(BucketStorageType.AWS_S3));
+
+        // Act and Assert
+        mockMvc
+                .perform(
+                        get(
+                                buildUrlForGetOrDeleteRequest(BucketStorageTypeConstants.AWS_S3, bucketName, fileName)
+                        ).header(HttpHeaders.RANGE, "bytes=0-5")
+                ).andExpect(
+                        status().isPartialContent()
+                ).andExpect(
+                        header().string(HttpHeaders.CONTENT_RANGE, "bytes 0-5/" + content.length));
+    }
+
+    @Test
+    public void getFile_shouldReturn416Status_whenRangeIsNotSatisfiable() throws Exception {
+
+        // Arrange
+        Mockito.doThrow(new BucketStorageRangeNotSatisfiableException("Range not satisfiable", content.length))
+                .when(bucketStorageService).doGetFile(
+                        eq(bucketName), eq(fileName), any(BucketStorageReadOptions.class), eq(BucketStorageType.AWS_S3));
+
+        // Act and Assert
+        mockMvc
+                .perform(
+                        get(
+                                buildUrlForGetOrDeleteRequest(BucketStorageTypeConstants.AWS_S3, bucketName, fileName)
+                        ).header(HttpHeaders.RANGE, "bytes=100-")
+                ).andExpect(
+                        status().isRequestedRangeNotSatisfiable()
+                ).andExpect(
+                        header().string(HttpHeaders.CONTENT_RANGE, "bytes */" + content.length));
+    }
+
+    @Test
+    public void getFile_shouldReturnSatisfiableRange_whenFirstOfSeveralRangesIsNotSatisfiable() throws Exception {
+
+        // Arrange
+        Mockito.doReturn(new BucketStorageMetadata(fileName, MediaType.TEXT_PLAIN_VALUE, content.length, "etag", -1))
+                .when(bucketStorageService).doGetFileMetadata(bucketName, fileName, BucketStorageType.AWS_S3);
+        bucketStorageDTO.setRange(BucketStorageRange.ofBytes(0, 5));
+        bucketStorageDTO.setInstanceLength(content.length);
+        bucketStorageDTO.setETag("etag");
+        Mockito.doReturn(bucketStorageDTO)
+                .when(bucketStorageService).doGetFile(eq(bucketName), eq(fileName),
+                        argThat(readOptions -> readOptions.getRange().getFirstBytePosition() == 0
+                                && "etag".equals(readOptions.getIfMatch())),
+                        eq(BucketStorageType.AWS_S3));
+
+        // Act and Assert
+        mockMvc
+                .perform(
+                        get(
+                                buildUrlForGetOrDeleteRequest(BucketStorageTypeConstants.AWS_S3, bucketName, fileName)
+                        ).header(HttpHeaders.RANGE, "bytes=100-, 0-5")
+                ).andExpect(
+                        status().isPartialContent()
+                ).andExpect(
+                        header().string(HttpHeaders.CONTENT_RANGE, "bytes 0-5/" + content.length));
+    }
+
+    @Test
+    public void getFile_shouldMergeOverlappingRangesAndPinLaterParts_whenSeveralRangesAreGiven() throws Exception {
+
+        // Arrange
+        Mockito.doReturn(new BucketStorageMetadata(fileName, MediaType.TEXT_PLAIN_VALUE, content.length, "etag", -1))
+                .when(bucketStorageService).doGetFileMetadata(bucketName, fileName, BucketStorageType.AWS_S3);
+        BucketStorageDTO firstPartDTO = new BucketStorageDTO(
+                fileName, MediaType.TEXT_PLAIN_VALUE, 5, new ByteArrayInputStream(content, 0, 5));
+        firstPartDTO.setRange(BucketStorageRange.ofBytes(0, 4));
+        firstPartDTO.setInstanceLength(content.length);
+        firstPartDTO.setETag("etag");
+        BucketStorageDTO secondPartDTO = new BucketStorageDTO(
+                fileName, MediaType.TEXT_PLAIN_VALUE, 2, new ByteArrayInputStream(content, 8, 2));
+        secondPartDTO.setRange(BucketStorageRange.ofBytes(8, 9));
+        secondPartDTO.setInstanceLength(content.length);
+        Mockito.doReturn(firstPartDTO)
+                .when(bucketStorageService).doGetFile(eq(bucketName), eq(fileName),
+                        argThat(readOptions -> readOptions.getRange().getLastBytePosition() == 4
+                                && "etag".equals(readOptions.getIfMatch())),
+                        eq(BucketStorageType.AWS_S3));
+        Mockito.doReturn(secondPartDTO)
+                .when(bucketStorageService).doGetFile(eq(bucketName), eq(fileName),
+                        argThat(readOptions -> readOptions.getRange().getFirstBytePosition() == 8
+                                && "etag".equals(readOptions.getIfMatch())),
+                        eq(BucketStorageType.AWS_S3));
+
+        // Act
+        MvcResult mvcResult = mockMvc
+                .perform(
+                        get(
+                                buildUrlForGetOrDeleteRequest(BucketStorageTypeConstants.AWS_S3, bucketName, fileName)
+                        ).header(HttpHeaders.RANGE, "bytes=8-9, 0-2, 2-4")
+                ).andReturn();
+
+        // Assert
+        String body = mockMvc
+                .perform(
+                        asyncDispatch(mvcResult)
+                ).andExpect(
+                        status().isPartialContent()
+                ).andReturn().getResponse().getContentAsString();
+        assertThat(body).containsSubsequence(
+                "Content-Range: bytes 0-4/" + content.length, "Coffe",
+                "Content-Range: bytes 8-9/" + content.length, "ps");
+        assertThat(body).doesNotContain("bytes 0-2/", "bytes 2-4/");
+    }
+
     @Test
     public void getFile_shouldReturn500Status_whenBucketStorageServiceExceptionIsThrown() throws Exception {
 
         // Arrange
         Mockito.doThrow(BucketStorageServiceException.class)
-                .when(bucketStorageService).doGetFile(bucketName, fileName, BucketStorageType.AWS_S3);
+                .when(bucketStorageService).doGetFile(
+                        eq(bucketName), eq(fileName), any(BucketStorageReadOptions.class), eq(BucketStorageType.AWS_S3));
 
         // Act and Assert
         mockMvc
@@ -131,6 +737,72 @@ public class BucketStorageControllerTest {
                         status().is5xxServerError());
     }
 
+    @Test
+    public void uploadFiles_shouldReturnEachFilesResult_whenCalledWithSeveralParts() throws Exception {
+
+        // Arrange
+        Mockito.doReturn(Arrays.asList(
+                BucketStorageUploadResult.uploaded(fileName, content.length),
+                BucketStorageUploadResult.failed("other.txt", content.length, "Unable to upload file other.txt")))
+                .when(bucketStorageBulkUploader)
+                .upload(eq(bucketName), argThat(multipartFiles -> multipartFiles.size() == 2),
+                        eq(BucketStorageType.AWS_S3));
+
+        // Act and Assert
+        mockMvc
+                .perform(
+                        multipart(
+                                buildUrlForPostRequest(BucketStorageTypeConstants.AWS_S3, bucketName) + "/bulk"
+                        ).part(requestPart, new MockPart("file", "other.txt", content))
+                ).andExpect(
+                        status().isOk()
+                ).andExpect(
+                        jsonPath("$[0].uploaded").value(true)
+                ).andExpect(
+                        jsonPath("$[1].error").value("Unable to upload file other.txt"));
+    }
+
+    @Test
+    public void uploadFile_shouldReturnAcceptedStatusWithUploadId_whenCalledAsynchronously() throws Exception {
+
+        // Arrange
+        BucketStorageUploadJob job = new BucketStorageUploadJob(
+                "upload-1", BucketStorageType.AWS_S3, bucketName, fileName, content.length);
+        Mockito.doReturn(job)
+                .when(bucketStorageUploadManager)
+                .submit(eq(bucketName), eq(fileName), any(MultipartFile.class), eq(BucketStorageType.AWS_S3));
+
+        // Act and Assert
+        mockMvc
+                .perform(
+                        multipart(
+                                buildUrlForPostRequest(BucketStorageTypeConstants.AWS_S3, bucketName)
+                        ).part(requestPart).param("async", "true")
+                ).andExpect(
+                        status().isAccepted()
+                ).andExpect(
+                        header().string(HttpHeaders.LOCATION, baseUrl + "/uploads/upload-1")
+                ).andExpect(
+                        jsonPath("$.uploadId").value("upload-1")
+                ).andExpect(
+                        jsonPath("$.status").value(BucketStorageUploadStatus.QUEUED.name()));
+    }
+
+    @Test
+    public void getUploadStatus_shouldReturn404Status_whenUploadIdIsUnknown() throws Exception {
+
+        // Arrange
+        Mockito.doReturn(null)
+                .when(bucketStorageUploadManager).getJob("unknown");
+
+        // Act and Assert
+        mockMvc
+                .perform(
+                        get(baseUrl + "/uploads/unknown")
+                ).andExpect(
+                        status().isNotFound());
+    }
+
     @Test
     public void deleteFile_shouldReturnOkStatus_whenCalledNormally() throws Exception {
         // Arrange
@@ -148,6 +820,26 @@ public class BucketStorageControllerTest {
                         status().isOk());
     }
 
+    @Test
+    public void deleteFile_shouldReturnServiceUnavailableWithRetryAfter_whenCircuitBreakerIsOpen() throws Exception {
+
+        // Arrange
+        Mockito.doThrow(new BucketStorageUnavailableException("Requests to AWS_S3/example are failing", 30))
+                .when(bucketStorageService)
+                .doDeleteFile(bucketName, fileName, BucketStorageType.AWS_S3);
+
+        // Act and Assert
+        mockMvc
+                .perform(
+                        delete(
+                                buildUrlForGetOrDeleteRequest(BucketStorageTypeConstants.AWS_S3, bucketName, fileName)
+                        )
+                ).andExpect(
+                        status().isServiceUnavailable()
+                ).andExpect(
+                        header().string(HttpHeaders.RETRY_AFTER, "30"));
+    }
+
     @Test
     public void deleteFile_shouldReturn500Status_whenBucketStorageServiceExceptionIsThrown() throws Exception {
 
@@ -166,6 +858,46 @@ public class BucketStorageControllerTest {
                         status().is5xxServerError());
     }
 
+    @Test
+    public void deleteFiles_shouldReturnEachFilesResult_whenCalledWithFileNames() throws Exception {
+
+        // Arrange
+        Mockito.doReturn(Arrays.asList(
+                BucketStorageDeleteResult.deleted(fileName),
+                BucketStorageDeleteResult.failed("other.txt", "Access Denied")))
+                .when(bucketStorageService)
+                .doDeleteFiles(bucketName, Arrays.asList(fileName, "other.txt"), BucketStorageType.AWS_S3);
+
+        // Act and Assert
+        mockMvc
+                .perform(
+                        post(buildUrlForPostRequest(BucketStorageTypeConstants.AWS_S3, bucketName) + "/batchDelete")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"fileNames\": [\"" + fileName + "\", \"other.txt\"]}")
+                ).andExpect(
+                        status().isOk()
+                ).andExpect(
+                        jsonPath("$[0].deleted").value(true)
+                ).andExpect(
+                        jsonPath("$[1].error").value("Access Denied"));
+    }
+
+    @Test
+    public void deleteFiles_shouldReturnBadRequestStatus_whenPrefixIsEmpty() throws Exception {
+
+        // Act and Assert
+        mockMvc
+                .perform(
+                        post(buildUrlForPostRequest(BucketStorageTypeConstants.AWS_S3, bucketName) + "/batchDelete")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"prefix\": \"\"}")
+                ).andExpect(
+                        status().isBadRequest());
+
+        Mockito.verify(bucketStorageService, VerificationModeFactory.times(0))
+                .doDeleteFilesWithPrefix(any(), any(), any());
+    }
+
     private String buildUrlForGetOrDeleteRequest(String storageProvider, String storageLocation, String fileName) {
         return baseUrl + "/storageProvider/" + storageProvider + "/storageLocation/" + storageLocation + "/fileName/" + fileName;
     }
@@ -0,0 +1,62 @@
+package com.experimentation.filestorage.bucket;
+
+import com.experimentation.filestorage.bucket.util.BucketStorageRangeNotSatisfiableException;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BucketStorageRangeTest {
+
+    @Test
+    public void parseRanges_shouldReturnEveryRange_whenCalledWithMultipleRanges() {
+
+        // Act
+        List<BucketStorageRange> ranges = BucketStorageRange.parseRanges("bytes=0-99, 200-, -50");
+
+        // Assert
+        assertThat(ranges).hasSize(3);
+        assertThat(ranges.get(0).toString()).isEqualTo("0-99");
+        assertThat(ranges.get(1).isOpenEnded()).isTrue();
+        assertThat(ranges.get(2).isSuffix()).isTrue();
+    }
+
+    @Test
+    public void parseRanges_shouldReturnNoRanges_whenHeaderIsMalformed() {
+
+        // Act and Assert
+        assertThat(BucketStorageRange.parseRanges("bytes=abc")).isEmpty();
+        assertThat(BucketStorageRange.parseRanges("bytes=10-5")).isEmpty();
+        assertThat(BucketStorageRange.parseRanges("items=0-5")).isEmpty();
+        assertThat(BucketStorageRange.parseRanges(null)).isEmpty();
+    }
+
+    @Test
+    public void resolve_shouldClampLastBytePosition_whenRangeExtendsPastEndOfFile() {
+
+        // Act
+        BucketStorageRange range = BucketStorageRange.ofBytes(90, 500).resolve(100);
+
+        // Assert
+        assertThat(range.toContentRange(100)).isEqualTo("bytes 90-99/100");
+        assertThat(range.getLength()).isEqualTo(10);
+    }
+
+    @Test
+    public void resolve_shouldSelectLastBytes_whenCalledWithSuffixRange() {
+
+        // Act
+        BucketStorageRange range = BucketStorageRange.lastBytes(30).resolve(100);
+
+        // Assert
+        assertThat(range.toContentRange(100)).isEqualTo("bytes 70-99/100");
+    }
+
+    @Test(expected = BucketStorageRangeNotSatisfiableException.class)
+    public void resolve_shouldThrowBucketStorageRangeNotSatisfiableException_whenRangeStartsAfterEndOfFile() {
+
+        // Act
+        BucketStorageRange.fromByte(100).resolve(100);
+    }
+}
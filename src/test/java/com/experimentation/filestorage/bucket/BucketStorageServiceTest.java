@@ -1,20 +1,30 @@
 package com.experimentation.filestorage.bucket;
 
+import com.experimentation.filestorage.bucket.coalesce.BucketStorageReadCoalescer;
+import com.experimentation.filestorage.bucket.metrics.BucketStorageMetrics;
+import com.experimentation.filestorage.bucket.retry.BucketStorageRetrier;
+import com.experimentation.filestorage.bucket.util.BucketStorageFileNotFoundException;
 import com.experimentation.filestorage.bucket.util.BucketStorageServiceException;
+import com.experimentation.filestorage.bucket.util.BucketStorageTransientException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
+import org.mockito.internal.verification.VerificationModeFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.web.multipart.MultipartFile;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 @RunWith(SpringRunner.class)
-@ContextConfiguration(classes = {BucketStorageService.class})
+@ContextConfiguration(classes = {BucketStorageService.class, BucketStorageRetrier.class,
+        BucketStorageReadCoalescer.class, BucketStorageMetrics.class, SimpleMeterRegistry.class})
+@TestPropertySource(properties = {"filestorage.retry.enabled=true", "filestorage.retry.initial-backoff=1"})
 public class BucketStorageServiceTest {
 
     @Autowired
@@ -51,7 +61,7 @@ public class BucketStorageServiceTest {
         Mockito.doReturn(bucketStorage)
                 .when(bucketStorageFactory).getBucketStorageService(bucketStorageType);
         Mockito.doReturn(bucketStorageDTO)
-                .when(bucketStorage).getFile(bucketName, fileName);
+                .when(bucketStorage).getFile(bucketName, fileName, BucketStorageReadOptions.none());
 
         // Act
         BucketStorageDTO resultBucketStorageDTO =
@@ -68,7 +78,7 @@ public class BucketStorageServiceTest {
         Mockito.doReturn(bucketStorage)
                 .when(bucketStorageFactory).getBucketStorageService(bucketStorageType);
         Mockito.doThrow(BucketStorageServiceException.class)
-                .when(bucketStorage).getFile(bucketName, fileName);
+                .when(bucketStorage).getFile(bucketName, fileName, BucketStorageReadOptions.none());
 
         // Act
         bucketStorageService.doGetFile(bucketName, fileName, bucketStorageType);
@@ -121,4 +131,32 @@ public class BucketStorageServiceTest {
         // Act
         bucketStorageService.doDeleteFile(bucketName, fileName, bucketStorageType);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void deleteFile_shouldSucceed_whenRetriedDeleteFindsFileAlreadyDeleted() {
+        // Arrange
+        Mockito.doReturn(bucketStorage)
+                .when(bucketStorageFactory).getBucketStorageService(bucketStorageType);
+        Mockito.doThrow(new BucketStorageTransientException("timed out"))
+                .doThrow(new BucketStorageFileNotFoundException("not found"))
+                .when(bucketStorage).deleteFile(bucketName, fileName);
+
+        // Act
+        bucketStorageService.doDeleteFile(bucketName, fileName, bucketStorageType);
+
+        // Assert
+        Mockito.verify(bucketStorage, VerificationModeFactory.times(2)).deleteFile(bucketName, fileName);
+    }
+
+    @Test(expected = BucketStorageFileNotFoundException.class)
+    public void deleteFile_shouldRethrowNotFound_whenFirstAttemptFindsNoFile() {
+        // Arrange
+        Mockito.doReturn(bucketStorage)
+                .when(bucketStorageFactory).getBucketStorageService(bucketStorageType);
+        Mockito.doThrow(new BucketStorageFileNotFoundException("not found"))
+                .when(bucketStorage).deleteFile(bucketName, fileName);
+
+        // Act
+        bucketStorageService.doDeleteFile(bucketName, fileName, bucketStorageType);
+    }
+}
@@ -0,0 +1,131 @@
+package com.experimentation.filestorage.bucket.archive;
+
+import com.experimentation.filestorage.bucket.BucketStorageDTO;
+import com.experimentation.filestorage.bucket.BucketStorageService;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.experimentation.filestorage.bucket.util.BucketStorageServiceException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.internal.verification.VerificationModeFactory;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class BucketStorageZipWriterTest {
+
+    private static final int PREFETCH_BUFFER_SIZE = 16;
+
+    private BucketStorageService bucketStorageService;
+    private BucketStorageZipWriter bucketStorageZipWriter;
+    private String bucketName;
+    private ByteArrayOutputStream outputStream;
+
+    @Before
+    public void setUp() {
+        bucketStorageService = Mockito.mock(BucketStorageService.class);
+        bucketStorageZipWriter = new BucketStorageZipWriter(bucketStorageService, 2, 2, PREFETCH_BUFFER_SIZE, 6, 64);
+        bucketName = "example";
+        outputStream = new ByteArrayOutputStream();
+    }
+
+    @After
+    public void tearDown() {
+        bucketStorageZipWriter.shutdown();
+    }
+
+    @Test
+    public void write_shouldWriteOneEntryPerFile_whenEveryFileIsRead() throws Exception {
+
+        // Arrange
+        byte[] smallContent = "Coffee ipsum".getBytes();
+        byte[] largeContent = new byte[10 * PREFETCH_BUFFER_SIZE];
+        Arrays.fill(largeContent, (byte) 'a');
+        BucketStorageDTO smallFile =
+                newBucketStorageDTO("docs/small.txt", MimeTypeUtils.TEXT_PLAIN_VALUE, smallContent);
+        smallFile.setLastModified(1546300800000L);
+        Mockito.doReturn(smallFile)
+                .when(bucketStorageService).doGetFile(bucketName, "docs/small.txt", BucketStorageType.AWS_S3);
+        Mockito.doReturn(newBucketStorageDTO("docs/large.jpg", MimeTypeUtils.IMAGE_JPEG_VALUE, largeContent))
+                .when(bucketStorageService).doGetFile(bucketName, "docs/large.jpg", BucketStorageType.AWS_S3);
+
+        // Act
+        bucketStorageZipWriter.write(bucketName, Arrays.asList("docs/small.txt", "docs/large.jpg").iterator(),
+                BucketStorageType.AWS_S3, outputStream);
+
+        // Assert
+        try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            ZipEntry firstEntry = zipInputStream.getNextEntry();
+            assertThat(firstEntry.getName()).isEqualTo("docs/small.txt");
+            assertThat(firstEntry.getTime()).isEqualTo(1546300800000L);
+            assertThat(StreamUtils.copyToByteArray(zipInputStream)).isEqualTo(smallContent);
+
+            ZipEntry secondEntry = zipInputStream.getNextEntry();
+            assertThat(secondEntry.getName()).isEqualTo("docs/large.jpg");
+            assertThat(StreamUtils.copyToByteArray(zipInputStream)).isEqualTo(largeContent);
+
+            assertThat(zipInputStream.getNextEntry()).isNull();
+        }
+    }
+
+    @Test
+    public void write_shouldNameEntryAfterRequestedFileName_whenProviderReportsAnEncodedName() throws Exception {
+
+        // Arrange
+        byte[] content = "Coffee ipsum".getBytes();
+        Mockito.doReturn(newBucketStorageDTO("photos%2Fa%20b.jpg", MimeTypeUtils.IMAGE_JPEG_VALUE, content))
+                .when(bucketStorageService).doGetFile(bucketName, "photos/a b.jpg", BucketStorageType.AWS_S3);
+
+        // Act
+        bucketStorageZipWriter.write(bucketName, Arrays.asList("photos/a b.jpg").iterator(),
+                BucketStorageType.AWS_S3, outputStream);
+
+        // Assert
+        try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            ZipEntry entry = zipInputStream.getNextEntry();
+            assertThat(entry.getName()).isEqualTo("photos/a b.jpg");
+            assertThat(StreamUtils.copyToByteArray(zipInputStream)).isEqualTo(content);
+            assertThat(zipInputStream.getNextEntry()).isNull();
+        }
+    }
+
+    @Test
+    public void write_shouldCloseFilesFetchedAhead_whenAFileCannotBeRead() throws Exception {
+
+        // Arrange
+        BucketStorageDTO prefetchedFile = Mockito.spy(newBucketStorageDTO(
+                "third.bin", MimeTypeUtils.APPLICATION_OCTET_STREAM_VALUE, new byte[2 * PREFETCH_BUFFER_SIZE]));
+        Mockito.doReturn(newBucketStorageDTO("first.txt", MimeTypeUtils.TEXT_PLAIN_VALUE, "first".getBytes()))
+                .when(bucketStorageService).doGetFile(bucketName, "first.txt", BucketStorageType.GCP);
+        Mockito.doThrow(BucketStorageServiceException.class)
+                .when(bucketStorageService).doGetFile(bucketName, "second.txt", BucketStorageType.GCP);
+        Mockito.doReturn(prefetchedFile)
+                .when(bucketStorageService).doGetFile(bucketName, "third.bin", BucketStorageType.GCP);
+
+        // Act
+        try {
+            bucketStorageZipWriter.write(bucketName, Arrays.asList("first.txt", "second.txt", "third.bin").iterator(),
+                    BucketStorageType.GCP, outputStream);
+            fail("Expected the failed file to end the archive");
+        } catch (BucketStorageServiceException e) {
+            assertThat(e).isInstanceOf(BucketStorageServiceException.class);
+        }
+
+        // Assert
+        Mockito.verify(prefetchedFile, VerificationModeFactory.times(1))
+                .close();
+    }
+
+    private static BucketStorageDTO newBucketStorageDTO(String fileName, String contentType, byte[] content) {
+        return new BucketStorageDTO(fileName, contentType, content.length, new ByteArrayInputStream(content));
+    }
+}
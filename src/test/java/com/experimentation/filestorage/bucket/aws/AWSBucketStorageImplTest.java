@@ -4,11 +4,21 @@ import com.amazonaws.AmazonServiceException;
 import com.amazonaws.SdkClientException;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.*;
-import com.amazonaws.services.s3.transfer.TransferManager;
-import com.amazonaws.services.s3.transfer.Upload;
 import com.experimentation.filestorage.bucket.BucketStorageDTO;
+import com.experimentation.filestorage.bucket.BucketStorageDeleteResult;
+import com.experimentation.filestorage.bucket.BucketStorageListOptions;
+import com.experimentation.filestorage.bucket.BucketStorageListing;
+import com.experimentation.filestorage.bucket.BucketStorageListingEntry;
+import com.experimentation.filestorage.bucket.BucketStorageMetadata;
+import com.experimentation.filestorage.bucket.BucketStorageRange;
+import com.experimentation.filestorage.bucket.BucketStorageReadOptions;
+import com.experimentation.filestorage.bucket.batch.BucketStorageBatchExecutor;
+import com.experimentation.filestorage.bucket.download.BucketStorageParallelDownloader;
+import com.experimentation.filestorage.bucket.util.BucketStorageFileNotFoundException;
 import com.experimentation.filestorage.bucket.util.BucketStorageHelper;
+import com.experimentation.filestorage.bucket.util.BucketStorageRangeNotSatisfiableException;
 import com.experimentation.filestorage.bucket.util.BucketStorageServiceException;
+import com.experimentation.filestorage.bucket.util.BucketStorageTransientException;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -21,15 +31,21 @@ import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 
 @RunWith(SpringRunner.class)
-@ContextConfiguration(classes = {AWSBucketStorageImpl.class})
+@ContextConfiguration(classes = {AWSBucketStorageImpl.class, BucketStorageBatchExecutor.class})
 public class AWSBucketStorageImplTest {
 
     @Autowired
@@ -44,6 +60,9 @@ public class AWSBucketStorageImplTest {
     @MockBean
     private BucketStorageHelper bucketStorageHelper;
 
+    @MockBean
+    private BucketStorageParallelDownloader bucketStorageParallelDownloader;
+
     @MockBean
     private S3Object s3Object;
 
@@ -53,6 +72,9 @@ public class AWSBucketStorageImplTest {
     @MockBean
     private DeleteObjectRequest deleteObjectRequest;
 
+    @MockBean
+    private DeleteObjectsRequest deleteObjectsRequest;
+
     @MockBean
     private ObjectMetadata objectMetadata;
 
@@ -63,24 +85,18 @@ public class AWSBucketStorageImplTest {
     private BucketStorageDTO bucketStorageDTO;
 
     @MockBean
-    private TransferManager transferManager;
+    private AWSMultipartUploader awsMultipartUploader;
 
     @MockBean
     private MultipartFile multipartFile;
 
-    @MockBean
-    private File file;
-
-    @MockBean
-    private Upload upload;
-
     // Final classes
     private String bucketName;
     private String fileName;
     private String contentType;
+    private long contentLength;
     private byte[] bytes;
-    private boolean tempFileDeletedTrue;
-    private boolean tempFileDeletedFalse;
+    private InputStream inputStream;
 
     @Before
     public void setUp() throws Exception {
@@ -88,8 +104,8 @@ public class AWSBucketStorageImplTest {
         fileName = "test.txt";
         contentType = MimeTypeUtils.TEXT_PLAIN_VALUE;
         bytes = "Some example test".getBytes();
-        tempFileDeletedTrue = true;
-        tempFileDeletedFalse = true;
+        contentLength = bytes.length;
+        inputStream = new ByteArrayInputStream(bytes);
     }
 
     @Test
@@ -97,19 +113,20 @@ public class AWSBucketStorageImplTest {
 
         // Arrange
         Mockito.doReturn(getObjectRequest)
-                .when(awsBucketStorageHelper).newGetObjectRequest(bucketName, fileName);
+                .when(awsBucketStorageHelper).newGetObjectRequest(bucketName, fileName, null);
         Mockito.doReturn(s3Object)
                 .when(amazonS3).getObject(getObjectRequest);
         Mockito.doReturn(objectMetadata)
                 .when(s3Object).getObjectMetadata();
         Mockito.doReturn(contentType)
                 .when(objectMetadata).getContentType();
+        Mockito.doReturn(contentLength)
+                .when(objectMetadata).getContentLength();
         Mockito.doReturn(s3ObjectInputStream)
                 .when(s3Object).getObjectContent();
-        Mockito.doReturn(bytes)
-                .when(awsBucketStorageHelper).convertS3ObjectInputStreamToByteArray(s3ObjectInputStream);
         Mockito.doReturn(bucketStorageDTO)
-                .when(bucketStorageHelper).createBucketStorageDTO(fileName, contentType, bytes);
+                .when(bucketStorageHelper)
+                .createBucketStorageDTO(fileName, contentType, contentLength, s3ObjectInputStream);
 
         // Act
         BucketStorageDTO resultBucketStorageDTO = awsBucketStorageService.getFile(bucketName, fileName);
@@ -117,6 +134,34 @@ public class AWSBucketStorageImplTest {
         // Assert
         assertThat(resultBucketStorageDTO).isEqualTo(bucketStorageDTO);
         verifyGetObjectIsCalledOnce();
+        verifyS3ObjectIsNotClosed();
+    }
+
+    @Test
+    public void getFile_shouldReturnNotModifiedDTO_whenS3FindsTheClientsCopyCurrent() {
+
+        // Arrange
+        BucketStorageReadOptions readOptions =
+                new BucketStorageReadOptions(null, Collections.singletonList("etag"), -1);
+        BucketStorageDTO notModifiedDTO = BucketStorageDTO.notModified(fileName, "etag", 0);
+        Mockito.doReturn(getObjectRequest)
+                .when(awsBucketStorageHelper).newGetObjectRequest(bucketName, fileName, null);
+        Mockito.doReturn(null)
+                .when(amazonS3).getObject(getObjectRequest);
+        Mockito.doReturn(objectMetadata)
+                .when(amazonS3).getObjectMetadata(bucketName, fileName);
+        Mockito.doReturn("etag")
+                .when(objectMetadata).getETag();
+        Mockito.doReturn(notModifiedDTO)
+                .when(bucketStorageHelper).createNotModifiedBucketStorageDTO(fileName, "etag", 0);
+
+        // Act
+        BucketStorageDTO resultBucketStorageDTO = awsBucketStorageService.getFile(bucketName, fileName, readOptions);
+
+        // Assert
+        assertThat(resultBucketStorageDTO.isNotModified()).isTrue();
+        Mockito.verify(awsBucketStorageHelper, VerificationModeFactory.times(1))
+                .applyPreconditions(getObjectRequest, readOptions);
     }
 
     @Test(expected = BucketStorageServiceException.class)
@@ -124,7 +169,7 @@ public class AWSBucketStorageImplTest {
 
         // Arrange
         Mockito.doReturn(getObjectRequest)
-                .when(awsBucketStorageHelper).newGetObjectRequest(bucketName, fileName);
+                .when(awsBucketStorageHelper).newGetObjectRequest(bucketName, fileName, null);
         Mockito.doThrow(AmazonServiceException.class)
                 .when(amazonS3).getObject(getObjectRequest);
 
@@ -137,7 +182,7 @@ public class AWSBucketStorageImplTest {
 
         // Arrange
         Mockito.doReturn(getObjectRequest)
-                .when(awsBucketStorageHelper).newGetObjectRequest(bucketName, fileName);
+                .when(awsBucketStorageHelper).newGetObjectRequest(bucketName, fileName, null);
         Mockito.doThrow(SdkClientException.class)
                 .when(amazonS3).getObject(getObjectRequest);
 
@@ -145,75 +190,161 @@ public class AWSBucketStorageImplTest {
         awsBucketStorageService.getFile(bucketName, fileName);
     }
 
-    @Test(expected = BucketStorageServiceException.class)
-    public void getFile_shouldThrowBucketStorageServiceException_whenIOExceptionIsThrown() throws IOException {
+    @Test
+    public void getFile_shouldReturnRangedBucketStorageDTO_whenCalledWithRange() {
 
         // Arrange
+        BucketStorageRange range = BucketStorageRange.ofBytes(0, 4);
+        BucketStorageDTO rangedBucketStorageDTO =
+                new BucketStorageDTO(fileName, contentType, range.getLength(), s3ObjectInputStream);
         Mockito.doReturn(getObjectRequest)
-                .when(awsBucketStorageHelper).newGetObjectRequest(bucketName, fileName);
+                .when(awsBucketStorageHelper).newGetObjectRequest(bucketName, fileName, range);
         Mockito.doReturn(s3Object)
                 .when(amazonS3).getObject(getObjectRequest);
         Mockito.doReturn(objectMetadata)
                 .when(s3Object).getObjectMetadata();
         Mockito.doReturn(contentType)
                 .when(objectMetadata).getContentType();
+        Mockito.doReturn(range.getLength())
+                .when(objectMetadata).getContentLength();
+        Mockito.doReturn(contentLength)
+                .when(objectMetadata).getInstanceLength();
         Mockito.doReturn(s3ObjectInputStream)
                 .when(s3Object).getObjectContent();
-        Mockito.doThrow(IOException.class)
-                .when(awsBucketStorageHelper).convertS3ObjectInputStreamToByteArray(s3ObjectInputStream);
+        Mockito.doReturn(rangedBucketStorageDTO)
+                .when(bucketStorageHelper)
+                .createBucketStorageDTO(fileName, contentType, range.getLength(), s3ObjectInputStream);
 
         // Act
-        awsBucketStorageService.getFile(bucketName, fileName);
+        BucketStorageDTO resultBucketStorageDTO =
+                awsBucketStorageService.getFile(bucketName, fileName, BucketStorageReadOptions.withRange(range));
+
+        // Assert
+        assertThat(resultBucketStorageDTO.getRange().toContentRange(contentLength))
+                .isEqualTo("bytes 0-4/" + contentLength);
+        assertThat(resultBucketStorageDTO.getInstanceLength()).isEqualTo(contentLength);
     }
 
     @Test
-    public void uploadMultipartFile_shouldCompleteUpload_whenBucketNameAndFileNameAndMultipartFileAreGiven()
+    public void getFile_shouldThrowBucketStorageRangeNotSatisfiableExceptionWithLength_whenAmazonS3Returns416() {
+
+        // Arrange
+        BucketStorageRange range = BucketStorageRange.fromByte(1000);
+        AmazonS3Exception amazonS3Exception = new AmazonS3Exception("InvalidRange");
+        amazonS3Exception.setStatusCode(416);
+        Mockito.doReturn(getObjectRequest)
+                .when(awsBucketStorageHelper).newGetObjectRequest(bucketName, fileName, range);
+        Mockito.doThrow(amazonS3Exception)
+                .when(amazonS3).getObject(getObjectRequest);
+        Mockito.doReturn(objectMetadata)
+                .when(amazonS3).getObjectMetadata(bucketName, fileName);
+        Mockito.doReturn(100L)
+                .when(objectMetadata).getContentLength();
+
+        // Act
+        BucketStorageRangeNotSatisfiableException exception = null;
+        try {
+            awsBucketStorageService.getFile(bucketName, fileName, BucketStorageReadOptions.withRange(range));
+        }
+
+        // Expected, as the range starts beyond the end of the object
+        catch (BucketStorageRangeNotSatisfiableException e) {
+            exception = e;
+        }
+
+        // Assert
+        assertThat(exception).isNotNull();
+        assertThat(exception.getInstanceLength()).isEqualTo(100L);
+    }
+
+    @Test
+    public void uploadMultipartFile_shouldStreamUpload_whenBucketNameAndFileNameAndMultipartFileAreGiven()
             throws Exception {
 
         // Arrange
-        Mockito.doReturn(transferManager)
-                .when(awsBucketStorageHelper).buildTransferManager(amazonS3);
-        Mockito.doReturn(file)
-                .when(awsBucketStorageHelper).convertMultipartFileToTemporaryFile(multipartFile);
-        Mockito.doReturn(upload)
-                .when(transferManager).upload(bucketName, fileName, file);
-        Mockito.doNothing()
-                .when(upload).waitForCompletion();
-        Mockito.doReturn(tempFileDeletedTrue)
-                .when(file).delete();
+        Mockito.doReturn(inputStream)
+                .when(multipartFile).getInputStream();
+        Mockito.doReturn(contentType)
+                .when(multipartFile).getContentType();
 
         // Act
         awsBucketStorageService.uploadMultipartFile(bucketName, fileName, multipartFile);
 
         // Assert
-        verifyTransferManagerUploadIsCalledOnce();
-        verifyUploadWaitForCompletionIsCalledOnce();
-        verifyTempFileDeleteIsCalledOnce();
+        verifyMultipartUploaderUploadIsCalledOnce();
     }
 
-    @Test
+    @Test(expected = BucketStorageServiceException.class)
     public void uploadMultipartFile_shouldThrowBucketStorageServiceException_whenAmazonServiceExceptionIsThrown()
-            throws IOException {
+            throws Exception {
 
         // Arrange
-        Mockito.doReturn(transferManager)
-                .when(awsBucketStorageHelper).buildTransferManager(amazonS3);
-        Mockito.doReturn(file)
-                .when(awsBucketStorageHelper).convertMultipartFileToTemporaryFile(multipartFile);
+        Mockito.doReturn(inputStream)
+                .when(multipartFile).getInputStream();
         Mockito.doThrow(AmazonServiceException.class)
-                .when(transferManager).upload(bucketName, fileName, file);
-        Mockito.doReturn(tempFileDeletedTrue)
-                .when(file).delete();
+                .when(awsMultipartUploader).upload(eq(bucketName), eq(fileName), any(InputStream.class), any());
 
         // Act
-        try {
-            awsBucketStorageService.uploadMultipartFile(bucketName, fileName, multipartFile);
-        } catch (BucketStorageServiceException e) {
-            assertThat(e).isInstanceOf(BucketStorageServiceException.class);
-        }
+        awsBucketStorageService.uploadMultipartFile(bucketName, fileName, multipartFile);
+    }
+
+    @Test(expected = BucketStorageServiceException.class)
+    public void uploadMultipartFile_shouldThrowBucketStorageServiceException_whenMultipartFileCannotBeRead()
+            throws IOException {
+
+        // Arrange
+        Mockito.doThrow(IOException.class)
+                .when(multipartFile).getInputStream();
+
+        // Act
+        awsBucketStorageService.uploadMultipartFile(bucketName, fileName, multipartFile);
+    }
+
+    @Test
+    public void getFileMetadata_shouldReturnMetadataWithoutGettingObject_whenCalledWithFileName() {
+
+        // Arrange
+        Mockito.doReturn(objectMetadata)
+                .when(amazonS3).getObjectMetadata(bucketName, fileName);
+        Mockito.doReturn(contentType)
+                .when(objectMetadata).getContentType();
+        Mockito.doReturn(contentLength)
+                .when(objectMetadata).getContentLength();
+
+        // Act
+        BucketStorageMetadata metadata = awsBucketStorageService.getFileMetadata(bucketName, fileName);
 
         // Assert
-        verifyTempFileDeleteIsCalledOnce();
+        assertThat(metadata.getContentType()).isEqualTo(contentType);
+        assertThat(metadata.getContentLength()).isEqualTo(contentLength);
+        Mockito.verify(amazonS3, VerificationModeFactory.times(0))
+                .getObject(any(GetObjectRequest.class));
+    }
+
+    @Test(expected = BucketStorageFileNotFoundException.class)
+    public void getFileMetadata_shouldThrowBucketStorageFileNotFoundException_whenS3RespondsNotFound() {
+
+        // Arrange
+        AmazonServiceException amazonServiceException = new AmazonServiceException("Not Found");
+        amazonServiceException.setStatusCode(404);
+        Mockito.doThrow(amazonServiceException)
+                .when(amazonS3).getObjectMetadata(bucketName, fileName);
+
+        // Act
+        awsBucketStorageService.getFileMetadata(bucketName, fileName);
+    }
+
+    @Test(expected = BucketStorageTransientException.class)
+    public void getFileMetadata_shouldThrowBucketStorageTransientException_whenS3RespondsServiceUnavailable() {
+
+        // Arrange
+        AmazonServiceException amazonServiceException = new AmazonServiceException("Slow Down");
+        amazonServiceException.setStatusCode(503);
+        Mockito.doThrow(amazonServiceException)
+                .when(amazonS3).getObjectMetadata(bucketName, fileName);
+
+        // Act
+        awsBucketStorageService.getFileMetadata(bucketName, fileName);
     }
 
     @Test
@@ -263,23 +394,99 @@ public class AWSBucketStorageImplTest {
                 .getObject(any(GetObjectRequest.class));
     }
 
-    private void verifyTransferManagerUploadIsCalledOnce() {
-        Mockito.verify(transferManager, VerificationModeFactory.times(1))
-                .upload(eq(bucketName), eq(fileName), any(File.class));
-    }
-
-    private void verifyUploadWaitForCompletionIsCalledOnce() throws InterruptedException {
-        Mockito.verify(upload, VerificationModeFactory.times(1))
-                .waitForCompletion();
+    private void verifyS3ObjectIsNotClosed() throws IOException {
+        Mockito.verify(s3Object, VerificationModeFactory.times(0))
+                .close();
     }
 
-    private void verifyTempFileDeleteIsCalledOnce() {
-        Mockito.verify(file, VerificationModeFactory.times(1))
-                .delete();
+    private void verifyMultipartUploaderUploadIsCalledOnce() throws IOException, InterruptedException {
+        Mockito.verify(awsMultipartUploader, VerificationModeFactory.times(1))
+                .upload(bucketName, fileName, inputStream, contentType);
     }
 
     private void verifyAmazonS3DeleteObjectIsCalledOnce() {
         Mockito.verify(amazonS3, VerificationModeFactory.times(1))
                 .deleteObject(any(DeleteObjectRequest.class));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void listFiles_shouldMergeDirectoriesIntoFiles_whenCalledWithDelimiter() {
+
+        // Arrange
+        BucketStorageListOptions listOptions = new BucketStorageListOptions("docs/", "/", 2, null);
+        ListObjectsV2Request listObjectsV2Request = new ListObjectsV2Request();
+        ListObjectsV2Result listObjectsV2Result = new ListObjectsV2Result();
+        S3ObjectSummary objectSummary = new S3ObjectSummary();
+        objectSummary.setKey("docs/b.txt");
+        objectSummary.setSize(contentLength);
+        objectSummary.setETag("etag");
+        objectSummary.setLastModified(new Date(1546300800000L));
+        listObjectsV2Result.getObjectSummaries().add(objectSummary);
+        listObjectsV2Result.getCommonPrefixes().add("docs/a/");
+        listObjectsV2Result.setTruncated(true);
+        listObjectsV2Result.setNextContinuationToken("next-token");
+        Mockito.doReturn(listObjectsV2Request)
+                .when(awsBucketStorageHelper).newListObjectsV2Request(bucketName, listOptions);
+        Mockito.doReturn(listObjectsV2Result)
+                .when(amazonS3).listObjectsV2(listObjectsV2Request);
+
+        // Act
+        BucketStorageListing listing = awsBucketStorageService.listFiles(bucketName, listOptions);
+
+        // Assert
+        assertThat(listing.getEntries()).extracting(BucketStorageListingEntry::getFileName)
+                .containsExactly("docs/a/", "docs/b.txt");
+        assertThat(listing.getEntries()).extracting(BucketStorageListingEntry::isDirectory)
+                .containsExactly(true, false);
+        assertThat(listing.getEntries().get(1).getLastModified()).isEqualTo(1546300800000L);
+        assertThat(listing.getNextPageToken()).isEqualTo("next-token");
+    }
+
+    @Test
+    public void deleteFiles_shouldSendOneRequestPerThousandKeys_whenCalledWithManyFileNames() {
+
+        // Arrange
+        List<String> fileNames = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            fileNames.add("test-" + i + ".txt");
+        }
+        Mockito.doReturn(deleteObjectsRequest)
+                .when(awsBucketStorageHelper).newDeleteObjectsRequest(eq(bucketName), any());
+
+        // Act
+        List<BucketStorageDeleteResult> results = awsBucketStorageService.deleteFiles(bucketName, fileNames);
+
+        // Assert
+        Mockito.verify(awsBucketStorageHelper, VerificationModeFactory.times(2))
+                .newDeleteObjectsRequest(eq(bucketName), Mockito.argThat(keys -> keys.size() == 1000));
+        Mockito.verify(awsBucketStorageHelper, VerificationModeFactory.times(1))
+                .newDeleteObjectsRequest(eq(bucketName), Mockito.argThat(keys -> keys.size() == 500));
+        Mockito.verify(amazonS3, VerificationModeFactory.times(3))
+                .deleteObjects(deleteObjectsRequest);
+        assertThat(results).extracting(BucketStorageDeleteResult::getFileName).isEqualTo(fileNames);
+        assertThat(results).allMatch(BucketStorageDeleteResult::isDeleted);
+    }
+
+    @Test
+    public void deleteFiles_shouldReportFailedKeys_whenMultiObjectDeleteExceptionIsThrown() {
+
+        // Arrange
+        MultiObjectDeleteException.DeleteError deleteError = new MultiObjectDeleteException.DeleteError();
+        deleteError.setKey(fileName);
+        deleteError.setCode("AccessDenied");
+        deleteError.setMessage("Access Denied");
+        Mockito.doReturn(deleteObjectsRequest)
+                .when(awsBucketStorageHelper).newDeleteObjectsRequest(eq(bucketName), any());
+        Mockito.doThrow(new MultiObjectDeleteException(
+                Collections.singletonList(deleteError), Collections.emptyList()))
+                .when(amazonS3).deleteObjects(deleteObjectsRequest);
+
+        // Act
+        List<BucketStorageDeleteResult> results =
+                awsBucketStorageService.deleteFiles(bucketName, Arrays.asList(fileName, "other.txt"));
+
+        // Assert
+        assertThat(results).extracting(BucketStorageDeleteResult::isDeleted).containsExactly(false, true);
+        assertThat(results.get(0).getError()).isEqualTo("AccessDenied: Access Denied");
+    }
+}
@@ -0,0 +1,120 @@
+package com.experimentation.filestorage.bucket.aws;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.internal.verification.VerificationModeFactory;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.ByteArrayInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+
+public class AWSMultipartUploaderTest {
+
+    private static final int PART_SIZE = 5 * 1024 * 1024;
+
+    private AmazonS3 amazonS3;
+    private AWSMultipartUploader awsMultipartUploader;
+    private String bucketName;
+    private String fileName;
+    private String contentType;
+
+    @Before
+    public void setUp() {
+        amazonS3 = Mockito.mock(AmazonS3.class);
+        awsMultipartUploader = new AWSMultipartUploader(amazonS3, PART_SIZE, PART_SIZE, 4, 2, 2, 1);
+        bucketName = "example";
+        fileName = "test.bin";
+        contentType = MimeTypeUtils.APPLICATION_OCTET_STREAM_VALUE;
+
+        InitiateMultipartUploadResult initiateMultipartUploadResult = new InitiateMultipartUploadResult();
+        initiateMultipartUploadResult.setUploadId("upload-id");
+        Mockito.doReturn(initiateMultipartUploadResult)
+                .when(amazonS3).initiateMultipartUpload(any(InitiateMultipartUploadRequest.class));
+    }
+
+    @After
+    public void tearDown() {
+        awsMultipartUploader.shutdown();
+    }
+
+    @Test
+    public void upload_shouldPutObject_whenContentFitsInOnePart() throws Exception {
+
+        // Act
+        awsMultipartUploader.upload(bucketName, fileName, new ByteArrayInputStream(new byte[1024]), contentType);
+
+        // Assert
+        Mockito.verify(amazonS3, VerificationModeFactory.times(1))
+                .putObject(any(PutObjectRequest.class));
+        Mockito.verify(amazonS3, VerificationModeFactory.times(0))
+                .initiateMultipartUpload(any(InitiateMultipartUploadRequest.class));
+    }
+
+    @Test
+    public void upload_shouldCompleteMultipartUpload_whenContentSpansSeveralParts() throws Exception {
+
+        // Arrange
+        Mockito.doAnswer(invocation -> {
+            UploadPartRequest uploadPartRequest = invocation.getArgument(0);
+            UploadPartResult uploadPartResult = new UploadPartResult();
+            uploadPartResult.setPartNumber(uploadPartRequest.getPartNumber());
+            uploadPartResult.setETag("etag-" + uploadPartRequest.getPartNumber());
+            return uploadPartResult;
+        }).when(amazonS3).uploadPart(any(UploadPartRequest.class));
+
+        // Act
+        awsMultipartUploader.upload(bucketName, fileName,
+                new ByteArrayInputStream(new byte[2 * PART_SIZE + 1]), contentType);
+
+        // Assert
+        ArgumentCaptor<CompleteMultipartUploadRequest> captor =
+                ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        Mockito.verify(amazonS3, VerificationModeFactory.times(1))
+                .completeMultipartUpload(captor.capture());
+        assertThat(captor.getValue().getPartETags()).extracting(PartETag::getPartNumber).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    public void upload_shouldAbortMultipartUpload_whenAPartFails() throws Exception {
+
+        // Arrange
+        Mockito.doThrow(AmazonServiceException.class)
+                .when(amazonS3).uploadPart(any(UploadPartRequest.class));
+
+        // Act
+        try {
+            awsMultipartUploader.upload(bucketName, fileName,
+                    new ByteArrayInputStream(new byte[2 * PART_SIZE]), contentType);
+            fail("Expected the failed part to be rethrown");
+        } catch (AmazonServiceException e) {
+            assertThat(e).isInstanceOf(AmazonServiceException.class);
+        }
+
+        // Assert
+        Mockito.verify(amazonS3, VerificationModeFactory.times(1))
+                .abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        Mockito.verify(amazonS3, VerificationModeFactory.times(0))
+                .completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    public void getStatistics_shouldReturnAllBuffers_whenUploadHasFinished() throws Exception {
+
+        // Act
+        awsMultipartUploader.upload(bucketName, fileName, new ByteArrayInputStream(new byte[1024]), contentType);
+        AWSTransferStatistics statistics = awsMultipartUploader.getStatistics();
+
+        // Assert
+        assertThat(statistics.getActiveUploads()).isEqualTo(0);
+        assertThat(statistics.getAvailableBuffers()).isEqualTo(4);
+    }
+}
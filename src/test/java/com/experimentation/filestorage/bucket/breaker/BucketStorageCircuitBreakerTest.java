@@ -0,0 +1,151 @@
+package com.experimentation.filestorage.bucket.breaker;
+
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.experimentation.filestorage.bucket.util.BucketStorageFileNotFoundException;
+import com.experimentation.filestorage.bucket.util.BucketStorageTransientException;
+import com.experimentation.filestorage.bucket.util.BucketStorageUnavailableException;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class BucketStorageCircuitBreakerTest {
+
+    private final String bucketName = "example";
+
+    @Test
+    public void call_shouldFailFastWithRetryAfter_whenTooManyRecentCallsFailed() {
+
+        // Arrange
+        BucketStorageCircuitBreaker bucketStorageCircuitBreaker =
+                new BucketStorageCircuitBreaker(4, 4, 50, 100, 5000, 30, 1);
+        callTimes(bucketStorageCircuitBreaker, 2, () -> "metadata");
+        callTimes(bucketStorageCircuitBreaker, 2, () -> {
+            throw new BucketStorageTransientException("unavailable");
+        });
+        AtomicInteger calls = new AtomicInteger();
+
+        // Act
+        try {
+            bucketStorageCircuitBreaker.call(BucketStorageType.AWS_S3, bucketName, true, calls::incrementAndGet);
+            fail("Expected the call to be refused");
+        }
+
+        // Assert
+        catch (BucketStorageUnavailableException e) {
+            assertThat(e.getRetryAfterSeconds()).isBetween(29L, 30L);
+            assertThat(calls.get()).isEqualTo(0);
+            assertThat(bucketStorageCircuitBreaker.getStatistics().get(0).getState()).isEqualTo("OPEN");
+        }
+    }
+
+    @Test
+    public void call_shouldStayClosed_whenProviderAnswersWithNonTransientFailures() {
+
+        // Arrange
+        BucketStorageCircuitBreaker bucketStorageCircuitBreaker =
+                new BucketStorageCircuitBreaker(4, 4, 50, 100, 5000, 30, 1);
+        callTimes(bucketStorageCircuitBreaker, 4, () -> {
+            throw new BucketStorageFileNotFoundException("File a.txt does not exist at location example");
+        });
+
+        // Act
+        String result = bucketStorageCircuitBreaker.call(BucketStorageType.AWS_S3, bucketName, true, () -> "metadata");
+
+        // Assert
+        assertThat(result).isEqualTo("metadata");
+        assertThat(bucketStorageCircuitBreaker.getStatistics().get(0).getState()).isEqualTo("CLOSED");
+    }
+
+    @Test
+    public void call_shouldCloseCircuit_whenProbeCallsSucceedAfterOpenDuration() {
+
+        // Arrange
+        BucketStorageCircuitBreaker bucketStorageCircuitBreaker =
+                new BucketStorageCircuitBreaker(2, 2, 50, 100, 5000, 0, 2);
+        callTimes(bucketStorageCircuitBreaker, 2, () -> {
+            throw new BucketStorageTransientException("unavailable");
+        });
+
+        // Act
+        callTimes(bucketStorageCircuitBreaker, 2, () -> "metadata");
+
+        // Assert
+        BucketStorageCircuitBreakerStatistics statistics = bucketStorageCircuitBreaker.getStatistics().get(0);
+        assertThat(statistics.getState()).isEqualTo("CLOSED");
+        assertThat(statistics.getTimesOpened()).isEqualTo(1L);
+    }
+
+    @Test
+    public void call_shouldStayHalfOpen_whenProbeCallsAreRefusedByTheBulkhead() {
+
+        // Arrange
+        BucketStorageCircuitBreaker bucketStorageCircuitBreaker =
+                new BucketStorageCircuitBreaker(2, 2, 50, 100, 5000, 0, 2);
+        callTimes(bucketStorageCircuitBreaker, 2, () -> {
+            throw new BucketStorageTransientException("unavailable");
+        });
+
+        // Act
+        for (int i = 0; i < 4; i++) {
+            try {
+                bucketStorageCircuitBreaker.call(BucketStorageType.AWS_S3, bucketName, true, () -> {
+                    throw new BucketStorageUnavailableException("Bulkhead for AWS_S3/example is full", 1);
+                });
+                fail("Expected the call to be refused");
+            }
+
+            // Every probe is refused by the bulkhead rather than by the breaker
+            catch (BucketStorageUnavailableException e) {
+                assertThat(e.getMessage()).startsWith("Bulkhead");
+            }
+        }
+
+        // Assert
+        BucketStorageCircuitBreakerStatistics statistics = bucketStorageCircuitBreaker.getStatistics().get(0);
+        assertThat(statistics.getState()).isEqualTo("HALF_OPEN");
+        assertThat(statistics.getRejected()).isEqualTo(0L);
+    }
+
+    @Test
+    public void call_shouldStayClosedWithEmptyWindow_whenCallsAreRefusedByTheBulkhead() {
+
+        // Arrange
+        BucketStorageCircuitBreaker bucketStorageCircuitBreaker =
+                new BucketStorageCircuitBreaker(4, 4, 50, 100, 5000, 30, 1);
+
+        // Act
+        for (int i = 0; i < 4; i++) {
+            try {
+                bucketStorageCircuitBreaker.call(BucketStorageType.AWS_S3, bucketName, true, () -> {
+                    throw new BucketStorageUnavailableException("Bulkhead for AWS_S3/example is full", 1);
+                });
+            }
+
+            // Refusals are expected and must not be recorded
+            catch (BucketStorageUnavailableException e) {
+                assertThat(e.getRetryAfterSeconds()).isEqualTo(1L);
+            }
+        }
+
+        // Assert
+        assertThat(bucketStorageCircuitBreaker.getStatistics().get(0).getBufferedCalls()).isEqualTo(0);
+    }
+
+    private void callTimes(BucketStorageCircuitBreaker bucketStorageCircuitBreaker, int times,
+                           Supplier<String> call) {
+        for (int i = 0; i < times; i++) {
+            try {
+                bucketStorageCircuitBreaker.call(BucketStorageType.AWS_S3, bucketName, true, call);
+            }
+
+            // Failed calls are what is being recorded
+            catch (RuntimeException e) {
+                assertThat(e).isNotInstanceOf(BucketStorageUnavailableException.class);
+            }
+        }
+    }
+}
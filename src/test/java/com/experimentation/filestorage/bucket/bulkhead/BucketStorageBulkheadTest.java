@@ -0,0 +1,141 @@
+package com.experimentation.filestorage.bucket.bulkhead;
+
+import com.experimentation.filestorage.bucket.BucketStorage;
+import com.experimentation.filestorage.bucket.BucketStorageDTO;
+import com.experimentation.filestorage.bucket.BucketStorageReadOptions;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.experimentation.filestorage.bucket.cache.DiskCacheBeanPostProcessor;
+import com.experimentation.filestorage.bucket.cache.MemoryCacheBeanPostProcessor;
+import com.experimentation.filestorage.bucket.util.BucketStorageUnavailableException;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class BucketStorageBulkheadTest {
+
+    private BucketStorageBulkhead bucketStorageBulkhead;
+    private String bucketName;
+
+    @Before
+    public void setUp() {
+        bucketStorageBulkhead = new BucketStorageBulkhead(true, false, 0, 1, 1, 1, 0.5, 1000);
+        bucketName = "example";
+    }
+
+    @Test
+    public void call_shouldRejectRequest_whenProviderHasNoFreePermit() {
+
+        // Arrange
+        bucketStorageBulkhead.callForContent(BucketStorageType.AWS_S3, bucketName,
+                () -> new BucketStorageDTO("a.txt", "text/plain", 1, new ByteArrayInputStream(new byte[1])));
+
+        // Act
+        try {
+            bucketStorageBulkhead.call(BucketStorageType.AWS_S3, bucketName, true, () -> "metadata");
+            fail("Expected the request over the limit to be rejected");
+        }
+
+        // Assert
+        catch (BucketStorageUnavailableException e) {
+            assertThat(bucketStorageBulkhead.getStatistics().get(0).getRejected()).isEqualTo(1L);
+        }
+    }
+
+    @Test
+    public void call_shouldAcceptRequestForOtherProvider_whenOneProviderHasNoFreePermit() {
+
+        // Arrange
+        bucketStorageBulkhead.callForContent(BucketStorageType.AWS_S3, bucketName,
+                () -> new BucketStorageDTO("a.txt", "text/plain", 1, new ByteArrayInputStream(new byte[1])));
+
+        // Act
+        String result = bucketStorageBulkhead.call(BucketStorageType.GCP, bucketName, true, () -> "metadata");
+
+        // Assert
+        assertThat(result).isEqualTo("metadata");
+    }
+
+    @Test
+    public void callForContent_shouldReleasePermit_whenFileIsClosed() throws Exception {
+
+        // Arrange
+        BucketStorageDTO openFile = bucketStorageBulkhead.callForContent(BucketStorageType.GCP, bucketName,
+                () -> new BucketStorageDTO("a.txt", "text/plain", 1, new ByteArrayInputStream(new byte[1])));
+
+        // Act
+        openFile.close();
+        String result = bucketStorageBulkhead.call(BucketStorageType.GCP, bucketName, true, () -> "metadata");
+
+        // Assert
+        assertThat(result).isEqualTo("metadata");
+        assertThat(bucketStorageBulkhead.getStatistics().get(0).getInFlight()).isEqualTo(0);
+    }
+
+    @Test
+    public void getFile_shouldTakePermitPerProviderCall_whenProviderIsWrappedInBulkhead() throws Exception {
+
+        // Arrange
+        BucketStorage provider = Mockito.mock(BucketStorage.class);
+        Mockito.doAnswer(invocation ->
+                new BucketStorageDTO("a.txt", "text/plain", 1, new ByteArrayInputStream(new byte[1])))
+                .when(provider).getFile(bucketName, "a.txt", BucketStorageReadOptions.none());
+        BulkheadBeanPostProcessor postProcessor = new BulkheadBeanPostProcessor(true, () -> bucketStorageBulkhead);
+        BucketStorage bulkheadProvider = (BucketStorage) postProcessor.postProcessAfterInitialization(
+                provider, BucketStorageType.AWS_S3.toString());
+        BucketStorageDTO openFile = bulkheadProvider.getFile(bucketName, "a.txt");
+
+        // Act
+        try {
+            bulkheadProvider.getFile(bucketName, "a.txt");
+            fail("Expected the second read to wait for the first one's permit");
+        }
+
+        // Assert
+        catch (BucketStorageUnavailableException e) {
+            openFile.close();
+            assertThat(bulkheadProvider.getFile(bucketName, "a.txt")).isNotNull();
+        }
+    }
+
+    @Test
+    public void bulkheadBeanPostProcessor_shouldWrapProvidersBelowTheCaches_whenBeansAreDecorated() {
+
+        // Assert
+        assertThat(BulkheadBeanPostProcessor.ORDER).isLessThan(DiskCacheBeanPostProcessor.ORDER);
+        assertThat(BulkheadBeanPostProcessor.ORDER).isLessThan(MemoryCacheBeanPostProcessor.ORDER);
+    }
+
+    @Test
+    public void onSample_shouldCutLimit_whenRequestIsSlowerThanThreshold() {
+
+        // Arrange
+        BulkheadLimit bulkheadLimit = new BulkheadLimit(20, 4, 200, 0.5, TimeUnit.SECONDS.toNanos(1));
+
+        // Act
+        bulkheadLimit.onSample(TimeUnit.SECONDS.toNanos(2), 20);
+
+        // Assert
+        assertThat(bulkheadLimit.getLimit()).isEqualTo(10);
+    }
+
+    @Test
+    public void onSample_shouldRaiseLimitByOnePerLimitOfRequests_whenRequestsAreFastAndLimitIsInUse() {
+
+        // Arrange
+        BulkheadLimit bulkheadLimit = new BulkheadLimit(4, 4, 200, 0.5, TimeUnit.SECONDS.toNanos(1));
+
+        // Act
+        for (int i = 0; i < 5; i++) {
+            bulkheadLimit.onSample(TimeUnit.MILLISECONDS.toNanos(10), 4);
+        }
+
+        // Assert
+        assertThat(bulkheadLimit.getLimit()).isEqualTo(5);
+    }
+}
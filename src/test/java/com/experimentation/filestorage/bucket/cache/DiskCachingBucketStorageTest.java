@@ -0,0 +1,268 @@
+package com.experimentation.filestorage.bucket.cache;
+
+import com.experimentation.filestorage.bucket.BucketStorage;
+import com.experimentation.filestorage.bucket.BucketStorageDTO;
+import com.experimentation.filestorage.bucket.BucketStorageRange;
+import com.experimentation.filestorage.bucket.BucketStorageReadOptions;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.mockito.internal.verification.VerificationModeFactory;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DiskCachingBucketStorageTest {
+
+    @Rule
+    public TemporaryFolder cacheDirectory = new TemporaryFolder();
+
+    private BucketStorage bucketStorage;
+    private BucketStorageDiskCache bucketStorageDiskCache;
+    private DiskCachingBucketStorage diskCachingBucketStorage;
+    private String bucketName;
+    private String fileName;
+    private String contentType;
+    private byte[] content;
+
+    @Before
+    public void setUp() {
+        bucketStorage = Mockito.mock(BucketStorage.class);
+        bucketStorageDiskCache = newDiskCache();
+        diskCachingBucketStorage =
+                new DiskCachingBucketStorage(BucketStorageType.AWS_S3, bucketStorage, bucketStorageDiskCache);
+        bucketName = "example";
+        fileName = "test.txt";
+        contentType = MimeTypeUtils.TEXT_PLAIN_VALUE;
+        content = "Some example test".getBytes();
+
+        Mockito.doAnswer(invocation -> newProviderDTO())
+                .when(bucketStorage).getFile(bucketName, fileName, BucketStorageReadOptions.none());
+    }
+
+    @After
+    public void tearDown() {
+        bucketStorageDiskCache.shutdown();
+    }
+
+    @Test
+    public void getFile_shouldServeFromLocalFile_whenFileWasReadCompletelyBefore() throws IOException {
+
+        // Arrange
+        readAll(diskCachingBucketStorage.getFile(bucketName, fileName));
+
+        // Act
+        BucketStorageDTO bucketStorageDTO = diskCachingBucketStorage.getFile(bucketName, fileName);
+
+        // Assert
+        assertThat(bucketStorageDTO.getLocalFileChannel()).isNotNull();
+        assertThat(bucketStorageDTO.getContentType()).isEqualTo(contentType);
+        assertThat(readAll(bucketStorageDTO)).isEqualTo(content);
+        verifyProviderGetFileIsCalled(1);
+        assertThat(bucketStorageDiskCache.getStatistics().getHits()).isEqualTo(1);
+    }
+
+    @Test
+    public void getFile_shouldServeRangeFromLocalFile_whenFileIsCached() throws IOException {
+
+        // Arrange
+        readAll(diskCachingBucketStorage.getFile(bucketName, fileName));
+
+        // Act
+        BucketStorageDTO bucketStorageDTO = diskCachingBucketStorage.getFile(
+                bucketName, fileName, BucketStorageReadOptions.withRange(BucketStorageRange.ofBytes(5, 11)));
+
+        // Assert
+        assertThat(new String(readAll(bucketStorageDTO))).isEqualTo("example");
+        assertThat(bucketStorageDTO.getRange().getFirstBytePosition()).isEqualTo(5L);
+        assertThat(bucketStorageDTO.getInstanceLength()).isEqualTo(content.length);
+    }
+
+    @Test
+    public void getFile_shouldKeepServedFileInPlace_whenCachedFileIsInvalidatedWhileItIsRead() throws IOException {
+
+        // Arrange
+        readAll(diskCachingBucketStorage.getFile(bucketName, fileName));
+        BucketStorageDTO bucketStorageDTO = diskCachingBucketStorage.getFile(bucketName, fileName);
+        ByteBuffer byteBuffer = ByteBuffer.allocate(content.length);
+
+        // Act
+        diskCachingBucketStorage.deleteFile(bucketName, fileName);
+        bucketStorageDTO.getLocalFileChannel().read(byteBuffer, 0);
+        bucketStorageDTO.close();
+
+        // Assert
+        assertThat(byteBuffer.array()).isEqualTo(content);
+        assertThat(Files.readAllBytes(bucketStorageDTO.getLocalFile())).isEqualTo(content);
+        assertThat(bucketStorageDiskCache.getStatistics().getEntries()).isEqualTo(0);
+    }
+
+    @Test
+    public void getFile_shouldNotCache_whenFileIsClosedBeforeItIsReadCompletely() throws IOException {
+
+        // Arrange
+        BucketStorageDTO partiallyReadDTO = diskCachingBucketStorage.getFile(bucketName, fileName);
+        partiallyReadDTO.getInputStream().read(new byte[4]);
+        partiallyReadDTO.close();
+
+        // Act
+        diskCachingBucketStorage.getFile(bucketName, fileName).close();
+
+        // Assert
+        verifyProviderGetFileIsCalled(2);
+        assertThat(cacheDirectory.getRoot().list()).isEmpty();
+    }
+
+    @Test
+    public void getFile_shouldCacheFile_whenAnotherFileIsDeletedWhileItIsRead() throws IOException {
+
+        // Arrange
+        BucketStorageDTO bucketStorageDTO = diskCachingBucketStorage.getFile(bucketName, fileName);
+
+        // Act
+        diskCachingBucketStorage.deleteFile(bucketName, "other.txt");
+        readAll(bucketStorageDTO);
+        diskCachingBucketStorage.getFile(bucketName, fileName).close();
+
+        // Assert
+        verifyProviderGetFileIsCalled(1);
+        assertThat(bucketStorageDiskCache.getStatistics().getWrites()).isEqualTo(1);
+    }
+
+    @Test
+    public void getFile_shouldNotCache_whenFileIsDeletedWhileItIsRead() throws IOException {
+
+        // Arrange
+        BucketStorageDTO bucketStorageDTO = diskCachingBucketStorage.getFile(bucketName, fileName);
+
+        // Act
+        diskCachingBucketStorage.deleteFile(bucketName, fileName);
+        readAll(bucketStorageDTO);
+
+        // Assert
+        assertThat(bucketStorageDiskCache.getStatistics().getWrites()).isEqualTo(0);
+        assertThat(cacheDirectory.getRoot().list()).isEmpty();
+    }
+
+    @Test
+    public void deleteFile_shouldInvalidateCachedFile_whenCalledWithFileName() throws IOException {
+
+        // Arrange
+        readAll(diskCachingBucketStorage.getFile(bucketName, fileName));
+
+        // Act
+        diskCachingBucketStorage.deleteFile(bucketName, fileName);
+        diskCachingBucketStorage.getFile(bucketName, fileName).close();
+
+        // Assert
+        verifyProviderGetFileIsCalled(2);
+        assertThat(cacheDirectory.getRoot().list()).isEmpty();
+    }
+
+    @Test
+    public void diskCache_shouldRecoverCachedFiles_whenCreatedAgainOnTheSameDirectory() throws IOException {
+
+        // Arrange
+        readAll(diskCachingBucketStorage.getFile(bucketName, fileName));
+
+        // Act
+        BucketStorageDiskCache recoveredDiskCache = newDiskCache();
+        recoveredDiskCache.shutdown();
+
+        // Assert
+        assertThat(recoveredDiskCache.getStatistics().getEntries()).isEqualTo(1);
+        assertThat(recoveredDiskCache.getStatistics().getUsedBytes()).isEqualTo(content.length);
+    }
+
+    @Test
+    public void diskCache_shouldNotRecoverInvalidatedFile_whenCreatedAgainOnTheSameDirectory() throws IOException {
+
+        // Arrange
+        readAll(diskCachingBucketStorage.getFile(bucketName, fileName));
+        diskCachingBucketStorage.getFile(bucketName, fileName).close();
+        diskCachingBucketStorage.deleteFile(bucketName, fileName);
+
+        // Act
+        BucketStorageDiskCache recoveredDiskCache = newDiskCache();
+        DiskCacheEntry entry = recoveredDiskCache.get(BucketStorageType.AWS_S3, bucketName, fileName);
+        recoveredDiskCache.shutdown();
+
+        // Assert
+        assertThat(entry).isNull();
+        assertThat(recoveredDiskCache.getStatistics().getEntries()).isEqualTo(0);
+        assertThat(cacheDirectory.getRoot().list()).isEmpty();
+    }
+
+    @Test
+    public void diskCache_shouldCountServedFileAgainstBudgetUntilDeleted_whenItLeavesTheCache() throws IOException {
+
+        // Arrange
+        readAll(diskCachingBucketStorage.getFile(bucketName, fileName));
+        diskCachingBucketStorage.getFile(bucketName, fileName).close();
+        diskCachingBucketStorage.deleteFile(bucketName, fileName);
+        long retiredBytes = bucketStorageDiskCache.getStatistics().getRetiredBytes();
+
+        // Act
+        bucketStorageDiskCache.shutdown();
+
+        // Assert
+        assertThat(retiredBytes).isEqualTo(content.length);
+        assertThat(bucketStorageDiskCache.getStatistics().getRetiredBytes()).isEqualTo(0);
+        assertThat(cacheDirectory.getRoot().list()).isEmpty();
+    }
+
+    @Test
+    public void diskCache_shouldKeepServedFileUntilGraceEnds_whenItLeavesTheCache() throws Exception {
+
+        // Arrange
+        bucketStorageDiskCache.shutdown();
+        bucketStorageDiskCache = new BucketStorageDiskCache(true, cacheDirectory.getRoot().getPath(), 1024, 1024,
+                3600, 1);
+        diskCachingBucketStorage =
+                new DiskCachingBucketStorage(BucketStorageType.AWS_S3, bucketStorage, bucketStorageDiskCache);
+        readAll(diskCachingBucketStorage.getFile(bucketName, fileName));
+        diskCachingBucketStorage.getFile(bucketName, fileName).close();
+        diskCachingBucketStorage.deleteFile(bucketName, fileName);
+
+        // Act
+        bucketStorageDiskCache.sweepRetiredEntries();
+        String[] filesWithinGrace = cacheDirectory.getRoot().list();
+        Thread.sleep(1100);
+        bucketStorageDiskCache.sweepRetiredEntries();
+
+        // Assert
+        assertThat(filesWithinGrace).hasSize(1);
+        assertThat(cacheDirectory.getRoot().list()).isEmpty();
+        assertThat(bucketStorageDiskCache.getStatistics().getRetiredBytes()).isEqualTo(0);
+    }
+
+    private BucketStorageDiskCache newDiskCache() {
+        return new BucketStorageDiskCache(true, cacheDirectory.getRoot().getPath(), 1024, 1024, 3600, 60);
+    }
+
+    private BucketStorageDTO newProviderDTO() {
+        return new BucketStorageDTO(fileName, contentType, content.length, new ByteArrayInputStream(content));
+    }
+
+    private byte[] readAll(BucketStorageDTO bucketStorageDTO) throws IOException {
+        try (InputStream inputStream = bucketStorageDTO.getInputStream()) {
+            return FileCopyUtils.copyToByteArray(inputStream);
+        }
+    }
+
+    private void verifyProviderGetFileIsCalled(int times) {
+        Mockito.verify(bucketStorage, VerificationModeFactory.times(times))
+                .getFile(bucketName, fileName, BucketStorageReadOptions.none());
+    }
+}
@@ -0,0 +1,181 @@
+package com.experimentation.filestorage.bucket.cache;
+
+import com.experimentation.filestorage.bucket.BucketStorage;
+import com.experimentation.filestorage.bucket.BucketStorageDTO;
+import com.experimentation.filestorage.bucket.BucketStorageRange;
+import com.experimentation.filestorage.bucket.BucketStorageReadOptions;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.internal.verification.VerificationModeFactory;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+
+public class MemoryCachingBucketStorageTest {
+
+    private static final int FILE_SIZE = 100;
+
+    private BucketStorage bucketStorage;
+    private BucketStorageMemoryCache bucketStorageMemoryCache;
+    private MemoryCachingBucketStorage memoryCachingBucketStorage;
+    private String bucketName;
+    private String fileName;
+
+    @Before
+    public void setUp() {
+        bucketStorage = Mockito.mock(BucketStorage.class);
+        bucketStorageMemoryCache = new BucketStorageMemoryCache(true, 3 * FILE_SIZE, FILE_SIZE, 3600);
+        memoryCachingBucketStorage =
+                new MemoryCachingBucketStorage(BucketStorageType.GCP, bucketStorage, bucketStorageMemoryCache);
+        bucketName = "example";
+        fileName = "hot.txt";
+
+        Mockito.doAnswer(invocation -> new BucketStorageDTO(invocation.getArgument(1),
+                MimeTypeUtils.TEXT_PLAIN_VALUE, FILE_SIZE, new ByteArrayInputStream(new byte[FILE_SIZE])))
+                .when(bucketStorage).getFile(anyString(), anyString(), any(BucketStorageReadOptions.class));
+    }
+
+    @Test
+    public void getFile_shouldServeFromMemory_whenFileWasReadBefore() throws IOException {
+
+        // Arrange
+        readAll(memoryCachingBucketStorage.getFile(bucketName, fileName));
+
+        // Act
+        BucketStorageDTO bucketStorageDTO = memoryCachingBucketStorage.getFile(bucketName, fileName);
+
+        // Assert
+        assertThat(readAll(bucketStorageDTO)).hasSize(FILE_SIZE);
+        assertThat(bucketStorageDTO.getContentType()).isEqualTo(MimeTypeUtils.TEXT_PLAIN_VALUE);
+        verifyProviderGetFileIsCalled(fileName, 1);
+        assertThat(bucketStorageMemoryCache.getStatistics().getHits()).isEqualTo(1);
+    }
+
+    @Test
+    public void getFile_shouldServeRangeFromMemory_whenFileIsCached() throws IOException {
+
+        // Arrange
+        readAll(memoryCachingBucketStorage.getFile(bucketName, fileName));
+
+        // Act
+        BucketStorageDTO bucketStorageDTO = memoryCachingBucketStorage.getFile(
+                bucketName, fileName, BucketStorageReadOptions.withRange(BucketStorageRange.lastBytes(10)));
+
+        // Assert
+        assertThat(readAll(bucketStorageDTO)).hasSize(10);
+        assertThat(bucketStorageDTO.getRange().getFirstBytePosition()).isEqualTo(FILE_SIZE - 10L);
+        assertThat(bucketStorageDTO.getInstanceLength()).isEqualTo(FILE_SIZE);
+    }
+
+    @Test
+    public void getFile_shouldReturnNotModified_whenCachedETagMatches() throws IOException {
+
+        // Arrange
+        BucketStorageDTO providerDTO = new BucketStorageDTO(fileName, MimeTypeUtils.TEXT_PLAIN_VALUE, FILE_SIZE,
+                new ByteArrayInputStream(new byte[FILE_SIZE]));
+        providerDTO.setETag("etag");
+        Mockito.doReturn(providerDTO)
+                .when(bucketStorage).getFile(bucketName, fileName, BucketStorageReadOptions.none());
+        readAll(memoryCachingBucketStorage.getFile(bucketName, fileName));
+
+        // Act
+        BucketStorageDTO bucketStorageDTO = memoryCachingBucketStorage.getFile(bucketName, fileName,
+                new BucketStorageReadOptions(null, Collections.singletonList("etag"), -1));
+
+        // Assert
+        assertThat(bucketStorageDTO.isNotModified()).isTrue();
+        assertThat(bucketStorageDTO.getETag()).isEqualTo("etag");
+        verifyProviderGetFileIsCalled(fileName, 1);
+    }
+
+    @Test
+    public void uploadMultipartFile_shouldInvalidateCachedFile_whenCalledWithFileName() throws IOException {
+
+        // Arrange
+        readAll(memoryCachingBucketStorage.getFile(bucketName, fileName));
+
+        // Act
+        memoryCachingBucketStorage.uploadMultipartFile(bucketName, fileName, null);
+        readAll(memoryCachingBucketStorage.getFile(bucketName, fileName));
+
+        // Assert
+        verifyProviderGetFileIsCalled(fileName, 2);
+    }
+
+    @Test
+    public void getFile_shouldCacheFile_whenAnotherFileIsDeletedWhileItIsRead() throws IOException {
+
+        // Arrange
+        Mockito.doAnswer(invocation -> {
+            memoryCachingBucketStorage.deleteFile(bucketName, "other.txt");
+            return new BucketStorageDTO(fileName, MimeTypeUtils.TEXT_PLAIN_VALUE, FILE_SIZE,
+                    new ByteArrayInputStream(new byte[FILE_SIZE]));
+        }).when(bucketStorage).getFile(eq(bucketName), eq(fileName), any(BucketStorageReadOptions.class));
+
+        // Act
+        readAll(memoryCachingBucketStorage.getFile(bucketName, fileName));
+        readAll(memoryCachingBucketStorage.getFile(bucketName, fileName));
+
+        // Assert
+        verifyProviderGetFileIsCalled(fileName, 1);
+    }
+
+    @Test
+    public void getFile_shouldNotCacheFile_whenFileIsDeletedWhileItIsRead() throws IOException {
+
+        // Arrange
+        Mockito.doAnswer(invocation -> {
+            memoryCachingBucketStorage.deleteFile(bucketName, fileName);
+            return new BucketStorageDTO(fileName, MimeTypeUtils.TEXT_PLAIN_VALUE, FILE_SIZE,
+                    new ByteArrayInputStream(new byte[FILE_SIZE]));
+        }).when(bucketStorage).getFile(eq(bucketName), eq(fileName), any(BucketStorageReadOptions.class));
+
+        // Act
+        readAll(memoryCachingBucketStorage.getFile(bucketName, fileName));
+
+        // Assert
+        assertThat(bucketStorageMemoryCache.getStatistics().getWrites()).isEqualTo(0);
+    }
+
+    @Test
+    public void getFile_shouldKeepFrequentlyReadFiles_whenManyOtherFilesAreReadOnce() throws IOException {
+
+        // Arrange
+        for (int i = 0; i < 3; i++) {
+            readAll(memoryCachingBucketStorage.getFile(bucketName, fileName));
+        }
+
+        // Act
+        for (int i = 0; i < 10; i++) {
+            readAll(memoryCachingBucketStorage.getFile(bucketName, "scan-" + i + ".txt"));
+        }
+        readAll(memoryCachingBucketStorage.getFile(bucketName, fileName));
+
+        // Assert
+        verifyProviderGetFileIsCalled(fileName, 1);
+        assertThat(bucketStorageMemoryCache.getStatistics().getRejections()).isGreaterThan(0);
+        assertThat(bucketStorageMemoryCache.getStatistics().getUsedBytes()).isLessThanOrEqualTo(3 * FILE_SIZE);
+    }
+
+    private byte[] readAll(BucketStorageDTO bucketStorageDTO) throws IOException {
+        try (InputStream inputStream = bucketStorageDTO.getInputStream()) {
+            return FileCopyUtils.copyToByteArray(inputStream);
+        }
+    }
+
+    private void verifyProviderGetFileIsCalled(String fileName, int times) {
+        Mockito.verify(bucketStorage, VerificationModeFactory.times(times))
+                .getFile(eq(bucketName), eq(fileName), any(BucketStorageReadOptions.class));
+    }
+}
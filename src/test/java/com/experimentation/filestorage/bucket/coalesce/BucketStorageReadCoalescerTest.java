@@ -0,0 +1,129 @@
+package com.experimentation.filestorage.bucket.coalesce;
+
+import com.experimentation.filestorage.bucket.BucketStorageDTO;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.google.common.io.ByteStreams;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BucketStorageReadCoalescerTest {
+
+    @Rule
+    public TemporaryFolder spillDirectory = new TemporaryFolder();
+
+    private BucketStorageReadCoalescer bucketStorageReadCoalescer;
+    private ExecutorService executorService;
+    private String bucketName;
+    private String fileName;
+    private byte[] content;
+
+    @Before
+    public void setUp() {
+        bucketStorageReadCoalescer = new BucketStorageReadCoalescer(
+                true, 1024, 64, spillDirectory.getRoot().getAbsolutePath());
+        executorService = Executors.newFixedThreadPool(3);
+        bucketName = "example";
+        fileName = "a.txt";
+        content = "shared content".getBytes(StandardCharsets.UTF_8);
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void getFile_shouldFetchFileOnce_whenReadsArriveWhileFetchIsInFlight() throws Exception {
+
+        // Arrange
+        CountDownLatch fetchReleased = new CountDownLatch(1);
+        AtomicInteger fetches = new AtomicInteger();
+        Supplier<BucketStorageDTO> getFile = () -> {
+            fetches.incrementAndGet();
+            awaitQuietly(fetchReleased);
+            return newDTO("v1");
+        };
+
+        // Act
+        List<Future<String>> reads = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            reads.add(executorService.submit(() -> {
+                try (BucketStorageDTO bucketStorageDTO = bucketStorageReadCoalescer.getFile(
+                        BucketStorageType.AWS_S3, bucketName, fileName, getFile)) {
+                    return bucketStorageDTO.getETag() + ":"
+                            + new String(ByteStreams.toByteArray(bucketStorageDTO.getInputStream()),
+                            StandardCharsets.UTF_8);
+                }
+            }));
+        }
+        while (bucketStorageReadCoalescer.getStatistics().getCoalescedReads() < 2) {
+            Thread.sleep(5);
+        }
+        fetchReleased.countDown();
+
+        // Assert
+        for (Future<String> read : reads) {
+            assertThat(read.get(5, TimeUnit.SECONDS)).isEqualTo("v1:shared content");
+        }
+        assertThat(fetches.get()).isEqualTo(1);
+        assertThat(bucketStorageReadCoalescer.getStatistics().getReadsInFlight()).isEqualTo(0);
+    }
+
+    @Test
+    public void getFile_shouldFetchFileAgain_whenFileWasUploadedDuringFetch() throws Exception {
+
+        // Arrange
+        AtomicInteger fetches = new AtomicInteger();
+        Supplier<BucketStorageDTO> getFile = () -> {
+            fetches.incrementAndGet();
+            return newDTO("v1");
+        };
+        BucketStorageDTO firstRead = bucketStorageReadCoalescer.getFile(
+                BucketStorageType.GCP, bucketName, fileName, getFile);
+
+        // Act
+        bucketStorageReadCoalescer.invalidate(BucketStorageType.GCP, bucketName, fileName);
+        BucketStorageDTO secondRead = bucketStorageReadCoalescer.getFile(
+                BucketStorageType.GCP, bucketName, fileName, getFile);
+
+        // Assert
+        assertThat(fetches.get()).isEqualTo(2);
+        assertThat(ByteStreams.toByteArray(firstRead.getInputStream())).isEqualTo(content);
+        assertThat(ByteStreams.toByteArray(secondRead.getInputStream())).isEqualTo(content);
+        firstRead.close();
+        secondRead.close();
+    }
+
+    private BucketStorageDTO newDTO(String eTag) {
+        BucketStorageDTO bucketStorageDTO =
+                new BucketStorageDTO(fileName, "text/plain", content.length, new ByteArrayInputStream(content));
+        bucketStorageDTO.setETag(eTag);
+        return bucketStorageDTO;
+    }
+
+    private void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.experimentation.filestorage.bucket.coalesce;
+
+import com.experimentation.filestorage.bucket.BucketStorageDTO;
+import com.google.common.io.ByteStreams;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReadFlightTest {
+
+    @Rule
+    public TemporaryFolder spillDirectory = new TemporaryFolder();
+
+    @Test
+    public void read_shouldServeSlowReaderFromSpillFile_whenFastReaderIsFarAhead() throws Exception {
+
+        // Arrange
+        byte[] content = new byte[1000];
+        new Random(7).nextBytes(content);
+        AtomicLong spilledBytes = new AtomicLong();
+        ReadFlight readFlight = new ReadFlight("AWS_S3/example/a.bin", detached -> { },
+                spillDirectory.getRoot().toPath(), 64, 16, spilledBytes);
+        readFlight.tryJoin();
+        readFlight.open(newDTO(new ByteArrayInputStream(content)));
+
+        BucketStorageDTO fastReader = readFlight.await(true);
+        BucketStorageDTO slowReader = readFlight.await(false);
+
+        // Act
+        byte[] fastContent = ByteStreams.toByteArray(fastReader.getInputStream());
+        byte[] slowContent = ByteStreams.toByteArray(slowReader.getInputStream());
+
+        // Assert
+        assertThat(fastContent).isEqualTo(content);
+        assertThat(slowContent).isEqualTo(content);
+        assertThat(spilledBytes.get()).isGreaterThan(0L);
+    }
+
+    @Test
+    public void read_shouldNotSpillAndStopTakingReaders_whenReadersKeepUpWithTheFetch() throws Exception {
+
+        // Arrange
+        byte[] content = new byte[1000];
+        new Random(7).nextBytes(content);
+        AtomicLong spilledBytes = new AtomicLong();
+        ReadFlight readFlight = new ReadFlight("AWS_S3/example/a.bin", detached -> { },
+                spillDirectory.getRoot().toPath(), 64, 16, spilledBytes);
+        readFlight.tryJoin();
+        readFlight.open(newDTO(new ByteArrayInputStream(content)));
+
+        InputStream firstReader = readFlight.await(true).getInputStream();
+        InputStream secondReader = readFlight.await(false).getInputStream();
+        ByteArrayOutputStream firstContent = new ByteArrayOutputStream();
+        ByteArrayOutputStream secondContent = new ByteArrayOutputStream();
+        byte[] buffer = new byte[16];
+
+        // Act
+        int count;
+        while ((count = firstReader.read(buffer)) != -1) {
+            firstContent.write(buffer, 0, count);
+            secondContent.write(buffer, 0, secondReader.read(buffer));
+        }
+
+        // Assert
+        assertThat(firstContent.toByteArray()).isEqualTo(content);
+        assertThat(secondContent.toByteArray()).isEqualTo(content);
+        assertThat(spilledBytes.get()).isEqualTo(0L);
+        assertThat(readFlight.tryJoin()).isFalse();
+    }
+
+    @Test
+    public void close_shouldCloseProviderContent_whenLastReaderLeavesBeforeEnd() throws Exception {
+
+        // Arrange
+        AtomicBoolean upstreamClosed = new AtomicBoolean();
+        AtomicBoolean detached = new AtomicBoolean();
+        ReadFlight readFlight = new ReadFlight("GCP/example/a.bin", flight -> detached.set(true),
+                spillDirectory.getRoot().toPath(), 64, 16, new AtomicLong());
+        readFlight.tryJoin();
+        readFlight.open(newDTO(new ByteArrayInputStream(new byte[1000]) {
+            @Override
+            public void close() {
+                upstreamClosed.set(true);
+            }
+        }));
+
+        BucketStorageDTO firstReader = readFlight.await(true);
+        BucketStorageDTO secondReader = readFlight.await(false);
+        firstReader.getInputStream().read(new byte[100]);
+
+        // Act
+        firstReader.close();
+        boolean closedWhileSecondReaderWasOpen = upstreamClosed.get();
+        secondReader.close();
+
+        // Assert
+        assertThat(closedWhileSecondReaderWasOpen).isFalse();
+        assertThat(upstreamClosed.get()).isTrue();
+        assertThat(detached.get()).isTrue();
+    }
+
+    private BucketStorageDTO newDTO(InputStream inputStream) {
+        BucketStorageDTO bucketStorageDTO =
+                new BucketStorageDTO("a.bin", "application/octet-stream", -1, inputStream);
+        bucketStorageDTO.setETag("v1");
+        return bucketStorageDTO;
+    }
+}
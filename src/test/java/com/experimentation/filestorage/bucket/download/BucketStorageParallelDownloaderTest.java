@@ -0,0 +1,124 @@
+package com.experimentation.filestorage.bucket.download;
+
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BucketStorageParallelDownloaderTest {
+
+    private BucketStorageParallelDownloader bucketStorageParallelDownloader;
+    private byte[] content;
+    private AtomicInteger rangesRead;
+    private BucketStorageRangeReader rangeReader;
+
+    @Before
+    public void setUp() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("filestorage.download.aws-s3.part-size", "1024")
+                .withProperty("filestorage.download.aws-s3.parallelism", "3")
+                .withProperty("filestorage.download.gcp.part-size", "1024")
+                .withProperty("filestorage.download.gcp.parallelism", "3");
+
+        // Room for the window of exactly one download
+        bucketStorageParallelDownloader = new BucketStorageParallelDownloader(environment, 4, 3 * 1024);
+
+        content = new byte[10_000];
+        new Random(42).nextBytes(content);
+        rangesRead = new AtomicInteger();
+
+        rangeReader = range -> {
+            rangesRead.incrementAndGet();
+            int first = range.getFirstBytePosition().intValue();
+            int last = range.getLastBytePosition().intValue();
+            return new ByteArrayInputStream(Arrays.copyOfRange(content, first, last + 1));
+        };
+    }
+
+    @After
+    public void tearDown() {
+        bucketStorageParallelDownloader.shutdown();
+    }
+
+    @Test
+    public void newInputStream_shouldReturnFirstPart_whenBufferedBytesWouldExceedTheCap() throws IOException {
+
+        // Arrange
+        InputStream firstPart = new ByteArrayInputStream(content);
+
+        // Act
+        try (InputStream parallelInputStream = bucketStorageParallelDownloader.newInputStream(
+                BucketStorageType.AWS_S3, new ByteArrayInputStream(content), content.length, rangeReader);
+             InputStream singleInputStream = bucketStorageParallelDownloader.newInputStream(
+                     BucketStorageType.AWS_S3, firstPart, content.length, rangeReader)) {
+
+            // Assert
+            assertThat(parallelInputStream).isInstanceOf(ParallelRangeInputStream.class);
+            assertThat(singleInputStream).isSameAs(firstPart);
+            assertThat(bucketStorageParallelDownloader.getBufferedBytes()).isEqualTo(3 * 1024);
+        }
+    }
+
+    @Test
+    public void newInputStream_shouldReadWholeObjectAsOneRange_whenCapIsReachedWithoutFirstPart() throws IOException {
+
+        // Arrange
+        InputStream parallelInputStream = bucketStorageParallelDownloader.newInputStream(
+                BucketStorageType.GCP, null, content.length, rangeReader);
+        int rangesReadByParallelDownload = rangesRead.get();
+
+        // Act
+        byte[] result;
+        try (InputStream singleInputStream = bucketStorageParallelDownloader.newInputStream(
+                BucketStorageType.GCP, null, content.length, rangeReader)) {
+            result = readAll(singleInputStream);
+        }
+        finally {
+            parallelInputStream.close();
+        }
+
+        // Assert
+        assertThat(result).isEqualTo(content);
+        assertThat(rangesRead.get() - rangesReadByParallelDownload).isEqualTo(1);
+    }
+
+    @Test
+    public void newInputStream_shouldDownloadInParallelAgain_whenEarlierDownloadIsClosed() throws IOException {
+
+        // Arrange
+        try (InputStream earlierInputStream = bucketStorageParallelDownloader.newInputStream(
+                BucketStorageType.GCP, null, content.length, rangeReader)) {
+            readAll(earlierInputStream);
+        }
+
+        // Act
+        try (InputStream inputStream = bucketStorageParallelDownloader.newInputStream(
+                BucketStorageType.GCP, null, content.length, rangeReader)) {
+
+            // Assert
+            assertThat(inputStream).isInstanceOf(ParallelRangeInputStream.class);
+        }
+        assertThat(bucketStorageParallelDownloader.getBufferedBytes()).isZero();
+    }
+
+    private byte[] readAll(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[700];
+        int bytesRead;
+        while ((bytesRead = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, bytesRead);
+        }
+        return outputStream.toByteArray();
+    }
+}
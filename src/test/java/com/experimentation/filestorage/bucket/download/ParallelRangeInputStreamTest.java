@@ -0,0 +1,180 @@
+package com.experimentation.filestorage.bucket.download;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ParallelRangeInputStreamTest {
+
+    private ExecutorService executorService;
+    private byte[] content;
+    private ParallelDownloadSettings settings;
+    private AtomicInteger rangesRead;
+    private BucketStorageRangeReader rangeReader;
+
+    @Before
+    public void setUp() {
+        executorService = Executors.newFixedThreadPool(4);
+        content = new byte[10_000];
+        new Random(42).nextBytes(content);
+        settings = new ParallelDownloadSettings(true, 0, 1024, 3);
+        rangesRead = new AtomicInteger();
+
+        rangeReader = range -> {
+            rangesRead.incrementAndGet();
+            int first = range.getFirstBytePosition().intValue();
+            int last = range.getLastBytePosition().intValue();
+            return new ByteArrayInputStream(Arrays.copyOfRange(content, first, last + 1));
+        };
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void read_shouldReturnContentInOrder_whenPartsAreFetchedInParallel() throws IOException {
+
+        // Act
+        byte[] result;
+        try (InputStream inputStream = new ParallelRangeInputStream(
+                null, content.length, settings, rangeReader, executorService, () -> { })) {
+            result = readAll(inputStream);
+        }
+
+        // Assert
+        assertThat(result).isEqualTo(content);
+        assertThat(rangesRead.get()).isEqualTo(10);
+    }
+
+    @Test
+    public void read_shouldUseFirstPartStream_whenOneIsGiven() throws IOException {
+
+        // Arrange
+        InputStream firstPart = new ByteArrayInputStream(content);
+
+        // Act
+        byte[] result;
+        try (InputStream inputStream = new ParallelRangeInputStream(
+                firstPart, content.length, settings, rangeReader, executorService, () -> { })) {
+            result = readAll(inputStream);
+        }
+
+        // Assert
+        assertThat(result).isEqualTo(content);
+        assertThat(rangesRead.get()).isEqualTo(9);
+    }
+
+    @Test(expected = IOException.class)
+    public void read_shouldThrowIOException_whenAPartCannotBeRead() throws IOException {
+
+        // Arrange
+        BucketStorageRangeReader failingRangeReader = range -> {
+            if (range.getFirstBytePosition() > 0) {
+                throw new IOException("Unable to read " + range);
+            }
+            return rangeReader.openRange(range);
+        };
+
+        // Act
+        try (InputStream inputStream = new ParallelRangeInputStream(
+                null, content.length, settings, failingRangeReader, executorService, () -> { })) {
+            readAll(inputStream);
+        }
+    }
+
+    @Test
+    public void close_shouldRunOnReleasedOnce_whenClosedTwice() throws IOException {
+
+        // Arrange
+        AtomicInteger closeCount = new AtomicInteger();
+        InputStream inputStream = new ParallelRangeInputStream(
+                null, content.length, settings, rangeReader, executorService, closeCount::incrementAndGet);
+
+        // Act
+        inputStream.close();
+        inputStream.close();
+
+        // Assert
+        assertThat(closeCount.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void read_shouldScheduleNextPart_onlyOnceCurrentPartHasBeenRead() throws Exception {
+
+        // Arrange
+        InputStream inputStream = new ParallelRangeInputStream(
+                null, content.length, settings, rangeReader, executorService, () -> { });
+
+        // Act
+        int firstByte = inputStream.read();
+        executorService.shutdown();
+        executorService.awaitTermination(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertThat(firstByte).isEqualTo(content[0] & 0xFF);
+        assertThat(rangesRead.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void close_shouldRunOnReleased_onlyOncePartsBeingFetchedHaveFinished() throws Exception {
+
+        // Arrange
+        CountDownLatch partsStarted = new CountDownLatch(3);
+        CountDownLatch providerAnswers = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        BucketStorageRangeReader blockingRangeReader = range -> {
+            partsStarted.countDown();
+
+            boolean answered = false;
+            while (!answered) {
+                try {
+                    answered = providerAnswers.await(5, TimeUnit.SECONDS);
+                }
+
+                // Like a socket read, the wait is not ended by the interrupt of a cancelled task
+                catch (InterruptedException e) {
+                    continue;
+                }
+            }
+            return rangeReader.openRange(range);
+        };
+        InputStream inputStream = new ParallelRangeInputStream(
+                null, content.length, settings, blockingRangeReader, executorService, released::countDown);
+        partsStarted.await(5, TimeUnit.SECONDS);
+
+        // Act
+        inputStream.close();
+        boolean releasedWhileFetching = released.getCount() == 0;
+        providerAnswers.countDown();
+
+        // Assert
+        assertThat(releasedWhileFetching).isFalse();
+        assertThat(released.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private byte[] readAll(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[700];
+        int bytesRead;
+        while ((bytesRead = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, bytesRead);
+        }
+        return outputStream.toByteArray();
+    }
+}
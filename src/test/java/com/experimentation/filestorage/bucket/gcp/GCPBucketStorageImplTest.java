@@ -1,13 +1,31 @@
 package com.experimentation.filestorage.bucket.gcp;
 
 import com.experimentation.filestorage.bucket.BucketStorageDTO;
+import com.experimentation.filestorage.bucket.BucketStorageDeleteResult;
+import com.experimentation.filestorage.bucket.BucketStorageListOptions;
+import com.experimentation.filestorage.bucket.BucketStorageListing;
+import com.experimentation.filestorage.bucket.BucketStorageListingEntry;
+import com.experimentation.filestorage.bucket.BucketStorageMetadata;
+import com.experimentation.filestorage.bucket.BucketStorageRange;
+import com.experimentation.filestorage.bucket.BucketStorageReadOptions;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.experimentation.filestorage.bucket.batch.BucketStorageBatchExecutor;
+import com.experimentation.filestorage.bucket.download.BucketStorageParallelDownloader;
+import com.experimentation.filestorage.bucket.download.BucketStorageRangeReader;
+import com.experimentation.filestorage.bucket.util.BucketStorageFileNotFoundException;
 import com.experimentation.filestorage.bucket.util.BucketStorageHelper;
+import com.experimentation.filestorage.bucket.util.BucketStorageRangeNotSatisfiableException;
 import com.experimentation.filestorage.bucket.util.BucketStorageServiceException;
+import com.google.api.gax.paging.Page;
 import com.google.cloud.BaseServiceException;
+import com.google.cloud.ReadChannel;
 import com.google.cloud.storage.Blob;
 import com.google.cloud.storage.BlobId;
 import com.google.cloud.storage.BlobInfo;
 import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageBatch;
+import com.google.cloud.storage.StorageBatchResult;
+import com.google.cloud.storage.StorageException;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -20,13 +38,20 @@ import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 
 @RunWith(SpringRunner.class)
-@ContextConfiguration(classes = {GCPBucketStorageImpl.class})
+@ContextConfiguration(classes = {GCPBucketStorageImpl.class, BucketStorageBatchExecutor.class})
 public class GCPBucketStorageImplTest {
 
     @Autowired
@@ -41,6 +66,12 @@ public class GCPBucketStorageImplTest {
     @MockBean
     private BucketStorageHelper bucketStorageHelper;
 
+    @MockBean
+    private BucketStorageParallelDownloader bucketStorageParallelDownloader;
+
+    @MockBean
+    private GCPResumableUploader gcpResumableUploader;
+
     @MockBean
     private MultipartFile multipartFile;
 
@@ -48,6 +79,7 @@ public class GCPBucketStorageImplTest {
     private String bucketName;
     private String fileName;
     private BlobId blobId;
+    private long generation;
     private String contentType;
     private byte[] content;
     private boolean deletedTrue;
@@ -57,16 +89,22 @@ public class GCPBucketStorageImplTest {
     private BucketStorageDTO bucketStorageDTO;
     private BlobInfo blobInfo;
     private Blob blob;
+    private ReadChannel readChannel;
+    private InputStream inputStream;
 
     @Before
     public void setUp() throws Exception {
         bucketName = "example";
         fileName = "test.txt";
         blobId = BlobId.of(bucketName, fileName);
+        generation = 1L;
         contentType = MimeTypeUtils.TEXT_PLAIN_VALUE;
         content = "Example text".getBytes();
 
-        bucketStorageDTO = new BucketStorageDTO(fileName, contentType, content);
+        inputStream = new ByteArrayInputStream(content);
+        readChannel = Mockito.mock(ReadChannel.class);
+
+        bucketStorageDTO = new BucketStorageDTO(fileName, contentType, content.length, inputStream);
         blobInfo = Mockito.mock(BlobInfo.class);
         blob = Mockito.mock(Blob.class);
         deletedTrue = true;
@@ -83,10 +121,16 @@ public class GCPBucketStorageImplTest {
                 .when(storage).get(blobId);
         Mockito.doReturn(contentType)
                 .when(blob).getContentType();
-        Mockito.doReturn(content)
-                .when(blob).getContent();
+        Mockito.doReturn((long) content.length)
+                .when(gcpBucketStorageHelper).getSize(blob);
+        Mockito.doReturn(generation)
+                .when(blob).getGeneration();
+        Mockito.doReturn(readChannel)
+                .when(storage).reader(blobId, Storage.BlobSourceOption.generationMatch(generation));
+        Mockito.doReturn(inputStream)
+                .when(gcpBucketStorageHelper).newInputStream(readChannel);
         Mockito.doReturn(this.bucketStorageDTO)
-                .when(bucketStorageHelper).createBucketStorageDTO(fileName, contentType, content);
+                .when(bucketStorageHelper).createBucketStorageDTO(fileName, contentType, content.length, inputStream);
 
         // Act
         BucketStorageDTO bucketStorageDTO = gcpBucketStorageService.getFile(bucketName, fileName);
@@ -94,8 +138,113 @@ public class GCPBucketStorageImplTest {
         // Assert
         assertThat(bucketStorageDTO.getFileName()).isEqualTo(fileName);
         assertThat(bucketStorageDTO.getContentType()).isEqualTo(contentType);
-        assertThat(bucketStorageDTO.getData()).isEqualTo(content);
+        assertThat(bucketStorageDTO.getInputStream()).isEqualTo(inputStream);
         verifyStorageGetIsCalledOnce();
+        verifyBlobGetContentIsNotCalled();
+    }
+
+    @Test
+    public void getFile_shouldNotReadContent_whenETagMatchesIfNoneMatch() {
+
+        // Arrange
+        BucketStorageReadOptions readOptions =
+                new BucketStorageReadOptions(null, Collections.singletonList("etag"), -1);
+        Mockito.doReturn(blobId)
+                .when(gcpBucketStorageHelper).createBlobId(bucketName, fileName);
+        Mockito.doReturn(blob)
+                .when(storage).get(blobId);
+        Mockito.doReturn("etag")
+                .when(blob).getEtag();
+        Mockito.doReturn(BucketStorageDTO.notModified(fileName, "etag", 0))
+                .when(bucketStorageHelper).createNotModifiedBucketStorageDTO(fileName, "etag", 0);
+
+        // Act
+        BucketStorageDTO bucketStorageDTO = gcpBucketStorageService.getFile(bucketName, fileName, readOptions);
+
+        // Assert
+        assertThat(bucketStorageDTO.isNotModified()).isTrue();
+        Mockito.verify(storage, VerificationModeFactory.times(0))
+                .reader(any(BlobId.class));
+    }
+
+    @Test
+    public void getFile_shouldDownloadInParallel_whenBlobIsAboveThreshold() {
+
+        // Arrange
+        Mockito.doReturn(blobId)
+                .when(gcpBucketStorageHelper).createBlobId(bucketName, fileName);
+        Mockito.doReturn(blob)
+                .when(storage).get(blobId);
+        Mockito.doReturn(contentType)
+                .when(blob).getContentType();
+        Mockito.doReturn((long) content.length)
+                .when(gcpBucketStorageHelper).getSize(blob);
+        Mockito.doReturn(true)
+                .when(bucketStorageParallelDownloader).shouldDownloadInParallel(BucketStorageType.GCP, content.length);
+        Mockito.doReturn(inputStream)
+                .when(bucketStorageParallelDownloader).newInputStream(eq(BucketStorageType.GCP), isNull(),
+                        eq((long) content.length), any(BucketStorageRangeReader.class));
+        Mockito.doReturn(this.bucketStorageDTO)
+                .when(bucketStorageHelper).createBucketStorageDTO(fileName, contentType, content.length, inputStream);
+
+        // Act
+        BucketStorageDTO bucketStorageDTO = gcpBucketStorageService.getFile(bucketName, fileName);
+
+        // Assert
+        assertThat(bucketStorageDTO.getInputStream()).isEqualTo(inputStream);
+        Mockito.verify(storage, VerificationModeFactory.times(0))
+                .reader(eq(blobId), any(Storage.BlobSourceOption.class));
+    }
+
+    @Test
+    public void getFile_shouldSeekToRangeStart_whenCalledWithRange() throws IOException {
+
+        // Arrange
+        BucketStorageRange range = BucketStorageRange.lastBytes(4);
+        BucketStorageRange resolvedRange = range.resolve(content.length);
+        Mockito.doReturn(blobId)
+                .when(gcpBucketStorageHelper).createBlobId(bucketName, fileName);
+        Mockito.doReturn(blob)
+                .when(storage).get(blobId);
+        Mockito.doReturn(contentType)
+                .when(blob).getContentType();
+        Mockito.doReturn((long) content.length)
+                .when(gcpBucketStorageHelper).getSize(blob);
+        Mockito.doReturn(generation)
+                .when(blob).getGeneration();
+        Mockito.doReturn(readChannel)
+                .when(storage).reader(blobId, Storage.BlobSourceOption.generationMatch(generation));
+        Mockito.doReturn(inputStream)
+                .when(gcpBucketStorageHelper).newInputStream(readChannel, resolvedRange.getLength());
+        Mockito.doReturn(this.bucketStorageDTO)
+                .when(bucketStorageHelper)
+                .createBucketStorageDTO(fileName, contentType, resolvedRange.getLength(), inputStream);
+
+        // Act
+        BucketStorageDTO bucketStorageDTO =
+                gcpBucketStorageService.getFile(bucketName, fileName, BucketStorageReadOptions.withRange(range));
+
+        // Assert
+        assertThat(bucketStorageDTO.getRange().getFirstBytePosition()).isEqualTo((long) content.length - 4);
+        assertThat(bucketStorageDTO.getInstanceLength()).isEqualTo(content.length);
+        Mockito.verify(gcpBucketStorageHelper, VerificationModeFactory.times(1))
+                .seek(eq(readChannel), any(BucketStorageRange.class));
+    }
+
+    @Test(expected = BucketStorageRangeNotSatisfiableException.class)
+    public void getFile_shouldThrowBucketStorageRangeNotSatisfiableException_whenRangeStartsAfterEnd() {
+
+        // Arrange
+        Mockito.doReturn(blobId)
+                .when(gcpBucketStorageHelper).createBlobId(bucketName, fileName);
+        Mockito.doReturn(blob)
+                .when(storage).get(blobId);
+        Mockito.doReturn((long) content.length)
+                .when(gcpBucketStorageHelper).getSize(blob);
+
+        // Act
+        gcpBucketStorageService.getFile(bucketName, fileName,
+                BucketStorageReadOptions.withRange(BucketStorageRange.fromByte(content.length)));
     }
 
     @Test(expected = BucketStorageServiceException.class)
@@ -128,7 +277,7 @@ public class GCPBucketStorageImplTest {
 
     @Test
     public void uploadMultipartFile_shouldCompleteUpload_whenCalledWithBucketNameAndFileNameAndMultipartFile()
-            throws IOException {
+            throws Exception {
 
         // Arrange
         Mockito.doReturn(blobId)
@@ -137,16 +286,14 @@ public class GCPBucketStorageImplTest {
                 .when(multipartFile).getContentType();
         Mockito.doReturn(blobInfo)
                 .when(gcpBucketStorageHelper).createBlobInfo(blobId, contentType);
-        Mockito.doReturn(content)
-                .when(multipartFile).getBytes();
-        Mockito.doReturn(blob)
-                .when(storage).create(blobInfo, content);
+        Mockito.doReturn(inputStream)
+                .when(multipartFile).getInputStream();
 
         // Act
         gcpBucketStorageService.uploadMultipartFile(bucketName, fileName, multipartFile);
 
         // Assert
-        verifyStorageCreateIsCalledOnce();
+        verifyResumableUploaderUploadIsCalledOnce();
     }
 
     @Test(expected = BucketStorageServiceException.class)
@@ -161,7 +308,7 @@ public class GCPBucketStorageImplTest {
         Mockito.doReturn(blobInfo)
                 .when(gcpBucketStorageHelper).createBlobInfo(blobId, contentType);
         Mockito.doThrow(IOException.class)
-                .when(multipartFile).getBytes();
+                .when(multipartFile).getInputStream();
 
         // Act
         gcpBucketStorageService.uploadMultipartFile(bucketName, fileName, multipartFile);
@@ -169,7 +316,7 @@ public class GCPBucketStorageImplTest {
 
     @Test(expected = BucketStorageServiceException.class)
     public void uploadFile_shouldThrowBucketStorageServiceException_whenBaseServiceExceptionIsThrown()
-            throws IOException {
+            throws Exception {
 
         // Arrange
         Mockito.doReturn(blobId)
@@ -178,15 +325,52 @@ public class GCPBucketStorageImplTest {
                 .when(multipartFile).getContentType();
         Mockito.doReturn(blobInfo)
                 .when(gcpBucketStorageHelper).createBlobInfo(blobId, contentType);
-        Mockito.doReturn(content)
-                .when(multipartFile).getBytes();
+        Mockito.doReturn(inputStream)
+                .when(multipartFile).getInputStream();
         Mockito.doThrow(BaseServiceException.class)
-                .when(storage).create(blobInfo, content);
+                .when(gcpResumableUploader).upload(blobInfo, inputStream);
 
         // Act
         gcpBucketStorageService.uploadMultipartFile(bucketName, fileName, multipartFile);
     }
 
+    @Test
+    public void getFileMetadata_shouldReturnMetadataWithoutReadingContent_whenCalledWithFileName() {
+
+        // Arrange
+        Mockito.doReturn(blobId)
+                .when(gcpBucketStorageHelper).createBlobId(bucketName, fileName);
+        Mockito.doReturn(blob)
+                .when(storage).get(eq(blobId), any(Storage.BlobGetOption.class));
+        Mockito.doReturn(contentType)
+                .when(blob).getContentType();
+        Mockito.doReturn((long) content.length)
+                .when(gcpBucketStorageHelper).getSize(blob);
+
+        // Act
+        BucketStorageMetadata metadata = gcpBucketStorageService.getFileMetadata(bucketName, fileName);
+
+        // Assert
+        assertThat(metadata.getContentType()).isEqualTo(contentType);
+        assertThat(metadata.getContentLength()).isEqualTo(content.length);
+        Mockito.verify(storage, VerificationModeFactory.times(0))
+                .reader(any(BlobId.class));
+        verifyBlobGetContentIsNotCalled();
+    }
+
+    @Test(expected = BucketStorageFileNotFoundException.class)
+    public void getFileMetadata_shouldThrowBucketStorageFileNotFoundException_whenFileIsNotInBucket() {
+
+        // Arrange
+        Mockito.doReturn(blobId)
+                .when(gcpBucketStorageHelper).createBlobId(bucketName, fileName);
+        Mockito.doReturn(null)
+                .when(storage).get(eq(blobId), any(Storage.BlobGetOption.class));
+
+        // Act
+        gcpBucketStorageService.getFileMetadata(bucketName, fileName);
+    }
+
     @Test
     public void deleteFile_shouldDelete_whenCalledWithFileNameAndFileIsInBucket() {
 
@@ -229,14 +413,110 @@ public class GCPBucketStorageImplTest {
         gcpBucketStorageService.deleteFile(bucketName, fileName);
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void listFiles_shouldReturnDirectoriesAndFiles_whenCalledWithDelimiter() {
+
+        // Arrange
+        Page<Blob> page = Mockito.mock(Page.class);
+        Blob directoryBlob = Mockito.mock(Blob.class);
+        Mockito.doReturn(true)
+                .when(directoryBlob).isDirectory();
+        Mockito.doReturn("docs/a/")
+                .when(directoryBlob).getName();
+        Mockito.doReturn("docs/b.txt")
+                .when(blob).getName();
+        Mockito.doReturn("etag")
+                .when(blob).getEtag();
+        Mockito.doReturn((long) content.length)
+                .when(gcpBucketStorageHelper).getSize(blob);
+        Mockito.doReturn(Arrays.asList(directoryBlob, blob))
+                .when(page).getValues();
+        Mockito.doReturn("")
+                .when(page).getNextPageToken();
+        Mockito.doReturn(page)
+                .when(storage).list(eq(bucketName), Mockito.<Storage.BlobListOption>any());
+
+        // Act
+        BucketStorageListing listing =
+                gcpBucketStorageService.listFiles(bucketName, new BucketStorageListOptions("docs/", "/", 2, null));
+
+        // Assert
+        assertThat(listing.getEntries()).extracting(BucketStorageListingEntry::isDirectory)
+                .containsExactly(true, false);
+        assertThat(listing.getEntries().get(1).getSize()).isEqualTo(content.length);
+        assertThat(listing.getNextPageToken()).isNull();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void deleteFiles_shouldReportEachBlobsResult_whenCalledWithFileNames() {
+
+        // Arrange
+        StorageBatch storageBatch = Mockito.mock(StorageBatch.class);
+        StorageBatchResult<Boolean> deletedResult = Mockito.mock(StorageBatchResult.class);
+        StorageBatchResult<Boolean> notFoundResult = Mockito.mock(StorageBatchResult.class);
+        StorageBatchResult<Boolean> failedResult = Mockito.mock(StorageBatchResult.class);
+        BlobId missingBlobId = BlobId.of(bucketName, "missing.txt");
+        BlobId forbiddenBlobId = BlobId.of(bucketName, "forbidden.txt");
+
+        Mockito.doReturn(blobId)
+                .when(gcpBucketStorageHelper).createBlobId(bucketName, fileName);
+        Mockito.doReturn(missingBlobId)
+                .when(gcpBucketStorageHelper).createBlobId(bucketName, "missing.txt");
+        Mockito.doReturn(forbiddenBlobId)
+                .when(gcpBucketStorageHelper).createBlobId(bucketName, "forbidden.txt");
+        Mockito.doReturn(storageBatch)
+                .when(storage).batch();
+        Mockito.doReturn(deletedResult)
+                .when(storageBatch).delete(blobId);
+        Mockito.doReturn(notFoundResult)
+                .when(storageBatch).delete(missingBlobId);
+        Mockito.doReturn(failedResult)
+                .when(storageBatch).delete(forbiddenBlobId);
+        Mockito.doReturn(true)
+                .when(deletedResult).get();
+        Mockito.doReturn(false)
+                .when(notFoundResult).get();
+        Mockito.doThrow(new StorageException(403, "Forbidden"))
+                .when(failedResult).get();
+
+        // Act
+        List<BucketStorageDeleteResult> results = gcpBucketStorageService.deleteFiles(
+                bucketName, Arrays.asList(fileName, "missing.txt", "forbidden.txt"));
+
+        // Assert
+        Mockito.verify(storageBatch, VerificationModeFactory.times(1))
+                .submit();
+        assertThat(results).extracting(BucketStorageDeleteResult::isDeleted).containsExactly(true, false, false);
+        assertThat(results.get(2).getError()).isEqualTo("Forbidden");
+    }
+
+    @Test(expected = BucketStorageServiceException.class)
+    public void deleteFilesWithPrefix_shouldThrowBucketStorageServiceException_whenListingFails() {
+
+        // Arrange
+        Mockito.doThrow(new StorageException(500, "Internal Error"))
+                .when(storage).list(eq(bucketName),
+                        any(Storage.BlobListOption.class), any(Storage.BlobListOption.class));
+
+        // Act
+        gcpBucketStorageService.deleteFilesWithPrefix(bucketName, "reports/");
+    }
+
     private void verifyStorageGetIsCalledOnce() {
         Mockito.verify(storage, VerificationModeFactory.times(1))
                 .get(any(BlobId.class));
     }
 
-    private void verifyStorageCreateIsCalledOnce() {
-        Mockito.verify(storage, VerificationModeFactory.times(1))
-                .create(any(BlobInfo.class), any(byte[].class));
+    private void verifyBlobGetContentIsNotCalled() {
+        Mockito.verify(blob, VerificationModeFactory.times(0))
+                .getContent();
+    }
+
+    private void verifyResumableUploaderUploadIsCalledOnce() throws IOException, InterruptedException {
+        Mockito.verify(gcpResumableUploader, VerificationModeFactory.times(1))
+                .upload(blobInfo, inputStream);
     }
 
     private void verifyStorageDeleteIsCalledOnce() {
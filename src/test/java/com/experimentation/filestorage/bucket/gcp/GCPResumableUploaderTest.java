@@ -0,0 +1,100 @@
+package com.experimentation.filestorage.bucket.gcp;
+
+import com.google.cloud.RestorableState;
+import com.google.cloud.WriteChannel;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageException;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.internal.verification.VerificationModeFactory;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+
+public class GCPResumableUploaderTest {
+
+    private static final int CHUNK_SIZE = 256 * 1024;
+
+    private Storage storage;
+    private GCPResumableUploader gcpResumableUploader;
+    private BlobInfo blobInfo;
+    private WriteChannel writeChannel;
+    private WriteChannel restoredWriteChannel;
+    private RestorableState<WriteChannel> state;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        storage = Mockito.mock(Storage.class);
+        gcpResumableUploader = new GCPResumableUploader(storage, CHUNK_SIZE, 2, 2, 0);
+        blobInfo = BlobInfo.newBuilder(BlobId.of("example", "test.bin")).build();
+        writeChannel = Mockito.mock(WriteChannel.class);
+        restoredWriteChannel = Mockito.mock(WriteChannel.class);
+        state = Mockito.mock(RestorableState.class);
+
+        Mockito.doReturn(writeChannel)
+                .when(storage).writer(blobInfo);
+        Mockito.doReturn(state)
+                .when(writeChannel).capture();
+        Mockito.doReturn(state)
+                .when(restoredWriteChannel).capture();
+        Mockito.doReturn(restoredWriteChannel)
+                .when(state).restore();
+        Mockito.doAnswer(invocation -> drain(invocation.getArgument(0)))
+                .when(restoredWriteChannel).write(any(ByteBuffer.class));
+    }
+
+    @Test
+    public void upload_shouldResumeFromCapturedState_whenAChunkFailsWithARetryableError() throws Exception {
+
+        // Arrange
+        Mockito.doThrow(new StorageException(503, "Service Unavailable"))
+                .when(writeChannel).write(any(ByteBuffer.class));
+
+        // Act
+        gcpResumableUploader.upload(blobInfo, new ByteArrayInputStream(new byte[CHUNK_SIZE + 1]));
+
+        // Assert
+        Mockito.verify(state, VerificationModeFactory.times(1))
+                .restore();
+        Mockito.verify(restoredWriteChannel, VerificationModeFactory.times(2))
+                .write(any(ByteBuffer.class));
+        Mockito.verify(restoredWriteChannel, VerificationModeFactory.times(1))
+                .close();
+    }
+
+    @Test
+    public void upload_shouldNotCloseChannel_whenAChunkFailsWithANonRetryableError() throws Exception {
+
+        // Arrange
+        Mockito.doThrow(new StorageException(403, "Forbidden"))
+                .when(writeChannel).write(any(ByteBuffer.class));
+
+        // Act
+        try {
+            gcpResumableUploader.upload(blobInfo, new ByteArrayInputStream(new byte[CHUNK_SIZE]));
+            fail("Expected the failed chunk to be rethrown");
+        } catch (StorageException e) {
+            assertThat(e.getCode()).isEqualTo(403);
+        }
+
+        // Assert
+        Mockito.verify(state, VerificationModeFactory.times(0))
+                .restore();
+        Mockito.verify(writeChannel, VerificationModeFactory.times(0))
+                .close();
+    }
+
+    private static int drain(ByteBuffer byteBuffer) {
+        int remaining = byteBuffer.remaining();
+        byteBuffer.position(byteBuffer.limit());
+        return remaining;
+    }
+}
@@ -0,0 +1,84 @@
+package com.experimentation.filestorage.bucket.index;
+
+import com.experimentation.filestorage.bucket.BucketStorageListingEntry;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BucketMetadataIndexTest {
+
+    @Rule
+    public TemporaryFolder indexDirectory = new TemporaryFolder();
+
+    private Path directory;
+    private BucketMetadataIndex bucketMetadataIndex;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = indexDirectory.getRoot().toPath();
+        bucketMetadataIndex = BucketMetadataIndex.open(BucketStorageType.AWS_S3, "example", directory);
+    }
+
+    @After
+    public void tearDown() {
+        bucketMetadataIndex.close();
+    }
+
+    @Test
+    public void open_shouldRestoreSnapshotAndJournal_whenIndexIsReopened() throws Exception {
+
+        // Arrange
+        bucketMetadataIndex.startReconcile();
+        bucketMetadataIndex.addReconciled(Arrays.asList(
+                BucketStorageListingEntry.file("a.txt", 1, "a", 10),
+                BucketStorageListingEntry.file("b.txt", 2, "b", 20)));
+        bucketMetadataIndex.finishReconcile();
+        bucketMetadataIndex.put("c.txt", new MetadataIndexRecord(3, null, 30));
+        bucketMetadataIndex.remove("a.txt");
+        bucketMetadataIndex.close();
+
+        // Act
+        bucketMetadataIndex = BucketMetadataIndex.open(BucketStorageType.AWS_S3, "example", directory);
+
+        // Assert
+        assertThat(bucketMetadataIndex.isReady()).isTrue();
+        assertThat(query(new BucketStorageMetadataIndexQuery(null, null, 0, Long.MAX_VALUE,
+                Long.MIN_VALUE, Long.MAX_VALUE, 10))).containsExactly("b.txt", "c.txt");
+    }
+
+    @Test
+    public void finishReconcile_shouldKeepChangesMadeDuringScan_whenScanListedOlderState() throws Exception {
+
+        // Arrange
+        bucketMetadataIndex.startReconcile();
+        bucketMetadataIndex.put("new.txt", new MetadataIndexRecord(5, "new", 50));
+        bucketMetadataIndex.remove("deleted.txt");
+
+        // Act
+        bucketMetadataIndex.addReconciled(Arrays.asList(
+                BucketStorageListingEntry.file("deleted.txt", 1, "old", 10),
+                BucketStorageListingEntry.file("kept.txt", 2, "kept", 20),
+                BucketStorageListingEntry.file("new.txt", 4, "old", 40)));
+        bucketMetadataIndex.finishReconcile();
+
+        // Assert
+        assertThat(query(new BucketStorageMetadataIndexQuery(null, null, 0, Long.MAX_VALUE,
+                Long.MIN_VALUE, Long.MAX_VALUE, 10))).containsExactly("kept.txt", "new.txt");
+        assertThat(bucketMetadataIndex.tailMap(new BucketStorageMetadataIndexQuery("new", null, 0, Long.MAX_VALUE,
+                Long.MIN_VALUE, Long.MAX_VALUE, 10)).firstEntry().getValue().getSize()).isEqualTo(5L);
+    }
+
+    private List<String> query(BucketStorageMetadataIndexQuery query) {
+        return new ArrayList<>(bucketMetadataIndex.tailMap(query).keySet());
+    }
+}
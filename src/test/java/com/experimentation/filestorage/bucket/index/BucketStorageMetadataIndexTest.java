@@ -0,0 +1,161 @@
+package com.experimentation.filestorage.bucket.index;
+
+import com.experimentation.filestorage.bucket.BucketStorageListingEntry;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.experimentation.filestorage.bucket.util.BucketStorageIndexNotFoundException;
+import com.experimentation.filestorage.bucket.util.BucketStorageIndexUnavailableException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.fail;
+
+public class BucketStorageMetadataIndexTest {
+
+    @Rule
+    public TemporaryFolder indexDirectory = new TemporaryFolder();
+
+    private BucketStorageMetadataIndex bucketStorageMetadataIndex;
+    private String bucketName;
+
+    @Before
+    public void setUp() throws Exception {
+        bucketName = "example";
+
+        // An index kept by an earlier run, which is opened and ready as soon as the service starts
+        BucketMetadataIndex bucketMetadataIndex = BucketMetadataIndex.open(BucketStorageType.GCP, bucketName,
+                indexDirectory.getRoot().toPath().resolve(BucketStorageType.GCP.toString()).resolve(bucketName));
+        bucketMetadataIndex.startReconcile();
+        bucketMetadataIndex.addReconciled(Arrays.asList(
+                BucketStorageListingEntry.file("docs/large-new.pdf", 500, "a", 2000),
+                BucketStorageListingEntry.file("docs/large-old.pdf", 500, "b", 1000),
+                BucketStorageListingEntry.file("docs/small-new.pdf", 5, "c", 2000),
+                BucketStorageListingEntry.file("docs/zz-large-new.pdf", 800, "d", 2500),
+                BucketStorageListingEntry.file("other/large-new.pdf", 500, "e", 2000)));
+        bucketMetadataIndex.finishReconcile();
+        bucketMetadataIndex.close();
+
+        bucketStorageMetadataIndex =
+                new BucketStorageMetadataIndex(true, indexDirectory.getRoot().getPath(), 3600, 100000,
+                        new String[0]);
+    }
+
+    @After
+    public void tearDown() {
+        bucketStorageMetadataIndex.shutdown();
+    }
+
+    @Test
+    public void query_shouldReturnFilesUnderPrefixThatMatchEveryFilter_whenIndexIsReady() {
+
+        // Act
+        List<String> fileNames = fileNames(bucketStorageMetadataIndex.query(BucketStorageType.GCP, bucketName,
+                new BucketStorageMetadataIndexQuery("docs/", null, 100, Long.MAX_VALUE, 1500, 3000, 10)));
+
+        // Assert
+        assertThat(fileNames).containsExactly("docs/large-new.pdf", "docs/zz-large-new.pdf");
+    }
+
+    @Test
+    public void query_shouldStopAtLimit_whenMoreFilesMatch() {
+
+        // Act
+        List<String> fileNames = fileNames(bucketStorageMetadataIndex.query(BucketStorageType.GCP, bucketName,
+                new BucketStorageMetadataIndexQuery("docs/", "docs/large-new.pdf", 0, Long.MAX_VALUE,
+                        Long.MIN_VALUE, Long.MAX_VALUE, 2)));
+
+        // Assert
+        assertThat(fileNames).containsExactly("docs/large-old.pdf", "docs/small-new.pdf");
+    }
+
+    @Test
+    public void query_shouldThrowIndexUnavailable_whenIndexIsDisabled() {
+
+        // Arrange
+        BucketStorageMetadataIndex disabledIndex =
+                new BucketStorageMetadataIndex(false, indexDirectory.getRoot().getPath(), 3600, 100000,
+                        new String[0]);
+
+        // Act
+        try {
+            disabledIndex.query(BucketStorageType.GCP, bucketName, new BucketStorageMetadataIndexQuery(
+                    null, null, 0, Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, 1));
+            fail("Expected the disabled index to be unavailable");
+        }
+
+        // Assert
+        catch (BucketStorageIndexUnavailableException e) {
+            assertThat(e.getMessage()).isEqualTo("The metadata index is not enabled");
+        }
+        finally {
+            disabledIndex.shutdown();
+        }
+    }
+
+    @Test
+    public void query_shouldThrowIndexNotFound_whenBucketIsNeitherConfiguredNorUploadedTo() {
+
+        // Act and Assert
+        assertThatThrownBy(() -> bucketStorageMetadataIndex.query(BucketStorageType.GCP, "unknown",
+                new BucketStorageMetadataIndexQuery(null, null, 0, Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, 1)))
+                .isInstanceOf(BucketStorageIndexNotFoundException.class);
+        assertThat(indexDirectory.getRoot().toPath().resolve(BucketStorageType.GCP.toString()).resolve("unknown"))
+                .doesNotExist();
+    }
+
+    @Test
+    public void query_shouldThrowIndexUnavailable_whenConfiguredBucketHasNotBeenScannedYet() {
+
+        // Arrange
+        BucketStorageMetadataIndex configuredIndex = new BucketStorageMetadataIndex(true,
+                indexDirectory.getRoot().getPath(), 3600, 100000, new String[] {"AWS_S3/configured"});
+
+        // Act and Assert
+        try {
+            assertThatThrownBy(() -> configuredIndex.query(BucketStorageType.AWS_S3, "configured",
+                    new BucketStorageMetadataIndexQuery(
+                            null, null, 0, Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, 1)))
+                    .isInstanceOf(BucketStorageIndexUnavailableException.class);
+        }
+        finally {
+            configuredIndex.shutdown();
+        }
+    }
+
+    @Test
+    public void constructor_shouldThrowNamingTheProperty_whenConfiguredBucketHasNoProvider() {
+
+        // Act and Assert
+        assertThatThrownBy(() -> new BucketStorageMetadataIndex(true, indexDirectory.getRoot().getPath(), 3600, 100000,
+                new String[] {"configured"}))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("filestorage.index.buckets")
+                .hasMessageContaining("PROVIDER/bucket");
+    }
+
+    @Test
+    public void constructor_shouldThrowNamingTheProperty_whenConfiguredBucketHasUnknownProvider() {
+
+        // Act and Assert
+        assertThatThrownBy(() -> new BucketStorageMetadataIndex(true, indexDirectory.getRoot().getPath(), 3600, 100000,
+                new String[] {"AZURE/configured"}))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("filestorage.index.buckets")
+                .hasMessageContaining("PROVIDER/bucket");
+    }
+
+    private static List<String> fileNames(Iterator<BucketStorageListingEntry> entries) {
+        List<String> fileNames = new ArrayList<>();
+        entries.forEachRemaining(entry -> fileNames.add(entry.getFileName()));
+        return fileNames;
+    }
+}
@@ -0,0 +1,214 @@
+package com.experimentation.filestorage.bucket.localfs;
+
+import com.experimentation.filestorage.bucket.BucketStorageDTO;
+import com.experimentation.filestorage.bucket.BucketStorageListOptions;
+import com.experimentation.filestorage.bucket.BucketStorageListing;
+import com.experimentation.filestorage.bucket.BucketStorageListingEntry;
+import com.experimentation.filestorage.bucket.BucketStorageRange;
+import com.experimentation.filestorage.bucket.BucketStorageReadOptions;
+import com.experimentation.filestorage.bucket.util.BucketStorageFileNotFoundException;
+import com.experimentation.filestorage.bucket.util.BucketStorageHelper;
+import com.experimentation.filestorage.bucket.util.BucketStorageServiceException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LocalFSBucketStorageImplTest {
+
+    @Rule
+    public TemporaryFolder rootDirectory = new TemporaryFolder();
+
+    private LocalFSBucketStorageHelper localFSBucketStorageHelper;
+    private LocalFSBucketStorageImpl localFSBucketStorage;
+    private String bucketName;
+    private String contentType;
+    private byte[] content;
+
+    @Before
+    public void setUp() throws IOException {
+        // Reads of more than 4 bytes go through memory mappings
+        localFSBucketStorageHelper =
+                new LocalFSBucketStorageHelper(rootDirectory.getRoot().getPath(), true, true, 4, 60);
+        localFSBucketStorage = new LocalFSBucketStorageImpl(localFSBucketStorageHelper, new BucketStorageHelper());
+        bucketName = "example";
+        contentType = MimeTypeUtils.TEXT_PLAIN_VALUE;
+        content = "Some example test".getBytes();
+        Files.createDirectory(rootDirectory.getRoot().toPath().resolve(bucketName));
+    }
+
+    @After
+    public void tearDown() {
+        localFSBucketStorageHelper.shutdown();
+    }
+
+    @Test
+    public void getFile_shouldReturnUploadedContentAndContentType_whenFileWasUploaded() throws IOException {
+
+        // Arrange
+        upload("reports/test.txt");
+
+        // Act
+        BucketStorageDTO bucketStorageDTO = localFSBucketStorage.getFile(bucketName, "reports/test.txt");
+
+        // Assert
+        assertThat(bucketStorageDTO.getContentType()).isEqualTo(contentType);
+        assertThat(bucketStorageDTO.getContentLength()).isEqualTo(content.length);
+        assertThat(bucketStorageDTO.getLocalFileChannel()).isNotNull();
+        assertThat(bucketStorageDTO.getETag()).isNotNull();
+        assertThat(readAll(bucketStorageDTO)).isEqualTo(content);
+        assertThat(rootDirectory.getRoot().toPath()
+                .resolve(bucketName).resolve(".filestorage").resolve("uploads").toFile().list()).isEmpty();
+    }
+
+    @Test
+    public void getFile_shouldReturnRange_whenRangeIsRequested() throws IOException {
+
+        // Arrange
+        upload("test.txt");
+
+        // Act
+        BucketStorageDTO bucketStorageDTO = localFSBucketStorage.getFile(bucketName, "test.txt",
+                BucketStorageReadOptions.withRange(BucketStorageRange.ofBytes(5, 11)));
+
+        // Assert
+        assertThat(new String(readAll(bucketStorageDTO))).isEqualTo("example");
+        assertThat(bucketStorageDTO.getRange().getFirstBytePosition()).isEqualTo(5L);
+        assertThat(bucketStorageDTO.getInstanceLength()).isEqualTo(content.length);
+    }
+
+    @Test
+    public void getFile_shouldReturnValidatorsOfOpenedFile_whenFileIsReplacedWhileItIsOpened() throws IOException {
+
+        // Arrange
+        upload("test.txt");
+        byte[] replacedContent = "Replaced example test content".getBytes();
+        LocalFSBucketStorageHelper replacingHelper =
+                new LocalFSBucketStorageHelper(rootDirectory.getRoot().getPath(), true, true, 4, 0) {
+                    private boolean replaced;
+
+                    @Override
+                    protected String readContentType(String bucketName, String fileName, Path file) {
+                        // Replaces the file between the first attribute read and the open, once
+                        if (!replaced) {
+                            replaced = true;
+                            localFSBucketStorage.uploadMultipartFile(bucketName, fileName,
+                                    new MockMultipartFile("file", fileName, contentType, replacedContent));
+                        }
+                        return super.readContentType(bucketName, fileName, file);
+                    }
+                };
+        LocalFSBucketStorageImpl replacingBucketStorage =
+                new LocalFSBucketStorageImpl(replacingHelper, new BucketStorageHelper());
+
+        // Act
+        BucketStorageDTO bucketStorageDTO = replacingBucketStorage.getFile(bucketName, "test.txt");
+
+        // Assert
+        assertThat(readAll(bucketStorageDTO)).isEqualTo(replacedContent);
+        assertThat(bucketStorageDTO.getContentLength()).isEqualTo(replacedContent.length);
+        assertThat(bucketStorageDTO.getETag())
+                .isEqualTo(localFSBucketStorage.getFileMetadata(bucketName, "test.txt").getETag());
+    }
+
+    @Test
+    public void getFile_shouldLinkOpenedVersionForSendfile_untilItsGraceEnds() throws IOException {
+
+        // Arrange
+        upload("test.txt");
+        BucketStorageDTO bucketStorageDTO = localFSBucketStorage.getFile(bucketName, "test.txt");
+        bucketStorageDTO.close();
+        Path localFile = bucketStorageDTO.getLocalFile();
+
+        // Act
+        localFSBucketStorage.uploadMultipartFile(bucketName, "test.txt",
+                new MockMultipartFile("file", "test.txt", contentType, "Replaced example test content".getBytes()));
+        localFSBucketStorageHelper.sweepServedLinks();
+        byte[] sentContent = Files.readAllBytes(localFile);
+        localFSBucketStorageHelper.shutdown();
+
+        // Assert
+        assertThat(localFile.startsWith(rootDirectory.getRoot().toPath().resolve(bucketName).resolve(".filestorage")))
+                .isTrue();
+        assertThat(sentContent).isEqualTo(content);
+        assertThat(Files.exists(localFile)).isFalse();
+        assertThat(fileNames(localFSBucketStorage.listFiles(bucketName,
+                new BucketStorageListOptions(null, null, 10, null)).getEntries())).containsExactly("test.txt");
+    }
+
+    @Test
+    public void listFiles_shouldRollUpDirectoriesInNameOrder_whenDelimiterIsGiven() throws IOException {
+
+        // Arrange
+        upload("b.txt");
+        upload("a/one.txt");
+        upload("a/two.txt");
+        upload("a-c.txt");
+
+        // Act
+        BucketStorageListing firstPage = localFSBucketStorage.listFiles(bucketName,
+                new BucketStorageListOptions(null, BucketStorageListOptions.DIRECTORY_DELIMITER, 2, null));
+        BucketStorageListing secondPage = localFSBucketStorage.listFiles(bucketName,
+                new BucketStorageListOptions(null, BucketStorageListOptions.DIRECTORY_DELIMITER, 2,
+                        firstPage.getNextPageToken()));
+
+        // Assert
+        assertThat(fileNames(firstPage.getEntries())).containsExactly("a-c.txt", "a/");
+        assertThat(firstPage.getEntries().get(1).isDirectory()).isTrue();
+        assertThat(fileNames(secondPage.getEntries())).containsExactly("b.txt");
+        assertThat(secondPage.getNextPageToken()).isNull();
+    }
+
+    @Test
+    public void deleteFile_shouldRemoveEmptyDirectories_whenLastFileInThemIsDeleted() throws IOException {
+
+        // Arrange
+        upload("a/b/test.txt");
+
+        // Act
+        localFSBucketStorage.deleteFile(bucketName, "a/b/test.txt");
+
+        // Assert
+        assertThat(Files.exists(rootDirectory.getRoot().toPath().resolve(bucketName).resolve("a"))).isFalse();
+        assertThatThrownBy(() -> localFSBucketStorage.getFile(bucketName, "a/b/test.txt"))
+                .isInstanceOf(BucketStorageFileNotFoundException.class);
+    }
+
+    @Test
+    public void uploadMultipartFile_shouldRejectFileName_whenItLeavesTheBucket() {
+
+        // Act and Assert
+        assertThatThrownBy(() -> upload("../other/test.txt"))
+                .isInstanceOf(BucketStorageServiceException.class);
+        assertThat(Files.exists(rootDirectory.getRoot().toPath().resolve("other"))).isFalse();
+    }
+
+    private void upload(String fileName) {
+        localFSBucketStorage.uploadMultipartFile(bucketName, fileName,
+                new MockMultipartFile("file", fileName, contentType, content));
+    }
+
+    private List<String> fileNames(List<BucketStorageListingEntry> entries) {
+        return entries.stream().map(BucketStorageListingEntry::getFileName).collect(Collectors.toList());
+    }
+
+    private byte[] readAll(BucketStorageDTO bucketStorageDTO) throws IOException {
+        try (InputStream inputStream = bucketStorageDTO.getInputStream()) {
+            return FileCopyUtils.copyToByteArray(inputStream);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.experimentation.filestorage.bucket.metrics;
+
+import com.experimentation.filestorage.bucket.BucketStorageDTO;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.experimentation.filestorage.bucket.util.BucketStorageFileNotFoundException;
+import com.google.common.io.ByteStreams;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BucketStorageMetricsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private BucketStorageMetrics bucketStorageMetrics;
+
+    @Before
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        bucketStorageMetrics = new BucketStorageMetrics(meterRegistry, false);
+    }
+
+    @Test
+    public void recordRequest_shouldTagOutcomeAndRethrow_whenFileIsNotFound() {
+
+        // Arrange
+        BucketStorageFileNotFoundException thrown = null;
+
+        // Act
+        try {
+            bucketStorageMetrics.recordRequest(BucketStorageType.AWS_S3, "getFileMetadata", () -> {
+                throw new BucketStorageFileNotFoundException("missing");
+            });
+        }
+
+        // The exception is expected to reach the caller
+        catch (BucketStorageFileNotFoundException e) {
+            thrown = e;
+        }
+
+        // Assert
+        assertThat(thrown).isNotNull();
+        assertThat(meterRegistry.get("filestorage.requests")
+                .tags("provider", "AWS_S3", "operation", "getFileMetadata", "outcome", "not_found")
+                .timer().count()).isEqualTo(1L);
+    }
+
+    @Test
+    public void recordDownload_shouldCountBytesAndActiveTransfer_whenContentIsRead() throws Exception {
+
+        // Arrange
+        byte[] content = new byte[100];
+        BucketStorageDTO bucketStorageDTO = new BucketStorageDTO("a.bin", "application/octet-stream",
+                content.length, new ByteArrayInputStream(content));
+
+        // Act
+        bucketStorageMetrics.recordDownload(BucketStorageType.GCP, bucketStorageDTO);
+        ByteStreams.toByteArray(bucketStorageDTO.getInputStream());
+        double activeWhileOpen = activeTransfers("GCP", BucketStorageMetrics.DIRECTION_OUT);
+        bucketStorageDTO.close();
+
+        // Assert
+        assertThat(activeWhileOpen).isEqualTo(1.0);
+        assertThat(activeTransfers("GCP", BucketStorageMetrics.DIRECTION_OUT)).isEqualTo(0.0);
+        assertThat(meterRegistry.get("filestorage.bytes.out").tags("provider", "GCP").counter().count())
+                .isEqualTo(100.0);
+        assertThat(meterRegistry.get("filestorage.object.size").tags("provider", "GCP", "direction", "out")
+                .summary().totalAmount()).isEqualTo(100.0);
+    }
+
+    @Test
+    public void recordDownload_shouldCountBytes_whenContentIsSentFromLocalFile() throws Exception {
+
+        // Arrange
+        byte[] content = new byte[100];
+        BucketStorageDTO bucketStorageDTO = new BucketStorageDTO("a.bin", "application/octet-stream",
+                content.length, new ByteArrayInputStream(content));
+
+        // Act
+        bucketStorageMetrics.recordDownload(BucketStorageType.LOCAL_FS, bucketStorageDTO);
+        bucketStorageDTO.localFileTransferred(content.length);
+        bucketStorageDTO.close();
+
+        // Assert
+        assertThat(activeTransfers("LOCAL_FS", BucketStorageMetrics.DIRECTION_OUT)).isEqualTo(0.0);
+        assertThat(meterRegistry.get("filestorage.bytes.out").tags("provider", "LOCAL_FS").counter().count())
+                .isEqualTo(100.0);
+    }
+
+    @Test
+    public void recordUpload_shouldCountBytesAsTheyAreRead_whenSizeIsUnknown() {
+
+        // Arrange
+        MockMultipartFile multipartFile = new MockMultipartFile("file", new byte[42]) {
+            @Override
+            public long getSize() {
+                return -1;
+            }
+        };
+
+        // Act
+        bucketStorageMetrics.recordUpload(BucketStorageType.AWS_S3, "uploadFile", multipartFile, file -> {
+            try (InputStream inputStream = file.getInputStream()) {
+                ByteStreams.toByteArray(inputStream);
+            }
+
+            // Reading a byte array does not fail
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        // Assert
+        assertThat(meterRegistry.get("filestorage.bytes.in").tags("provider", "AWS_S3").counter().count())
+                .isEqualTo(42.0);
+        assertThat(meterRegistry.get("filestorage.requests")
+                .tags("provider", "AWS_S3", "operation", "uploadFile", "outcome", "success")
+                .timer().count()).isEqualTo(1L);
+        assertThat(activeTransfers("AWS_S3", BucketStorageMetrics.DIRECTION_IN)).isEqualTo(0.0);
+    }
+
+    private double activeTransfers(String provider, String direction) {
+        return meterRegistry.get("filestorage.transfers.active")
+                .tags("provider", provider, "direction", direction).gauge().value();
+    }
+}
@@ -0,0 +1,106 @@
+package com.experimentation.filestorage.bucket.reactive;
+
+import com.experimentation.filestorage.bucket.BucketStorageDTO;
+import com.experimentation.filestorage.bucket.BucketStorageReadOptions;
+import com.experimentation.filestorage.bucket.BucketStorageService;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.experimentation.filestorage.bucket.util.BucketStorageUnavailableException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+
+public class BucketStorageReactiveAdapterTest {
+
+    private BucketStorageService bucketStorageService;
+    private BucketStorageReactiveAdapter bucketStorageReactiveAdapter;
+
+    @Before
+    public void setUp() {
+        bucketStorageService = Mockito.mock(BucketStorageService.class);
+        bucketStorageReactiveAdapter = new BucketStorageReactiveAdapter(bucketStorageService, 1, 1, 1, 1, 4, 8192);
+    }
+
+    @After
+    public void tearDown() {
+        bucketStorageReactiveAdapter.shutdown();
+    }
+
+    @Test
+    public void deleteFile_shouldFailAsUnavailable_whenEveryThreadIsBusyAndTheQueueIsFull()
+            throws InterruptedException {
+
+        // Arrange
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.doAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(bucketStorageService).doDeleteFile(eq("my-bucket"), eq("busy.txt"), eq(BucketStorageType.AWS_S3));
+        bucketStorageReactiveAdapter.deleteFile("my-bucket", "busy.txt", BucketStorageType.AWS_S3).subscribe();
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        Mono<Void> queued = bucketStorageReactiveAdapter.deleteFile(
+                "my-bucket", "queued.txt", BucketStorageType.AWS_S3).cache();
+        queued.subscribe();
+
+        // Act and Assert
+        assertThatThrownBy(() -> bucketStorageReactiveAdapter.deleteFile(
+                "my-bucket", "rejected.txt", BucketStorageType.AWS_S3).block())
+                .isInstanceOf(BucketStorageUnavailableException.class);
+        release.countDown();
+        queued.block();
+        Mockito.verify(bucketStorageService)
+                .doDeleteFile(eq("my-bucket"), eq("queued.txt"), eq(BucketStorageType.AWS_S3));
+        Mockito.verify(bucketStorageService, Mockito.never())
+                .doDeleteFile(eq("my-bucket"), eq("rejected.txt"), eq(BucketStorageType.AWS_S3));
+    }
+
+    @Test
+    public void getFile_shouldReturnFile_whenEveryUploadThreadIsBusyAndTheUploadQueueIsFull()
+            throws InterruptedException {
+
+        // Arrange
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.doAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(bucketStorageService).doUploadMultipartFile(eq("my-bucket"), any(String.class),
+                any(MultipartFile.class), eq(BucketStorageType.AWS_S3));
+        bucketStorageReactiveAdapter.upload("my-bucket", "slow.txt", "text/plain", -1, Flux.empty(),
+                BucketStorageType.AWS_S3).subscribe();
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        bucketStorageReactiveAdapter.upload("my-bucket", "queued.txt", "text/plain", -1, Flux.empty(),
+                BucketStorageType.AWS_S3).subscribe();
+        BucketStorageDTO bucketStorageDTO = new BucketStorageDTO("a.txt", "text/plain", 0,
+                new ByteArrayInputStream(new byte[0]));
+        Mockito.doReturn(bucketStorageDTO).when(bucketStorageService).doGetFile(eq("my-bucket"), eq("a.txt"),
+                eq(BucketStorageReadOptions.none()), eq(BucketStorageType.AWS_S3));
+
+        // Act
+        BucketStorageDTO result = bucketStorageReactiveAdapter.getFile("my-bucket", "a.txt",
+                BucketStorageReadOptions.none(), BucketStorageType.AWS_S3).block(Duration.ofSeconds(5));
+
+        // Assert
+        assertThat(result).isSameAs(bucketStorageDTO);
+        assertThatThrownBy(() -> bucketStorageReactiveAdapter.upload("my-bucket", "rejected.txt", "text/plain", -1,
+                Flux.empty(), BucketStorageType.AWS_S3).block())
+                .isInstanceOf(BucketStorageUnavailableException.class);
+        release.countDown();
+    }
+}
@@ -0,0 +1,131 @@
+package com.experimentation.filestorage.bucket.reactive;
+
+import com.experimentation.filestorage.bucket.BucketStorageDTO;
+import com.experimentation.filestorage.bucket.BucketStorageReadOptions;
+import com.experimentation.filestorage.bucket.BucketStorageService;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.experimentation.filestorage.bucket.BucketStorageTypeConstants;
+import com.experimentation.filestorage.bucket.util.BucketStorageServiceException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.mockito.internal.verification.VerificationModeFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+
+@RunWith(SpringRunner.class)
+@WebFluxTest(BucketStorageReactiveController.class)
+@Import(BucketStorageReactiveAdapter.class)
+public class BucketStorageReactiveControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private BucketStorageService bucketStorageService;
+
+    private String bucketName;
+    private String fileName;
+    private byte[] content;
+
+    @Before
+    public void setUp() {
+        bucketName = "my-bucket";
+        fileName = "example.txt";
+        content = "Coffee ipsum".getBytes();
+    }
+
+    @Test
+    public void getFile_shouldStreamFileContent_whenCalledNormally() {
+
+        // Arrange
+        BucketStorageDTO bucketStorageDTO = new BucketStorageDTO(
+                fileName, MediaType.TEXT_PLAIN_VALUE, content.length, new ByteArrayInputStream(content));
+        bucketStorageDTO.setETag("etag");
+        Mockito.doReturn(bucketStorageDTO)
+                .when(bucketStorageService)
+                .doGetFile(eq(bucketName), eq(fileName), any(BucketStorageReadOptions.class),
+                        eq(BucketStorageType.AWS_S3));
+
+        // Act
+        byte[] body = webTestClient.get()
+                .uri(buildUrl(BucketStorageTypeConstants.AWS_S3))
+                .exchange()
+
+                // Assert
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.TEXT_PLAIN)
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"etag\"")
+                .expectBody(byte[].class).returnResult().getResponseBody();
+        assertThat(body).isEqualTo(content);
+    }
+
+    @Test
+    public void uploadFile_shouldUploadRequestBodyAsFileContent_whenCalledNormally() {
+
+        // Arrange
+        AtomicReference<byte[]> uploadedContent = new AtomicReference<>();
+        AtomicReference<String> uploadedContentType = new AtomicReference<>();
+        Mockito.doAnswer(invocation -> {
+            MultipartFile file = invocation.getArgument(2);
+            uploadedContentType.set(file.getContentType());
+            uploadedContent.set(StreamUtils.copyToByteArray(file.getInputStream()));
+            return null;
+        }).when(bucketStorageService)
+                .doUploadMultipartFile(
+                        eq(bucketName), eq(fileName), any(MultipartFile.class), eq(BucketStorageType.GCP));
+
+        // Act
+        webTestClient.put()
+                .uri(buildUrl(BucketStorageTypeConstants.GCP))
+                .contentType(MediaType.TEXT_PLAIN)
+                .syncBody(content)
+                .exchange()
+
+                // Assert
+                .expectStatus().isOk();
+        assertThat(uploadedContent.get()).isEqualTo(content);
+        assertThat(uploadedContentType.get()).isEqualTo(MediaType.TEXT_PLAIN_VALUE);
+    }
+
+    @Test
+    public void deleteFile_shouldReturnServerError_whenDeleteFails() {
+
+        // Arrange
+        Mockito.doThrow(new BucketStorageServiceException("Unable to delete file"))
+                .when(bucketStorageService)
+                .doDeleteFile(bucketName, fileName, BucketStorageType.AWS_S3);
+
+        // Act
+        webTestClient.delete()
+                .uri(buildUrl(BucketStorageTypeConstants.AWS_S3))
+                .exchange()
+
+                // Assert
+                .expectStatus().is5xxServerError()
+                .expectBody(String.class).isEqualTo("Unable to delete file");
+        Mockito.verify(bucketStorageService, VerificationModeFactory.times(1))
+                .doDeleteFile(bucketName, fileName, BucketStorageType.AWS_S3);
+    }
+
+    private String buildUrl(String storageProvider) {
+        return "/api/fileStorage/storageProvider/" + storageProvider + "/storageLocation/" + bucketName
+                + "/fileName/" + fileName;
+    }
+}
@@ -0,0 +1,234 @@
+package com.experimentation.filestorage.bucket.retry;
+
+import com.experimentation.filestorage.bucket.BucketStorage;
+import com.experimentation.filestorage.bucket.BucketStorageDTO;
+import com.experimentation.filestorage.bucket.BucketStorageReadOptions;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.experimentation.filestorage.bucket.breaker.CircuitBreakerBeanPostProcessor;
+import com.experimentation.filestorage.bucket.cache.DiskCacheBeanPostProcessor;
+import com.experimentation.filestorage.bucket.util.BucketStorageServiceException;
+import com.experimentation.filestorage.bucket.util.BucketStorageTransientException;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class BucketStorageRetrierTest {
+
+    private BucketStorageRetrier bucketStorageRetrier;
+
+    @After
+    public void tearDown() {
+        if (bucketStorageRetrier != null) {
+            bucketStorageRetrier.shutdown();
+        }
+    }
+
+    @Test
+    public void call_shouldRetryCall_whenCallFailsTransiently() {
+
+        // Arrange
+        bucketStorageRetrier = new BucketStorageRetrier(true, 3, 1, 1, 100, 0.1, false, 95, 10, 100, 1);
+        AtomicInteger attempts = new AtomicInteger();
+
+        // Act
+        String result = bucketStorageRetrier.call(BucketStorageType.AWS_S3, () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new BucketStorageTransientException("throttled");
+            }
+            return "metadata";
+        });
+
+        // Assert
+        assertThat(result).isEqualTo("metadata");
+        assertThat(attempts.get()).isEqualTo(3);
+        assertThat(bucketStorageRetrier.getStatistics().get(0).getRetries()).isEqualTo(2L);
+    }
+
+    @Test
+    public void call_shouldNotRetryCall_whenFailureIsNotTransient() {
+
+        // Arrange
+        bucketStorageRetrier = new BucketStorageRetrier(true, 3, 1, 1, 100, 0.1, false, 95, 10, 100, 1);
+        AtomicInteger attempts = new AtomicInteger();
+
+        // Act
+        try {
+            bucketStorageRetrier.call(BucketStorageType.GCP, () -> {
+                attempts.incrementAndGet();
+                throw new BucketStorageServiceException("forbidden");
+            });
+            fail("Expected the failure to be passed on");
+        }
+
+        // Assert
+        catch (BucketStorageServiceException e) {
+            assertThat(e).isNotInstanceOf(BucketStorageTransientException.class);
+            assertThat(attempts.get()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void call_shouldNotRetryCall_whenRetryBudgetIsSpent() {
+
+        // Arrange
+        bucketStorageRetrier = new BucketStorageRetrier(true, 3, 1, 1, 2, 0.1, false, 95, 10, 100, 1);
+        AtomicInteger attempts = new AtomicInteger();
+
+        // Act
+        try {
+            bucketStorageRetrier.call(BucketStorageType.AWS_S3, () -> {
+                attempts.incrementAndGet();
+                throw new BucketStorageTransientException("unavailable");
+            });
+            fail("Expected the failure to be passed on");
+        }
+
+        // Assert
+        catch (BucketStorageTransientException e) {
+            assertThat(attempts.get()).isEqualTo(1);
+            assertThat(bucketStorageRetrier.getStatistics().get(0).getBudgetExhausted()).isEqualTo(1L);
+        }
+    }
+
+    @Test
+    public void callHedged_shouldReturnHedgedFileBeforeSlowFileAndAbortSlowFile_whenFirstReadIsSlow()
+            throws Exception {
+
+        // Arrange
+        bucketStorageRetrier = new BucketStorageRetrier(true, 1, 1, 1, 100, 0.1, true, 50, 10, 10, 2);
+        bucketStorageRetrier.callHedged(BucketStorageType.AWS_S3, () -> newFile("warm-up", new CountDownLatch(1)));
+
+        CountDownLatch slowFileReleased = new CountDownLatch(1);
+        CountDownLatch slowFileAborted = new CountDownLatch(1);
+        AtomicInteger attempts = new AtomicInteger();
+
+        // Act
+        BucketStorageDTO bucketStorageDTO = bucketStorageRetrier.callHedged(BucketStorageType.AWS_S3, () -> {
+            if (attempts.incrementAndGet() == 1) {
+                awaitQuietly(slowFileReleased);
+                BucketStorageDTO slowFile = newFile("slow", new CountDownLatch(1));
+                slowFile.setAbortAction(slowFileAborted::countDown);
+                return slowFile;
+            }
+            return newFile("hedged", new CountDownLatch(1));
+        });
+        long slowFilesAborted = slowFileAborted.getCount();
+        slowFileReleased.countDown();
+
+        // Assert
+        assertThat(bucketStorageDTO.getFileName()).isEqualTo("hedged");
+        assertThat(slowFilesAborted).isEqualTo(1L);
+        assertThat(slowFileAborted.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(bucketStorageRetrier.getStatistics().get(0).getHedgesWon()).isEqualTo(1L);
+    }
+
+    @Test
+    public void callHedged_shouldCallOnCallerThreadWithoutHedge_whenEveryHedgeThreadIsBusy() throws Exception {
+
+        // Arrange
+        bucketStorageRetrier = new BucketStorageRetrier(true, 1, 1, 1, 100, 0.1, true, 50, 10, 10, 1);
+        bucketStorageRetrier.callHedged(BucketStorageType.GCP, () -> newFile("warm-up", new CountDownLatch(1)));
+
+        CountDownLatch otherStarted = new CountDownLatch(1);
+        CountDownLatch otherReleased = new CountDownLatch(1);
+        // The other call waits on the only hedge thread until released
+        Thread otherCaller = new Thread(() -> bucketStorageRetrier.callHedged(BucketStorageType.GCP, () -> {
+            otherStarted.countDown();
+            awaitQuietly(otherReleased);
+            return newFile("other", new CountDownLatch(1));
+        }));
+        otherCaller.start();
+        assertThat(otherStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread callerThread = Thread.currentThread();
+        AtomicInteger attemptsOnCallerThread = new AtomicInteger();
+
+        // Act
+        BucketStorageDTO bucketStorageDTO = bucketStorageRetrier.callHedged(BucketStorageType.GCP, () -> {
+            if (Thread.currentThread() == callerThread) {
+                attemptsOnCallerThread.incrementAndGet();
+            }
+            sleepQuietly(100);
+            return newFile("unhedged", new CountDownLatch(1));
+        });
+        otherReleased.countDown();
+        otherCaller.join(5000);
+
+        // Assert
+        assertThat(bucketStorageDTO.getFileName()).isEqualTo("unhedged");
+        assertThat(attemptsOnCallerThread.get()).isEqualTo(1);
+        assertThat(bucketStorageRetrier.getStatistics().get(1).getHedges()).isEqualTo(0L);
+    }
+
+    @Test
+    public void getFile_shouldHedgeProviderRead_whenProviderIsWrappedForHedging() throws Exception {
+
+        // Arrange
+        bucketStorageRetrier = new BucketStorageRetrier(true, 1, 1, 1, 100, 0.1, true, 50, 10, 10, 2);
+        BucketStorage provider = Mockito.mock(BucketStorage.class);
+        CountDownLatch slowFileReleased = new CountDownLatch(1);
+        AtomicInteger attempts = new AtomicInteger();
+        Mockito.doAnswer(invocation -> {
+            if (attempts.incrementAndGet() == 2) {
+                awaitQuietly(slowFileReleased);
+                return newFile("slow", new CountDownLatch(1));
+            }
+            return newFile("file", new CountDownLatch(1));
+        }).when(provider).getFile("example", "a.txt", BucketStorageReadOptions.none());
+        HedgingBeanPostProcessor postProcessor = new HedgingBeanPostProcessor(true, true, () -> bucketStorageRetrier);
+        BucketStorage bucketStorage = (BucketStorage) postProcessor.postProcessAfterInitialization(
+                provider, BucketStorageType.AWS_S3.toString());
+        bucketStorage.getFile("example", "a.txt");
+
+        // Act
+        BucketStorageDTO bucketStorageDTO = bucketStorage.getFile("example", "a.txt");
+        slowFileReleased.countDown();
+
+        // Assert
+        assertThat(bucketStorageDTO.getFileName()).isEqualTo("file");
+        assertThat(attempts.get()).isEqualTo(3);
+        assertThat(bucketStorageRetrier.getStatistics().get(0).getHedgesWon()).isEqualTo(1L);
+    }
+
+    @Test
+    public void hedgingBeanPostProcessor_shouldWrapProvidersBelowTheCaches_whenBeansAreDecorated() {
+
+        // Assert
+        assertThat(HedgingBeanPostProcessor.ORDER).isLessThan(DiskCacheBeanPostProcessor.ORDER);
+        assertThat(CircuitBreakerBeanPostProcessor.ORDER).isLessThan(HedgingBeanPostProcessor.ORDER);
+    }
+
+    private BucketStorageDTO newFile(String fileName, CountDownLatch closed) {
+        return new BucketStorageDTO(fileName, "text/plain", 1, new ByteArrayInputStream(new byte[1]) {
+            @Override
+            public void close() {
+                closed.countDown();
+            }
+        });
+    }
+
+    private void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
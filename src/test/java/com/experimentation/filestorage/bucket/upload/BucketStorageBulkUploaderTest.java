@@ -0,0 +1,92 @@
+package com.experimentation.filestorage.bucket.upload;
+
+import com.experimentation.filestorage.bucket.BucketStorageService;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.experimentation.filestorage.bucket.BucketStorageUploadResult;
+import com.experimentation.filestorage.bucket.util.BucketStorageServiceException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+
+public class BucketStorageBulkUploaderTest {
+
+    private BucketStorageService bucketStorageService;
+    private BucketStorageBulkUploader bucketStorageBulkUploader;
+    private String bucketName;
+
+    @Before
+    public void setUp() {
+        bucketStorageService = Mockito.mock(BucketStorageService.class);
+        bucketStorageBulkUploader = new BucketStorageBulkUploader(bucketStorageService, 4, 2);
+        bucketName = "example";
+    }
+
+    @After
+    public void tearDown() {
+        bucketStorageBulkUploader.shutdown();
+    }
+
+    @Test
+    public void upload_shouldReportEachFilesResult_whenAFileFails() {
+
+        // Arrange
+        Mockito.doThrow(new BucketStorageServiceException("Unable to upload file b.txt"))
+                .when(bucketStorageService)
+                .doUploadMultipartFile(
+                        eq(bucketName), eq("b.txt"), any(MultipartFile.class), eq(BucketStorageType.GCP));
+
+        // Act
+        List<BucketStorageUploadResult> results = bucketStorageBulkUploader.upload(bucketName,
+                Arrays.asList(newMultipartFile("a.txt"), newMultipartFile("b.txt"), newMultipartFile("c.txt")),
+                BucketStorageType.GCP);
+
+        // Assert
+        assertThat(results).extracting(BucketStorageUploadResult::getFileName)
+                .containsExactly("a.txt", "b.txt", "c.txt");
+        assertThat(results).extracting(BucketStorageUploadResult::isUploaded).containsExactly(true, false, true);
+        assertThat(results.get(1).getError()).isEqualTo("Unable to upload file b.txt");
+    }
+
+    @Test
+    public void upload_shouldKeepUploadingOtherFiles_whileAFileIsSlow() {
+
+        // Arrange
+        CountDownLatch otherFilesUploaded = new CountDownLatch(3);
+        Mockito.doAnswer(invocation -> {
+            String fileName = invocation.getArgument(1);
+            if (fileName.equals("slow.bin")) {
+                assertThat(otherFilesUploaded.await(5, TimeUnit.SECONDS)).isTrue();
+            }
+            else {
+                otherFilesUploaded.countDown();
+            }
+            return null;
+        }).when(bucketStorageService)
+                .doUploadMultipartFile(eq(bucketName), any(), any(MultipartFile.class), eq(BucketStorageType.AWS_S3));
+
+        // Act
+        List<BucketStorageUploadResult> results = bucketStorageBulkUploader.upload(bucketName, Arrays.asList(
+                newMultipartFile("slow.bin"), newMultipartFile("a.txt"), newMultipartFile("b.txt"),
+                newMultipartFile("c.txt")), BucketStorageType.AWS_S3);
+
+        // Assert
+        assertThat(results).allMatch(BucketStorageUploadResult::isUploaded);
+    }
+
+    private static MockMultipartFile newMultipartFile(String fileName) {
+        return new MockMultipartFile("file", fileName, MimeTypeUtils.TEXT_PLAIN_VALUE, "Coffee ipsum".getBytes());
+    }
+}
@@ -0,0 +1,148 @@
+package com.experimentation.filestorage.bucket.upload;
+
+import com.experimentation.filestorage.bucket.BucketStorageService;
+import com.experimentation.filestorage.bucket.BucketStorageType;
+import com.experimentation.filestorage.bucket.util.BucketStorageServiceException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+
+public class BucketStorageUploadManagerTest {
+
+    @Rule
+    public TemporaryFolder spoolDirectory = new TemporaryFolder();
+
+    private BucketStorageService bucketStorageService;
+    private BucketStorageUploadManager bucketStorageUploadManager;
+    private String bucketName;
+    private String fileName;
+    private MockMultipartFile multipartFile;
+
+    @Before
+    public void setUp() {
+        bucketStorageService = Mockito.mock(BucketStorageService.class);
+        bucketStorageUploadManager = new BucketStorageUploadManager(
+                bucketStorageService, spoolDirectory.getRoot().getPath(), 1, 4, 3600);
+        bucketName = "example";
+        fileName = "test.txt";
+        multipartFile = new MockMultipartFile(
+                "file", fileName, MimeTypeUtils.TEXT_PLAIN_VALUE, "Some example test".getBytes());
+    }
+
+    @After
+    public void tearDown() {
+        bucketStorageUploadManager.shutdown();
+    }
+
+    @Test
+    public void submit_shouldCompleteJobAndRemoveSpooledFile_whenUploadSucceeds() throws Exception {
+
+        // Act
+        BucketStorageUploadJob job =
+                bucketStorageUploadManager.submit(bucketName, fileName, multipartFile, BucketStorageType.GCP);
+        awaitFinished(job);
+
+        // Assert
+        assertThat(job.getStatus()).isEqualTo(BucketStorageUploadStatus.COMPLETED);
+        assertThat(bucketStorageUploadManager.getJob(job.getUploadId())).isSameAs(job);
+        assertThat(spoolDirectory.getRoot().list()).isEmpty();
+        Mockito.verify(bucketStorageService)
+                .doUploadMultipartFile(eq(bucketName), eq(fileName), any(MultipartFile.class),
+                        eq(BucketStorageType.GCP));
+    }
+
+    @Test
+    public void submit_shouldFailJob_whenBucketStorageServiceExceptionIsThrown() throws Exception {
+
+        // Arrange
+        Mockito.doThrow(new BucketStorageServiceException("Unable to upload"))
+                .when(bucketStorageService)
+                .doUploadMultipartFile(eq(bucketName), eq(fileName), any(MultipartFile.class),
+                        eq(BucketStorageType.GCP));
+
+        // Act
+        BucketStorageUploadJob job =
+                bucketStorageUploadManager.submit(bucketName, fileName, multipartFile, BucketStorageType.GCP);
+        awaitFinished(job);
+
+        // Assert
+        assertThat(job.getStatus()).isEqualTo(BucketStorageUploadStatus.FAILED);
+        assertThat(job.getError()).isEqualTo("Unable to upload");
+        assertThat(spoolDirectory.getRoot().list()).isEmpty();
+    }
+
+    @Test
+    public void getJob_shouldReturnNull_whenFinishedJobHasOutlivedItsRetention() throws Exception {
+
+        // Arrange
+        BucketStorageUploadManager expiringUploadManager = new BucketStorageUploadManager(
+                bucketStorageService, spoolDirectory.getRoot().getPath(), 1, 4, 0);
+
+        try {
+            BucketStorageUploadJob job =
+                    expiringUploadManager.submit(bucketName, fileName, multipartFile, BucketStorageType.GCP);
+            awaitFinished(job);
+
+            // Act
+            for (int i = 0; i < 500 && expiringUploadManager.getJob(job.getUploadId()) != null; i++) {
+                Thread.sleep(10);
+            }
+
+            // Assert
+            assertThat(expiringUploadManager.getJob(job.getUploadId())).isNull();
+        }
+        finally {
+            expiringUploadManager.shutdown();
+        }
+    }
+
+    @Test
+    public void shutdown_shouldRemoveSpooledFilesOfQueuedUploads_whenServiceStops() throws Exception {
+
+        // Arrange
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.doAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(bucketStorageService)
+                .doUploadMultipartFile(eq(bucketName), eq(fileName), any(MultipartFile.class),
+                        eq(BucketStorageType.GCP));
+        bucketStorageUploadManager.submit(bucketName, fileName, multipartFile, BucketStorageType.GCP);
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        bucketStorageUploadManager.submit(bucketName, fileName, multipartFile, BucketStorageType.GCP);
+        assertThat(spoolDirectory.getRoot().list()).hasSize(2);
+
+        // Act
+        bucketStorageUploadManager.shutdown();
+
+        // Assert
+        for (int i = 0; i < 500 && spoolDirectory.getRoot().list().length > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(spoolDirectory.getRoot().list()).isEmpty();
+        Mockito.verify(bucketStorageService, Mockito.times(1))
+                .doUploadMultipartFile(eq(bucketName), eq(fileName), any(MultipartFile.class),
+                        eq(BucketStorageType.GCP));
+    }
+
+    private void awaitFinished(BucketStorageUploadJob job) throws InterruptedException {
+        for (int i = 0; i < 500 && !job.isFinished(); i++) {
+            Thread.sleep(10);
+        }
+    }
+}